@@ -0,0 +1,195 @@
+package com.recargapay.wallet.cache;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+import static com.recargapay.wallet.cache.KeyProperties.BALANCE_LOCK_KEY;
+import static com.recargapay.wallet.handle.Message.BALANCE_EARLY_REFRESH_ERROR;
+import static com.recargapay.wallet.handle.Message.BALANCE_LOAD_LOCK_ERROR;
+import static com.recargapay.wallet.handle.Message.BALANCE_LOAD_LOCK_WAIT_TIMEOUT_INFO;
+
+/**
+ * Single-flight for balance cache misses: concurrent misses of the same wallet share one in-flight load
+ * (database read and cache fill) instead of each running its own {@code SUM} over the ledger.
+ *
+ * <p>With {@code wallet.cache.single-flight.distributed-lock.enabled} the load is also coalesced across
+ * instances: the instance that takes a short-lived Redis lock loads the balance, the others poll the cache
+ * for the value it fills and only load it themselves when the wait runs out. If Redis cannot be reached
+ * for the lock, the balance is loaded without it.</p>
+ *
+ * <p>{@link #refreshIfExpiring} runs the same load in the background for a balance close to its expiry, so a hot
+ * balance is reloaded before it ever misses (XFetch): a reader refreshes when
+ * {@code now - delta * beta * ln(random)} reaches the expiry, delta being the recent load time, so the closer the
+ * expiry and the slower the loads, the likelier a refresh. Enabled by {@code wallet.cache.balance.early-refresh.enabled}
+ * and scaled by {@code wallet.cache.balance.early-refresh.beta}. Until this instance has timed loads of its own, delta is
+ * {@code wallet.cache.balance.early-refresh.initial-load-ms}, so balances filled by other instances are refreshed too.</p>
+ *
+ * <p>Loads are counted in {@code wallet_cache_miss_loads}, background refreshes in
+ * {@code wallet_cache_early_refreshes} and requests served by another request's load in
+ * {@code wallet_cache_coalesced_requests} (tagged local or distributed).</p>
+ */
+@Slf4j
+@Component
+public class BalanceLoadCoalescer {
+
+    private final CacheService cache;
+    private final boolean distributedLock;
+    private final Duration lockTtl;
+    private final Duration pollInterval;
+    private final int maxPolls;
+    private final Map<String, Mono<BigDecimal>> inFlight = new ConcurrentHashMap<>();
+    private final Counter loads;
+    private final Counter coalescedLocal;
+    private final Counter coalescedDistributed;
+    private final Counter lockWaitTimeouts;
+    private final Counter earlyRefreshes;
+    private final boolean earlyRefresh;
+    private final double earlyRefreshBeta;
+    private volatile double loadMillis;
+
+    public BalanceLoadCoalescer(
+            CacheService cache,
+            MeterRegistry meterRegistry,
+            @Value("${wallet.cache.single-flight.distributed-lock.enabled:false}") boolean distributedLock,
+            @Value("${wallet.cache.single-flight.distributed-lock.ttl-ms:5000}") long lockTtlMs,
+            @Value("${wallet.cache.single-flight.distributed-lock.wait-ms:1000}") long waitMs,
+            @Value("${wallet.cache.single-flight.distributed-lock.poll-interval-ms:50}") long pollIntervalMs,
+            @Value("${wallet.cache.balance.early-refresh.enabled:true}") boolean earlyRefresh,
+            @Value("${wallet.cache.balance.early-refresh.beta:1.0}") double earlyRefreshBeta,
+            @Value("${wallet.cache.balance.early-refresh.initial-load-ms:50}") long initialLoadMillis) {
+
+        this.cache = cache;
+        this.distributedLock = distributedLock;
+        this.lockTtl = Duration.ofMillis(lockTtlMs);
+        this.pollInterval = Duration.ofMillis(pollIntervalMs);
+        this.maxPolls = (int) Math.max(1, waitMs / Math.max(1, pollIntervalMs));
+        this.earlyRefresh = earlyRefresh;
+        this.earlyRefreshBeta = earlyRefreshBeta;
+        this.loadMillis = initialLoadMillis;
+        this.loads = meterRegistry.counter("wallet_cache_miss_loads");
+        this.coalescedLocal = meterRegistry.counter("wallet_cache_coalesced_requests", "scope", "local");
+        this.coalescedDistributed = meterRegistry.counter("wallet_cache_coalesced_requests", "scope", "distributed");
+        this.lockWaitTimeouts = meterRegistry.counter("wallet_cache_lock_wait_timeouts");
+        this.earlyRefreshes = meterRegistry.counter("wallet_cache_early_refreshes");
+        meterRegistry.gaugeMapSize("wallet_cache_miss_loads_in_flight", Tags.empty(), inFlight);
+    }
+
+    /**
+     * Loads the balance of the wallet, joining the load already in flight for it when there is one.
+     *
+     * @param walletId wallet whose balance missed the cache
+     * @param loader   reads the balance from the database and fills the cache
+     * @return Mono with the balance, shared by every concurrent caller of the same wallet
+     */
+    public Mono<BigDecimal> load(String walletId, Supplier<Mono<BigDecimal>> loader) {
+        return Mono.defer(() -> {
+            boolean[] leader = {false};
+            Mono<BigDecimal> shared = inFlight.computeIfAbsent(walletId, id -> {
+                leader[0] = true;
+                return start(id, loader);
+            });
+            if (!leader[0]) {
+                coalescedLocal.increment();
+            }
+            return shared;
+        });
+    }
+
+    /**
+     * Reloads the cached balance of the wallet in the background when it is close enough to its expiry, unless a
+     * load of it is already in flight. A failed refresh is only logged: the cached balance stays until it expires.
+     */
+    public void refreshIfExpiring(String walletId, CachedBalance cached, Supplier<Mono<BigDecimal>> loader) {
+        if (!shouldRefresh(cached) || inFlight.containsKey(walletId)) {
+            return;
+        }
+        earlyRefreshes.increment();
+        load(walletId, loader).subscribe(
+                balance -> { },
+                e -> log.error(BALANCE_EARLY_REFRESH_ERROR.getMessage(), walletId, e.getMessage()));
+    }
+
+    boolean shouldRefresh(CachedBalance cached) {
+        if (!earlyRefresh || cached.expiresAt() == 0) {
+            return false;
+        }
+        double gap = -loadMillis * earlyRefreshBeta * Math.log(1 - ThreadLocalRandom.current().nextDouble());
+        return System.currentTimeMillis() + gap >= cached.expiresAt();
+    }
+
+    /**
+     * Builds the shared load. It is cached so late joiners get the same result, keeps running when its
+     * callers cancel, and leaves the map once it terminates so the next miss starts a fresh load.
+     */
+    private Mono<BigDecimal> start(String walletId, Supplier<Mono<BigDecimal>> loader) {
+        Mono<BigDecimal> load = distributedLock ? loadWithLock(walletId, loader) : loadFromDatabase(loader);
+        return load
+                .doFinally(signalType -> inFlight.remove(walletId))
+                .cache();
+    }
+
+    private Mono<BigDecimal> loadFromDatabase(Supplier<Mono<BigDecimal>> loader) {
+        return Mono.defer(() -> {
+            loads.increment();
+            long start = System.nanoTime();
+            return loader.get()
+                    .doOnSuccess(balance -> recordLoad(System.nanoTime() - start));
+        });
+    }
+
+    /**
+     * Keeps a moving average of the load time, the delta of the early refresh, starting from the configured initial load time.
+     */
+    private void recordLoad(long elapsedNanos) {
+        double millis = elapsedNanos / 1_000_000.0;
+        loadMillis = loadMillis == 0 ? millis : loadMillis * 0.8 + millis * 0.2;
+    }
+
+    private Mono<BigDecimal> loadWithLock(String walletId, Supplier<Mono<BigDecimal>> loader) {
+        String lockKey = BALANCE_LOCK_KEY.getKey(walletId);
+        String token = UUID.randomUUID().toString();
+        return cache.tryLock(lockKey, token, lockTtl)
+                .onErrorResume(e -> {
+                    log.error(BALANCE_LOAD_LOCK_ERROR.getMessage(), walletId, e.getMessage());
+                    return Mono.just(true);
+                })
+                .flatMap(locked -> locked
+                        ? loadFromDatabase(loader)
+                                .flatMap(balance -> release(lockKey, token).thenReturn(balance))
+                                .onErrorResume(e -> release(lockKey, token).then(Mono.error(e)))
+                        : awaitFill(walletId).switchIfEmpty(Mono.defer(() -> {
+                            lockWaitTimeouts.increment();
+                            log.info(BALANCE_LOAD_LOCK_WAIT_TIMEOUT_INFO.getMessage(), walletId);
+                            return loadFromDatabase(loader);
+                        })));
+    }
+
+    /**
+     * Polls the cache for the balance filled by the instance holding the lock, completing empty when the wait runs out.
+     */
+    private Mono<BigDecimal> awaitFill(String walletId) {
+        return Flux.range(0, maxPolls)
+                .concatMap(attempt -> Mono.delay(pollInterval).then(cache.getBalance(walletId)))
+                .next()
+                .map(CachedBalance::balance)
+                .doOnNext(balance -> coalescedDistributed.increment());
+    }
+
+    private Mono<Void> release(String lockKey, String token) {
+        return cache.unlock(lockKey, token).onErrorResume(e -> Mono.empty());
+    }
+}
@@ -3,4 +3,6 @@ package com.recargapay.wallet.cache;
 public class CacheProperties {
 
     public static final int CONNECTION_REDIS_TIMEOUT_MINUTES = 10;
+    public static final String BALANCE_INVALIDATION_CHANNEL = "wallet:balance:invalidations";
+    public static final String WALLET_CREATED_CHANNEL = "wallet:created";
 }
@@ -1,50 +1,459 @@
 package com.recargapay.wallet.cache;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recargapay.wallet.database.entity.CheckpointedWalletBalance;
+import com.recargapay.wallet.database.entity.Wallet;
 import com.recargapay.wallet.handle.exception.TransactionException;
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.redis.connection.ReactiveSubscription;
 import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
 import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
 
+import java.math.BigDecimal;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 
-import static com.recargapay.wallet.cache.CacheProperties.CONNECTION_REDIS_TIMEOUT_MINUTES;
+import static com.recargapay.wallet.cache.CacheProperties.BALANCE_INVALIDATION_CHANNEL;
+import static com.recargapay.wallet.cache.CacheProperties.WALLET_CREATED_CHANNEL;
 import static com.recargapay.wallet.cache.KeyProperties.BALANCE_KEY;
 import static com.recargapay.wallet.cache.KeyProperties.DUPLICATION_TRANSACTION_KEY;
+import static com.recargapay.wallet.cache.KeyProperties.WALLET_KEY;
+import static com.recargapay.wallet.handle.Message.CACHE_BALANCE_STALE_WRITE_INFO;
+import static com.recargapay.wallet.handle.Message.CACHE_BALANCE_WRITE_FAILED_ERROR;
 import static com.recargapay.wallet.handle.Message.CACHE_CLEARED_FOR_WALLET_INFO;
+import static com.recargapay.wallet.handle.Message.CACHE_INVALIDATION_PUBLISH_ERROR;
+import static com.recargapay.wallet.handle.Message.CACHE_INVALIDATION_SUBSCRIPTION_ERROR;
+import static com.recargapay.wallet.handle.Message.CACHE_WALLET_WRITE_FAILED_ERROR;
 import static com.recargapay.wallet.handle.Message.DUPLICATE_TRANSACTION_DETECTED;
 
+/**
+ * Redis access for the service, with an in-process L1 in front of Redis for balances.
+ *
+ * <p>The L1 is bounded by {@code wallet.cache.l1.max-size} and entries expire {@code wallet.cache.l1.ttl-ms}
+ * after being written. {@link #clearBalanceCache} evicts the local entry, deletes the Redis key and publishes
+ * the wallet id on {@link CacheProperties#BALANCE_INVALIDATION_CHANNEL}, so every instance evicts it too; the
+ * TTL bounds how long an entry can stay stale if an invalidation is lost. Invalidations are tagged with the id of
+ * the publishing instance ({@code <instance>:<wallet>}), which ignores its own: it already updated its L1, and
+ * evicting it on the echo would drop the value it just wrote through.</p>
+ *
+ * <p>Balances are cached as {@link CachedBalance} JSON carrying the wallet version. After a mutation commits
+ * the new balance is written through with a compare-and-set script ({@code redis/balance_compare_and_set.lua})
+ * that never replaces a newer version with an older one, nor a version with another balance for the same version:
+ * the row balance written through and the checkpoint-plus-ledger balance filled on a miss can differ while a
+ * balance update is still pending, and the first one cached for a version is kept. The key is only deleted when
+ * a write-through fails.</p>
+ *
+ * <p>Every key class expires: balances after {@code wallet.cache.balance.ttl-ms}, idempotency keys after
+ * {@code wallet.cache.idempotency.ttl-ms} and wallets after {@code wallet.cache.wallet.ttl-ms}, exported in
+ * {@code wallet_cache_ttl_seconds}. Cached balances carry their expiry so readers can reload them ahead of it
+ * (see {@link BalanceLoadCoalescer#refreshIfExpiring}).</p>
+ *
+ * <p>The status and owner of the wallets are cached as {@link CachedWallet} JSON, kept in Redis for
+ * {@code wallet.cache.wallet.ttl-ms} and in the same kind of L1. {@link #evictWallet} drops them everywhere and
+ * must follow any status change; invalidations received on the channel evict both L1 entries.</p>
+ */
 @Slf4j
 @Service
-@AllArgsConstructor
 public class CacheService {
 
+    private static final RedisScript<Long> BALANCE_COMPARE_AND_SET =
+            RedisScript.of(new ClassPathResource("redis/balance_compare_and_set.lua"), Long.class);
+    private static final RedisScript<Long> UNLOCK =
+            RedisScript.of(new ClassPathResource("redis/unlock.lua"), Long.class);
+    private static final char INVALIDATION_SEPARATOR = ':';
+
+    private final String instanceId = UUID.randomUUID().toString();
+
     private final ReactiveStringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, CachedBalance> balances;
+    private final Cache<String, CachedWallet> wallets;
+    private final Duration walletTtl;
+    private final Duration balanceTtl;
+    private final Duration idempotencyTtl;
+    private final Counter l1Hits;
+    private final Counter l1Misses;
+    private final Counter l1Evictions;
+    private final Counter redisHits;
+    private final Counter redisMisses;
+    private final Counter writesApplied;
+    private final Counter writesStale;
+    private final Counter writesFailed;
+    private final Counter walletL1Hits;
+    private final Counter walletRedisHits;
+    private final Counter walletMisses;
+    private Disposable invalidations;
+
+    public CacheService(
+            ReactiveStringRedisTemplate redisTemplate,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry,
+            @Value("${wallet.cache.l1.max-size:10000}") long maxSize,
+            @Value("${wallet.cache.l1.ttl-ms:1000}") long ttlMs,
+            @Value("${wallet.cache.wallet.ttl-ms:600000}") long walletTtlMs,
+            @Value("${wallet.cache.balance.ttl-ms:3600000}") long balanceTtlMs,
+            @Value("${wallet.cache.idempotency.ttl-ms:86400000}") long idempotencyTtlMs) {
+
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.walletTtl = Duration.ofMillis(walletTtlMs);
+        this.balanceTtl = Duration.ofMillis(balanceTtlMs);
+        this.idempotencyTtl = Duration.ofMillis(idempotencyTtlMs);
+        this.l1Hits = meterRegistry.counter("wallet_cache_l1_hits");
+        this.l1Misses = meterRegistry.counter("wallet_cache_l1_misses");
+        this.l1Evictions = meterRegistry.counter("wallet_cache_l1_evictions");
+        this.redisHits = meterRegistry.counter("wallet_cache_redis_hits");
+        this.redisMisses = meterRegistry.counter("wallet_cache_redis_misses");
+        this.writesApplied = meterRegistry.counter("wallet_cache_balance_writes", "result", "applied");
+        this.writesStale = meterRegistry.counter("wallet_cache_balance_writes", "result", "stale");
+        this.writesFailed = meterRegistry.counter("wallet_cache_balance_writes", "result", "failed");
+        this.walletL1Hits = meterRegistry.counter("wallet_cache_wallet_lookups", "result", "l1_hit");
+        this.walletRedisHits = meterRegistry.counter("wallet_cache_wallet_lookups", "result", "redis_hit");
+        this.walletMisses = meterRegistry.counter("wallet_cache_wallet_lookups", "result", "miss");
+        this.balances = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .executor(Runnable::run)
+                .removalListener((String walletId, CachedBalance value, RemovalCause cause) -> {
+                    if (cause.wasEvicted()) {
+                        l1Evictions.increment();
+                    }
+                })
+                .build();
+        meterRegistry.gauge("wallet_cache_l1_size", balances, Cache::estimatedSize);
+        this.wallets = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttlMs))
+                .build();
+        meterRegistry.gauge("wallet_cache_ttl_seconds", Tags.of("key_class", "balance"), balanceTtl, ttl -> ttl.toMillis() / 1000.0);
+        meterRegistry.gauge("wallet_cache_ttl_seconds", Tags.of("key_class", "idempotency"), idempotencyTtl, ttl -> ttl.toMillis() / 1000.0);
+        meterRegistry.gauge("wallet_cache_ttl_seconds", Tags.of("key_class", "wallet"), walletTtl, ttl -> ttl.toMillis() / 1000.0);
+    }
+
+    /**
+     * Listens to the invalidations published by the other instances, resubscribing if the connection drops.
+     * Untagged messages (published by an older instance) are applied as well.
+     */
+    @PostConstruct
+    public void subscribeInvalidations() {
+        invalidations = redisTemplate.listenToChannel(BALANCE_INVALIDATION_CHANNEL)
+                .map(ReactiveSubscription.Message::getMessage)
+                .filter(message -> !message.startsWith(instanceId + INVALIDATION_SEPARATOR))
+                .map(message -> message.substring(message.indexOf(INVALIDATION_SEPARATOR) + 1))
+                .doOnNext(walletId -> {
+                    balances.invalidate(walletId);
+                    wallets.invalidate(walletId);
+                })
+                .doOnError(e -> log.error(CACHE_INVALIDATION_SUBSCRIPTION_ERROR.getMessage(), e.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+    }
 
+    @PreDestroy
+    public void unsubscribeInvalidations() {
+        if (invalidations != null) {
+            invalidations.dispose();
+        }
+    }
+
+    /**
+     * Marks the request as processed with a single {@code SET NX}, failing when it already was. The mark
+     * expires after {@code wallet.cache.idempotency.ttl-ms}.
+     */
     public Mono<Void> isDuplicateTransaction(String requestTransactionId) {
-        ReactiveValueOperations<String, String> operations = redisTemplate.opsForValue();
-        return operations.get(requestTransactionId)
-                .flatMap(value -> Mono.just(true))
-                .switchIfEmpty(Mono.defer(() -> operations.set(requestTransactionId, DUPLICATION_TRANSACTION_KEY.getKey()).thenReturn(false)))
-                    .flatMap(isDuplicate -> isDuplicate ? Mono.error(new TransactionException(DUPLICATE_TRANSACTION_DETECTED)) : Mono.empty());
+        return opsForValue().setIfAbsent(requestTransactionId, DUPLICATION_TRANSACTION_KEY.getKey(), idempotencyTtl)
+                .flatMap(marked -> marked ? Mono.<Void>empty() : Mono.error(new TransactionException(DUPLICATE_TRANSACTION_DETECTED)));
+    }
+
+    public Mono<Void> set(String cacheKey, String value, Duration ttl) {
+        return opsForValue()
+           .set(cacheKey, value, ttl)
+           .then();
+    }
+
+    /**
+     * Reads the cached balance of the wallet from the L1, falling back to Redis and keeping the Redis hit in the L1.
+     * A value that is not a {@link CachedBalance} (written before balances were versioned) counts as a miss.
+     *
+     * @return Mono with the cached balance, or empty when neither level has it
+     */
+    public Mono<CachedBalance> getBalance(String walletId) {
+        return Mono.defer(() -> {
+            CachedBalance local = balances.getIfPresent(walletId);
+            if (local != null) {
+                l1Hits.increment();
+                return Mono.just(local);
+            }
+            l1Misses.increment();
+            return get(BALANCE_KEY.getKey(walletId))
+                    .flatMap(value -> Mono.justOrEmpty(deserialize(value)))
+                    .doOnNext(cached -> {
+                        redisHits.increment();
+                        balances.put(walletId, cached);
+                    })
+                    .switchIfEmpty(Mono.fromRunnable(redisMisses::increment));
+        });
     }
 
-    public Mono<Void> set(String cacheKey, String value) {
-        opsForValue()
-           .set(cacheKey, value)
-           .subscribe();
-        return Mono.empty();
+    /**
+     * Reads the cached balances of several wallets: L1 first, then a single {@code MGET} for the rest,
+     * keeping the Redis hits in the L1.
+     *
+     * @return Mono with the cached balances by wallet id; wallets missing from both levels are absent
+     */
+    public Mono<Map<String, CachedBalance>> getBalances(List<String> walletIds) {
+        return Mono.defer(() -> {
+            Map<String, CachedBalance> found = new HashMap<>();
+            List<String> remote = new ArrayList<>();
+            for (String walletId : walletIds) {
+                CachedBalance local = balances.getIfPresent(walletId);
+                if (local != null) {
+                    l1Hits.increment();
+                    found.put(walletId, local);
+                } else {
+                    l1Misses.increment();
+                    remote.add(walletId);
+                }
+            }
+            if (remote.isEmpty()) {
+                return Mono.just(found);
+            }
+            return opsForValue().multiGet(remote.stream().map(BALANCE_KEY::getKey).toList())
+                    .map(values -> {
+                        for (int i = 0; i < remote.size(); i++) {
+                            String value = values.get(i);
+                            CachedBalance cached = value == null ? null : deserialize(value);
+                            if (cached == null) {
+                                redisMisses.increment();
+                            } else {
+                                redisHits.increment();
+                                balances.put(remote.get(i), cached);
+                                found.put(remote.get(i), cached);
+                            }
+                        }
+                        return found;
+                    });
+        });
+    }
+
+    /**
+     * Fills the cache with the balances of wallets read from the database on a miss, computed from the ledger
+     * like every other fill. The writes are issued together, so they go out pipelined on the shared Redis
+     * connection; failed fills are only logged.
+     */
+    public Mono<Void> fillBalances(Collection<CheckpointedWalletBalance> balances) {
+        return Flux.fromIterable(balances)
+                .flatMap(balance -> fillBalance(balance.getWalletId(), balance.getBalance(), balance.getVersion()))
+                .then();
+    }
+
+    /**
+     * Writes the balance of the wallets updated by a committed transaction.
+     */
+    public Mono<Void> writeBalances(Collection<Wallet> wallets) {
+        return Flux.fromIterable(wallets)
+                .flatMap(this::writeBalance)
+                .then();
+    }
+
+    /**
+     * Writes the balance of a wallet updated by a committed transaction, unless the cache already holds a
+     * newer version, and tells the other instances to drop their L1 entry. When the write fails the
+     * key is deleted instead; the transaction is already committed, so no error is propagated.
+     */
+    public Mono<Void> writeBalance(Wallet wallet) {
+        String walletId = wallet.getId();
+        return compareAndSet(walletId, wallet.getCurrentBalance(), wallet.getVersion())
+                .filter(Boolean::booleanValue)
+                .flatMap(applied -> publishInvalidation(walletId))
+                .onErrorResume(e -> {
+                    writesFailed.increment();
+                    log.error(CACHE_BALANCE_WRITE_FAILED_ERROR.getMessage(), walletId, e.getMessage());
+                    return clearBalanceCache(walletId).onErrorResume(clearError -> Mono.empty());
+                })
+                .then();
+    }
+
+    /**
+     * Fills the cache with a balance read from the database on a miss. Completes once the value is in Redis;
+     * a failed fill is only logged.
+     */
+    public Mono<Void> fillBalance(String walletId, BigDecimal balance, Long version) {
+        return compareAndSet(walletId, balance, version)
+                .onErrorResume(e -> {
+                    log.error(CACHE_BALANCE_WRITE_FAILED_ERROR.getMessage(), walletId, e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Reads the cached status and owner of the wallet from the L1, falling back to Redis.
+     *
+     * @return Mono with the cached wallet, or empty when neither level has it
+     */
+    public Mono<CachedWallet> getWallet(String walletId) {
+        return Mono.defer(() -> {
+            CachedWallet local = wallets.getIfPresent(walletId);
+            if (local != null) {
+                walletL1Hits.increment();
+                return Mono.just(local);
+            }
+            return get(WALLET_KEY.getKey(walletId))
+                    .flatMap(value -> Mono.justOrEmpty(deserializeWallet(value)))
+                    .doOnNext(cached -> {
+                        walletRedisHits.increment();
+                        wallets.put(walletId, cached);
+                    })
+                    .switchIfEmpty(Mono.fromRunnable(walletMisses::increment));
+        });
+    }
+
+    /**
+     * Fills the cache with the status and owner of a wallet read from the database; a failed fill is only logged.
+     */
+    public Mono<Void> fillWallet(Wallet wallet) {
+        CachedWallet cached = new CachedWallet(wallet.getUserId(), wallet.getStatus());
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(cached))
+                .flatMap(json -> opsForValue().set(WALLET_KEY.getKey(wallet.getId()), json, walletTtl))
+                .doOnNext(written -> wallets.put(wallet.getId(), cached))
+                .onErrorResume(e -> {
+                    log.error(CACHE_WALLET_WRITE_FAILED_ERROR.getMessage(), wallet.getId(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Drops the cached status and owner of the wallet on every instance. Must follow any change of its status.
+     */
+    public Mono<Void> evictWallet(String walletId) {
+        wallets.invalidate(walletId);
+        return redisTemplate.delete(WALLET_KEY.getKey(walletId))
+                .then(publishInvalidation(walletId));
+    }
+
+    /**
+     * Takes the lock if it is free, holding it with the token for at most the given TTL.
+     *
+     * @return Mono emitting whether the lock was taken
+     */
+    public Mono<Boolean> tryLock(String lockKey, String token, Duration ttl) {
+        return opsForValue().setIfAbsent(lockKey, token, ttl);
+    }
+
+    /**
+     * Releases the lock if it is still held with the token, so an expired lock taken over by someone else is kept.
+     */
+    public Mono<Void> unlock(String lockKey, String token) {
+        return redisTemplate.execute(UNLOCK, List.of(lockKey), List.of(token)).then();
+    }
+
+    /**
+     * Runs the compare-and-set script, keeping the written value in the L1 or dropping a stale L1 entry.
+     *
+     * @return Mono emitting whether the value was written
+     */
+    private Mono<Boolean> compareAndSet(String walletId, BigDecimal balance, Long version) {
+        long ttlMs = balanceTtl.toMillis();
+        long expiresAt = ttlMs > 0 ? System.currentTimeMillis() + ttlMs : 0;
+        CachedBalance cached = new CachedBalance(balance, version == null ? 0 : version, expiresAt);
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(cached))
+                .flatMap(json -> redisTemplate.execute(BALANCE_COMPARE_AND_SET,
+                                List.of(BALANCE_KEY.getKey(walletId)),
+                                List.of(json, String.valueOf(cached.version()), String.valueOf(ttlMs)))
+                        .next())
+                .map(result -> {
+                    if (result == 1L) {
+                        writesApplied.increment();
+                        balances.put(walletId, cached);
+                        return true;
+                    }
+                    writesStale.increment();
+                    balances.invalidate(walletId);
+                    log.info(CACHE_BALANCE_STALE_WRITE_INFO.getMessage(), walletId, cached.version());
+                    return false;
+                });
+    }
+
+    private CachedBalance deserialize(String value) {
+        try {
+            return objectMapper.readValue(value, CachedBalance.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
+    }
+
+    private CachedWallet deserializeWallet(String value) {
+        try {
+            return objectMapper.readValue(value, CachedWallet.class);
+        } catch (JsonProcessingException e) {
+            return null;
+        }
     }
 
     public Mono<Void> clearBalanceCache(String walletId) {
         String cacheKey = BALANCE_KEY.getKey(walletId);
+        balances.invalidate(walletId);
         return redisTemplate.delete(cacheKey)
+                .then(publishInvalidation(walletId))
                 .doOnSuccess(v -> log.info(CACHE_CLEARED_FOR_WALLET_INFO.getMessage(), walletId))
                 .then();
     }
 
+    private Mono<Void> publishInvalidation(String walletId) {
+        return redisTemplate.convertAndSend(BALANCE_INVALIDATION_CHANNEL, invalidationMessage(walletId))
+                .onErrorResume(e -> {
+                    log.error(CACHE_INVALIDATION_PUBLISH_ERROR.getMessage(), walletId, e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Invalidation of the wallet as published by this instance.
+     */
+    String invalidationMessage(String walletId) {
+        return instanceId + INVALIDATION_SEPARATOR + walletId;
+    }
+
+    /**
+     * Publishes the id of a wallet just created on {@link CacheProperties#WALLET_CREATED_CHANNEL}.
+     */
+    public Mono<Void> publishWalletCreated(String walletId) {
+        return redisTemplate.convertAndSend(WALLET_CREATED_CHANNEL, walletId).then();
+    }
+
+    /**
+     * Ids of the wallets created by any instance, as they are published.
+     */
+    public Flux<String> walletCreations() {
+        return redisTemplate.listenToChannel(WALLET_CREATED_CHANNEL)
+                .map(ReactiveSubscription.Message::getMessage);
+    }
+
     public ReactiveValueOperations<String, String> opsForValue() {
         return this.redisTemplate.opsForValue();
     }
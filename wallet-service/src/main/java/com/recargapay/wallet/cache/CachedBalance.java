@@ -0,0 +1,16 @@
+package com.recargapay.wallet.cache;
+
+import java.math.BigDecimal;
+
+/**
+ * Balance kept in the cache with the wallet version it was read at, stored in Redis as
+ * {@code {"balance": ..., "version": ..., "expiresAt": ...}} so writes can refuse to replace a newer version
+ * and readers can refresh it shortly before it expires. {@code expiresAt} is in epoch millis, 0 when the entry
+ * does not expire.
+ */
+public record CachedBalance(BigDecimal balance, long version, long expiresAt) {
+
+    public CachedBalance(BigDecimal balance, long version) {
+        this(balance, version, 0);
+    }
+}
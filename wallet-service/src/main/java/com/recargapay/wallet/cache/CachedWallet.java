@@ -0,0 +1,8 @@
+package com.recargapay.wallet.cache;
+
+/**
+ * Wallet attributes checked before a write request is enqueued, stored in Redis as
+ * {@code {"userId": ..., "status": ...}}. The balance and version come from the {@link CachedBalance}.
+ */
+public record CachedWallet(String userId, String status) {
+}
@@ -6,7 +6,9 @@ import lombok.Getter;
 public enum KeyProperties {
 
     DUPLICATION_TRANSACTION_KEY("processed"),
-    BALANCE_KEY("balance");
+    BALANCE_KEY("balance"),
+    BALANCE_LOCK_KEY("balance-lock"),
+    WALLET_KEY("wallet");
 
     private String key;
 
@@ -0,0 +1,214 @@
+package com.recargapay.wallet.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.recargapay.wallet.database.repository.WalletReactiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.recargapay.wallet.handle.Message.WALLET_CREATED_PUBLISH_ERROR;
+import static com.recargapay.wallet.handle.Message.WALLET_CREATED_SUBSCRIPTION_ERROR;
+import static com.recargapay.wallet.handle.Message.WALLET_FILTER_REBUILD_ERROR;
+import static com.recargapay.wallet.handle.Message.WALLET_FILTER_REBUILT_INFO;
+
+/**
+ * Rejects requests for wallets that do not exist without going to the database.
+ *
+ * <p>An in-memory {@link BloomFilter} of the wallet ids is built at startup by paging through the
+ * {@code wallets} ids and rebuilt every {@code wallet.existence-filter.rebuild-interval-ms}. Wallets created
+ * afterwards are added by {@link #register}, which also publishes the id on
+ * {@link CacheProperties#WALLET_CREATED_CHANNEL} so every instance adds it before the creation is answered;
+ * the periodic rebuild repairs a lost message. Until the first build completes nothing is rejected.</p>
+ *
+ * <p>Ids the database confirmed missing are kept in a short-lived negative cache
+ * ({@code wallet.existence-filter.negative-cache.ttl-ms}), which also absorbs the false positives of the filter.
+ * Rejections are counted in {@code wallet_existence_filter_rejections} (tagged filter or negative_cache), misses
+ * the filter let through in {@code wallet_existence_filter_false_positives}, and the rate expected from the
+ * filter fill is exported as {@code wallet_existence_filter_expected_fpp}.</p>
+ */
+@Slf4j
+@Component
+public class WalletExistenceFilter {
+
+    private final WalletReactiveRepository walletRepository;
+    private final CacheService cache;
+    private final boolean enabled;
+    private final long expectedWallets;
+    private final double falsePositiveRate;
+    private final int rebuildBatchSize;
+    private final Cache<String, Boolean> knownMissing;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final Counter filterRejections;
+    private final Counter negativeCacheRejections;
+    private final Counter falsePositives;
+    private volatile BloomFilter filter;
+    private volatile BloomFilter pending;
+    private Disposable creations;
+
+    public WalletExistenceFilter(
+            WalletReactiveRepository walletRepository,
+            CacheService cache,
+            MeterRegistry meterRegistry,
+            @Value("${wallet.existence-filter.enabled:true}") boolean enabled,
+            @Value("${wallet.existence-filter.expected-wallets:1000000}") long expectedWallets,
+            @Value("${wallet.existence-filter.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${wallet.existence-filter.rebuild-batch-size:1000}") int rebuildBatchSize,
+            @Value("${wallet.existence-filter.negative-cache.max-size:100000}") long negativeCacheMaxSize,
+            @Value("${wallet.existence-filter.negative-cache.ttl-ms:30000}") long negativeCacheTtlMs) {
+
+        this.walletRepository = walletRepository;
+        this.cache = cache;
+        this.enabled = enabled;
+        this.expectedWallets = expectedWallets;
+        this.falsePositiveRate = falsePositiveRate;
+        this.rebuildBatchSize = rebuildBatchSize;
+        this.knownMissing = Caffeine.newBuilder()
+                .maximumSize(negativeCacheMaxSize)
+                .expireAfterWrite(Duration.ofMillis(negativeCacheTtlMs))
+                .build();
+        this.filterRejections = meterRegistry.counter("wallet_existence_filter_rejections", "reason", "filter");
+        this.negativeCacheRejections = meterRegistry.counter("wallet_existence_filter_rejections", "reason", "negative_cache");
+        this.falsePositives = meterRegistry.counter("wallet_existence_filter_false_positives");
+        meterRegistry.gauge("wallet_existence_filter_expected_fpp", this,
+                existence -> existence.filter == null ? 0 : existence.filter.expectedFalsePositiveRate());
+    }
+
+    @PostConstruct
+    public void subscribeCreations() {
+        if (!enabled) {
+            return;
+        }
+        creations = cache.walletCreations()
+                .doOnNext(this::add)
+                .doOnError(e -> log.error(WALLET_CREATED_SUBSCRIPTION_ERROR.getMessage(), e.getMessage()))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void unsubscribeCreations() {
+        if (creations != null) {
+            creations.dispose();
+        }
+    }
+
+    /**
+     * Starts a rebuild in the background, unless one is already running. Runs at startup and then periodically.
+     */
+    @Scheduled(initialDelay = 0, fixedDelayString = "${wallet.existence-filter.rebuild-interval-ms:600000}")
+    public void rebuild() {
+        if (!enabled || !rebuilding.compareAndSet(false, true)) {
+            return;
+        }
+        build()
+                .doFinally(signalType -> rebuilding.set(false))
+                .subscribe(
+                        loaded -> log.info(WALLET_FILTER_REBUILT_INFO.getMessage(), loaded),
+                        e -> log.error(WALLET_FILTER_REBUILD_ERROR.getMessage(), e.getMessage()));
+    }
+
+    /**
+     * Builds a new filter from the wallet ids and swaps it in. Wallets registered while it is being built are
+     * added to it as well, so none is lost in the swap.
+     *
+     * @return Mono with the number of ids loaded
+     */
+    Mono<Long> build() {
+        return walletRepository.count()
+                .flatMap(count -> {
+                    BloomFilter next = new BloomFilter(Math.max(expectedWallets, count * 2), falsePositiveRate);
+                    pending = next;
+                    return walletIds()
+                            .doOnNext(next::put)
+                            .count()
+                            .doOnNext(loaded -> {
+                                filter = next;
+                                pending = null;
+                            });
+                })
+                .doOnError(e -> pending = null);
+    }
+
+    /**
+     * Whether the wallet is known not to exist: confirmed missing recently, or absent from the filter.
+     */
+    public boolean isKnownMissing(String walletId) {
+        if (!enabled) {
+            return false;
+        }
+        if (knownMissing.getIfPresent(walletId) != null) {
+            negativeCacheRejections.increment();
+            return true;
+        }
+        BloomFilter current = filter;
+        if (current != null && !current.mightContain(walletId)) {
+            filterRejections.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records a wallet the database confirmed missing, so repeated requests for it are rejected for a while.
+     */
+    public void recordMissing(String walletId) {
+        if (!enabled) {
+            return;
+        }
+        knownMissing.put(walletId, Boolean.TRUE);
+        BloomFilter current = filter;
+        if (current != null && current.mightContain(walletId)) {
+            falsePositives.increment();
+        }
+    }
+
+    /**
+     * Adds a wallet created by this instance and tells the other instances about it. A failed publish is only
+     * logged: the periodic rebuild picks the wallet up.
+     */
+    public Mono<Void> register(String walletId) {
+        if (!enabled) {
+            return Mono.empty();
+        }
+        add(walletId);
+        return cache.publishWalletCreated(walletId)
+                .onErrorResume(e -> {
+                    log.error(WALLET_CREATED_PUBLISH_ERROR.getMessage(), walletId, e.getMessage());
+                    return Mono.empty();
+                });
+    }
+
+    private void add(String walletId) {
+        knownMissing.invalidate(walletId);
+        BloomFilter next = pending;
+        if (next != null) {
+            next.put(walletId);
+        }
+        BloomFilter current = filter;
+        if (current != null) {
+            current.put(walletId);
+        }
+    }
+
+    private Flux<String> walletIds() {
+        return walletRepository.findIdsAfter("", rebuildBatchSize)
+                .collectList()
+                .expand(ids -> ids.size() < rebuildBatchSize
+                        ? Mono.empty()
+                        : walletRepository.findIdsAfter(ids.get(ids.size() - 1), rebuildBatchSize).collectList())
+                .concatMapIterable(ids -> ids, 1);
+    }
+}
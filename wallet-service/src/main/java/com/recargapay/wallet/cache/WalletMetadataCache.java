@@ -0,0 +1,89 @@
+package com.recargapay.wallet.cache;
+
+import com.recargapay.wallet.database.entity.Wallet;
+import com.recargapay.wallet.database.repository.WalletReactiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+import static com.recargapay.wallet.handle.Message.WALLET_PREVALIDATION_RECHECK_INFO;
+
+/**
+ * Pre-validation of write requests against the cached view of the wallet instead of its row.
+ *
+ * <p>The wallet is assembled from the cached status and owner ({@link CachedWallet}) and the cached balance and
+ * version ({@link CachedBalance}), which is written through after every committed balance update. Only when either
+ * is missing, or Redis cannot be reached, is the row read from the database, filling the status and owner for the
+ * next request. The balance cache is only read here, never filled from the row: it holds either the row balance
+ * written through after a commit or the checkpoint-plus-ledger balance filled by the balance reads, and the two can
+ * differ while a balance update is still pending. The compare-and-set keeps the first one cached for a version, so
+ * the pre-validation may see either; rejections are rechecked against the row below.</p>
+ *
+ * <p>A rejection based on the cache is confirmed against the database before it is returned, so a balance that is
+ * a few milliseconds behind never refuses a request the database would accept. An acceptance is not: the consumer
+ * applies the transaction with its own conditional update and remains the authoritative check.</p>
+ *
+ * <p>Lookups are counted in {@code wallet_prevalidation_lookups} (tagged cache or database) and rejections confirmed
+ * against the database in {@code wallet_prevalidation_rechecks}.</p>
+ */
+@Slf4j
+@Component
+public class WalletMetadataCache {
+
+    private final CacheService cache;
+    private final WalletReactiveRepository walletRepository;
+    private final Counter cacheLookups;
+    private final Counter databaseLookups;
+    private final Counter rechecks;
+
+    public WalletMetadataCache(CacheService cache, WalletReactiveRepository walletRepository, MeterRegistry meterRegistry) {
+        this.cache = cache;
+        this.walletRepository = walletRepository;
+        this.cacheLookups = meterRegistry.counter("wallet_prevalidation_lookups", "source", "cache");
+        this.databaseLookups = meterRegistry.counter("wallet_prevalidation_lookups", "source", "database");
+        this.rechecks = meterRegistry.counter("wallet_prevalidation_rechecks");
+    }
+
+    /**
+     * Runs the validation on the wallet, read from the cache when it holds it.
+     *
+     * @param walletId   wallet the request writes to
+     * @param validation emits the wallet when the request may proceed, or the error rejecting it
+     * @return Mono with the validated wallet, the rejection, or empty when the wallet does not exist
+     */
+    public Mono<Wallet> validate(String walletId, Function<Wallet, Mono<Wallet>> validation) {
+        return cached(walletId)
+                .flatMap(wallet -> {
+                    cacheLookups.increment();
+                    return validation.apply(wallet)
+                            .onErrorResume(e -> {
+                                rechecks.increment();
+                                log.info(WALLET_PREVALIDATION_RECHECK_INFO.getMessage(), walletId);
+                                return load(walletId).flatMap(validation);
+                            });
+                })
+                .switchIfEmpty(Mono.defer(() -> {
+                    databaseLookups.increment();
+                    return load(walletId).flatMap(validation);
+                }));
+    }
+
+    /**
+     * The wallet as cached, completing empty when part of it is missing or the cache cannot be read.
+     */
+    private Mono<Wallet> cached(String walletId) {
+        return Mono.zip(cache.getWallet(walletId), cache.getBalance(walletId))
+                .map(both -> new Wallet(walletId, both.getT1().userId(), null, both.getT2().balance(), null,
+                        both.getT1().status(), both.getT2().version()))
+                .onErrorResume(e -> Mono.empty());
+    }
+
+    private Mono<Wallet> load(String walletId) {
+        return walletRepository.findById(walletId)
+                .flatMap(wallet -> cache.fillWallet(wallet).thenReturn(wallet));
+    }
+}
@@ -36,6 +36,10 @@ public class TransactionConverter {
     }
 
     public static TransactionDTO entityToTransactionDTO(Transaction transaction, TransactionStatusType status) {
+        return entityToTransactionDTO(transaction, status, null);
+    }
+
+    public static TransactionDTO entityToTransactionDTO(Transaction transaction, TransactionStatusType status, BigDecimal balance) {
         var destinationWalletId = transaction.getDestinationWalletId() == null ? transaction.getWalletId() : transaction.getDestinationWalletId();
         return new TransactionDTO(
                 transaction.getRequestTransactionId(),
@@ -45,7 +49,8 @@ public class TransactionConverter {
                 transaction.getType(),
                 status.getStatus(),
                 transaction.getAmount(),
-                transaction.getTimestamp());
+                transaction.getTimestamp(),
+                balance);
     }
 
     public static Transaction eventToTransactionEntity(String targetWalletId, TransactionEvent event, TransactionStatusType status) {
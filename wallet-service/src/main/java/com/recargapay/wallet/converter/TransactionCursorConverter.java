@@ -0,0 +1,42 @@
+package com.recargapay.wallet.converter;
+
+import com.recargapay.wallet.database.entity.Transaction;
+import com.recargapay.wallet.handle.exception.WalletException;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+import static com.recargapay.wallet.handle.Message.INVALID_HISTORY_CURSOR;
+
+/**
+ * Opaque keyset cursor of the transaction history: the (timestamp, id) of the last row of a page,
+ * URL-safe Base64 encoded.
+ */
+public class TransactionCursorConverter {
+
+    private static final String SEPARATOR = "|";
+
+    private TransactionCursorConverter(){}
+
+    public record Cursor(LocalDateTime timestamp, String id) {}
+
+    public static String encode(Transaction transaction) {
+        String raw = transaction.getTimestamp() + SEPARATOR + transaction.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static Cursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.indexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new WalletException(INVALID_HISTORY_CURSOR);
+            }
+            return new Cursor(LocalDateTime.parse(raw.substring(0, separator)), raw.substring(separator + 1));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new WalletException(INVALID_HISTORY_CURSOR);
+        }
+    }
+}
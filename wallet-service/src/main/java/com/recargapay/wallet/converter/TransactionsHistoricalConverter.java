@@ -11,6 +11,11 @@ public class TransactionsHistoricalConverter {
 
     public static TransactionsHistoricalDTO entityToListDto(
             String requestTransactionId, LocalDateTime date, List<Transaction> transactions){
+        return entityToListDto(requestTransactionId, date, transactions, null);
+    }
+
+    public static TransactionsHistoricalDTO entityToListDto(
+            String requestTransactionId, LocalDateTime date, List<Transaction> transactions, String nextCursor){
 
         List<TransactionsHistoricalDTO.HistoricalReportDTO> lstHistorical = new ArrayList<>();
         transactions.forEach(transaction -> lstHistorical.add(entityToHistoricalDto(transaction)));
@@ -18,7 +23,8 @@ public class TransactionsHistoricalConverter {
         return new TransactionsHistoricalDTO(
                 requestTransactionId,
                 date,
-                lstHistorical
+                lstHistorical,
+                nextCursor
         );
     }
     public static TransactionsHistoricalDTO.HistoricalReportDTO entityToHistoricalDto(Transaction transaction){
@@ -0,0 +1,16 @@
+package com.recargapay.wallet.core.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum ExecutionModeType {
+
+    ASYNC("ASYNC"),
+    INLINE("INLINE");
+
+    private String mode;
+
+    ExecutionModeType(String mode){
+        this.mode = mode;
+    }
+}
@@ -0,0 +1,25 @@
+package com.recargapay.wallet.core.enums;
+
+import lombok.Getter;
+
+@Getter
+public enum RetryOperationType {
+
+    DEPOSIT("deposit", true),
+    WITHDRAW("withdraw", true),
+    TRANSFER("transfer", true),
+    EXECUTION("execution", false),
+    BALANCE_UPDATE("balance-update", false);
+
+    private String operation;
+    /**
+     * Whether optimistic conflicts are retried. Executions run on the wallet lanes, the single writer
+     * of their wallets, so only infrastructure failures are retried there.
+     */
+    private boolean retryConflicts;
+
+    RetryOperationType(String operation, boolean retryConflicts){
+        this.operation = operation;
+        this.retryConflicts = retryConflicts;
+    }
+}
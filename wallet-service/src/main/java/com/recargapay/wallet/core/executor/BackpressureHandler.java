@@ -0,0 +1,28 @@
+package com.recargapay.wallet.core.executor;
+
+/**
+ * Receives the saturation signals of {@link WalletLaneExecutor}, so the source feeding it (the Kafka
+ * listener) stops fetching while the lanes drain instead of blocking on a full mailbox.
+ */
+public interface BackpressureHandler {
+
+    BackpressureHandler NONE = new BackpressureHandler() {
+        @Override
+        public void pause() {
+        }
+
+        @Override
+        public void resume() {
+        }
+    };
+
+    /**
+     * Called once when a lane mailbox or the in-flight limit reaches the high watermark.
+     */
+    void pause();
+
+    /**
+     * Called once every lane and the in-flight count are back under the low watermark.
+     */
+    void resume();
+}
@@ -0,0 +1,56 @@
+package com.recargapay.wallet.core.executor;
+
+import com.recargapay.wallet.core.enums.ExecutionModeType;
+import com.recargapay.wallet.core.enums.TransactionType;
+import com.recargapay.wallet.handle.exception.TransactionException;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+
+import static com.recargapay.wallet.handle.Message.INVALID_EXECUTION_MODE;
+
+/**
+ * Decides whether a deposit or withdraw runs inline, in the request's reactive chain, or is
+ * enqueued on the wallet-transactions topic.
+ *
+ * <p>The {@code executionMode} request header wins when present; otherwise the configured default of
+ * the operation type applies ({@code wallet.transactions.inline.deposit} and
+ * {@code wallet.transactions.inline.withdraw}).</p>
+ */
+@Component
+public class ExecutionModePolicy {
+
+    private final boolean depositInline;
+    private final boolean withdrawInline;
+
+    public ExecutionModePolicy(
+            @Value("${wallet.transactions.inline.deposit:false}") boolean depositInline,
+            @Value("${wallet.transactions.inline.withdraw:false}") boolean withdrawInline) {
+        this.depositInline = depositInline;
+        this.withdrawInline = withdrawInline;
+    }
+
+    /**
+     * @param type          operation type
+     * @param requestedMode value of the {@code executionMode} header, or null when absent
+     * @return true when the operation must run inline
+     */
+    public boolean isInline(TransactionType type, String requestedMode) {
+        if (requestedMode != null) {
+            return resolve(requestedMode) == ExecutionModeType.INLINE;
+        }
+        return switch (type) {
+            case DEPOSIT -> depositInline;
+            case WITHDRAW -> withdrawInline;
+            default -> false;
+        };
+    }
+
+    private static ExecutionModeType resolve(String requestedMode) {
+        return Arrays.stream(ExecutionModeType.values())
+                .filter(mode -> mode.getMode().equalsIgnoreCase(requestedMode))
+                .findFirst()
+                .orElseThrow(() -> new TransactionException(INVALID_EXECUTION_MODE));
+    }
+}
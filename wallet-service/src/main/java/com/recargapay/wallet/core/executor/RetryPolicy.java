@@ -0,0 +1,132 @@
+package com.recargapay.wallet.core.executor;
+
+import com.recargapay.wallet.core.enums.RetryOperationType;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.R2dbcRollbackException;
+import io.r2dbc.spi.R2dbcTransientException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.PessimisticLockingFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.pool.PoolAcquireTimeoutException;
+import reactor.util.retry.Retry;
+import reactor.util.retry.RetryBackoffSpec;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import static com.recargapay.wallet.handle.Message.RETRY_ATTEMPT_INFO;
+import static com.recargapay.wallet.handle.Message.RETRY_EXHAUSTED_ERROR;
+
+/**
+ * Reactive retry of wallet operations.
+ *
+ * <p>The retry resubscribes the whole pipeline it is applied to, with exponential backoff and jitter.
+ * Only transient failures are retried: conflicts with a concurrent writer (see {@link #isConflict}),
+ * transient data access errors (lock timeouts, deadlocks) and connection pool acquire timeouts. Business
+ * errors fail on the first attempt. Executions on the wallet lanes do not retry conflicts, see
+ * {@link RetryOperationType#isRetryConflicts()}.</p>
+ *
+ * <p>Each operation has its own attempt budget ({@code wallet.retry.<operation>.max-attempts}). Retries
+ * are counted in {@code wallet_retry_attempts} and operations failing after the last attempt in
+ * {@code wallet_retry_exhausted}, both tagged with the operation. Once exhausted the original error
+ * is propagated.</p>
+ */
+@Slf4j
+@Component
+public class RetryPolicy {
+
+    private final MeterRegistry meterRegistry;
+    private final Map<RetryOperationType, RetryBackoffSpec> specs = new EnumMap<>(RetryOperationType.class);
+
+    public RetryPolicy(
+            MeterRegistry meterRegistry,
+            @Value("${wallet.retry.min-backoff-ms:100}") long minBackoffMs,
+            @Value("${wallet.retry.max-backoff-ms:2000}") long maxBackoffMs,
+            @Value("${wallet.retry.jitter:0.5}") double jitter,
+            @Value("${wallet.retry.deposit.max-attempts:3}") int depositMaxAttempts,
+            @Value("${wallet.retry.withdraw.max-attempts:3}") int withdrawMaxAttempts,
+            @Value("${wallet.retry.transfer.max-attempts:3}") int transferMaxAttempts,
+            @Value("${wallet.retry.execution.max-attempts:3}") int executionMaxAttempts,
+            @Value("${wallet.retry.balance-update.max-attempts:5}") int balanceUpdateMaxAttempts) {
+
+        this.meterRegistry = meterRegistry;
+        Duration minBackoff = Duration.ofMillis(minBackoffMs);
+        Duration maxBackoff = Duration.ofMillis(maxBackoffMs);
+        specs.put(RetryOperationType.DEPOSIT, spec(RetryOperationType.DEPOSIT, depositMaxAttempts, minBackoff, maxBackoff, jitter));
+        specs.put(RetryOperationType.WITHDRAW, spec(RetryOperationType.WITHDRAW, withdrawMaxAttempts, minBackoff, maxBackoff, jitter));
+        specs.put(RetryOperationType.TRANSFER, spec(RetryOperationType.TRANSFER, transferMaxAttempts, minBackoff, maxBackoff, jitter));
+        specs.put(RetryOperationType.EXECUTION, spec(RetryOperationType.EXECUTION, executionMaxAttempts, minBackoff, maxBackoff, jitter));
+        specs.put(RetryOperationType.BALANCE_UPDATE, spec(RetryOperationType.BALANCE_UPDATE, balanceUpdateMaxAttempts, minBackoff, maxBackoff, jitter));
+    }
+
+    /**
+     * Retry operator for the given operation, to be applied with {@link Mono#transform}. The upstream
+     * must be deferred, so each attempt runs the operation again instead of replaying its result.
+     */
+    public <T> Function<Mono<T>, Mono<T>> retry(RetryOperationType operation) {
+        RetryBackoffSpec spec = specs.get(operation);
+        return mono -> mono.retryWhen(spec);
+    }
+
+    /**
+     * Whether the error, or any of its causes, is a transient failure worth another attempt.
+     */
+    public static boolean isRetryable(Throwable error) {
+        return isConflict(error) || isTransient(error);
+    }
+
+    /**
+     * Conflicts with a concurrent writer: the {@code @Version} check of a wallet saved after another writer
+     * changed it, a unique key taken by a concurrent insert (the ledger key of the same request) and
+     * serialization failures or deadlocks rolled back by the database (SQLSTATE 40001 / 40P01).
+     */
+    public static boolean isConflict(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockingFailureException
+                    || cause instanceof DuplicateKeyException
+                    || cause instanceof PessimisticLockingFailureException
+                    || cause instanceof R2dbcRollbackException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Infrastructure failures: lock timeouts, deadlocks, transient driver errors and pool acquire timeouts.
+     */
+    public static boolean isTransient(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof R2dbcTransientException
+                    || cause instanceof PoolAcquireTimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private RetryBackoffSpec spec(RetryOperationType operation, int maxAttempts, Duration minBackoff, Duration maxBackoff, double jitter) {
+        String tag = operation.getOperation();
+        return Retry.backoff(Math.max(0, maxAttempts - 1), minBackoff)
+                .maxBackoff(maxBackoff)
+                .jitter(jitter)
+                .filter(operation.isRetryConflicts() ? RetryPolicy::isRetryable : RetryPolicy::isTransient)
+                .doBeforeRetry(signal -> {
+                    meterRegistry.counter("wallet_retry_attempts", "operation", tag).increment();
+                    log.info(RETRY_ATTEMPT_INFO.getMessage(), tag, signal.totalRetries() + 1, signal.failure().getMessage());
+                })
+                .onRetryExhaustedThrow((retrySpec, signal) -> {
+                    meterRegistry.counter("wallet_retry_exhausted", "operation", tag).increment();
+                    log.error(RETRY_EXHAUSTED_ERROR.getMessage(), tag, signal.totalRetries(), signal.failure().getMessage());
+                    return signal.failure();
+                });
+    }
+}
@@ -0,0 +1,67 @@
+package com.recargapay.wallet.core.executor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+import static com.recargapay.wallet.handle.Message.VIRTUAL_THREAD_PINNED_INFO;
+
+/**
+ * Reports virtual threads pinning their carrier thread, from the JFR {@code jdk.VirtualThreadPinned}
+ * event, while {@code wallet.threads.virtual} is enabled.
+ *
+ * <p>Pinning happens when a virtual thread blocks inside a monitor or a native frame, and holds the
+ * carrier for the whole wait. Occurrences above the threshold are counted in
+ * {@code wallet_virtual_thread_pinned} and timed in {@code wallet_virtual_thread_pinned_time}; the top
+ * frame is logged so the offending code can be found.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.threads.virtual", havingValue = "true")
+public class VirtualThreadPinningMonitor implements DisposableBean {
+
+    private static final String PINNED_EVENT = "jdk.VirtualThreadPinned";
+
+    private final RecordingStream stream;
+
+    public VirtualThreadPinningMonitor(
+            MeterRegistry meterRegistry,
+            @Value("${wallet.threads.pinning-threshold-ms:20}") long thresholdMillis) {
+
+        VirtualThreads.require(true);
+        Counter pinned = meterRegistry.counter("wallet_virtual_thread_pinned");
+        Timer pinnedTime = meterRegistry.timer("wallet_virtual_thread_pinned_time");
+
+        this.stream = new RecordingStream();
+        this.stream.enable(PINNED_EVENT).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+        this.stream.onEvent(PINNED_EVENT, event -> {
+            pinned.increment();
+            pinnedTime.record(event.getDuration());
+            log.info(VIRTUAL_THREAD_PINNED_INFO.getMessage(), event.getDuration().toMillis(), topFrame(event));
+        });
+        this.stream.startAsync();
+    }
+
+    @Override
+    public void destroy() {
+        stream.close();
+    }
+
+    private static String topFrame(RecordedEvent event) {
+        if (event.getStackTrace() == null || event.getStackTrace().getFrames().isEmpty()) {
+            return "unknown";
+        }
+        RecordedFrame frame = event.getStackTrace().getFrames().get(0);
+        return frame.getMethod().getType().getName() + "." + frame.getMethod().getName() + ":" + frame.getLineNumber();
+    }
+}
@@ -0,0 +1,37 @@
+package com.recargapay.wallet.core.executor;
+
+import static com.recargapay.wallet.handle.Message.VIRTUAL_THREADS_UNSUPPORTED_ERROR;
+
+/**
+ * Guard of the {@code wallet.threads.virtual} option. The service is built for Java 17, which has no
+ * virtual threads, so every component honouring the option checks the running JVM first and refuses to
+ * start with a clear error instead of failing on the first thread it creates.
+ */
+public final class VirtualThreads {
+
+    static final int MINIMUM_JAVA_VERSION = 21;
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Whether the running JVM supports virtual threads.
+     */
+    public static boolean isSupported() {
+        return Runtime.version().feature() >= MINIMUM_JAVA_VERSION;
+    }
+
+    /**
+     * Fails when virtual threads are requested on a JVM without them.
+     *
+     * @param requested value of {@code wallet.threads.virtual}
+     * @return the requested value
+     */
+    public static boolean require(boolean requested) {
+        if (requested && !isSupported()) {
+            throw new IllegalStateException(String.format(VIRTUAL_THREADS_UNSUPPORTED_ERROR.getMessage(),
+                    MINIMUM_JAVA_VERSION, Runtime.version().feature()));
+        }
+        return requested;
+    }
+}
@@ -0,0 +1,511 @@
+package com.recargapay.wallet.core.executor;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+import static com.recargapay.wallet.handle.Message.IN_FLIGHT_LIMIT_INTERRUPTED_ERROR;
+import static com.recargapay.wallet.handle.Message.LANE_BACKPRESSURE_PAUSED_INFO;
+import static com.recargapay.wallet.handle.Message.LANE_BACKPRESSURE_RESUMED_INFO;
+import static com.recargapay.wallet.handle.Message.LANE_EXECUTION_FAILED_ERROR;
+import static com.recargapay.wallet.handle.Message.LANE_INTERRUPTED_ERROR;
+import static com.recargapay.wallet.handle.Message.LANE_JOIN_TIMEOUT_ERROR;
+
+/**
+ * Ordered execution engine for wallet operations.
+ *
+ * <p>Every wallet id is hashed onto one of a fixed set of lanes (shards). Each lane is a single thread
+ * draining a bounded mailbox, so operations touching the same wallet run strictly in the order
+ * they were submitted while unrelated wallets run in parallel on the other lanes. A lane is the only
+ * writer of its wallets in this process, so the work it runs does not need optimistic retries.</p>
+ *
+ * <p>Operations touching more than one wallet (transfers) are enqueued on every lane involved.
+ * The lowest lane runs the work once all the other lanes have reached it, and those lanes stay
+ * parked until the work completes. The enqueueing of multi-lane operations is serialized, so every
+ * lane sees the same relative order of them and they can never wait on each other in a cycle;
+ * single-lane operations and the wait for an in-flight permit do not take that lock.
+ * Waiting is bounded by the execution timeout: if a lane cannot be enqueued or does not arrive in
+ * time, the operation fails without running and every lane involved moves on.</p>
+ *
+ * <p>The number of submitted operations that have not completed yet is bounded: once the limit is
+ * reached {@link #submit} blocks the caller until an execution finishes. The limit can be resized at
+ * runtime ({@link #setMaxInFlight}). Before it gets there, a
+ * mailbox or the in-flight count crossing the high watermark pauses the {@link BackpressureHandler}
+ * (the Kafka listener), which is resumed once everything is back under the low watermark.</p>
+ *
+ * <p>Each lane reports its mailbox depth ({@code wallet_lane_mailbox_depth}) and the time spent
+ * running its work ({@code wallet_lane_service_time}), tagged with the lane index; the in-flight
+ * count is reported as {@code wallet_lane_in_flight}.</p>
+ *
+ * <p>With {@code wallet.threads.virtual} the lanes and the submission of inline executions run on
+ * virtual threads (Java 21+; on an older JVM the executor refuses to start, see {@link VirtualThreads}).
+ * Multi-lane enqueueing is guarded by a {@link ReentrantLock} rather than a monitor, so a virtual thread
+ * blocked on a full mailbox does not pin its carrier.</p>
+ */
+@Slf4j
+@Component
+public class WalletLaneExecutor implements DisposableBean {
+
+    private final List<Lane> lanes;
+    private final Duration executionTimeout;
+    private final ResizableSemaphore inFlight;
+    private final double highWatermark;
+    private final double lowWatermark;
+    private volatile int maxInFlight;
+    private final int highDepth;
+    private final int lowDepth;
+    private volatile int highInFlight;
+    private volatile int lowInFlight;
+    private final Counter pauses;
+    private final Object backpressureLock = new Object();
+    private final ReentrantLock submission = new ReentrantLock();
+    private final Scheduler submissionScheduler;
+    private volatile BackpressureHandler backpressure = BackpressureHandler.NONE;
+    private volatile boolean paused;
+
+    public WalletLaneExecutor(
+            MeterRegistry meterRegistry,
+            @Value("${wallet.transactions.lanes:16}") int laneCount,
+            @Value("${wallet.transactions.lane-capacity:1000}") int laneCapacity,
+            @Value("${wallet.transactions.execution-timeout-seconds:30}") long executionTimeoutSeconds,
+            @Value("${wallet.transactions.max-in-flight:256}") int maxInFlight,
+            @Value("${wallet.transactions.backpressure.high-watermark:0.8}") double highWatermark,
+            @Value("${wallet.transactions.backpressure.low-watermark:0.5}") double lowWatermark,
+            @Value("${wallet.threads.virtual:false}") boolean virtualThreads) {
+
+        this.executionTimeout = Duration.ofSeconds(executionTimeoutSeconds);
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new ResizableSemaphore(maxInFlight);
+        this.highWatermark = highWatermark;
+        this.lowWatermark = lowWatermark;
+        this.highDepth = Math.max(1, (int) (laneCapacity * highWatermark));
+        this.lowDepth = (int) (laneCapacity * lowWatermark);
+        this.highInFlight = Math.max(1, (int) (maxInFlight * highWatermark));
+        this.lowInFlight = (int) (maxInFlight * lowWatermark);
+        Gauge.builder("wallet_lane_max_in_flight", this, WalletLaneExecutor::maxInFlight).register(meterRegistry);
+        this.pauses = meterRegistry.counter("wallet_lane_backpressure_pauses");
+        Gauge.builder("wallet_lane_in_flight", this, WalletLaneExecutor::inFlight).register(meterRegistry);
+
+        VirtualThreads.require(virtualThreads);
+        ThreadFactory threadFactory = virtualThreads
+                ? new VirtualThreadTaskExecutor("wallet-lane-").getVirtualThreadFactory()
+                : Thread::new;
+        this.submissionScheduler = virtualThreads
+                ? Schedulers.fromExecutor(new VirtualThreadTaskExecutor("wallet-lane-submit-"))
+                : Schedulers.boundedElastic();
+        this.lanes = new ArrayList<>(laneCount);
+        for (int index = 0; index < laneCount; index++) {
+            Lane lane = new Lane(index, laneCapacity, meterRegistry.timer("wallet_lane_service_time", "lane", String.valueOf(index)));
+            Gauge.builder("wallet_lane_mailbox_depth", lane, Lane::depth)
+                    .tag("lane", String.valueOf(index))
+                    .register(meterRegistry);
+            lane.start(threadFactory);
+            this.lanes.add(lane);
+        }
+    }
+
+    /**
+     * Registers the handler paused and resumed by the watermarks.
+     */
+    public void setBackpressureHandler(BackpressureHandler backpressure) {
+        this.backpressure = backpressure;
+    }
+
+    /**
+     * Enqueues the work on the lanes owning the given wallets, blocking while the in-flight limit
+     * is reached or any of the lanes is full.
+     *
+     * @param walletIds wallets touched by the work
+     * @param work      supplier of the reactive execution, subscribed on the lane thread
+     * @return future completed with the result of the work once it terminated on its lane, or with its
+     * error (including the execution timeout)
+     */
+    public <T> CompletableFuture<T> submit(Collection<String> walletIds, Supplier<? extends Mono<T>> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        acquirePermit();
+        try {
+            enqueue(walletIds, work, result);
+        } catch (RuntimeException e) {
+            inFlight.release();
+            throw e;
+        }
+        pauseIfSaturated();
+        return result;
+    }
+
+    /**
+     * Runs the work on the lanes owning the given wallets and emits its result, for callers that
+     * need the outcome (inline executions). Submission may block on a full lane, so it happens on
+     * the bounded elastic scheduler (or a virtual thread) and never on the caller's event loop.
+     *
+     * @param walletIds wallets touched by the work
+     * @param work      supplier of the reactive execution, subscribed on the lane thread
+     * @return Mono emitting the result of the work once it completed on its lane
+     */
+    public <T> Mono<T> execute(Collection<String> walletIds, Supplier<? extends Mono<T>> work) {
+        return Mono.defer(() -> Mono.fromFuture(submit(walletIds, work)))
+                .subscribeOn(submissionScheduler);
+    }
+
+    /**
+     * Number of submitted operations that have not completed yet.
+     */
+    public int inFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Current limit of submitted operations that have not completed yet.
+     */
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Changes the in-flight limit. Raising it wakes up blocked submitters right away; lowering it
+     * takes effect as the running operations complete, without interrupting any of them.
+     */
+    public void setMaxInFlight(int limit) {
+        synchronized (inFlight) {
+            int delta = limit - maxInFlight;
+            if (delta > 0) {
+                inFlight.release(delta);
+            } else if (delta < 0) {
+                inFlight.reducePermits(-delta);
+            }
+            maxInFlight = limit;
+            highInFlight = Math.max(1, (int) (limit * highWatermark));
+            lowInFlight = (int) (limit * lowWatermark);
+        }
+    }
+
+    /**
+     * Number of tasks waiting in the mailbox of the given lane.
+     */
+    public int depthOf(int lane) {
+        return lanes.get(lane).depth();
+    }
+
+    /**
+     * Whether the backpressure handler is currently paused.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    private <T> void enqueue(Collection<String> walletIds, Supplier<? extends Mono<T>> work, CompletableFuture<T> result) {
+        int[] laneIndexes = walletIds.stream()
+                .mapToInt(this::laneOf)
+                .distinct()
+                .sorted()
+                .toArray();
+
+        if (laneIndexes.length == 1) {
+            Lane lane = lanes.get(laneIndexes[0]);
+            lane.enqueue(() -> run(lane, work, result));
+            return;
+        }
+
+        submission.lock();
+        try {
+            enqueueOnLanes(laneIndexes, work, result);
+        } finally {
+            submission.unlock();
+        }
+    }
+
+    /**
+     * Enqueues a multi-lane operation on all its lanes. Called under the submission lock, so no other
+     * multi-lane operation is interleaved between its lanes.
+     */
+    private <T> void enqueueOnLanes(int[] laneIndexes, Supplier<? extends Mono<T>> work, CompletableFuture<T> result) {
+        Rendezvous rendezvous = new Rendezvous(laneIndexes.length - 1);
+        Lane owner = lanes.get(laneIndexes[0]);
+        owner.enqueue(() -> {
+            try {
+                if (!rendezvous.awaitJoined(executionTimeout)) {
+                    rendezvous.abandon(joinTimeout(laneIndexes));
+                }
+                if (rendezvous.start()) {
+                    run(owner, work, result);
+                } else {
+                    result.completeExceptionally(rendezvous.failure());
+                    inFlight.release();
+                }
+            } finally {
+                rendezvous.done();
+            }
+        });
+        for (int position = 1; position < laneIndexes.length; position++) {
+            try {
+                lanes.get(laneIndexes[position]).enqueue(() -> {
+                    rendezvous.join();
+                    if (!rendezvous.awaitDone(executionTimeout) && !rendezvous.abandon(joinTimeout(laneIndexes))) {
+                        rendezvous.awaitDone();
+                    }
+                });
+            } catch (RuntimeException e) {
+                // the owner is already queued: let it go through and fail the work instead of waiting forever
+                rendezvous.abandon(e);
+                for (int missing = position; missing < laneIndexes.length; missing++) {
+                    rendezvous.join();
+                }
+                return;
+            }
+        }
+    }
+
+    private IllegalStateException joinTimeout(int[] laneIndexes) {
+        return new IllegalStateException(String.format(LANE_JOIN_TIMEOUT_ERROR.getMessage(),
+                Arrays.toString(laneIndexes), executionTimeout));
+    }
+
+    /**
+     * Returns the lane owning the given wallet.
+     */
+    public int laneOf(String walletId) {
+        return Math.floorMod(walletId.hashCode(), lanes.size());
+    }
+
+    public int laneCount() {
+        return lanes.size();
+    }
+
+    @Override
+    public void destroy() {
+        lanes.forEach(Lane::stop);
+    }
+
+    /**
+     * Runs the work on the lane thread and completes the result with its outcome. A failure never stops
+     * the lane: it is handed to the submitter through the result instead.
+     */
+    private <T> void run(Lane lane, Supplier<? extends Mono<T>> work, CompletableFuture<T> result) {
+        Timer.Sample sample = Timer.start();
+        try {
+            result.complete(work.get().block(executionTimeout));
+        } catch (RuntimeException e) {
+            log.warn(LANE_EXECUTION_FAILED_ERROR.getMessage(), lane.index, e.getMessage());
+            result.completeExceptionally(e);
+        } finally {
+            sample.stop(lane.serviceTime);
+            inFlight.release();
+        }
+    }
+
+    private void pauseIfSaturated() {
+        if (paused) {
+            return;
+        }
+        int deepest = deepestMailbox();
+        if (deepest < highDepth && inFlight() < highInFlight) {
+            return;
+        }
+        synchronized (backpressureLock) {
+            if (!paused) {
+                paused = true;
+                pauses.increment();
+                log.info(LANE_BACKPRESSURE_PAUSED_INFO.getMessage(), deepest, inFlight());
+                backpressure.pause();
+            }
+        }
+    }
+
+    private void resumeIfDrained() {
+        if (!paused || deepestMailbox() > lowDepth || inFlight() > lowInFlight) {
+            return;
+        }
+        synchronized (backpressureLock) {
+            if (paused) {
+                paused = false;
+                log.info(LANE_BACKPRESSURE_RESUMED_INFO.getMessage());
+                backpressure.resume();
+            }
+        }
+    }
+
+    private int deepestMailbox() {
+        int deepest = 0;
+        for (Lane lane : lanes) {
+            deepest = Math.max(deepest, lane.depth());
+        }
+        return deepest;
+    }
+
+    private void acquirePermit() {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(IN_FLIGHT_LIMIT_INTERRUPTED_ERROR.getMessage(), e);
+        }
+    }
+
+    /**
+     * Meeting point of the lanes of a multi-lane operation. The owner lane runs the work only if it
+     * starts before the operation is abandoned; it is abandoned when a lane cannot be enqueued or does
+     * not get there within the execution timeout, so no lane ever waits on the others forever.
+     */
+    private static final class Rendezvous {
+
+        private static final int PENDING = 0;
+        private static final int RUNNING = 1;
+        private static final int ABANDONED = 2;
+
+        private final CountDownLatch joined;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicInteger state = new AtomicInteger(PENDING);
+        private volatile RuntimeException failure;
+
+        private Rendezvous(int joiners) {
+            this.joined = new CountDownLatch(joiners);
+        }
+
+        private void join() {
+            joined.countDown();
+        }
+
+        private boolean awaitJoined(Duration timeout) {
+            return await(joined, timeout);
+        }
+
+        private void done() {
+            done.countDown();
+        }
+
+        private boolean awaitDone(Duration timeout) {
+            return await(done, timeout);
+        }
+
+        private void awaitDone() {
+            try {
+                done.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Claims the work for the owner lane; false when the operation was abandoned first.
+         */
+        private boolean start() {
+            return state.compareAndSet(PENDING, RUNNING);
+        }
+
+        /**
+         * Abandons the operation unless the owner already started it.
+         *
+         * @return whether the operation is abandoned (the work will not run)
+         */
+        private boolean abandon(RuntimeException cause) {
+            if (state.get() == PENDING) {
+                failure = cause;
+                state.compareAndSet(PENDING, ABANDONED);
+            }
+            return state.get() == ABANDONED;
+        }
+
+        private RuntimeException failure() {
+            return failure;
+        }
+
+        private static boolean await(CountDownLatch latch, Duration timeout) {
+            try {
+                return latch.await(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+        }
+    }
+
+    /**
+     * Semaphore whose permits can be taken away without waiting for them to be free.
+     */
+    private static final class ResizableSemaphore extends Semaphore {
+
+        private ResizableSemaphore(int permits) {
+            super(permits);
+        }
+
+        @Override
+        protected void reducePermits(int reduction) {
+            super.reducePermits(reduction);
+        }
+    }
+
+    private final class Lane implements Runnable {
+
+        private final int index;
+        private final BlockingQueue<Runnable> mailbox;
+        private final Timer serviceTime;
+        private Thread thread;
+
+        private Lane(int index, int capacity, Timer serviceTime) {
+            this.index = index;
+            this.mailbox = new ArrayBlockingQueue<>(capacity);
+            this.serviceTime = serviceTime;
+        }
+
+        private void start(ThreadFactory threadFactory) {
+            thread = threadFactory.newThread(this);
+            thread.setName("wallet-lane-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void stop() {
+            thread.interrupt();
+        }
+
+        private int depth() {
+            return mailbox.size();
+        }
+
+        private void enqueue(Runnable task) {
+            try {
+                mailbox.put(task);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(String.format(LANE_INTERRUPTED_ERROR.getMessage(), index), e);
+            }
+        }
+
+        @Override
+        public void run() {
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    mailbox.take().run();
+                    resumeIfDrained();
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -1,10 +1,13 @@
 package com.recargapay.wallet.core.factory;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.recargapay.wallet.converter.TransactionConverter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.enums.TransactionType;
 import com.recargapay.wallet.core.enums.WalletStatusType;
+import com.recargapay.wallet.core.factory.context.AppliedTransaction;
+import com.recargapay.wallet.core.factory.context.TransactionBatch;
 import com.recargapay.wallet.core.factory.context.TransactionFactory;
 import com.recargapay.wallet.database.entity.Wallet;
 import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
@@ -12,17 +15,18 @@ import com.recargapay.wallet.event.dto.TransactionEvent;
 import com.recargapay.wallet.core.factory.context.Transaction;
 import com.recargapay.wallet.handle.exception.DepositException;
 import com.recargapay.wallet.rest.dto.TransactionDTO;
-import io.r2dbc.spi.Connection;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 
 import java.time.Duration;
+import java.util.List;
 
 import static com.recargapay.wallet.database.DbProperties.CONNECTION_DATABASE_TIMEOUT_SECONDS;
 import static com.recargapay.wallet.handle.Message.DEPOSIT_FAILED_FOR_WALLET_ERROR;
 import static com.recargapay.wallet.handle.Message.DEPOSIT_PROCESSED_SUCCESSFULLY_FOR_WALLET_INFO;
 import static com.recargapay.wallet.handle.Message.DEPOSIT_PROCESSED_SUCCESSFULLY_INFO;
 import static com.recargapay.wallet.handle.Message.FAILED_TO_PROCESS_DEPOSIT_ERROR;
+import static com.recargapay.wallet.handle.Message.TRANSACTION_ALREADY_APPLIED_INFO;
 import static com.recargapay.wallet.handle.Message.WALLET_IS_NOT_ACTIVE;
 import static com.recargapay.wallet.handle.Message.WALLET_NOT_FOUND;
 
@@ -35,12 +39,21 @@ public class DepositTransaction implements Transaction {
     @JsonProperty
     private final TransactionEvent event;
 
+    @JsonIgnore
+    private final boolean inline;
+
     public DepositTransaction() {
         this.event = null;
+        this.inline = false;
     }
 
     public DepositTransaction(TransactionEvent event) {
+        this(event, false);
+    }
+
+    private DepositTransaction(TransactionEvent event, boolean inline) {
         this.event = event;
+        this.inline = inline;
     }
 
     /**
@@ -53,36 +66,105 @@ public class DepositTransaction implements Transaction {
         return new DepositTransaction(event);
     }
 
+    /**
+     * Creates a deposit executed in the request's reactive chain. The wallet is credited in the same
+     * database transaction as the ledger row, so the result carries the resulting balance, the
+     * balance update event is written to the outbox already settled and the new balance is written
+     * to the cache after the commit.
+     *
+     * @param event Transaction event
+     * @return Instance of DepositTransaction
+     */
+    public static DepositTransaction inline(TransactionEvent event) {
+        return new DepositTransaction(event, true);
+    }
+
     /**
      * Executes the deposit transaction.
      *
-     * <p>The operation is executed within a reactive connection, where:
+     * <p>The operation is executed within a database transaction, where:
      * <ol>
-     *   <li>A database transaction is started;</li>
      *   <li>The wallet is retrieved and validated;</li>
      *   <li>The deposit is processed and the balance updated;</li>
-     *   <li>The balance update event is dispatched and the cache cleared;</li>
+     *   <li>The balance update event is written to the outbox and the cache cleared;</li>
      *   <li>If everything goes well, the transaction is committed; otherwise, a rollback is performed.</li>
      * </ol>
      *
      * @param factory Factory providing the necessary components (database, repositories, event producers, cache)
+     * @return Mono emitting the deposited transaction once it is committed, or failing after the rollback
      */
     @Override
-    public void execute(TransactionFactory factory) {
-        factory.databaseClient().inConnection(conn ->
-                beginTransaction(conn)
-                        .then(findWallet(factory, event.getWalletId()))
-                        .flatMap(wallet -> validateAndProcessDeposit(factory, wallet))
-                        .flatMap(transactionEntity -> commitTransaction(conn, transactionEntity))
-                        .onErrorResume(error -> rollbackTransaction(conn, error))
-        ).subscribe(
-                result -> log.info(DEPOSIT_PROCESSED_SUCCESSFULLY_INFO.getMessage(), event.getWalletId(), event.getAmount(), event.getRequestTransactionId()),
-                error -> log.error(FAILED_TO_PROCESS_DEPOSIT_ERROR.getMessage(), event.getWalletId(), event.getAmount(), event.getRequestTransactionId(), error.getMessage())
+    public Mono<TransactionDTO> execute(TransactionFactory factory) {
+        if (inline) {
+            return executeInline(factory);
+        }
+        return Mono.defer(() -> findWallet(factory, event.getWalletId()))
+                .flatMap(wallet -> validateAndProcessDeposit(factory, wallet))
+                .as(factory.transactionalOperator()::transactional)
+                .map(transactionEntity -> TransactionConverter.entityToTransactionDTO(transactionEntity, TransactionStatusType.DONE))
+                .doOnNext(result -> log.info(DEPOSIT_PROCESSED_SUCCESSFULLY_INFO.getMessage(), event.getWalletId(), event.getAmount(), event.getRequestTransactionId()))
+                .doOnError(error -> log.error(FAILED_TO_PROCESS_DEPOSIT_ERROR.getMessage(), event.getWalletId(), event.getAmount(), event.getRequestTransactionId(), error.getMessage()));
+    }
+
+    @Override
+    public void stage(TransactionBatch batch) {
+        Wallet wallet = batch.wallet(event.getWalletId())
+                .orElseThrow(() -> new DepositException(WALLET_NOT_FOUND));
+        if (!WalletStatusType.ACTIVE.name().equals(wallet.getStatus())) {
+            throw new DepositException(WALLET_IS_NOT_ACTIVE);
+        }
+        batch.record(
+                TransactionConverter.eventToTransactionEntity(wallet.getId(), event, TransactionStatusType.DONE),
+                new BalanceUpdateEvent(event.getRequestTransactionId(), event.getWalletId(), event.getAmount(), TransactionType.DEPOSIT.getType(), true)
         );
     }
 
-    private Mono<Void> beginTransaction(Connection conn) {
-        return Mono.from(conn.beginTransaction());
+    @Override
+    public List<String> walletIds() {
+        return List.of(event.getWalletId());
+    }
+
+    @Override
+    public String requestTransactionId() {
+        return event.getRequestTransactionId();
+    }
+
+    @Override
+    public String type() {
+        return TransactionType.DEPOSIT.getType();
+    }
+
+    private Mono<TransactionDTO> executeInline(TransactionFactory factory) {
+        var transaction = TransactionConverter.eventToTransactionEntity(event.getWalletId(), event, TransactionStatusType.DONE);
+
+        return Mono.defer(() -> factory.transactionRepository().insertIfAbsent(transaction))
+                .flatMap(savedTransaction -> creditWallet(factory)
+                        .flatMap(wallet -> factory.balanceUpdateProducer().enqueueBalanceUpdate(new BalanceUpdateEvent(
+                                        event.getRequestTransactionId(),
+                                        event.getWalletId(),
+                                        event.getAmount(),
+                                        TransactionType.DEPOSIT.getType(),
+                                        true))
+                                .thenReturn(AppliedTransaction.of(
+                                        TransactionConverter.entityToTransactionDTO(savedTransaction, TransactionStatusType.DONE, wallet.getCurrentBalance()),
+                                        wallet))))
+                .switchIfEmpty(Mono.defer(() -> skipAlreadyApplied(AppliedTransaction.of(TransactionConverter.entityToTransactionDTO(transaction, TransactionStatusType.DONE)))))
+                .as(factory.transactionalOperator()::transactional)
+                .flatMap(applied -> applied.writeThrough(factory))
+                .doOnNext(result -> log.info(DEPOSIT_PROCESSED_SUCCESSFULLY_INFO.getMessage(), event.getWalletId(), event.getAmount(), event.getRequestTransactionId()))
+                .doOnError(error -> log.error(FAILED_TO_PROCESS_DEPOSIT_ERROR.getMessage(), event.getWalletId(), event.getAmount(), event.getRequestTransactionId(), error.getMessage()));
+    }
+
+    /**
+     * Credits the wallet with a single conditional update. When no row is updated the wallet is read
+     * once more, only to tell apart a missing wallet from an inactive one.
+     */
+    private Mono<Wallet> creditWallet(TransactionFactory factory) {
+        return factory.walletRepository()
+                .creditIfActive(event.getWalletId(), event.getAmount())
+                .switchIfEmpty(Mono.defer(() -> factory.walletRepository().findById(event.getWalletId())
+                        .switchIfEmpty(Mono.error(new DepositException(WALLET_NOT_FOUND)))
+                        .flatMap(wallet -> Mono.error(new DepositException(WALLET_IS_NOT_ACTIVE)))));
     }
 
     private Mono<Wallet> findWallet(TransactionFactory factory, String walletId) {
@@ -92,7 +174,10 @@ public class DepositTransaction implements Transaction {
     }
 
     /**
-     * Validates if the wallet is active, updates the balance, and saves the transaction.
+     * Validates if the wallet is active and saves the transaction; the balance is updated by the balance
+     * update event written to the outbox. A ledger row
+     * already written for the same request (a redelivery) is not inserted again and no balance update
+     * is emitted for it.
      *
      * @param factory Factory providing the necessary repositories
      * @param wallet Wallet retrieved from the repository
@@ -102,28 +187,36 @@ public class DepositTransaction implements Transaction {
         if (!WalletStatusType.ACTIVE.name().equals(wallet.getStatus())) {
             return Mono.error(new DepositException(WALLET_IS_NOT_ACTIVE));
         }
-        wallet.setCurrentBalance(wallet.getCurrentBalance().add(event.getAmount()));
 
         com.recargapay.wallet.database.entity.Transaction transactionEntity = TransactionConverter.eventToTransactionEntity(wallet.getId(), event, TransactionStatusType.DONE);
-        return factory.transactionRepository().save(transactionEntity)
-                .flatMap(savedTransaction -> sendBalanceUpdateAndClearCache(factory, savedTransaction));
+        return factory.transactionRepository().insertIfAbsent(transactionEntity)
+                .flatMap(savedTransaction -> enqueueBalanceUpdateAndClearCache(factory, savedTransaction))
+                .switchIfEmpty(Mono.defer(() -> skipAlreadyApplied(transactionEntity)));
+    }
+
+    /**
+     * The ledger row of this request already exists: the deposit was applied by an earlier delivery.
+     */
+    private <T> Mono<T> skipAlreadyApplied(T result) {
+        log.info(TRANSACTION_ALREADY_APPLIED_INFO.getMessage(), event.getWalletId(), event.getRequestTransactionId(), event.getType());
+        return Mono.just(result);
     }
 
     /**
-     * Dispatches the balance update event, clears the cache, and returns the transaction.
+     * Writes the balance update event to the outbox, clears the cache, and returns the transaction.
      *
      * @param factory Factory providing the event producer and cache
      * @param transactionEntity Saved transaction entity
      * @return Mono containing the transaction entity
      */
-    private Mono<com.recargapay.wallet.database.entity.Transaction> sendBalanceUpdateAndClearCache(TransactionFactory factory, com.recargapay.wallet.database.entity.Transaction transactionEntity) {
+    private Mono<com.recargapay.wallet.database.entity.Transaction> enqueueBalanceUpdateAndClearCache(TransactionFactory factory, com.recargapay.wallet.database.entity.Transaction transactionEntity) {
         BalanceUpdateEvent balanceUpdateEvent = new BalanceUpdateEvent(
                 event.getRequestTransactionId(),
                 event.getWalletId(),
                 event.getAmount(),
                 TransactionType.DEPOSIT.getType()
         );
-        return Mono.fromRunnable(() -> factory.balanceUpdateProducer().sendBalanceUpdate(balanceUpdateEvent))
+        return factory.balanceUpdateProducer().enqueueBalanceUpdate(balanceUpdateEvent)
                 .then(clearWalletCache(factory))
                 .thenReturn(transactionEntity)
                 .doOnSuccess(tx -> log.info(DEPOSIT_PROCESSED_SUCCESSFULLY_FOR_WALLET_INFO.getMessage(), event.getWalletId(), event.getRequestTransactionId()))
@@ -133,14 +226,4 @@ public class DepositTransaction implements Transaction {
     private Mono<Void> clearWalletCache(TransactionFactory factory) {
         return factory.cache().clearBalanceCache(event.getWalletId());
     }
-
-    private Mono<TransactionDTO> commitTransaction(Connection conn, com.recargapay.wallet.database.entity.Transaction transactionEntity) {
-        return Mono.from(conn.commitTransaction())
-                .thenReturn(TransactionConverter.entityToTransactionDTO(transactionEntity, TransactionStatusType.DONE));
-    }
-
-    private Mono<TransactionDTO> rollbackTransaction(Connection conn, Throwable error) {
-        return Mono.from(conn.rollbackTransaction())
-                .then(Mono.error(error));
-    }
 }
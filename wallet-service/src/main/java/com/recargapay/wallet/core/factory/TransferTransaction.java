@@ -4,29 +4,40 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 import com.recargapay.wallet.converter.TransactionConverter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.enums.TransactionType;
+import com.recargapay.wallet.core.enums.WalletStatusType;
+import com.recargapay.wallet.core.factory.context.AppliedTransaction;
+import com.recargapay.wallet.core.factory.context.TransactionBatch;
 import com.recargapay.wallet.core.factory.context.TransactionFactory;
 import com.recargapay.wallet.core.factory.context.Transaction;
 import com.recargapay.wallet.database.entity.Wallet;
 import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
 import com.recargapay.wallet.event.dto.DualTransactionEvent;
+import com.recargapay.wallet.event.dto.TransactionEvent;
+import com.recargapay.wallet.handle.exception.InsufficientFundsException;
+import com.recargapay.wallet.handle.exception.WalletInactiveException;
 import com.recargapay.wallet.handle.exception.TransferException;
 import com.recargapay.wallet.rest.dto.TransactionDTO;
-import io.r2dbc.spi.Connection;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.PessimisticLockingFailureException;
 import reactor.core.publisher.Mono;
 
-import java.math.BigDecimal;
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 import static com.recargapay.wallet.database.DbProperties.CONNECTION_DATABASE_TIMEOUT_SECONDS;
-import static com.recargapay.wallet.handle.Message.CONCURRENT_MODIFICATION_DETECTED_TRY_AGAIN;
 import static com.recargapay.wallet.handle.Message.DESTINATION_WALLET_NOT_FOUND;
-import static com.recargapay.wallet.handle.Message.SENDING_OUTBOUND_TRANSFER_EVENT_ERROR;
+import static com.recargapay.wallet.handle.Message.INSUFFICIENT_FUNDS;
 import static com.recargapay.wallet.handle.Message.SOURCE_WALLET_NOT_FOUND;
+import static com.recargapay.wallet.handle.Message.TRANSACTION_ALREADY_APPLIED_INFO;
 import static com.recargapay.wallet.handle.Message.TRANSFER_FAILED_ERROR;
 import static com.recargapay.wallet.handle.Message.TRANSFER_FAILED_FROM_TO_ERROR;
+import static com.recargapay.wallet.handle.Message.TRANSFER_LOCK_CONFLICT_ERROR;
 import static com.recargapay.wallet.handle.Message.TRANSFER_PROCESSED_SUCCESSFULLY_FROM_TO;
 import static com.recargapay.wallet.handle.Message.TRANSFER_PROCESSED_SUCCESSFULLY_INFO;
+import static com.recargapay.wallet.handle.Message.WALLET_IS_NOT_ACTIVE1;
 
 @Slf4j
 public class TransferTransaction implements Transaction {
@@ -57,42 +68,161 @@ public class TransferTransaction implements Transaction {
      * The operation includes:
      * <ol>
      *   <li>Starting a database transaction</li>
-     *   <li>Retrieving the source and destination wallets</li>
-     *   <li>Validating the source wallet version to avoid concurrent modifications</li>
-     *   <li>Updating wallet balances</li>
-     *   <li>Saving both debit and credit transactions</li>
-     *   <li>Dispatching balance update events and clearing the cache</li>
+     *   <li>Checking that the destination wallet exists</li>
+     *   <li>Inserting the debit transaction unless it already exists; a redelivered transfer stops here</li>
+     *   <li>Debiting the source wallet with a single conditional update (active and funded) and
+     *   crediting the destination wallet, updating the two rows in wallet id order</li>
+     *   <li>Saving the credit transaction</li>
+     *   <li>Writing the balance update events to the outbox</li>
      *   <li>Committing the transaction (or rolling back in case of error)</li>
+     *   <li>Writing the new balances of both wallets to the cache</li>
      * </ol>
+     *
+     * When {@link TransactionFactory#pessimisticTransfers()} is enabled the transfer runs with
+     * {@link #executeWithLocks(TransactionFactory)} instead.
      */
     @Override
-    public void execute(TransactionFactory factory) {
-        factory.databaseClient().inConnection(conn ->
-                beginTransaction(conn)
-                        .then(findSourceWallet(factory))
+    public Mono<TransactionDTO> execute(TransactionFactory factory) {
+        if (factory.pessimisticTransfers()) {
+            return executeWithLocks(factory);
+        }
+        var debitEvent = debitEvent();
+        var debitTransaction = TransactionConverter.eventToTransactionEntity(event.getEventSource().getWalletId(), debitEvent, TransactionStatusType.DONE);
+
+        return Mono.defer(() -> findDestinationWallet(factory))
+                .flatMap(destinationWallet -> factory.transactionRepository().insertIfAbsent(debitTransaction))
+                .flatMap(savedDebit -> updateWalletsInIdOrder(factory)
                         .timeout(Duration.ofSeconds(CONNECTION_DATABASE_TIMEOUT_SECONDS))
-                        .flatMap(sourceWallet -> findDestinationWallet(factory)
-                                .flatMap(destinationWallet -> processTransfer(factory, sourceWallet, destinationWallet)))
-                        .flatMap(transactionEntity -> commitTransaction(conn))
-                        .onErrorResume(e -> rollbackTransaction(conn, e).then())
-        ).subscribe(
-                dto -> log.info(TRANSFER_PROCESSED_SUCCESSFULLY_INFO.getMessage(),
+                        .flatMap(wallets -> saveCredit(factory, debitEvent)
+                                .thenReturn(new AppliedTransaction<>(savedDebit, wallets))))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.info(TRANSACTION_ALREADY_APPLIED_INFO.getMessage(), debitEvent.getWalletId(), debitEvent.getRequestTransactionId(), debitEvent.getType());
+                    return AppliedTransaction.of(debitTransaction);
+                }))
+                .as(factory.transactionalOperator()::transactional)
+                .flatMap(applied -> applied.writeThrough(factory))
+                .map(transactionEntity -> TransactionConverter.entityToTransactionDTO(transactionEntity, TransactionStatusType.DONE))
+                .doOnSuccess(done -> log.info(TRANSFER_PROCESSED_SUCCESSFULLY_INFO.getMessage(),
                         event.getEventSource().getWalletId(), event.getEventDestination().getWalletId(),
-                        event.getEventSource().getAmount(), event.getEventSource().getRequestTransactionId()),
-                error -> log.error(TRANSFER_FAILED_ERROR.getMessage(), error.getMessage())
-        );
+                        event.getEventSource().getAmount(), event.getEventSource().getRequestTransactionId()))
+                .doOnError(error -> log.error(TRANSFER_FAILED_ERROR.getMessage(), error.getMessage()));
     }
 
-    private Mono<Void> beginTransaction(Connection conn) {
-        return Mono.from(conn.beginTransaction());
+    /**
+     * Pessimistic mode: both wallets are locked with one {@code SELECT ... FOR UPDATE} ordered by wallet
+     * id before anything else is written, so concurrent transfers over the same pair of wallets (in
+     * either direction) always lock them in the same order and wait instead of deadlocking. The ledger
+     * row is only inserted after the locks are held, since its foreign key check would otherwise take a
+     * share lock on the source wallet out of order. Validation uses the locked rows, and the debit and
+     * credit are applied in the same database transaction.
+     */
+    private Mono<TransactionDTO> executeWithLocks(TransactionFactory factory) {
+        var debitEvent = debitEvent();
+        var debitTransaction = TransactionConverter.eventToTransactionEntity(event.getEventSource().getWalletId(), debitEvent, TransactionStatusType.DONE);
+
+        return Mono.defer(() -> lockWallets(factory))
+                .flatMap(wallets -> factory.transactionRepository().insertIfAbsent(debitTransaction)
+                        .flatMap(savedDebit -> applyLockedTransfer(factory, wallets)
+                                .flatMap(updatedWallets -> saveCredit(factory, debitEvent)
+                                        .thenReturn(new AppliedTransaction<>(savedDebit, updatedWallets)))))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.info(TRANSACTION_ALREADY_APPLIED_INFO.getMessage(), debitEvent.getWalletId(), debitEvent.getRequestTransactionId(), debitEvent.getType());
+                    return AppliedTransaction.of(debitTransaction);
+                }))
+                .timeout(Duration.ofSeconds(CONNECTION_DATABASE_TIMEOUT_SECONDS))
+                .as(factory.transactionalOperator()::transactional)
+                .flatMap(applied -> applied.writeThrough(factory))
+                .map(transactionEntity -> TransactionConverter.entityToTransactionDTO(transactionEntity, TransactionStatusType.DONE))
+                .doOnSuccess(done -> log.info(TRANSFER_PROCESSED_SUCCESSFULLY_INFO.getMessage(),
+                        event.getEventSource().getWalletId(), event.getEventDestination().getWalletId(),
+                        event.getEventSource().getAmount(), event.getEventSource().getRequestTransactionId()))
+                .doOnError(error -> log.error(TRANSFER_FAILED_ERROR.getMessage(), error.getMessage()));
     }
 
-    private Mono<Wallet> findSourceWallet(TransactionFactory factory) {
+    /**
+     * Locks both wallets, recording the time spent waiting for the locks. Lock timeouts and deadlocks
+     * reported by the database are counted as conflicts.
+     */
+    private Mono<Map<String, Wallet>> lockWallets(TransactionFactory factory) {
+        MeterRegistry meterRegistry = factory.meterRegistry();
+        Timer.Sample sample = Timer.start(meterRegistry);
         return factory.walletRepository()
-                .findById(event.getEventSource().getWalletId())
-                .switchIfEmpty(Mono.error(new TransferException(SOURCE_WALLET_NOT_FOUND)))
-                .flatMap(wallet -> factory.transferService().validateSourceWallet(wallet, event.getEventSource().getAmount()))
-                ;
+                .lockAllByIdInOrder(walletIds())
+                .collectMap(Wallet::getId)
+                .doOnError(PessimisticLockingFailureException.class, error -> {
+                    meterRegistry.counter("wallet_transfer_lock_conflicts").increment();
+                    log.warn(TRANSFER_LOCK_CONFLICT_ERROR.getMessage(),
+                            event.getEventSource().getWalletId(), event.getEventDestination().getWalletId(), error.getMessage());
+                })
+                .doFinally(signalType -> sample.stop(meterRegistry.timer("wallet_transfer_lock_wait_time")));
+    }
+
+    /**
+     * Validates the transfer against the locked rows and applies it, emitting both updated wallets.
+     */
+    private Mono<List<Wallet>> applyLockedTransfer(TransactionFactory factory, Map<String, Wallet> wallets) {
+        var source = event.getEventSource();
+        var destination = event.getEventDestination();
+
+        Wallet sourceWallet = wallets.get(source.getWalletId());
+        if (sourceWallet == null) {
+            return Mono.error(new TransferException(SOURCE_WALLET_NOT_FOUND));
+        }
+        if (!wallets.containsKey(destination.getWalletId())) {
+            return Mono.error(new TransferException(DESTINATION_WALLET_NOT_FOUND));
+        }
+        if (!WalletStatusType.ACTIVE.getType().equals(sourceWallet.getStatus())) {
+            return Mono.error(new WalletInactiveException(WALLET_IS_NOT_ACTIVE1));
+        }
+        if (sourceWallet.getCurrentBalance().compareTo(source.getAmount().abs()) < 0) {
+            return Mono.error(new InsufficientFundsException(INSUFFICIENT_FUNDS));
+        }
+
+        return factory.walletRepository().applyBalanceDelta(source.getWalletId(), source.getAmount().abs().negate())
+                .flatMap(updatedSource -> factory.walletRepository().applyBalanceDelta(destination.getWalletId(), destination.getAmount().abs())
+                        .map(updatedDestination -> List.of(updatedSource, updatedDestination)));
+    }
+
+    @Override
+    public void stage(TransactionBatch batch) {
+        var source = event.getEventSource();
+        var destination = event.getEventDestination();
+
+        Wallet sourceWallet = batch.wallet(source.getWalletId())
+                .orElseThrow(() -> new TransferException(SOURCE_WALLET_NOT_FOUND));
+        batch.wallet(destination.getWalletId())
+                .orElseThrow(() -> new TransferException(DESTINATION_WALLET_NOT_FOUND));
+        if (!WalletStatusType.ACTIVE.getType().equals(sourceWallet.getStatus())) {
+            throw new WalletInactiveException(WALLET_IS_NOT_ACTIVE1);
+        }
+        if (batch.balanceOf(sourceWallet.getId()).compareTo(source.getAmount().abs()) < 0) {
+            throw new InsufficientFundsException(INSUFFICIENT_FUNDS);
+        }
+
+        var debitEvent = debitEvent();
+        batch.record(
+                TransactionConverter.eventToTransactionEntity(source.getWalletId(), debitEvent, TransactionStatusType.DONE),
+                new BalanceUpdateEvent(source.getRequestTransactionId(), source.getWalletId(), debitEvent.getAmount(), TransactionType.TRANSFER_OUT.getType(), true)
+        );
+        batch.record(
+                TransactionConverter.eventToTransactionEntity(source.getWalletId(), destination, TransactionStatusType.DONE),
+                new BalanceUpdateEvent(destination.getRequestTransactionId(), destination.getWalletId(), destination.getAmount(), TransactionType.TRANSFER_IN.getType(), true)
+        );
+    }
+
+    @Override
+    public List<String> walletIds() {
+        return List.of(event.getEventSource().getWalletId(), event.getEventDestination().getWalletId());
+    }
+
+    @Override
+    public String requestTransactionId() {
+        return event.getEventSource().getRequestTransactionId();
+    }
+
+    @Override
+    public String type() {
+        return TransactionType.TRANSFER_OUT.getType();
     }
 
     private Mono<Wallet> findDestinationWallet(TransactionFactory factory) {
@@ -101,80 +231,88 @@ public class TransferTransaction implements Transaction {
                 .switchIfEmpty(Mono.error(new TransferException(DESTINATION_WALLET_NOT_FOUND)));
     }
 
-    private Mono<Void> processTransfer(
-            TransactionFactory factory,
-            Wallet sourceWallet,
-            Wallet destinationWallet) {
-
-        factory.walletRepository()
-                .findByIdAndVersion(sourceWallet.getId(), sourceWallet.getVersion())
-                .switchIfEmpty(Mono.error(new TransferException(CONCURRENT_MODIFICATION_DETECTED_TRY_AGAIN)))
-                .flatMap(updatedSourceWallet -> {
-                    var amount = event.getEventSource().getAmount();
-                    updatedSourceWallet.setCurrentBalance(
-                            updatedSourceWallet.getCurrentBalance().subtract(amount));
-
-                    destinationWallet.setCurrentBalance(
-                            destinationWallet.getCurrentBalance().add(amount));
-
-                    event.getEventSource().setAmount(event.getEventSource().getAmount().multiply(BigDecimal.valueOf(-1)));
-
-                    com.recargapay.wallet.database.entity.Transaction debitTransaction =
-                            TransactionConverter.eventToTransactionEntity(event.getEventSource().getWalletId(), event.getEventSource(), TransactionStatusType.DONE);
-                    com.recargapay.wallet.database.entity.Transaction creditTransaction =
-                            TransactionConverter.eventToTransactionEntity(event.getEventSource().getWalletId(), event.getEventDestination(), TransactionStatusType.DONE);
-                    creditTransaction.setWalletId(event.getEventSource().getWalletId());
-
-                    return factory.transactionRepository().save(debitTransaction)
-                            .then(factory.transactionRepository().save(creditTransaction))
-                            .doOnSuccess(tx -> {
-                                Mono.fromRunnable(() -> updateCurrentBallance(factory))
-                                        .onErrorResume(e -> {
-                                            log.error(SENDING_OUTBOUND_TRANSFER_EVENT_ERROR.getMessage(), e);
-                                            return Mono.empty();
-                                        })
-                                        .doOnSuccess(sc -> {
-                                                log.info(TRANSFER_PROCESSED_SUCCESSFULLY_FROM_TO.getMessage(),
-                                                event.getEventSource().getWalletId(),
-                                                event.getEventDestination().getWalletId());
-                                                factory.cache().clearBalanceCache(event.getEventSource().getWalletId()).subscribe();
-                                                factory.cache().clearBalanceCache(event.getEventDestination().getWalletId()).subscribe();
-                                        })
-                                        .subscribe();
-                            })
-                            .doOnError(error ->
-                                    log.error(TRANSFER_FAILED_FROM_TO_ERROR.getMessage(),
-                                            event.getEventSource().getWalletId(),
-                                            event.getEventDestination().getWalletId(),
-                                            error.getMessage()))
-                            .then(Mono.just(debitTransaction));
-                }).subscribe();
-
-        return Mono.empty();
-    }
-
-    private void updateCurrentBallance(TransactionFactory factory) {
-        factory.balanceUpdateProducer().sendBalanceUpdate(
-                new BalanceUpdateEvent(
-                        event.getEventSource().getRequestTransactionId(),
-                        event.getEventSource().getWalletId(),
-                        event.getEventSource().getAmount(),
-                        TransactionType.TRANSFER_OUT.getType()));
+    /**
+     * Debits the source and credits the destination, updating the two rows in wallet id order (the order
+     * {@link #lockWallets(TransactionFactory)} uses), so concurrent transfers over the same pair of wallets
+     * in opposite directions take the row locks in the same order and wait instead of deadlocking.
+     * Emits the updated source and destination wallets, in that order.
+     */
+    private Mono<List<Wallet>> updateWalletsInIdOrder(TransactionFactory factory) {
+        if (event.getEventSource().getWalletId().compareTo(event.getEventDestination().getWalletId()) <= 0) {
+            return debitSourceWallet(factory)
+                    .flatMap(sourceWallet -> creditDestinationWallet(factory)
+                            .map(destinationWallet -> List.of(sourceWallet, destinationWallet)));
+        }
+        return creditDestinationWallet(factory)
+                .flatMap(destinationWallet -> debitSourceWallet(factory)
+                        .map(sourceWallet -> List.of(sourceWallet, destinationWallet)));
+    }
 
-        factory.balanceUpdateProducer().sendBalanceUpdate(
-                new BalanceUpdateEvent(
-                        event.getEventDestination().getRequestTransactionId(),
-                        event.getEventDestination().getWalletId(),
-                        event.getEventDestination().getAmount(),
-                        TransactionType.TRANSFER_IN.getType()));
+    /**
+     * Debits the source wallet with a single conditional update. When no row is updated the wallet
+     * is read once more, only to tell apart a missing wallet, an inactive one and insufficient funds.
+     */
+    private Mono<Wallet> debitSourceWallet(TransactionFactory factory) {
+        var source = event.getEventSource();
+        return factory.walletRepository()
+                .debitIfActiveAndFunded(source.getWalletId(), source.getAmount().abs())
+                .switchIfEmpty(Mono.defer(() -> rejectDebit(factory)));
+    }
+
+    private Mono<Wallet> rejectDebit(TransactionFactory factory) {
+        return factory.walletRepository()
+                .findById(event.getEventSource().getWalletId())
+                .switchIfEmpty(Mono.error(new TransferException(SOURCE_WALLET_NOT_FOUND)))
+                .flatMap(wallet -> Mono.error(WalletStatusType.ACTIVE.getType().equals(wallet.getStatus())
+                        ? new InsufficientFundsException(INSUFFICIENT_FUNDS)
+                        : new WalletInactiveException(WALLET_IS_NOT_ACTIVE1)));
     }
 
+    private Mono<Wallet> creditDestinationWallet(TransactionFactory factory) {
+        var destination = event.getEventDestination();
+        return factory.walletRepository()
+                .credit(destination.getWalletId(), destination.getAmount().abs())
+                .switchIfEmpty(Mono.error(new TransferException(DESTINATION_WALLET_NOT_FOUND)));
+    }
 
-    private Mono<Void> commitTransaction(Connection conn) {
-        return Mono.from(conn.commitTransaction());
+    private TransactionEvent debitEvent() {
+        var source = event.getEventSource();
+        return new TransactionEvent(source.getRequestTransactionId(), source.getWalletId(), source.getAmount().negate(), source.getType());
     }
 
-    private Mono<TransactionDTO> rollbackTransaction(Connection conn, Throwable error) {
-        return Mono.from(conn.rollbackTransaction()).then(Mono.error(error));
+    private Mono<Void> saveCredit(TransactionFactory factory, TransactionEvent debitEvent) {
+        var source = event.getEventSource();
+        com.recargapay.wallet.database.entity.Transaction creditTransaction =
+                TransactionConverter.eventToTransactionEntity(source.getWalletId(), event.getEventDestination(), TransactionStatusType.DONE);
+
+        return factory.transactionRepository().save(creditTransaction)
+                .then(publishBalanceUpdates(factory, debitEvent))
+                .doOnError(error ->
+                        log.error(TRANSFER_FAILED_FROM_TO_ERROR.getMessage(),
+                                source.getWalletId(),
+                                event.getEventDestination().getWalletId(),
+                                error.getMessage()));
+    }
+
+    /**
+     * Writes both balance update events to the outbox.
+     */
+    private Mono<Void> publishBalanceUpdates(TransactionFactory factory, TransactionEvent debitEvent) {
+        var producer = factory.balanceUpdateProducer();
+        return producer.enqueueBalanceUpdate(new BalanceUpdateEvent(
+                        debitEvent.getRequestTransactionId(),
+                        debitEvent.getWalletId(),
+                        debitEvent.getAmount(),
+                        TransactionType.TRANSFER_OUT.getType(),
+                        true))
+                .then(producer.enqueueBalanceUpdate(new BalanceUpdateEvent(
+                        event.getEventDestination().getRequestTransactionId(),
+                        event.getEventDestination().getWalletId(),
+                        event.getEventDestination().getAmount(),
+                        TransactionType.TRANSFER_IN.getType(),
+                        true)))
+                .doOnSuccess(done -> log.info(TRANSFER_PROCESSED_SUCCESSFULLY_FROM_TO.getMessage(),
+                        event.getEventSource().getWalletId(),
+                        event.getEventDestination().getWalletId()));
     }
 }
@@ -5,6 +5,8 @@ import com.recargapay.wallet.converter.TransactionConverter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.enums.TransactionType;
 import com.recargapay.wallet.core.enums.WalletStatusType;
+import com.recargapay.wallet.core.factory.context.AppliedTransaction;
+import com.recargapay.wallet.core.factory.context.TransactionBatch;
 import com.recargapay.wallet.core.factory.context.TransactionFactory;
 import com.recargapay.wallet.database.entity.Wallet;
 import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
@@ -12,10 +14,14 @@ import com.recargapay.wallet.event.dto.TransactionEvent;
 import com.recargapay.wallet.core.factory.context.Transaction;
 import com.recargapay.wallet.handle.exception.InternalServerErrorException;
 import com.recargapay.wallet.handle.exception.WithdrawException;
+import com.recargapay.wallet.rest.dto.TransactionDTO;
 import lombok.extern.slf4j.Slf4j;
 import reactor.core.publisher.Mono;
 
+import java.util.List;
+
 import static com.recargapay.wallet.handle.Message.INSUFFICIENT_FUNDS;
+import static com.recargapay.wallet.handle.Message.TRANSACTION_ALREADY_APPLIED_INFO;
 import static com.recargapay.wallet.handle.Message.TRANSACTION_WITHDRAW_WALLET_IS_EMPTY;
 import static com.recargapay.wallet.handle.Message.WALLET_IS_NOT_ACTIVE;
 import static com.recargapay.wallet.handle.Message.WITHDRAW_FAILED_FOR_WALLET_ERROR;
@@ -38,51 +44,87 @@ public class WithdrawTransaction implements Transaction {
         return new WithdrawTransaction(event);
     }
 
+    /**
+     * Writes the ledger row first, so a redelivered withdraw (the row already exists) is skipped
+     * without debiting the wallet again, then debits the wallet in the same database transaction.
+     * The new balance is written to the cache after the commit.
+     */
     @Override
-    public void execute(TransactionFactory factory) {
-
-        Mono.from(factory.walletRepository().findById(event.getWalletId()))
-        .switchIfEmpty(Mono.error(
-                new InternalServerErrorException(TRANSACTION_WITHDRAW_WALLET_IS_EMPTY))
-        )
-        .flatMap(this::validateAndProcessWithdraw)
-        .flatMap(wallet -> transactionExecute(wallet, factory))
-        .subscribe();
+    public Mono<TransactionDTO> execute(TransactionFactory factory) {
+        var transaction = TransactionConverter.eventToTransactionEntity(event.getWalletId(), event, TransactionStatusType.DONE);
+
+        return Mono.defer(() -> factory.transactionRepository().insertIfAbsent(transaction))
+                .flatMap(savedTransaction -> debitWallet(factory)
+                        .flatMap(wallet -> updateCurrentBalance(factory)
+                                .thenReturn(AppliedTransaction.of(
+                                        TransactionConverter.entityToTransactionDTO(savedTransaction, TransactionStatusType.DONE, wallet.getCurrentBalance()),
+                                        wallet))))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    log.info(TRANSACTION_ALREADY_APPLIED_INFO.getMessage(), event.getWalletId(), event.getRequestTransactionId(), event.getType());
+                    return AppliedTransaction.of(TransactionConverter.entityToTransactionDTO(transaction, TransactionStatusType.DONE));
+                }))
+                .as(factory.transactionalOperator()::transactional)
+                .flatMap(applied -> applied.writeThrough(factory))
+                .doOnError(error -> log.error(WITHDRAW_FAILED_FOR_WALLET_ERROR.getMessage(), event.getWalletId(), event.getRequestTransactionId(), error.getMessage()));
     }
 
-    private Mono<Wallet> validateAndProcessWithdraw(Wallet wallet) {
-            if (!WalletStatusType.ACTIVE.getType().equals(wallet.getStatus())) {
-                return Mono.error(new WithdrawException(WALLET_IS_NOT_ACTIVE));
-            }
-            if (wallet.getCurrentBalance().compareTo(event.getAmount().abs()) < 0) {
-                return Mono.error(new WithdrawException(INSUFFICIENT_FUNDS));
-            }
-            return Mono.just(wallet);
+    @Override
+    public void stage(TransactionBatch batch) {
+        Wallet wallet = batch.wallet(event.getWalletId())
+                .orElseThrow(() -> new InternalServerErrorException(TRANSACTION_WITHDRAW_WALLET_IS_EMPTY));
+        if (!WalletStatusType.ACTIVE.getType().equals(wallet.getStatus())) {
+            throw new WithdrawException(WALLET_IS_NOT_ACTIVE);
+        }
+        if (batch.balanceOf(wallet.getId()).compareTo(event.getAmount().abs()) < 0) {
+            throw new WithdrawException(INSUFFICIENT_FUNDS);
+        }
+        batch.record(
+                TransactionConverter.eventToTransactionEntity(event.getWalletId(), event, TransactionStatusType.DONE),
+                new BalanceUpdateEvent(event.getRequestTransactionId(), event.getWalletId(), event.getAmount(), TransactionType.WITHDRAW.getType(), true)
+        );
     }
 
-    private Mono<Void> transactionExecute(Wallet wallet, TransactionFactory factory) {
+    @Override
+    public List<String> walletIds() {
+        return List.of(event.getWalletId());
+    }
 
-        wallet.setCurrentBalance(wallet.getCurrentBalance().subtract(event.getAmount()));
-        var transaction = TransactionConverter.eventToTransactionEntity(event.getWalletId(), event, TransactionStatusType.DONE);
+    @Override
+    public String requestTransactionId() {
+        return event.getRequestTransactionId();
+    }
 
-        return factory.databaseClient().inConnection(conn ->
-                Mono.from(conn.beginTransaction())
-                        .then(factory.transactionRepository().save(transaction))
-                        .doOnNext(tx -> updateCurrentBalance(factory))
-                        .flatMap(walletDto -> Mono.from(conn.commitTransaction()))
-                        .onErrorResume(e -> Mono.from(conn.rollbackTransaction()).then(Mono.error(e)))
-        );
+    @Override
+    public String type() {
+        return TransactionType.WITHDRAW.getType();
     }
 
-    private void updateCurrentBalance(TransactionFactory factory) {
-        factory.balanceUpdateProducer().sendBalanceUpdate(new BalanceUpdateEvent(
-                event.getRequestTransactionId(),
-                event.getWalletId(),
-                event.getAmount(),
-                TransactionType.WITHDRAW.getType())
-        );
-        log.info(WITHDRAW_PROCESSED_SUCCESSFULLY_FOR_WALLET_INFO.getMessage(), event.getWalletId(), event.getRequestTransactionId());
-        factory.cache().clearBalanceCache(event.getWalletId()).subscribe();
+    /**
+     * Debits the wallet with a single conditional update. When no row is updated the wallet is
+     * read once more, only to tell apart a missing wallet, an inactive one and insufficient funds.
+     */
+    private Mono<Wallet> debitWallet(TransactionFactory factory) {
+        return factory.walletRepository()
+                .debitIfActiveAndFunded(event.getWalletId(), event.getAmount().abs())
+                .switchIfEmpty(Mono.defer(() -> rejectDebit(factory)));
+    }
+
+    private Mono<Wallet> rejectDebit(TransactionFactory factory) {
+        return factory.walletRepository().findById(event.getWalletId())
+                .switchIfEmpty(Mono.error(new InternalServerErrorException(TRANSACTION_WITHDRAW_WALLET_IS_EMPTY)))
+                .flatMap(wallet -> Mono.error(WalletStatusType.ACTIVE.getType().equals(wallet.getStatus())
+                        ? new WithdrawException(INSUFFICIENT_FUNDS)
+                        : new WithdrawException(WALLET_IS_NOT_ACTIVE)));
+    }
+
+    private Mono<Void> updateCurrentBalance(TransactionFactory factory) {
+        return factory.balanceUpdateProducer().enqueueBalanceUpdate(new BalanceUpdateEvent(
+                        event.getRequestTransactionId(),
+                        event.getWalletId(),
+                        event.getAmount(),
+                        TransactionType.WITHDRAW.getType(),
+                        true))
+                .doOnSuccess(done -> log.info(WITHDRAW_PROCESSED_SUCCESSFULLY_FOR_WALLET_INFO.getMessage(), event.getWalletId(), event.getRequestTransactionId()));
     }
 
 }
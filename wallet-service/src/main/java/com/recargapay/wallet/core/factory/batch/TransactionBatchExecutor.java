@@ -0,0 +1,247 @@
+package com.recargapay.wallet.core.factory.batch;
+
+import com.recargapay.wallet.core.factory.context.Transaction;
+import com.recargapay.wallet.core.factory.context.TransactionBatch;
+import com.recargapay.wallet.core.factory.context.TransactionFactory;
+import com.recargapay.wallet.database.entity.Wallet;
+import com.recargapay.wallet.handle.exception.InsufficientFundsException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static com.recargapay.wallet.database.DbProperties.CONNECTION_DATABASE_TIMEOUT_SECONDS;
+import static com.recargapay.wallet.handle.Message.BATCH_OVERDRAFT_ERROR;
+import static com.recargapay.wallet.handle.Message.BATCH_PROCESSED_INFO;
+import static com.recargapay.wallet.handle.Message.BATCH_TRANSACTION_REJECTED_ERROR;
+
+/**
+ * Applies a whole batch of consumed transactions in a single database transaction.
+ *
+ * <p>All wallets touched by the batch are locked with one {@code SELECT ... WHERE id IN (...) ORDER BY id
+ * FOR UPDATE}, so concurrent batches and single-record transactions over the same wallets wait for each
+ * other (always in id order) instead of validating against a stale balance. Every transaction is then
+ * validated in offset order against the projected balances, the accepted ledger rows are written with
+ * one batched insert, the net delta of each wallet is applied with one batched update and the balance
+ * update events are written to the outbox already settled, as the single-record path does. The batch is
+ * committed once and cache invalidation only happens after the commit.</p>
+ *
+ * <p>Redeliveries are detected against the ledger: the rows already written for the batch requests
+ * are read before staging, and the insert uses {@code ON CONFLICT DO NOTHING}, so only the balance
+ * updates of rows actually inserted are written to the outbox.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TransactionBatchExecutor {
+
+    private static final String APPLY_BALANCE_DELTA =
+            "UPDATE wallets SET current_balance = current_balance + $2, version = version + 1, last_balance_updated = NOW() " +
+            "WHERE id = $1 AND current_balance + $2 >= 0 " +
+            "RETURNING id";
+
+    private static final String INSERT_TRANSACTION =
+            "INSERT INTO transactions (request_transaction_id, wallet_id, destination_wallet_id, type, status, amount, timestamp) " +
+            "VALUES ($1, $2, $3, $4, $5, $6, $7) " +
+            "ON CONFLICT (request_transaction_id, wallet_id, type) DO NOTHING " +
+            "RETURNING request_transaction_id, wallet_id, type";
+
+    private final TransactionFactory factory;
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * Executes the batch, completing once it is committed (or failing after the rollback).
+     *
+     * @param transactions transactions in consumption order
+     * @return Mono completing after the commit and the cache invalidation
+     */
+    public Mono<Void> execute(List<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return Mono.empty();
+        }
+        Set<String> walletIds = transactions.stream()
+                .flatMap(transaction -> transaction.walletIds().stream())
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        Set<String> requestTransactionIds = transactions.stream()
+                .map(Transaction::requestTransactionId)
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        AtomicInteger roundTrips = new AtomicInteger();
+
+        return factory.databaseClient().inConnection(conn ->
+                Mono.from(conn.beginTransaction())
+                        .doOnSuccess(begin -> roundTrips.incrementAndGet())
+                        .thenMany(Flux.defer(() -> lockWallets(conn, walletIds)))
+                        .collectList()
+                        .doOnNext(wallets -> roundTrips.incrementAndGet())
+                        .zipWhen(wallets -> findAppliedEntries(conn, requestTransactionIds)
+                                .doOnSuccess(applied -> roundTrips.incrementAndGet()))
+                        .map(loaded -> stage(transactions, loaded.getT1(), loaded.getT2()))
+                        .flatMap(batch -> insertEntries(conn, batch)
+                                .doOnSuccess(inserted -> roundTrips.incrementAndGet())
+                                .flatMap(inserted -> applyBalanceDeltas(conn, batch.balanceDeltasOf(inserted))
+                                        .doOnSuccess(applied -> roundTrips.incrementAndGet())
+                                        .then(factory.balanceUpdateProducer().enqueueBalanceUpdates(conn, batch.balanceUpdatesOf(inserted))))
+                                .doOnSuccess(enqueued -> roundTrips.incrementAndGet())
+                                .then(commit(conn))
+                                .doOnSuccess(committed -> roundTrips.incrementAndGet())
+                                .thenReturn(batch))
+                        .timeout(Duration.ofSeconds(CONNECTION_DATABASE_TIMEOUT_SECONDS))
+                        .onErrorResume(error -> Mono.from(conn.rollbackTransaction()).then(Mono.error(error)))
+        )
+        .flatMap(this::clearCache)
+        .doOnSuccess(done -> {
+            meterRegistry.counter("wallet_batch_events").increment(transactions.size());
+            meterRegistry.summary("wallet_batch_size").record(transactions.size());
+            meterRegistry.summary("wallet_batch_round_trips_per_event").record((double) roundTrips.get() / transactions.size());
+            log.info(BATCH_PROCESSED_INFO.getMessage(), transactions.size(), walletIds.size(), roundTrips.get());
+        });
+    }
+
+    private Flux<Wallet> lockWallets(Connection conn, Set<String> walletIds) {
+        Statement statement = conn.createStatement(
+                "SELECT id, user_id, request_transaction_id, current_balance, last_balance_updated, status, version " +
+                "FROM wallets WHERE id IN (" + placeholders(walletIds.size()) + ") ORDER BY id FOR UPDATE");
+        int index = 0;
+        for (String walletId : walletIds) {
+            statement.bind(index++, walletId);
+        }
+        return Flux.from(statement.execute())
+                .flatMap(result -> result.map((row, metadata) -> new Wallet(
+                        row.get("id", String.class),
+                        row.get("user_id", String.class),
+                        row.get("request_transaction_id", String.class),
+                        row.get("current_balance", BigDecimal.class),
+                        row.get("last_balance_updated", LocalDateTime.class),
+                        row.get("status", String.class),
+                        row.get("version", Long.class))));
+    }
+
+    /**
+     * Reads the ledger rows already written for the batch requests, as {@link TransactionBatch#entryKey}s.
+     */
+    private Mono<Set<String>> findAppliedEntries(Connection conn, Set<String> requestTransactionIds) {
+        Statement statement = conn.createStatement(
+                "SELECT request_transaction_id, wallet_id, type FROM transactions " +
+                "WHERE request_transaction_id IN (" + placeholders(requestTransactionIds.size()) + ")");
+        int index = 0;
+        for (String requestTransactionId : requestTransactionIds) {
+            statement.bind(index++, requestTransactionId);
+        }
+        return Flux.from(statement.execute())
+                .flatMap(this::entryKeys)
+                .collect(Collectors.toSet());
+    }
+
+    private TransactionBatch stage(List<Transaction> transactions, List<Wallet> wallets, Set<String> appliedEntries) {
+        TransactionBatch batch = new TransactionBatch(wallets, appliedEntries);
+        transactions.forEach(transaction -> {
+            try {
+                transaction.stage(batch);
+            } catch (RuntimeException e) {
+                log.error(BATCH_TRANSACTION_REJECTED_ERROR.getMessage(), transaction.walletIds(), e.getMessage());
+            }
+        });
+        return batch;
+    }
+
+    /**
+     * Inserts the staged rows, emitting the {@link TransactionBatch#entryKey}s of the rows actually inserted.
+     */
+    private Mono<Set<String>> insertEntries(Connection conn, TransactionBatch batch) {
+        if (batch.entries().isEmpty()) {
+            return Mono.just(Set.of());
+        }
+        Statement statement = conn.createStatement(INSERT_TRANSACTION);
+        List<com.recargapay.wallet.database.entity.Transaction> entries = new ArrayList<>(batch.entries());
+        for (int position = 0; position < entries.size(); position++) {
+            var entry = entries.get(position);
+            statement.bind(0, entry.getRequestTransactionId())
+                    .bind(1, entry.getWalletId())
+                    .bind(2, entry.getDestinationWalletId())
+                    .bind(3, entry.getType())
+                    .bind(4, entry.getStatus())
+                    .bind(5, entry.getAmount())
+                    .bind(6, entry.getTimestamp());
+            if (position < entries.size() - 1) {
+                statement.add();
+            }
+        }
+        return Flux.from(statement.execute())
+                .flatMap(this::entryKeys)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Adds the net delta of each wallet to its balance with one batched update. The update refuses to
+     * take a balance below zero, which can only happen when a row the projection counted on was not
+     * inserted (written concurrently by another delivery); the whole batch is then rolled back.
+     */
+    private Mono<Void> applyBalanceDeltas(Connection conn, Map<String, BigDecimal> deltas) {
+        if (deltas.isEmpty()) {
+            return Mono.empty();
+        }
+        Statement statement = conn.createStatement(APPLY_BALANCE_DELTA);
+        int position = 0;
+        for (Map.Entry<String, BigDecimal> delta : deltas.entrySet()) {
+            statement.bind(0, delta.getKey()).bind(1, delta.getValue());
+            if (++position < deltas.size()) {
+                statement.add();
+            }
+        }
+        return Flux.from(statement.execute())
+                .flatMap(result -> result.map((row, metadata) -> row.get("id", String.class)))
+                .collect(Collectors.toSet())
+                .flatMap(updated -> {
+                    if (updated.size() == deltas.size()) {
+                        return Mono.<Void>empty();
+                    }
+                    Set<String> rejected = new TreeSet<>(deltas.keySet());
+                    rejected.removeAll(updated);
+                    return Mono.error(new InsufficientFundsException(String.format(BATCH_OVERDRAFT_ERROR.getMessage(), rejected)));
+                });
+    }
+
+    private Flux<String> entryKeys(Result result) {
+        return Flux.from(result.map((row, metadata) -> TransactionBatch.entryKey(
+                row.get("request_transaction_id", String.class),
+                row.get("wallet_id", String.class),
+                row.get("type", String.class))));
+    }
+
+    private static String placeholders(int count) {
+        return IntStream.rangeClosed(1, count)
+                .mapToObj(index -> "$" + index)
+                .collect(Collectors.joining(", "));
+    }
+
+    private Mono<Void> commit(Connection conn) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return Mono.from(conn.commitTransaction())
+                .doFinally(signalType -> sample.stop(meterRegistry.timer("wallet_batch_commit_time")));
+    }
+
+    private Mono<Void> clearCache(TransactionBatch batch) {
+        return Flux.fromIterable(batch.touchedWallets())
+                .flatMap(walletId -> factory.cache().clearBalanceCache(walletId))
+                .then();
+    }
+}
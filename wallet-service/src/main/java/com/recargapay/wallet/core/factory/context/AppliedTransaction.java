@@ -0,0 +1,25 @@
+package com.recargapay.wallet.core.factory.context;
+
+import com.recargapay.wallet.database.entity.Wallet;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+/**
+ * Result of a transaction along with the wallets it updated, as returned by the database.
+ * Emitted from inside the database transaction so the new balances can be written to the
+ * cache only after the commit.
+ */
+public record AppliedTransaction<T>(T result, List<Wallet> wallets) {
+
+    public static <T> AppliedTransaction<T> of(T result, Wallet... wallets) {
+        return new AppliedTransaction<>(result, List.of(wallets));
+    }
+
+    /**
+     * Writes the balances of the updated wallets to the cache and emits the result.
+     */
+    public Mono<T> writeThrough(TransactionFactory factory) {
+        return factory.cache().writeBalances(wallets).thenReturn(result);
+    }
+}
@@ -1,6 +1,39 @@
 package com.recargapay.wallet.core.factory.context;
 
+import com.recargapay.wallet.rest.dto.TransactionDTO;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
 public interface Transaction {
 
-    void execute(TransactionFactory factory);
+    /**
+     * Builds the reactive execution of the transaction; nothing runs until it is subscribed.
+     * The returned Mono emits the resulting transaction only after the database commit, and
+     * fails after the rollback, so callers can safely acknowledge the source event on completion.
+     */
+    Mono<TransactionDTO> execute(TransactionFactory factory);
+
+    /**
+     * Validates the transaction against the batch projection and stages its ledger rows,
+     * throwing when it must be rejected. Used by the batch consumption mode, where the projection
+     * starts from wallet rows locked for the whole batch transaction, so funds checks made here
+     * hold until the staged deltas are applied and committed.
+     */
+    void stage(TransactionBatch batch);
+
+    /**
+     * Wallets touched by the transaction, used to order executions per wallet.
+     */
+    List<String> walletIds();
+
+    /**
+     * Request the ledger rows of the transaction belong to, used to detect redeliveries.
+     */
+    String requestTransactionId();
+
+    /**
+     * Type published in the record header, used by the consumer to pick the reader of the payload.
+     */
+    String type();
 }
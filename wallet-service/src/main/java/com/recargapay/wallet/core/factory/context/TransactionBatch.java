@@ -0,0 +1,126 @@
+package com.recargapay.wallet.core.factory.context;
+
+import com.recargapay.wallet.database.entity.Wallet;
+import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Unit of work shared by the transactions of one consumed batch.
+ *
+ * <p>It holds the wallets locked once ({@code FOR UPDATE}) for the whole batch and projects their
+ * balances as the transactions are staged, so a withdraw staged after a deposit of the same batch
+ * sees the deposited amount. Since nobody else can change the locked balances before the commit,
+ * the funds checks made against the projection are final: staged ledger rows and the net balance
+ * delta of each wallet are persisted together in a single database commit.</p>
+ *
+ * <p>Ledger rows already written by an earlier delivery (same request, wallet and type), or staged
+ * twice in the same batch, are ignored, so a redelivered transaction changes no balance.</p>
+ */
+public class TransactionBatch {
+
+    private final Map<String, Wallet> wallets = new HashMap<>();
+    private final Map<String, BigDecimal> projectedBalances = new HashMap<>();
+    private final List<com.recargapay.wallet.database.entity.Transaction> entries = new ArrayList<>();
+    private final List<BalanceUpdateEvent> balanceUpdates = new ArrayList<>();
+    private final Set<String> touchedWallets = new LinkedHashSet<>();
+    private final Set<String> recordedEntries;
+
+    public TransactionBatch(Collection<Wallet> wallets) {
+        this(wallets, Set.of());
+    }
+
+    /**
+     * @param wallets        wallets touched by the batch
+     * @param appliedEntries {@link #entryKey} of the ledger rows already persisted for the batch requests
+     */
+    public TransactionBatch(Collection<Wallet> wallets, Set<String> appliedEntries) {
+        this.recordedEntries = new HashSet<>(appliedEntries);
+        wallets.forEach(wallet -> {
+            this.wallets.put(wallet.getId(), wallet);
+            this.projectedBalances.put(wallet.getId(), wallet.getCurrentBalance());
+        });
+    }
+
+    public Optional<Wallet> wallet(String walletId) {
+        return Optional.ofNullable(wallets.get(walletId));
+    }
+
+    /**
+     * Balance of the wallet including the amounts staged so far in this batch. The wallets must be the
+     * rows locked by the batch transaction; an unlocked read would make debit checks against it racy.
+     */
+    public BigDecimal balanceOf(String walletId) {
+        return projectedBalances.getOrDefault(walletId, BigDecimal.ZERO);
+    }
+
+    /**
+     * Stages a ledger row together with the balance change it causes, unless the row was already applied.
+     */
+    public void record(com.recargapay.wallet.database.entity.Transaction entry, BalanceUpdateEvent balanceUpdate) {
+        if (!recordedEntries.add(entryKey(entry.getRequestTransactionId(), entry.getWalletId(), entry.getType()))) {
+            return;
+        }
+        entries.add(entry);
+        balanceUpdates.add(balanceUpdate);
+        touchedWallets.add(balanceUpdate.getWalletId());
+        projectedBalances.merge(balanceUpdate.getWalletId(), balanceUpdate.getAmount(), BigDecimal::add);
+    }
+
+    public List<com.recargapay.wallet.database.entity.Transaction> entries() {
+        return entries;
+    }
+
+    public List<BalanceUpdateEvent> balanceUpdates() {
+        return balanceUpdates;
+    }
+
+    /**
+     * Balance changes of the staged rows that were actually inserted.
+     *
+     * @param insertedEntries {@link #entryKey} of the inserted rows
+     */
+    public List<BalanceUpdateEvent> balanceUpdatesOf(Set<String> insertedEntries) {
+        List<BalanceUpdateEvent> inserted = new ArrayList<>(balanceUpdates.size());
+        for (int index = 0; index < entries.size(); index++) {
+            var entry = entries.get(index);
+            if (insertedEntries.contains(entryKey(entry.getRequestTransactionId(), entry.getWalletId(), entry.getType()))) {
+                inserted.add(balanceUpdates.get(index));
+            }
+        }
+        return inserted;
+    }
+
+    /**
+     * Net balance change per wallet of the staged rows that were actually inserted, in wallet id order.
+     *
+     * @param insertedEntries {@link #entryKey} of the inserted rows
+     */
+    public Map<String, BigDecimal> balanceDeltasOf(Set<String> insertedEntries) {
+        Map<String, BigDecimal> deltas = new TreeMap<>();
+        balanceUpdatesOf(insertedEntries).forEach(update ->
+                deltas.merge(update.getWalletId(), update.getAmount(), BigDecimal::add));
+        return deltas;
+    }
+
+    public Set<String> touchedWallets() {
+        return touchedWallets;
+    }
+
+    /**
+     * Identity of a ledger row, matching the unique index on (request_transaction_id, wallet_id, type).
+     */
+    public static String entryKey(String requestTransactionId, String walletId, String type) {
+        return requestTransactionId + '|' + walletId + '|' + type;
+    }
+}
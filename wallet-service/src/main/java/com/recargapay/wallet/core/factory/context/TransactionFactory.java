@@ -5,10 +5,13 @@ import com.recargapay.wallet.core.service.TransferService;
 import com.recargapay.wallet.database.repository.TransactionReactiveRepository;
 import com.recargapay.wallet.database.repository.WalletReactiveRepository;
 import com.recargapay.wallet.event.balance.BalanceUpdateProducer;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
 
 @Component
 @RequiredArgsConstructor
@@ -21,6 +24,11 @@ public class TransactionFactory {
     private final DatabaseClient databaseClient;
     private final BalanceUpdateProducer balanceUpdateProducer;
     private final CacheService cache;
+    private final TransactionalOperator transactionalOperator;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${wallet.transactions.transfer.pessimistic-locking:false}")
+    private boolean pessimisticTransfers;
 
     public TransferService transferService() {return this.transferService; }
     public WalletReactiveRepository walletRepository(){
@@ -38,4 +46,18 @@ public class TransactionFactory {
     public CacheService cache(){
         return this.cache;
     }
+    public TransactionalOperator transactionalOperator(){
+        return this.transactionalOperator;
+    }
+    public MeterRegistry meterRegistry(){
+        return this.meterRegistry;
+    }
+
+    /**
+     * Whether transfers lock both wallets with {@code SELECT ... FOR UPDATE} before moving the funds,
+     * instead of relying on the conditional debit.
+     */
+    public boolean pessimisticTransfers(){
+        return this.pessimisticTransfers;
+    }
 }
@@ -0,0 +1,167 @@
+package com.recargapay.wallet.core.service;
+
+import com.recargapay.wallet.database.entity.CheckpointedBalance;
+import com.recargapay.wallet.database.entity.CheckpointedWalletBalance;
+import com.recargapay.wallet.database.repository.BalanceCheckpointReactiveRepository;
+import com.recargapay.wallet.database.repository.TransactionReactiveRepository;
+import com.recargapay.wallet.database.repository.WalletReactiveRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+import static com.recargapay.wallet.handle.Message.BALANCE_CHECKPOINTS_WRITTEN_INFO;
+import static com.recargapay.wallet.handle.Message.BALANCE_CHECKPOINT_FAILED_ERROR;
+
+/**
+ * Balance checkpoints, so a balance read from the database only scans the ledger rows written since the
+ * latest checkpoint of the wallet instead of its whole history.
+ *
+ * <p>Every {@code wallet.balance.checkpoints.interval-ms} the job walks the wallets in batches of
+ * {@code wallet.balance.checkpoints.batch-size} and rolls the checkpoint of those with at least
+ * {@code wallet.balance.checkpoints.min-delta-rows} new rows forward. Checkpoints are taken
+ * {@code wallet.balance.checkpoints.safety-lag-ms} in the past: ledger rows are stamped before their
+ * transaction commits, so the lag has to exceed the longest transaction or a late commit would fall
+ * behind a checkpoint that did not include it.</p>
+ *
+ * <p>After rolling a batch forward the job prunes its older checkpoints: per wallet it keeps the latest
+ * checkpoint at or before {@code wallet.balance.checkpoints.retention-ms} ago and every later one, so the
+ * table stays bounded while point-in-time reads inside the retention still start from a nearby checkpoint.
+ * Deletions are counted in {@code wallet_balance_checkpoints_pruned}.</p>
+ *
+ * <p>The same checkpoints answer point-in-time reads ({@link #balanceAsOf}).</p>
+ *
+ * <p>Reads export the checkpoint age ({@code wallet_balance_checkpoint_age}) and the rows summed on top
+ * of it ({@code wallet_balance_delta_rows}); wallets without a checkpoint count in
+ * {@code wallet_balance_checkpoint_missing}.</p>
+ */
+@Slf4j
+@Service
+public class BalanceCheckpointService {
+
+    private final WalletReactiveRepository walletRepository;
+    private final TransactionReactiveRepository transactionRepository;
+    private final BalanceCheckpointReactiveRepository checkpointRepository;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final int batchSize;
+    private final long minDeltaRows;
+    private final Duration safetyLag;
+    private final Duration retention;
+    private final Timer checkpointAge;
+    private final DistributionSummary deltaRows;
+    private final Counter checkpointMissing;
+
+    public BalanceCheckpointService(
+            WalletReactiveRepository walletRepository,
+            TransactionReactiveRepository transactionRepository,
+            BalanceCheckpointReactiveRepository checkpointRepository,
+            MeterRegistry meterRegistry,
+            @Value("${wallet.balance.checkpoints.enabled:true}") boolean enabled,
+            @Value("${wallet.balance.checkpoints.batch-size:500}") int batchSize,
+            @Value("${wallet.balance.checkpoints.min-delta-rows:50}") long minDeltaRows,
+            @Value("${wallet.balance.checkpoints.safety-lag-ms:300000}") long safetyLagMs,
+            @Value("${wallet.balance.checkpoints.retention-ms:604800000}") long retentionMs) {
+
+        this.walletRepository = walletRepository;
+        this.transactionRepository = transactionRepository;
+        this.checkpointRepository = checkpointRepository;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.batchSize = batchSize;
+        this.minDeltaRows = minDeltaRows;
+        this.safetyLag = Duration.ofMillis(safetyLagMs);
+        this.retention = Duration.ofMillis(retentionMs);
+        this.checkpointAge = meterRegistry.timer("wallet_balance_checkpoint_age");
+        this.deltaRows = meterRegistry.summary("wallet_balance_delta_rows");
+        this.checkpointMissing = meterRegistry.counter("wallet_balance_checkpoint_missing");
+    }
+
+    /**
+     * Current balance of the wallet: its latest checkpoint plus the ledger rows after it.
+     */
+    public Mono<BigDecimal> currentBalance(String walletId) {
+        return transactionRepository.findCheckpointedBalance(walletId)
+                .doOnNext(this::record)
+                .map(CheckpointedBalance::getBalance);
+    }
+
+    /**
+     * Current balances of several wallets, computed like {@link #currentBalance}, each with the version of its
+     * wallet. Wallets that do not exist are left out.
+     */
+    public Flux<CheckpointedWalletBalance> currentBalances(Collection<String> walletIds) {
+        return transactionRepository.findCheckpointedBalances(walletIds)
+                .doOnNext(this::record);
+    }
+
+    /**
+     * Balance of the wallet at {@code asOf}: the latest checkpoint at or before it plus the ledger rows up to it.
+     */
+    public Mono<BigDecimal> balanceAsOf(String walletId, LocalDateTime asOf) {
+        return transactionRepository.findCheckpointedBalanceAsOf(walletId, asOf)
+                .doOnNext(this::record)
+                .map(CheckpointedBalance::getBalance);
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.balance.checkpoints.interval-ms:60000}")
+    public void checkpoint() {
+        if (!enabled) {
+            return;
+        }
+        Timer.Sample sample = Timer.start(meterRegistry);
+        LocalDateTime asOf = LocalDateTime.now().minus(safetyLag);
+        try {
+            Long written = checkpointAll(asOf).block();
+            sample.stop(meterRegistry.timer("wallet_balance_checkpoint_run_time"));
+            log.info(BALANCE_CHECKPOINTS_WRITTEN_INFO.getMessage(), asOf, written);
+        } catch (RuntimeException e) {
+            meterRegistry.counter("wallet_balance_checkpoint_failures").increment();
+            log.error(BALANCE_CHECKPOINT_FAILED_ERROR.getMessage(), e.getMessage());
+        }
+    }
+
+    /**
+     * Rolls the checkpoints forward to {@code asOf}, one batch of wallets at a time, pruning the checkpoints
+     * of each batch older than the retention.
+     *
+     * @return number of checkpoints written
+     */
+    public Mono<Long> checkpointAll(LocalDateTime asOf) {
+        return walletRepository.findIdsAfter("", batchSize)
+                .collectList()
+                .expand(ids -> ids.size() < batchSize
+                        ? Mono.empty()
+                        : walletRepository.findIdsAfter(ids.get(ids.size() - 1), batchSize).collectList())
+                .filter(ids -> !ids.isEmpty())
+                .concatMap(ids -> checkpointRepository.rollForward(ids, asOf, minDeltaRows)
+                        .flatMap(written -> prune(ids, asOf.minus(retention)).thenReturn(written)))
+                .reduce(0L, Long::sum)
+                .doOnNext(written -> meterRegistry.counter("wallet_balance_checkpoints_written").increment(written));
+    }
+
+    private Mono<Long> prune(Collection<String> walletIds, LocalDateTime cutoff) {
+        return checkpointRepository.prune(walletIds, cutoff)
+                .doOnNext(pruned -> meterRegistry.counter("wallet_balance_checkpoints_pruned").increment(pruned));
+    }
+
+    private void record(CheckpointedBalance balance) {
+        deltaRows.record(balance.getDeltaRows() == null ? 0 : balance.getDeltaRows());
+        if (balance.getCheckpointAsOf() == null) {
+            checkpointMissing.increment();
+        } else {
+            checkpointAge.record(Duration.between(balance.getCheckpointAsOf(), LocalDateTime.now()));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.recargapay.wallet.core.service;
+
+import com.recargapay.wallet.converter.TransactionCursorConverter;
+import com.recargapay.wallet.converter.TransactionsHistoricalConverter;
+import com.recargapay.wallet.database.entity.Transaction;
+import com.recargapay.wallet.database.repository.TransactionReactiveRepository;
+import com.recargapay.wallet.rest.dto.TransactionsHistoricalDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Transaction history read with (timestamp, id) keyset cursors, so neither a page nor a stream holds more than
+ * a bounded number of rows however long the requested period is.
+ *
+ * <p>Pages default to {@code wallet.history.page-size.default} rows and are capped at
+ * {@code wallet.history.page-size.max}. The stream walks the same cursors in batches of
+ * {@code wallet.history.stream-batch-size}, reading the next batch only once the previous one was consumed.</p>
+ */
+@Service
+public class TransactionHistoryService {
+
+    private final TransactionReactiveRepository transactionRepository;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int streamBatchSize;
+
+    public TransactionHistoryService(
+            TransactionReactiveRepository transactionRepository,
+            @Value("${wallet.history.page-size.default:100}") int defaultPageSize,
+            @Value("${wallet.history.page-size.max:1000}") int maxPageSize,
+            @Value("${wallet.history.stream-batch-size:500}") int streamBatchSize) {
+
+        this.transactionRepository = transactionRepository;
+        this.defaultPageSize = defaultPageSize;
+        this.maxPageSize = maxPageSize;
+        this.streamBatchSize = streamBatchSize;
+    }
+
+    /**
+     * Reads one page of the transactions of the wallet since {@code startDate}.
+     *
+     * @param cursor cursor returned with the previous page, or null for the first page
+     * @param limit  requested page size, or null for the default; capped at the configured maximum
+     * @return Mono with the page and the cursor of the next one, absent when this is the last page
+     */
+    public Mono<TransactionsHistoricalDTO> page(String requestTransactionId, String walletId, LocalDateTime startDate,
+                                                String cursor, Integer limit) {
+        int size = pageSize(limit);
+        Flux<Transaction> rows = cursor == null
+                ? rowsAfter(walletId, startDate, null, size + 1)
+                : Mono.fromCallable(() -> TransactionCursorConverter.decode(cursor))
+                        .flatMapMany(after -> rowsAfter(walletId, startDate, after, size + 1));
+        return rows.collectList()
+                .map(fetched -> {
+                    boolean hasMore = fetched.size() > size;
+                    List<Transaction> page = hasMore ? fetched.subList(0, size) : fetched;
+                    String nextCursor = hasMore ? TransactionCursorConverter.encode(page.get(size - 1)) : null;
+                    return TransactionsHistoricalConverter.entityToListDto(requestTransactionId, LocalDateTime.now(), page, nextCursor);
+                });
+    }
+
+    /**
+     * Streams every transaction of the wallet since {@code startDate} in (timestamp, id) order.
+     */
+    public Flux<Transaction> stream(String walletId, LocalDateTime startDate) {
+        return rowsAfter(walletId, startDate, null, streamBatchSize)
+                .collectList()
+                .expand(batch -> batch.size() < streamBatchSize
+                        ? Mono.empty()
+                        : rowsAfter(walletId, startDate, cursorOf(batch.get(batch.size() - 1)), streamBatchSize).collectList())
+                .concatMapIterable(batch -> batch, 1);
+    }
+
+    private Flux<Transaction> rowsAfter(String walletId, LocalDateTime startDate, TransactionCursorConverter.Cursor after, int limit) {
+        return after == null
+                ? transactionRepository.findTransactionsPage(walletId, startDate, limit)
+                : transactionRepository.findTransactionsPageAfter(walletId, startDate, after.timestamp(), after.id(), limit);
+    }
+
+    private int pageSize(Integer limit) {
+        if (limit == null) {
+            return defaultPageSize;
+        }
+        return Math.max(1, Math.min(limit, maxPageSize));
+    }
+
+    private static TransactionCursorConverter.Cursor cursorOf(Transaction transaction) {
+        return new TransactionCursorConverter.Cursor(transaction.getTimestamp(), transaction.getId());
+    }
+}
@@ -1,6 +1,7 @@
 package com.recargapay.wallet.core.service;
 
 import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.cache.WalletMetadataCache;
 import com.recargapay.wallet.converter.TransactionConverter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.enums.TransactionType;
@@ -24,10 +25,8 @@ import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.Duration;
-import java.util.ConcurrentModificationException;
 
 import static com.recargapay.wallet.database.DbProperties.CONNECTION_DATABASE_TIMEOUT_SECONDS;
-import static com.recargapay.wallet.handle.Message.CONCURRENT_MODIFICATION_DETECTED_TRY_AGAIN;
 import static com.recargapay.wallet.handle.Message.INSUFFICIENT_FUNDS;
 import static com.recargapay.wallet.handle.Message.TRANSACTION_ENQUEUED_INFO;
 import static com.recargapay.wallet.handle.Message.WALLET_DESTINATION_IS_NOT_ACTIVE;
@@ -45,6 +44,7 @@ public class TransferService {
     public final TransactionProducer transactionProducer;
     public final CacheService cache;
     public final MeterRegistry meterRegistry;
+    public final WalletMetadataCache walletMetadataCache;
 
     /**
      * Verifica se a transação já foi processada anteriormente.
@@ -54,17 +54,17 @@ public class TransferService {
     }
 
     /**
-     * Busca e valida a carteira de origem.
+     * Busca e valida a carteira de origem, a partir do cache quando disponível.
      */
     public Mono<Wallet> getAndValidateSourceWallet(String sourceWalletId, BigDecimal amount) {
-        return walletRepository.findById(sourceWalletId)
+        return walletMetadataCache.validate(sourceWalletId, wallet -> validateSourceWallet(wallet, amount))
                 .timeout(Duration.ofSeconds(CONNECTION_DATABASE_TIMEOUT_SECONDS))
-                .switchIfEmpty(Mono.error(new WalletNotFoundException(WALLET_NOT_FOUND1.getMessage())))
-                .flatMap(wallet -> validateSourceWallet(wallet, amount));
+                .switchIfEmpty(Mono.error(new WalletNotFoundException(WALLET_NOT_FOUND1.getMessage())));
     }
 
     /**
-     * Valida se a carteira de origem está ativa e tem saldo suficiente.
+     * Valida se a carteira de origem está ativa e tem saldo suficiente. O débito condicional do consumidor
+     * continua sendo a validação definitiva.
      */
     public Mono<Wallet> validateSourceWallet(Wallet wallet, BigDecimal amount) {
         if (!wallet.getStatus().equals(WalletStatusType.ACTIVE.getType())) {
@@ -73,17 +73,15 @@ public class TransferService {
         if (wallet.getCurrentBalance().compareTo(amount.abs()) < 0) {
             return Mono.error(new InsufficientFundsException(INSUFFICIENT_FUNDS));
         }
-        return walletRepository.findByIdAndVersion(wallet.getId(), wallet.getVersion())
-                .switchIfEmpty(Mono.error(new ConcurrentModificationException(CONCURRENT_MODIFICATION_DETECTED_TRY_AGAIN.getMessage())));
+        return Mono.just(wallet);
     }
 
     /**
-     * Processa e valida a carteira de destino.
+     * Processa e valida a carteira de destino, a partir do cache quando disponível.
      */
     public Mono<Wallet> processDestinationWallet(String destinationWalletId) {
-        return walletRepository.findById(destinationWalletId)
-                .switchIfEmpty(Mono.error(new WalletNotFoundException(WALLET_DESTINATION_NOT_FOUND.getMessage())))
-                .flatMap(this::validateDestinationWallet);
+        return walletMetadataCache.validate(destinationWalletId, this::validateDestinationWallet)
+                .switchIfEmpty(Mono.error(new WalletNotFoundException(WALLET_DESTINATION_NOT_FOUND.getMessage())));
     }
 
     /**
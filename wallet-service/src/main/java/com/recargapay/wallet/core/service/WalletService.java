@@ -8,8 +8,11 @@ import com.recargapay.wallet.rest.dto.TransactionsHistoricalDTO;
 import com.recargapay.wallet.rest.dto.TransferDTO;
 import com.recargapay.wallet.rest.dto.WalletDTO;
 import com.recargapay.wallet.rest.dto.WithdrawDTO;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.time.ZonedDateTime;
 
 /**
@@ -31,12 +34,48 @@ public interface WalletService {
     Mono<BalanceDTO> getBalance(String requestTransactionId, String walletId);
 
     /**
-     * Retrieves the historical balance of a wallet at a given date.
+     * Retrieves the current balance of several wallets at once.
+     * @param walletIds The IDs of the wallets; duplicates are answered once.
+     * @return A Mono containing the balances in request order; wallets that do not exist are left out.
+     */
+    Mono<List<BalanceDTO>> getBalances(String requestTransactionId, List<String> walletIds);
+
+    /**
+     * Retrieves the balance of a wallet at a given instant.
+     * @param walletId The ID of the wallet.
+     * @param asOf The instant for which the balance is requested.
+     * @return A Mono containing the balance at that instant.
+     */
+    Mono<BalanceDTO> getBalanceAsOf(String requestTransactionId, String walletId, LocalDateTime asOf);
+
+    /**
+     * Retrieves the first page of the transactions of a wallet in the last days.
      * @param walletId The ID of the wallet.
-     * @param date The date for which the balance is requested.
-     * @return A Mono containing the historical balance.
+     * @param daysBefore How many days back the transactions are listed.
+     * @return A Mono containing the first page of the transactions of the period.
      */
-    Mono<TransactionsHistoricalDTO> getHistoricalTransactions(String requestTransactionId, String walletId, long daysBefore);
+    default Mono<TransactionsHistoricalDTO> getHistoricalTransactions(String requestTransactionId, String walletId, long daysBefore) {
+        return getHistoricalTransactions(requestTransactionId, walletId, daysBefore, null, null);
+    }
+
+    /**
+     * Retrieves a page of the transactions of a wallet in the last days, in (timestamp, id) order.
+     * @param walletId The ID of the wallet.
+     * @param daysBefore How many days back the transactions are listed.
+     * @param cursor The cursor returned with the previous page, or null for the first page.
+     * @param limit The page size, or null for the configured default.
+     * @return A Mono containing the page and the cursor of the next one.
+     */
+    Mono<TransactionsHistoricalDTO> getHistoricalTransactions(String requestTransactionId, String walletId, long daysBefore,
+                                                              String cursor, Integer limit);
+
+    /**
+     * Streams every transaction of a wallet in the last days, in (timestamp, id) order.
+     * @param walletId The ID of the wallet.
+     * @param daysBefore How many days back the transactions are listed.
+     * @return A Flux emitting the transactions as they are read.
+     */
+    Flux<TransactionsHistoricalDTO.HistoricalReportDTO> streamHistoricalTransactions(String walletId, long daysBefore);
 
     /**
      * Deposits funds into a wallet.
@@ -44,7 +83,18 @@ public interface WalletService {
      * @param request The deposit details.
      * @return A Mono containing the transaction details.
      */
-    Mono<TransactionDTO> deposit(String walletId, DepositDTO request);
+    default Mono<TransactionDTO> deposit(String walletId, DepositDTO request) {
+        return deposit(walletId, request, null);
+    }
+
+    /**
+     * Deposits funds into a wallet, either enqueued or executed inline.
+     * @param walletId The ID of the wallet.
+     * @param request The deposit details.
+     * @param executionMode Requested execution mode (ASYNC or INLINE), or null for the configured default.
+     * @return A Mono containing the transaction details, DONE with the resulting balance when executed inline.
+     */
+    Mono<TransactionDTO> deposit(String walletId, DepositDTO request, String executionMode);
 
     /**
      * Withdraws funds from a wallet.
@@ -52,7 +102,18 @@ public interface WalletService {
      * @param request The withdrawal details.
      * @return A Mono containing the transaction details.
      */
-    Mono<TransactionDTO> withdraw(String walletId, WithdrawDTO request);
+    default Mono<TransactionDTO> withdraw(String walletId, WithdrawDTO request) {
+        return withdraw(walletId, request, null);
+    }
+
+    /**
+     * Withdraws funds from a wallet, either enqueued or executed inline.
+     * @param walletId The ID of the wallet.
+     * @param request The withdrawal details.
+     * @param executionMode Requested execution mode (ASYNC or INLINE), or null for the configured default.
+     * @return A Mono containing the transaction details, DONE with the resulting balance when executed inline.
+     */
+    Mono<TransactionDTO> withdraw(String walletId, WithdrawDTO request, String executionMode);
 
     /**
      * Transfers funds from one wallet to another.
@@ -1,15 +1,26 @@
 package com.recargapay.wallet.core.service.impl;
 
+import com.recargapay.wallet.cache.BalanceLoadCoalescer;
 import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.cache.WalletExistenceFilter;
+import com.recargapay.wallet.cache.WalletMetadataCache;
 import com.recargapay.wallet.converter.BalanceConverter;
 import com.recargapay.wallet.converter.TransactionConverter;
 import com.recargapay.wallet.converter.TransactionsHistoricalConverter;
 import com.recargapay.wallet.converter.WalletConverter;
 import com.recargapay.wallet.core.enums.WalletStatusType;
+import com.recargapay.wallet.core.enums.RetryOperationType;
+import com.recargapay.wallet.core.executor.ExecutionModePolicy;
+import com.recargapay.wallet.core.executor.RetryPolicy;
+import com.recargapay.wallet.core.executor.WalletLaneExecutor;
+import com.recargapay.wallet.core.factory.context.Transaction;
+import com.recargapay.wallet.core.factory.context.TransactionFactory;
+import com.recargapay.wallet.core.service.BalanceCheckpointService;
+import com.recargapay.wallet.core.service.TransactionHistoryService;
 import com.recargapay.wallet.core.service.TransferService;
 import com.recargapay.wallet.core.service.WalletService;
+import com.recargapay.wallet.database.entity.CheckpointedWalletBalance;
 import com.recargapay.wallet.database.entity.Wallet;
-import com.recargapay.wallet.database.repository.TransactionReactiveRepository;
 import com.recargapay.wallet.database.repository.UserReactiveRepository;
 import com.recargapay.wallet.database.repository.WalletReactiveRepository;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
@@ -19,6 +30,7 @@ import com.recargapay.wallet.core.factory.DepositTransaction;
 import com.recargapay.wallet.core.factory.WithdrawTransaction;
 import com.recargapay.wallet.event.transaction.TransactionProducer;
 import com.recargapay.wallet.handle.exception.WalletException;
+import com.recargapay.wallet.handle.exception.WalletNotFoundException;
 import com.recargapay.wallet.handle.exception.WithdrawException;
 import com.recargapay.wallet.rest.dto.BalanceDTO;
 import com.recargapay.wallet.rest.dto.CreateWalletDTO;
@@ -33,31 +45,38 @@ import io.micrometer.core.instrument.Timer;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.r2dbc.core.DatabaseClient;
-import org.springframework.retry.annotation.Backoff;
-import org.springframework.retry.annotation.Retryable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 import static com.recargapay.wallet.cache.KeyProperties.BALANCE_KEY;
 import static com.recargapay.wallet.database.DbProperties.CONNECTION_DATABASE_TIMEOUT_SECONDS;
 import static com.recargapay.wallet.handle.Message.CACHE_HIT_FOR_WALLET;
 import static com.recargapay.wallet.handle.Message.CREATING_WALLET_FOR_USER_INFO;
+import static com.recargapay.wallet.handle.Message.FETCHING_BALANCE_AS_OF_FOR_WALLET_INFO;
 import static com.recargapay.wallet.handle.Message.FETCHING_BALANCE_FOR_WALLET_INFO;
+import static com.recargapay.wallet.handle.Message.FETCHING_BALANCES_FOR_WALLETS_INFO;
 import static com.recargapay.wallet.handle.Message.FETCHING_BALANCE_FROM_DATABASE_FOR_WALLET;
 import static com.recargapay.wallet.handle.Message.INSUFFICIENT_FUNDS;
 import static com.recargapay.wallet.handle.Message.PROCESSING_DEPOSIT_FOR_WALLET_AMOUNT_INFO;
 import static com.recargapay.wallet.handle.Message.PROCESSING_TRANSFER_FROM_WALLET_TO_WALLET_AMOUNT_INFO;
 import static com.recargapay.wallet.handle.Message.PROCESSING_WITHDRAW_FOR_WALLET_AMOUNT_INFO;
 import static com.recargapay.wallet.handle.Message.TRANSACTION_ENQUEUED_INFO;
+import static com.recargapay.wallet.handle.Message.TRANSACTION_EXECUTED_INLINE_INFO;
 import static com.recargapay.wallet.handle.Message.USER_NOT_REGISTERED;
 import static com.recargapay.wallet.handle.Message.WALLET_ALREADY_EXISTS;
 import static com.recargapay.wallet.handle.Message.WALLET_IS_NOT_ACTIVE;
+import static com.recargapay.wallet.handle.Message.WALLET_DESTINATION_NOT_FOUND;
 import static com.recargapay.wallet.handle.Message.WALLET_NOT_FOUND;
+import static com.recargapay.wallet.handle.Message.WALLET_NOT_FOUND1;
 
 @Slf4j
 @Service
@@ -65,13 +84,21 @@ import static com.recargapay.wallet.handle.Message.WALLET_NOT_FOUND;
 public class WalletServiceImpl implements WalletService {
 
     private final WalletReactiveRepository walletRepository;
-    private final TransactionReactiveRepository transactionRepository;
     private final UserReactiveRepository userRepository;
     private final DatabaseClient databaseClient;
     private final TransactionProducer transactionProducer;
     private final TransferService transferService;
     private final CacheService cache;
     private final MeterRegistry meterRegistry;
+    private final TransactionFactory factory;
+    private final ExecutionModePolicy executionModePolicy;
+    private final RetryPolicy retryPolicy;
+    private final WalletLaneExecutor laneExecutor;
+    private final BalanceLoadCoalescer balanceLoadCoalescer;
+    private final BalanceCheckpointService balanceCheckpointService;
+    private final TransactionHistoryService transactionHistoryService;
+    private final WalletExistenceFilter walletExistenceFilter;
+    private final WalletMetadataCache walletMetadataCache;
 
     @Override
     public Mono<WalletDTO> createWallet(CreateWalletDTO request) {
@@ -90,6 +117,7 @@ public class WalletServiceImpl implements WalletService {
                               .map(WalletConverter::entityToWalletDto))
                         )
                         .flatMap(walletDto -> Mono.from(conn.commitTransaction()).thenReturn(walletDto))
+                        .flatMap(walletDto -> walletExistenceFilter.register(walletDto.getId()).thenReturn(walletDto))
                         .onErrorResume(e -> Mono.from(conn.rollbackTransaction()).then(Mono.error(e)))
                         .doFinally(signalType -> sample.stop(meterRegistry.timer("create_wallet_time"))))));
     }
@@ -102,45 +130,118 @@ public class WalletServiceImpl implements WalletService {
         String cacheKey = BALANCE_KEY.getKey(walletId);
         Timer.Sample sample = Timer.start(meterRegistry);
 
-        return cache.get(cacheKey).cache()
+        return requireKnownWallet(walletId)
+        .then(cache.getBalance(walletId).cache())
         .flatMap(cachedBalance -> {
             log.info(CACHE_HIT_FOR_WALLET.getMessage(), walletId);
-            return Mono.just(BalanceConverter.paramToBalanceDTO(requestTransactionId, walletId, new BigDecimal(cachedBalance), dateTime));
+            balanceLoadCoalescer.refreshIfExpiring(walletId, cachedBalance, () -> loadBalance(walletId));
+            return Mono.just(BalanceConverter.paramToBalanceDTO(requestTransactionId, walletId, cachedBalance.balance(), dateTime));
         })
         .switchIfEmpty(fetchBalanceFromDatabase(requestTransactionId, walletId, cacheKey, dateTime))
         .doFinally(signalType -> sample.stop(meterRegistry.timer("wallet_balance_time")));
     }
 
     @Override
-    public Mono<TransactionsHistoricalDTO> getHistoricalTransactions(String requestTransactionId, String walletId, long daysBefore) {
+    public Mono<List<BalanceDTO>> getBalances(String requestTransactionId, List<String> walletIds) {
+        log.info(FETCHING_BALANCES_FOR_WALLETS_INFO.getMessage(), walletIds.size());
+        LocalDateTime dateTime = LocalDateTime.now();
+        List<String> ids = walletIds.stream().distinct().filter(id -> !walletExistenceFilter.isKnownMissing(id)).toList();
         Timer.Sample sample = Timer.start(meterRegistry);
 
-        return walletRepository.findById(walletId)
-                .switchIfEmpty(Mono.error(new WalletException(WALLET_NOT_FOUND)))
-                .flatMap(balance -> transactionRepository.findTransactionsFromDate(walletId, LocalDateTime.now().minusDays(daysBefore))
+        return cache.getBalances(ids)
+                .flatMap(cached -> {
+                    List<String> misses = ids.stream().filter(id -> !cached.containsKey(id)).toList();
+                    return fetchBalancesFromDatabase(misses)
+                            .doOnNext(loaded -> misses.stream()
+                                    .filter(id -> !loaded.containsKey(id))
+                                    .forEach(walletExistenceFilter::recordMissing))
+                            .map(loaded -> ids.stream()
+                                    .filter(id -> cached.containsKey(id) || loaded.containsKey(id))
+                                    .map(id -> BalanceConverter.paramToBalanceDTO(requestTransactionId, id,
+                                            cached.containsKey(id) ? cached.get(id).balance() : loaded.get(id), dateTime))
+                                    .toList());
+                })
+                .timeout(Duration.ofSeconds(CONNECTION_DATABASE_TIMEOUT_SECONDS))
+                .doFinally(signalType -> sample.stop(meterRegistry.timer("wallet_balances_time")));
+    }
+
+    /**
+     * Reads the balances that missed the cache with a single {@code IN} query and writes them back to the cache.
+     * They are computed from the checkpoints and the ledger, like {@link #loadBalance}, so both endpoints fill
+     * the cache the same way. Write-through still caches the row balance after a commit; the compare-and-set
+     * keeps whichever of the two reached the cache first for a version.
+     */
+    private Mono<Map<String, BigDecimal>> fetchBalancesFromDatabase(List<String> walletIds) {
+        if (walletIds.isEmpty()) {
+            return Mono.just(Map.of());
+        }
+        return balanceCheckpointService.currentBalances(walletIds)
                 .collectList()
-                .map(transactions ->
-                        TransactionsHistoricalConverter.entityToListDto(requestTransactionId, LocalDateTime.now(), transactions)
-                )
+                .flatMap(balances -> cache.fillBalances(balances)
+                        .onErrorResume(e -> Mono.empty())
+                        .thenReturn(balances.stream().collect(Collectors.toMap(
+                                CheckpointedWalletBalance::getWalletId, CheckpointedWalletBalance::getBalance))));
+    }
+
+    @Override
+    public Mono<BalanceDTO> getBalanceAsOf(String requestTransactionId, String walletId, LocalDateTime asOf) {
+        log.info(FETCHING_BALANCE_AS_OF_FOR_WALLET_INFO.getMessage(), walletId, asOf);
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        return requireKnownWallet(walletId)
+                .then(walletRepository.findById(walletId))
+                .switchIfEmpty(walletNotFound(walletId))
+                .flatMap(wallet -> balanceCheckpointService.balanceAsOf(walletId, asOf)
+                        .defaultIfEmpty(BigDecimal.ZERO)
+                        .map(balance -> BalanceConverter.paramToBalanceDTO(requestTransactionId, walletId, balance, asOf))
+                        .timeout(Duration.ofSeconds(CONNECTION_DATABASE_TIMEOUT_SECONDS)))
+                .doFinally(signalType -> sample.stop(meterRegistry.timer("wallet_balance_as_of_time")));
+    }
+
+    @Override
+    public Mono<TransactionsHistoricalDTO> getHistoricalTransactions(String requestTransactionId, String walletId, long daysBefore,
+                                                                     String cursor, Integer limit) {
+        Timer.Sample sample = Timer.start(meterRegistry);
+
+        return requireKnownWallet(walletId)
+                .then(walletRepository.findById(walletId))
+                .switchIfEmpty(walletNotFound(walletId))
+                .flatMap(wallet -> transactionHistoryService.page(requestTransactionId, walletId, LocalDateTime.now().minusDays(daysBefore), cursor, limit)
                 .timeout(Duration.ofSeconds(CONNECTION_DATABASE_TIMEOUT_SECONDS)))
                 .doFinally(signalType -> sample.stop(meterRegistry.timer("wallet_historical_balance_time")));
     }
 
+    @Override
+    public Flux<TransactionsHistoricalDTO.HistoricalReportDTO> streamHistoricalTransactions(String walletId, long daysBefore) {
+        return requireKnownWallet(walletId)
+                .then(walletRepository.findById(walletId))
+                .switchIfEmpty(walletNotFound(walletId))
+                .flatMapMany(wallet -> transactionHistoryService.stream(walletId, LocalDateTime.now().minusDays(daysBefore)))
+                .map(TransactionsHistoricalConverter::entityToHistoricalDto);
+    }
+
     @Override
     @Transactional
-    @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 2000))
-    public Mono<TransactionDTO> deposit(String walletId, DepositDTO request) {
+    public Mono<TransactionDTO> deposit(String walletId, DepositDTO request, String executionMode) {
         log.info(PROCESSING_DEPOSIT_FOR_WALLET_AMOUNT_INFO.getMessage(), walletId, request.getAmount(), request.getRequestTransactionId());
         var amount = request.getAmount();
         var type = TransactionType.DEPOSIT;
         TransactionEvent event = TransactionConverter.paramToTransactionEvent(request.getRequestTransactionId(), walletId, amount, type);
         Timer.Sample sample = Timer.start(meterRegistry);
+        if (executionModePolicy.isInline(type, executionMode)) {
+            return requireKnownWallet(walletId)
+                    .then(cache.isDuplicateTransaction(request.getRequestTransactionId()))
+                    .then(Mono.defer(() -> executeInline(DepositTransaction.inline(event), request.getRequestTransactionId()))
+                            .transform(retryPolicy.retry(RetryOperationType.DEPOSIT)))
+                    .doFinally(signalType -> sample.stop(meterRegistry.timer("wallet_deposit_inline_time")));
+        }
         var metric = "wallet_deposit_time";
-        return cache.isDuplicateTransaction(request.getRequestTransactionId())
+        return requireKnownWallet(walletId)
+                .then(cache.isDuplicateTransaction(request.getRequestTransactionId()))
 
-                .then(walletRepository.findById(walletId)
-                        .switchIfEmpty(Mono.error(new WalletException(WALLET_NOT_FOUND)))
-                        .flatMap(this::depositPreValidation)
+                .then(Mono.defer(() -> walletMetadataCache.validate(walletId, this::depositPreValidation)
+                        .switchIfEmpty(walletNotFound(walletId)))
+                        .transform(retryPolicy.retry(RetryOperationType.DEPOSIT))
                 )
                 .then(Mono.defer(() -> {
                     transactionProducer.sendTransaction(DepositTransaction.of(event));
@@ -161,19 +262,26 @@ public class WalletServiceImpl implements WalletService {
 
     @Override
     @Transactional
-    @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 2000))
-    public Mono<TransactionDTO> withdraw(String walletId, WithdrawDTO request) {
+    public Mono<TransactionDTO> withdraw(String walletId, WithdrawDTO request, String executionMode) {
         log.info(PROCESSING_WITHDRAW_FOR_WALLET_AMOUNT_INFO.getMessage(), walletId, request.getAmount(), request.getRequestTransactionId());
         var amount = request.getAmount().multiply(BigDecimal.valueOf(-1L));
         var type = TransactionType.WITHDRAW;
         TransactionEvent event = TransactionConverter.paramToTransactionEvent(request.getRequestTransactionId(), walletId, amount, type);
         Timer.Sample sample = Timer.start(meterRegistry);
+        if (executionModePolicy.isInline(type, executionMode)) {
+            return requireKnownWallet(walletId)
+                    .then(cache.isDuplicateTransaction(request.getRequestTransactionId()))
+                    .then(Mono.defer(() -> executeInline(WithdrawTransaction.build(event), request.getRequestTransactionId()))
+                            .transform(retryPolicy.retry(RetryOperationType.WITHDRAW)))
+                    .doFinally(signalType -> sample.stop(meterRegistry.timer("wallet_withdraw_inline_time")));
+        }
         var metric = "wallet_withdraw_time";
-        return cache.isDuplicateTransaction(request.getRequestTransactionId())
-                .when(walletRepository.findById(walletId)
-                    .switchIfEmpty(Mono.error(new WalletException(WALLET_NOT_FOUND)))
-                    .flatMap(wallet -> withdrawPreValidation(amount, wallet))
-                )
+        return requireKnownWallet(walletId)
+                .then(cache.isDuplicateTransaction(request.getRequestTransactionId())
+                .when(Mono.defer(() -> walletMetadataCache.validate(walletId, wallet -> withdrawPreValidation(amount, wallet))
+                    .switchIfEmpty(walletNotFound(walletId)))
+                    .transform(retryPolicy.retry(RetryOperationType.WITHDRAW))
+                ))
                 .then(Mono.defer(() -> {
                     transactionProducer.sendTransaction(WithdrawTransaction.build(event));
                     log.info(TRANSACTION_ENQUEUED_INFO.getMessage(), event);
@@ -185,20 +293,33 @@ public class WalletServiceImpl implements WalletService {
 
     @Override
     @Transactional
-    @Retryable(maxAttempts = 3, backoff = @Backoff(delay = 2000))
     public Mono<TransactionDTO> transfer(String sourceWalletId, String destinationWalletId, TransferDTO request) {
 
         log.info(PROCESSING_TRANSFER_FROM_WALLET_TO_WALLET_AMOUNT_INFO.getMessage(),
                 sourceWalletId, destinationWalletId, request.getAmount());
         Timer.Sample sample = Timer.start(meterRegistry);
 
-        return transferService.validateDuplicateTransaction(request.getRequestTransactionId())
-                .then(Mono.defer(() -> transferService.getAndValidateSourceWallet(sourceWalletId, request.getAmount())))
-                .flatMap(sourceWallet -> transferService.processDestinationWallet(destinationWalletId))
+        return requireKnownWallet(sourceWalletId, new WalletNotFoundException(WALLET_NOT_FOUND1.getMessage()))
+                .then(requireKnownWallet(destinationWalletId, new WalletNotFoundException(WALLET_DESTINATION_NOT_FOUND.getMessage())))
+                .then(transferService.validateDuplicateTransaction(request.getRequestTransactionId()))
+                .then(Mono.defer(() -> transferService.getAndValidateSourceWallet(sourceWalletId, request.getAmount())
+                        .flatMap(sourceWallet -> transferService.processDestinationWallet(destinationWalletId)))
+                        .transform(retryPolicy.retry(RetryOperationType.TRANSFER)))
                 .flatMap(wallet -> transferService.enqueueTransaction(sourceWalletId, destinationWalletId, request))
                 .doFinally(signalType -> sample.stop(meterRegistry.timer("wallet_transfer_time")));
     }
 
+    /**
+     * Runs the transaction on the lane owning its wallet, the same logic the consumer applies, and
+     * answers DONE with the resulting balance once it is committed. Going through the lane keeps a
+     * single writer per wallet in this process, ordered with the consumed transactions. The balance
+     * update event is still written to the outbox in the same database transaction.
+     */
+    private Mono<TransactionDTO> executeInline(Transaction transaction, String requestTransactionId) {
+        return laneExecutor.execute(transaction.walletIds(), () -> transaction.execute(factory))
+                .doOnNext(result -> log.info(TRANSACTION_EXECUTED_INLINE_INFO.getMessage(), result.getWalletId(), requestTransactionId, result.getBalance()));
+    }
+
     private static Mono<Wallet> withdrawPreValidation(BigDecimal amount, Wallet wallet) {
         if (!WalletStatusType.ACTIVE.getType().equals(wallet.getStatus())) {
             return Mono.error(new WithdrawException(WALLET_IS_NOT_ACTIVE));
@@ -216,15 +337,48 @@ public class WalletServiceImpl implements WalletService {
         return Mono.just(wallet);
     }
 
+    /**
+     * Reads the balance from the database on a cache miss. Concurrent misses of the same wallet share a
+     * single load and cache fill through the {@link BalanceLoadCoalescer}.
+     */
     public Mono<BalanceDTO> fetchBalanceFromDatabase(String requestTransactionId, String walletId, String cacheKey, LocalDateTime dateTime) {
+        return balanceLoadCoalescer.load(walletId, () -> loadBalance(walletId))
+                .map(totalBalance -> BalanceConverter.paramToBalanceDTO(requestTransactionId, walletId, totalBalance, dateTime));
+    }
+
+    /**
+     * Fails fast with {@code WALLET_NOT_FOUND} when the existence filter knows the wallet does not exist,
+     * sparing the cache and database round trips of the request.
+     */
+    private Mono<Void> requireKnownWallet(String walletId) {
+        return requireKnownWallet(walletId, new WalletException(WALLET_NOT_FOUND));
+    }
+
+    private Mono<Void> requireKnownWallet(String walletId, RuntimeException notFound) {
+        return Mono.defer(() -> walletExistenceFilter.isKnownMissing(walletId) ? Mono.error(notFound) : Mono.empty());
+    }
+
+    /**
+     * Error for a wallet the database did not find, remembered so that repeated requests for it are
+     * rejected by the existence filter.
+     */
+    private <T> Mono<T> walletNotFound(String walletId) {
+        return Mono.defer(() -> {
+            walletExistenceFilter.recordMissing(walletId);
+            return Mono.error(new WalletException(WALLET_NOT_FOUND));
+        });
+    }
+
+    private Mono<BigDecimal> loadBalance(String walletId) {
         return walletRepository.findById(walletId)
-                .switchIfEmpty(Mono.error(new WalletException(WALLET_NOT_FOUND)))
-                .flatMap(total -> transactionRepository.findSumOfAmountByDestinationWalletId(walletId)
+                .switchIfEmpty(walletNotFound(walletId))
+                .flatMap(wallet -> balanceCheckpointService.currentBalance(walletId)
                 .defaultIfEmpty(BigDecimal.ZERO)
-                .map(totalBalance -> {
+                .flatMap(totalBalance -> {
                     log.info(FETCHING_BALANCE_FROM_DATABASE_FOR_WALLET.getMessage(), walletId);
-                    cache.set(cacheKey, String.valueOf(totalBalance));
-                    return BalanceConverter.paramToBalanceDTO(requestTransactionId, walletId, totalBalance, dateTime);
+                    return cache.fillBalance(walletId, totalBalance, wallet.getVersion())
+                            .onErrorResume(e -> Mono.empty())
+                            .thenReturn(totalBalance);
                 }));
     }
 
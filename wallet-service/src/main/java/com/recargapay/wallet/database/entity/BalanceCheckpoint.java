@@ -0,0 +1,35 @@
+package com.recargapay.wallet.database.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Table("balance_checkpoints")
+public class BalanceCheckpoint {
+
+    @Id
+    private String id;
+
+    @Column("wallet_id")
+    private String walletId;
+
+    @Column("balance")
+    private BigDecimal balance;
+
+    @Column("as_of")
+    private LocalDateTime asOf;
+
+    @Column("created_at")
+    private LocalDateTime createdAt;
+}
@@ -0,0 +1,30 @@
+package com.recargapay.wallet.database.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.relational.core.mapping.Column;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Balance read as the latest checkpoint plus the ledger rows after it.
+ * {@code checkpointAsOf} is null when the wallet has no checkpoint yet and the whole ledger was summed.
+ */
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+public class CheckpointedBalance {
+
+    @Column("balance")
+    private BigDecimal balance;
+
+    @Column("checkpoint_as_of")
+    private LocalDateTime checkpointAsOf;
+
+    @Column("delta_rows")
+    private Long deltaRows;
+}
@@ -0,0 +1,30 @@
+package com.recargapay.wallet.database.entity;
+
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.relational.core.mapping.Column;
+
+import java.math.BigDecimal;
+
+/**
+ * {@link CheckpointedBalance} of one of several wallets read together, with the wallet it belongs to and the
+ * version of the wallet row read in the same statement.
+ */
+@NoArgsConstructor
+@Getter
+@Setter
+public class CheckpointedWalletBalance extends CheckpointedBalance {
+
+    @Column("wallet_id")
+    private String walletId;
+
+    @Column("version")
+    private Long version;
+
+    public CheckpointedWalletBalance(String walletId, Long version, BigDecimal balance) {
+        super(balance, null, null);
+        this.walletId = walletId;
+        this.version = version;
+    }
+}
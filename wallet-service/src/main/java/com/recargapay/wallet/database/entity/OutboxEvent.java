@@ -0,0 +1,42 @@
+package com.recargapay.wallet.database.entity;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.ReadOnlyProperty;
+import org.springframework.data.relational.core.mapping.Column;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@NoArgsConstructor
+@AllArgsConstructor
+@Getter
+@Setter
+@Table("outbox_events")
+public class OutboxEvent {
+
+    @Id
+    private String id;
+
+    @Column("topic")
+    private String topic;
+
+    @Column("event_key")
+    private String eventKey;
+
+    @Column("payload")
+    private String payload;
+
+    @Column("created_at")
+    private LocalDateTime createdAt;
+
+    /**
+     * Publication order, assigned by the database on insert.
+     */
+    @ReadOnlyProperty
+    @Column("seq")
+    private Long seq;
+}
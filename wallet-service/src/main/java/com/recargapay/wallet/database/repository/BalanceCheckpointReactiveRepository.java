@@ -0,0 +1,55 @@
+package com.recargapay.wallet.database.repository;
+
+import com.recargapay.wallet.database.entity.BalanceCheckpoint;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface BalanceCheckpointReactiveRepository extends ReactiveCrudRepository<BalanceCheckpoint, String> {
+
+    @Query("SELECT * FROM balance_checkpoints WHERE wallet_id = :walletId ORDER BY as_of DESC LIMIT 1")
+    Mono<BalanceCheckpoint> findLatest(@Param("walletId") String walletId);
+
+    /**
+     * Writes a checkpoint as of {@code asOf} for each of the wallets that has at least {@code minDeltaRows}
+     * ledger rows after its latest checkpoint, rolling that checkpoint forward by the sum of those rows.
+     *
+     * @return number of checkpoints written
+     */
+    @Modifying
+    @Query("INSERT INTO balance_checkpoints (wallet_id, balance, as_of, created_at) " +
+            "SELECT w.id, COALESCE(c.balance, 0) + d.total, :asOf, NOW() " +
+            "FROM wallets w " +
+            "LEFT JOIN LATERAL (SELECT balance, as_of FROM balance_checkpoints " +
+            "    WHERE wallet_id = w.id ORDER BY as_of DESC LIMIT 1) c ON TRUE " +
+            "CROSS JOIN LATERAL (SELECT COALESCE(SUM(amount), 0) AS total, COUNT(*) AS delta_rows FROM transactions " +
+            "    WHERE destination_wallet_id = w.id AND timestamp > COALESCE(c.as_of, '-infinity') AND timestamp <= :asOf) d " +
+            "WHERE w.id IN (:walletIds) AND d.delta_rows >= :minDeltaRows " +
+            "ON CONFLICT (wallet_id, as_of) DO NOTHING")
+    Mono<Long> rollForward(@Param("walletIds") Collection<String> walletIds,
+                           @Param("asOf") LocalDateTime asOf,
+                           @Param("minDeltaRows") long minDeltaRows);
+
+    /**
+     * Deletes the checkpoints of the wallets older than their latest one at or before {@code cutoff}. That one
+     * and every later checkpoint are kept, so the newest checkpoint always survives and a point-in-time read
+     * after the cutoff still starts from a checkpoint at or before it; earlier reads sum the ledger from an
+     * older starting point, which is slower but still exact.
+     *
+     * @return number of checkpoints deleted
+     */
+    @Modifying
+    @Query("DELETE FROM balance_checkpoints c " +
+            "USING (SELECT wallet_id, MAX(as_of) AS kept_as_of FROM balance_checkpoints " +
+            "    WHERE wallet_id IN (:walletIds) AND as_of <= :cutoff GROUP BY wallet_id) k " +
+            "WHERE c.wallet_id = k.wallet_id AND c.as_of < k.kept_as_of")
+    Mono<Long> prune(@Param("walletIds") Collection<String> walletIds,
+                     @Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,38 @@
+package com.recargapay.wallet.database.repository;
+
+import com.recargapay.wallet.database.entity.OutboxEvent;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+@Repository
+public interface OutboxEventReactiveRepository extends ReactiveCrudRepository<OutboxEvent, String> {
+
+    /**
+     * Takes ownership of the keys of the oldest pending events for the current transaction, with a
+     * transaction-scoped advisory lock per key. Keys owned by another relay are skipped, so two relays
+     * never publish events of the same key at the same time. A null key is owned as {@code ''}.
+     */
+    @Query("SELECT k.event_key FROM (" +
+            "SELECT DISTINCT COALESCE(head.event_key, '') AS event_key " +
+            "FROM (SELECT event_key FROM outbox_events ORDER BY seq LIMIT :limit) head) k " +
+            "WHERE pg_try_advisory_xact_lock(hashtext(k.event_key))")
+    Flux<String> lockKeys(@Param("limit") int limit);
+
+    /**
+     * Oldest pending events of the given keys in publication order, locked for the current transaction.
+     * Must follow {@link #lockKeys} in the same transaction.
+     */
+    @Query("SELECT * FROM outbox_events WHERE COALESCE(event_key, '') IN (:keys) ORDER BY seq LIMIT :limit FOR UPDATE")
+    Flux<OutboxEvent> lockPending(@Param("keys") Collection<String> keys, @Param("limit") int limit);
+
+    @Modifying
+    @Query("DELETE FROM outbox_events WHERE id IN (:ids)")
+    Mono<Long> deleteByIds(@Param("ids") Collection<String> ids);
+}
@@ -1,5 +1,7 @@
 package com.recargapay.wallet.database.repository;
 
+import com.recargapay.wallet.database.entity.CheckpointedBalance;
+import com.recargapay.wallet.database.entity.CheckpointedWalletBalance;
 import com.recargapay.wallet.database.entity.Transaction;
 import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.query.Param;
@@ -10,14 +12,100 @@ import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.Collection;
 
 @Repository
 public interface TransactionReactiveRepository extends ReactiveCrudRepository<Transaction, String> {
 
-    @Query("SELECT COALESCE(SUM(amount), 0) FROM transactions WHERE destination_wallet_id = :walletId")
+    @Query("SELECT COALESCE(SUM(amount), 0) FROM transactions WHERE destination_wallet_id = :destinationWalletId")
     Mono<BigDecimal> findSumOfAmountByDestinationWalletId(@Param("destinationWalletId") String destinationWalletId);
 
-    @Query("SELECT * FROM transactions WHERE wallet_id = :walletId AND timestamp >= :startDate")
-    Flux<Transaction> findTransactionsFromDate(@Param("walletId") String walletId, @Param("startDate") LocalDateTime startDate);
+    /**
+     * Balance of the wallet as its latest checkpoint plus the ledger rows after it, so the scan is bounded
+     * by the activity since the checkpoint instead of the whole history. Without a checkpoint every row is summed.
+     */
+    @Query("SELECT COALESCE(c.balance, 0) + d.total AS balance, c.as_of AS checkpoint_as_of, d.delta_rows " +
+            "FROM (SELECT 1) AS anchor " +
+            "LEFT JOIN LATERAL (SELECT balance, as_of FROM balance_checkpoints " +
+            "    WHERE wallet_id = :walletId ORDER BY as_of DESC LIMIT 1) c ON TRUE " +
+            "CROSS JOIN LATERAL (SELECT COALESCE(SUM(amount), 0) AS total, COUNT(*) AS delta_rows FROM transactions " +
+            "    WHERE destination_wallet_id = :walletId AND timestamp > COALESCE(c.as_of, '-infinity')) d")
+    Mono<CheckpointedBalance> findCheckpointedBalance(@Param("walletId") String walletId);
+
+    /**
+     * Balances of several wallets computed like {@link #findCheckpointedBalance}, with the version of each wallet
+     * row, in a single statement. Wallets that do not exist are left out.
+     */
+    @Query("SELECT w.id AS wallet_id, w.version, COALESCE(c.balance, 0) + d.total AS balance, " +
+            "c.as_of AS checkpoint_as_of, d.delta_rows " +
+            "FROM wallets w " +
+            "LEFT JOIN LATERAL (SELECT balance, as_of FROM balance_checkpoints " +
+            "    WHERE wallet_id = w.id ORDER BY as_of DESC LIMIT 1) c ON TRUE " +
+            "CROSS JOIN LATERAL (SELECT COALESCE(SUM(amount), 0) AS total, COUNT(*) AS delta_rows FROM transactions " +
+            "    WHERE destination_wallet_id = w.id AND timestamp > COALESCE(c.as_of, '-infinity')) d " +
+            "WHERE w.id IN (:walletIds)")
+    Flux<CheckpointedWalletBalance> findCheckpointedBalances(@Param("walletIds") Collection<String> walletIds);
+
+    /**
+     * Balance of the wallet at {@code asOf}: the latest checkpoint taken at or before it plus the ledger rows
+     * up to it. Both lookups are index range scans, so the cost does not depend on the age of the wallet.
+     */
+    @Query("SELECT COALESCE(c.balance, 0) + d.total AS balance, c.as_of AS checkpoint_as_of, d.delta_rows " +
+            "FROM (SELECT 1) AS anchor " +
+            "LEFT JOIN LATERAL (SELECT balance, as_of FROM balance_checkpoints " +
+            "    WHERE wallet_id = :walletId AND as_of <= :asOf ORDER BY as_of DESC LIMIT 1) c ON TRUE " +
+            "CROSS JOIN LATERAL (SELECT COALESCE(SUM(amount), 0) AS total, COUNT(*) AS delta_rows FROM transactions " +
+            "    WHERE destination_wallet_id = :walletId AND timestamp > COALESCE(c.as_of, '-infinity') AND timestamp <= :asOf) d")
+    Mono<CheckpointedBalance> findCheckpointedBalanceAsOf(@Param("walletId") String walletId, @Param("asOf") LocalDateTime asOf);
+
+    /**
+     * First page of the transactions of the wallet since {@code startDate}, in (timestamp, id) order.
+     */
+    @Query("SELECT * FROM transactions WHERE wallet_id = :walletId AND timestamp >= :startDate " +
+            "ORDER BY timestamp, id LIMIT :limit")
+    Flux<Transaction> findTransactionsPage(@Param("walletId") String walletId,
+                                           @Param("startDate") LocalDateTime startDate,
+                                           @Param("limit") int limit);
+
+    /**
+     * Next page of the transactions of the wallet since {@code startDate}, resuming after the (timestamp, id)
+     * cursor. The row comparison seeks straight to the cursor in the (wallet_id, timestamp, id) index, so every
+     * page costs the same no matter how deep it is.
+     */
+    @Query("SELECT * FROM transactions WHERE wallet_id = :walletId AND timestamp >= :startDate " +
+            "AND (timestamp, id) > (:afterTimestamp, :afterId) " +
+            "ORDER BY timestamp, id LIMIT :limit")
+    Flux<Transaction> findTransactionsPageAfter(@Param("walletId") String walletId,
+                                                @Param("startDate") LocalDateTime startDate,
+                                                @Param("afterTimestamp") LocalDateTime afterTimestamp,
+                                                @Param("afterId") String afterId,
+                                                @Param("limit") int limit);
+
+    /**
+     * Inserts the ledger row unless one with the same (request_transaction_id, wallet_id, type) exists.
+     * Emits the inserted row, or completes empty when it is a redelivery of an applied transaction.
+     */
+    @Query("INSERT INTO transactions (request_transaction_id, wallet_id, destination_wallet_id, type, status, amount, timestamp) " +
+            "VALUES (:requestTransactionId, :walletId, :destinationWalletId, :type, :status, :amount, :timestamp) " +
+            "ON CONFLICT (request_transaction_id, wallet_id, type) DO NOTHING " +
+            "RETURNING *")
+    Mono<Transaction> insertIfAbsent(@Param("requestTransactionId") String requestTransactionId,
+                                     @Param("walletId") String walletId,
+                                     @Param("destinationWalletId") String destinationWalletId,
+                                     @Param("type") String type,
+                                     @Param("status") String status,
+                                     @Param("amount") BigDecimal amount,
+                                     @Param("timestamp") LocalDateTime timestamp);
+
+    default Mono<Transaction> insertIfAbsent(Transaction transaction) {
+        return insertIfAbsent(
+                transaction.getRequestTransactionId(),
+                transaction.getWalletId(),
+                transaction.getDestinationWalletId(),
+                transaction.getType(),
+                transaction.getStatus(),
+                transaction.getAmount(),
+                transaction.getTimestamp());
+    }
 
 }
@@ -1,13 +1,90 @@
 package com.recargapay.wallet.database.repository;
 
 import com.recargapay.wallet.database.entity.Wallet;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+
 @Repository
 public interface WalletReactiveRepository extends ReactiveCrudRepository<Wallet, String> {
     Flux<Wallet> findByUserId(String userId);
-    Mono<Wallet> findByIdAndVersion(String id, Long version);
+
+    /**
+     * Debits the wallet in a single statement, only if it is active and holds at least the amount.
+     * Emits the updated wallet, or completes empty when the wallet is missing, inactive or short of funds.
+     */
+    @Query("UPDATE wallets SET current_balance = current_balance - :amount, version = version + 1 " +
+            "WHERE id = :id AND status = 'ACTIVE' AND current_balance >= :amount " +
+            "RETURNING *")
+    Mono<Wallet> debitIfActiveAndFunded(@Param("id") String id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Credits the wallet in a single statement. Completes empty when the wallet does not exist.
+     */
+    @Query("UPDATE wallets SET current_balance = current_balance + :amount, version = version + 1 " +
+            "WHERE id = :id " +
+            "RETURNING *")
+    Mono<Wallet> credit(@Param("id") String id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Credits the wallet in a single statement, only if it is active. Emits the updated wallet, or
+     * completes empty when the wallet is missing or inactive.
+     */
+    @Query("UPDATE wallets SET current_balance = current_balance + :amount, version = version + 1, last_balance_updated = NOW() " +
+            "WHERE id = :id AND status = 'ACTIVE' " +
+            "RETURNING *")
+    Mono<Wallet> creditIfActive(@Param("id") String id, @Param("amount") BigDecimal amount);
+
+    /**
+     * Adds a (possibly negative) delta to the balance in a single statement.
+     */
+    @Query("UPDATE wallets SET current_balance = current_balance + :delta, version = version + 1, last_balance_updated = NOW() " +
+            "WHERE id = :id " +
+            "RETURNING *")
+    Mono<Wallet> applyBalanceDelta(@Param("id") String id, @Param("delta") BigDecimal delta);
+
+    /**
+     * Applies balance updates of the wallet exactly once, in a single statement: every update is recorded in
+     * {@code applied_balance_updates} (keyed by request, wallet and type) and only the ones not recorded
+     * before are added to the balance. Emits the updated wallet, or completes empty when every update
+     * had already been applied (a redelivery) or the wallet does not exist.
+     *
+     * @param requestTransactionIds request of each update
+     * @param types                 transaction type of each update, at the same positions
+     * @param amounts               signed delta of each update, at the same positions
+     */
+    @Query("WITH applied AS (" +
+            "INSERT INTO applied_balance_updates (request_transaction_id, wallet_id, type, amount, applied_at) " +
+            "SELECT u.request_transaction_id, :id, u.type, u.amount, NOW() " +
+            "FROM unnest(CAST(:requestTransactionIds AS TEXT[]), CAST(:types AS TEXT[]), CAST(:amounts AS NUMERIC[])) " +
+            "AS u(request_transaction_id, type, amount) " +
+            "ON CONFLICT DO NOTHING " +
+            "RETURNING amount) " +
+            "UPDATE wallets SET current_balance = current_balance + (SELECT SUM(amount) FROM applied), " +
+            "version = version + 1, last_balance_updated = NOW() " +
+            "WHERE id = :id AND EXISTS (SELECT 1 FROM applied) " +
+            "RETURNING *")
+    Mono<Wallet> applyBalanceUpdates(@Param("id") String id,
+                                     @Param("requestTransactionIds") String[] requestTransactionIds,
+                                     @Param("types") String[] types,
+                                     @Param("amounts") BigDecimal[] amounts);
+
+    /**
+     * Locks the wallets with a single statement, always in id order, so two transactions locking the
+     * same pair of wallets queue up behind each other instead of deadlocking.
+     */
+    @Query("SELECT * FROM wallets WHERE id IN (:ids) ORDER BY id FOR UPDATE")
+    Flux<Wallet> lockAllByIdInOrder(@Param("ids") Collection<String> ids);
+
+    /**
+     * Page of wallet ids in id order, starting after {@code afterId}.
+     */
+    @Query("SELECT id FROM wallets WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<String> findIdsAfter(@Param("afterId") String afterId, @Param("limit") int limit);
 }
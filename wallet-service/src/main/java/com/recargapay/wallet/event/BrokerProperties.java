@@ -2,6 +2,15 @@ package com.recargapay.wallet.event;
 
 import lombok.Getter;
 
+/**
+ * Topics used by the service.
+ *
+ * <p>{@code wallet.kafka.partitions} is the partition count of each topic. Records are keyed by wallet id, so
+ * every operation of a wallet lands on the same partition and stays ordered; the listeners run one
+ * consumer thread per partition, which is the unit of horizontal scaling across pods. Raising the
+ * count spreads the wallets over more consumers, but moves existing wallets to other partitions,
+ * so it should only be changed while the topics are drained.</p>
+ */
 @Getter
 public enum BrokerProperties {
 
@@ -9,6 +18,17 @@ public enum BrokerProperties {
     WALLET_BALANCE_UPDATES("wallet-balance-updates", "wallet-service-group"),
     WALLET_TRANSACTIONS("wallet-transactions", "wallet-service-group");
 
+    /**
+     * Partition count of the topics, also used as the listener concurrency (one consumer thread per partition).
+     */
+    public static final String PARTITIONS = "${wallet.kafka.partitions:12}";
+
+    /**
+     * Header of the wallet-transactions records holding the transaction type, so the consumer can
+     * deserialize the payload straight into its concrete class.
+     */
+    public static final String TRANSACTION_TYPE_HEADER = "transaction-type";
+
     private String topic;
     private String group;
 
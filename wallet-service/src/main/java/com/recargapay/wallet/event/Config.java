@@ -1,14 +1,102 @@
 package com.recargapay.wallet.event;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recargapay.wallet.core.executor.VirtualThreads;
+import org.apache.kafka.clients.admin.NewTopic;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.ConcurrentKafkaListenerContainerFactoryConfigurer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.config.TopicBuilder;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DeadLetterPublishingRecoverer;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.util.backoff.FixedBackOff;
+
+import static com.recargapay.wallet.event.BrokerProperties.PARTITIONS;
+import static com.recargapay.wallet.event.BrokerProperties.WALLET_BALANCE_UPDATES;
+import static com.recargapay.wallet.event.BrokerProperties.WALLET_TRANSACTIONS;
 
 @Configuration
 public class Config {
 
+    public static final String MANUAL_ACK_CONTAINER_FACTORY = "manualAckContainerFactory";
+    public static final String BATCH_CONTAINER_FACTORY = "batchContainerFactory";
+    private static final String DLT_SUFFIX = "-dlt";
+
     @Bean
     public ObjectMapper objectMapper(){
         return new ObjectMapper();
     }
+
+    @Bean
+    public NewTopic walletTransactionsTopic(@Value(PARTITIONS) int partitions) {
+        return TopicBuilder.name(WALLET_TRANSACTIONS.getTopic())
+                .partitions(partitions)
+                .build();
+    }
+
+    @Bean
+    public NewTopic walletBalanceUpdatesTopic(@Value(PARTITIONS) int partitions) {
+        return TopicBuilder.name(WALLET_BALANCE_UPDATES.getTopic())
+                .partitions(partitions)
+                .build();
+    }
+
+    /**
+     * Listener container whose offsets are committed only when the listener acknowledges the record,
+     * or when the future it returned completes successfully; a future completing with an error goes to
+     * the container's error handler instead. Acknowledgements may arrive out of order from the lane
+     * threads; the container defers the commit until every earlier offset of the partition has been
+     * acknowledged as well.
+     *
+     * <p>With {@code wallet.threads.virtual} (Java 21+) each consumer runs on a virtual thread instead
+     * of a platform thread of the container; on an older JVM the factory fails at startup.</p>
+     */
+    @Bean(MANUAL_ACK_CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> manualAckContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> kafkaConsumerFactory,
+            @Value("${wallet.threads.virtual:false}") boolean virtualThreads) {
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, kafkaConsumerFactory);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.getContainerProperties().setAsyncAcks(true);
+        if (VirtualThreads.require(virtualThreads)) {
+            SimpleAsyncTaskExecutor listenerExecutor = new SimpleAsyncTaskExecutor("wallet-listener-");
+            listenerExecutor.setVirtualThreads(true);
+            factory.getContainerProperties().setListenerTaskExecutor(listenerExecutor);
+        }
+        return factory;
+    }
+
+    /**
+     * Batch listener container of the batch consumption mode. A {@code BatchListenerFailedException}
+     * commits the records before the failed one and retries from it; a batch that keeps failing is
+     * retried whole. Once the back off is exhausted the failed record (or, without an index, every
+     * record of the batch) is published to {@code <topic>-dlt}, the dead letter topic the single-record
+     * listener also uses, and consumption moves on.
+     */
+    @Bean(BATCH_CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Object, Object> batchContainerFactory(
+            ConcurrentKafkaListenerContainerFactoryConfigurer configurer,
+            ConsumerFactory<Object, Object> kafkaConsumerFactory,
+            KafkaTemplate<String, String> kafkaTemplate,
+            @Value("${wallet.transactions.batch.retry.interval-ms:1000}") long retryIntervalMs,
+            @Value("${wallet.transactions.batch.retry.max-attempts:2}") long retryMaxAttempts) {
+
+        ConcurrentKafkaListenerContainerFactory<Object, Object> factory = new ConcurrentKafkaListenerContainerFactory<>();
+        configurer.configure(factory, kafkaConsumerFactory);
+        factory.setBatchListener(true);
+        DeadLetterPublishingRecoverer recoverer = new DeadLetterPublishingRecoverer(kafkaTemplate,
+                (record, error) -> new TopicPartition(record.topic() + DLT_SUFFIX, -1));
+        factory.setCommonErrorHandler(new DefaultErrorHandler(recoverer, new FixedBackOff(retryIntervalMs, retryMaxAttempts)));
+        return factory;
+    }
 }
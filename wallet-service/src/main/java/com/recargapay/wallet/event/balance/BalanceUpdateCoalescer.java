@@ -0,0 +1,182 @@
+package com.recargapay.wallet.event.balance;
+
+import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.core.enums.RetryOperationType;
+import com.recargapay.wallet.core.executor.RetryPolicy;
+import com.recargapay.wallet.database.repository.WalletReactiveRepository;
+import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.recargapay.wallet.handle.Message.BALANCE_COALESCED_FLUSH_FAILED_ERROR;
+import static com.recargapay.wallet.handle.Message.BALANCE_DELTAS_COALESCED_INFO;
+
+/**
+ * Coalesces balance deltas of the same wallet into one update.
+ *
+ * <p>Deltas are collected per wallet for a short window, or until a maximum count is reached, and
+ * then applied with a single {@code UPDATE ... SET current_balance = current_balance + sum}. Hot
+ * wallets (merchant and collection accounts) take one row lock per flush instead of one per
+ * deposit. The ledger rows are not affected: each transaction already inserted its own row.</p>
+ *
+ * <p>The same statement records every update it applies, so an update redelivered after its flush
+ * committed (but before the record was acknowledged) is recognised and not added to the balance again.</p>
+ *
+ * <p>The future of every delta completes once the flush containing it is applied. Transient failures of
+ * the flush are retried with backoff by {@link RetryPolicy}, up to the attempts of
+ * {@link RetryOperationType#BALANCE_UPDATE}; after that, or on any other error, the futures of all its
+ * deltas fail, so their records are not acknowledged and go to the retry and dead-letter topics instead.
+ * Deltas are never acknowledged before being applied, and a failing wallet never holds them back
+ * indefinitely. Failed flushes are counted in {@code wallet_balance_coalesced_flush_failures} and
+ * their deltas in {@code wallet_balance_coalesced_failed_deltas}.</p>
+ *
+ * <p>The balance and version returned by the update are written through to the cache.</p>
+ */
+@Slf4j
+@Component
+public class BalanceUpdateCoalescer implements DisposableBean {
+
+    private final WalletReactiveRepository walletRepository;
+    private final CacheService cache;
+    private final RetryPolicy retryPolicy;
+    private final MeterRegistry meterRegistry;
+    private final Duration window;
+    private final int maxDeltas;
+    private final Map<String, PendingDelta> pending = new HashMap<>();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "balance-coalescer");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public BalanceUpdateCoalescer(
+            WalletReactiveRepository walletRepository,
+            CacheService cache,
+            RetryPolicy retryPolicy,
+            MeterRegistry meterRegistry,
+            @Value("${wallet.balance.coalescing.window-ms:50}") long windowMillis,
+            @Value("${wallet.balance.coalescing.max-deltas:500}") int maxDeltas) {
+
+        this.walletRepository = walletRepository;
+        this.cache = cache;
+        this.retryPolicy = retryPolicy;
+        this.meterRegistry = meterRegistry;
+        this.window = Duration.ofMillis(windowMillis);
+        this.maxDeltas = maxDeltas;
+    }
+
+    /**
+     * Adds a balance update to the pending update of its wallet.
+     *
+     * @param update update carrying the wallet, the signed delta and the request it belongs to
+     * @return future completed once the delta is persisted, or failed with the error of its flush
+     */
+    public CompletableFuture<Void> add(BalanceUpdateEvent update) {
+        String walletId = update.getWalletId();
+        CompletableFuture<Void> applied = new CompletableFuture<>();
+        PendingDelta full = null;
+        synchronized (this) {
+            PendingDelta delta = pending.get(walletId);
+            if (delta == null) {
+                delta = new PendingDelta(walletId);
+                pending.put(walletId, delta);
+                scheduleFlush(delta);
+            }
+            delta.add(update, applied);
+            if (delta.count >= maxDeltas) {
+                pending.remove(walletId);
+                full = delta;
+            }
+        }
+        if (full != null) {
+            flush(full);
+        }
+        return applied;
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdown();
+    }
+
+    private void scheduleFlush(PendingDelta delta) {
+        scheduler.schedule(() -> {
+            boolean due;
+            synchronized (this) {
+                due = pending.remove(delta.walletId, delta);
+            }
+            if (due) {
+                flush(delta);
+            }
+        }, window.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    private void flush(PendingDelta delta) {
+        Mono.defer(() -> walletRepository.applyBalanceUpdates(delta.walletId, delta.requestTransactionIds(), delta.types(), delta.amounts()))
+                .transform(retryPolicy.retry(RetryOperationType.BALANCE_UPDATE))
+                .flatMap(wallet -> cache.writeBalance(wallet).thenReturn(wallet))
+                .doOnSuccess(wallet -> {
+                    meterRegistry.summary("wallet_balance_coalesced_deltas").record(delta.count);
+                    log.info(BALANCE_DELTAS_COALESCED_INFO.getMessage(), delta.walletId, delta.count, delta.total);
+                    delta.futures.forEach(applied -> applied.complete(null));
+                })
+                .subscribe(wallet -> { }, error -> fail(delta, error));
+    }
+
+    private void fail(PendingDelta failed, Throwable error) {
+        meterRegistry.counter("wallet_balance_coalesced_flush_failures").increment();
+        meterRegistry.counter("wallet_balance_coalesced_failed_deltas").increment(failed.count);
+        log.error(BALANCE_COALESCED_FLUSH_FAILED_ERROR.getMessage(), failed.count, failed.walletId, error.getMessage());
+        failed.futures.forEach(applied -> applied.completeExceptionally(error));
+    }
+
+    private static final class PendingDelta {
+
+        private final String walletId;
+        private final Map<String, BalanceUpdateEvent> updates = new LinkedHashMap<>();
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private BigDecimal total = BigDecimal.ZERO;
+        private int count;
+
+        private PendingDelta(String walletId) {
+            this.walletId = walletId;
+        }
+
+        private void add(BalanceUpdateEvent update, CompletableFuture<Void> applied) {
+            // a redelivery of an update still pending is only acknowledged with it
+            if (updates.putIfAbsent(update.getRequestTransactionId() + ':' + update.getTransactionType(), update) == null) {
+                total = total.add(update.getAmount());
+            }
+            count++;
+            futures.add(applied);
+        }
+
+        private String[] requestTransactionIds() {
+            return updates.values().stream().map(BalanceUpdateEvent::getRequestTransactionId).toArray(String[]::new);
+        }
+
+        private String[] types() {
+            return updates.values().stream().map(BalanceUpdateEvent::getTransactionType).toArray(String[]::new);
+        }
+
+        private BigDecimal[] amounts() {
+            return updates.values().stream().map(BalanceUpdateEvent::getAmount).toArray(BigDecimal[]::new);
+        }
+    }
+}
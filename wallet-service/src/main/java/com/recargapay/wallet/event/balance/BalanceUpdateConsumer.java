@@ -2,21 +2,18 @@ package com.recargapay.wallet.event.balance;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.recargapay.wallet.converter.WalletConverter;
-import com.recargapay.wallet.database.entity.Wallet;
-import com.recargapay.wallet.database.repository.WalletReactiveRepository;
 import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.annotation.RetryableTopic;
-import org.springframework.r2dbc.core.DatabaseClient;
 import org.springframework.stereotype.Service;
-import reactor.core.publisher.Mono;
 
-import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
 
-import static com.recargapay.wallet.handle.Message.BALANCE_UPDATED_FOR_WALLET_INFO;
+import static com.recargapay.wallet.event.BrokerProperties.PARTITIONS;
+import static com.recargapay.wallet.event.Config.MANUAL_ACK_CONTAINER_FACTORY;
+import static com.recargapay.wallet.handle.Message.BALANCE_ALREADY_SETTLED_INFO;
 import static com.recargapay.wallet.handle.Message.PROCESSING_BALANCE_UPDATE_INFO;
 
 @Service
@@ -24,45 +21,39 @@ import static com.recargapay.wallet.handle.Message.PROCESSING_BALANCE_UPDATE_INF
 @RequiredArgsConstructor
 public class BalanceUpdateConsumer {
 
-    private final WalletReactiveRepository walletRepository;
-    private final DatabaseClient databaseClient;
+    private final BalanceUpdateCoalescer coalescer;
     private final ObjectMapper objectMapper;
 
+    /**
+     * Hands the delta to the coalescer and returns the outcome of the coalesced update containing it.
+     * The container acknowledges the record once the returned future completes, or right away when
+     * the balance was already settled upstream. A redelivered record whose delta was already applied
+     * is only acknowledged. When the update fails after its retries the future fails and the container
+     * hands the record to the retry topics and, once they are exhausted, to the dead-letter topic.
+     */
     @RetryableTopic(
             autoCreateTopics = "true",
+            numPartitions = PARTITIONS,
             include = {RuntimeException.class})
-    @KafkaListener(topics = "wallet-balance-updates", groupId = "wallet-service-group")
-    public void processBalanceUpdate(String eventStr) {
-
-        BalanceUpdateEvent[] event = {new BalanceUpdateEvent()};
+    @KafkaListener(
+            topics = "wallet-balance-updates",
+            groupId = "wallet-service-group",
+            containerFactory = MANUAL_ACK_CONTAINER_FACTORY,
+            concurrency = PARTITIONS)
+    public CompletableFuture<Void> processBalanceUpdate(String eventStr) {
         try {
-            event[0] = this.objectMapper.readValue(eventStr, BalanceUpdateEvent.class);
+            BalanceUpdateEvent event = this.objectMapper.readValue(eventStr, BalanceUpdateEvent.class);
 
-            log.info(PROCESSING_BALANCE_UPDATE_INFO.getMessage(), event[0].getWalletId(), event[0].getRequestTransactionId());
+            if (event.isSettled()) {
+                log.info(BALANCE_ALREADY_SETTLED_INFO.getMessage(), event.getWalletId(), event.getRequestTransactionId());
+                return CompletableFuture.completedFuture(null);
+            }
 
-            databaseClient.inConnection(conn ->
-                    Mono.from(conn.beginTransaction())
-                            .then(walletRepository.findById(event[0].getWalletId()))
-                            .flatMap(wallet -> applyNewBalanceValue(wallet, event[0].getAmount()))
-                            .flatMap(updatedWallet -> Mono.from(conn.commitTransaction())
-                                            .thenReturn(WalletConverter.entityToWalletDto(updatedWallet))
-                            )
-                            .doOnSuccess(walletDto ->
-                                    log.info(BALANCE_UPDATED_FOR_WALLET_INFO.getMessage(), walletDto.getId(), walletDto.getRequestTransactionId())
-                            )
-                            .onErrorResume(e ->
-                                    Mono.from(conn.rollbackTransaction()).then(Mono.error(e))
-                            )
-            ).subscribe();
+            log.info(PROCESSING_BALANCE_UPDATE_INFO.getMessage(), event.getWalletId(), event.getRequestTransactionId());
+            return coalescer.add(event);
 
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
         }
-
-    }
-
-    private Mono<Wallet> applyNewBalanceValue(Wallet wallet, BigDecimal amount) {
-        wallet.setCurrentBalance(wallet.getCurrentBalance().add(amount));
-        return walletRepository.save(wallet);
     }
-}
\ No newline at end of file
+}
@@ -1,28 +1,37 @@
 package com.recargapay.wallet.event.balance;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
+import com.recargapay.wallet.event.outbox.OutboxService;
+import io.r2dbc.spi.Connection;
 import lombok.RequiredArgsConstructor;
-import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
 
 import static com.recargapay.wallet.event.BrokerProperties.WALLET_BALANCE_UPDATES;
 
+/**
+ * Balance update events go through the transactional outbox: they are written together with the
+ * ledger rows and published by the outbox relay once the transaction commits.
+ */
 @Service
 @RequiredArgsConstructor
 public class BalanceUpdateProducer {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
-    private final ObjectMapper objectMapper;
+    private final OutboxService outbox;
 
-    public void sendBalanceUpdate(BalanceUpdateEvent event) {
-        try {
-            String json = this.objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(WALLET_BALANCE_UPDATES.getTopic(), json);
+    /**
+     * Enqueues the event; must be subscribed inside the transaction that writes the ledger row.
+     */
+    public Mono<Void> enqueueBalanceUpdate(BalanceUpdateEvent event) {
+        return outbox.append(WALLET_BALANCE_UPDATES.getTopic(), event);
+    }
 
-        } catch (JsonProcessingException e) {
-            throw new RuntimeException(e);
-        }
+    /**
+     * Enqueues the events with one statement on the connection holding the current transaction.
+     */
+    public Mono<Long> enqueueBalanceUpdates(Connection conn, List<BalanceUpdateEvent> events) {
+        return outbox.appendAll(conn, WALLET_BALANCE_UPDATES.getTopic(), events);
     }
 }
@@ -11,9 +11,15 @@ import java.math.BigDecimal;
 @Getter
 public class BalanceUpdateEvent extends ParentEvent{
     private String transactionType; // DEPOSIT, WITHDRAW, TRANSFER_OUT, TRANSFER_IN
+    private boolean settled; // true when current_balance was already changed together with the ledger row
 
     public BalanceUpdateEvent(String requestTransactionId, String id, BigDecimal amount, String transactionType){
         super(requestTransactionId, id, amount);
         this.transactionType = transactionType;
     }
+
+    public BalanceUpdateEvent(String requestTransactionId, String id, BigDecimal amount, String transactionType, boolean settled){
+        this(requestTransactionId, id, amount, transactionType);
+        this.settled = settled;
+    }
 }
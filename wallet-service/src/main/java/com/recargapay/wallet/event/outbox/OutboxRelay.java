@@ -0,0 +1,105 @@
+package com.recargapay.wallet.event.outbox;
+
+import com.recargapay.wallet.database.entity.OutboxEvent;
+import com.recargapay.wallet.database.repository.OutboxEventReactiveRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.recargapay.wallet.handle.Message.OUTBOX_RELAYED_INFO;
+import static com.recargapay.wallet.handle.Message.OUTBOX_RELAY_FAILED_ERROR;
+
+/**
+ * Publishes the outbox rows to Kafka in the background.
+ *
+ * <p>Each poll takes ownership of the keys of the oldest pending rows, locks their rows, sends them in
+ * sequence order, waits for the broker acknowledgements and deletes the rows in the same transaction.
+ * If a send fails the transaction rolls back and the rows are picked up again on the next poll, so
+ * delivery is at least once. The relay keeps draining while it reads full batches.</p>
+ *
+ * <p>Several instances can relay at once: a key (the wallet) is owned by one relay transaction at a
+ * time, so consecutive events of a wallet are never published concurrently and reach the broker in
+ * the order of their sequence. The sequence is assigned on insert, not on commit: events of a wallet
+ * written by different transactions at once (a transfer credit written from the source wallet's lane,
+ * or another pod) may commit out of sequence order, and one committed late is published after the
+ * higher sequences already relayed. Consumers must not depend on that order; balance updates do not,
+ * since each one is an idempotent delta.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OutboxRelay {
+
+    private final OutboxEventReactiveRepository outboxRepository;
+    private final TransactionalOperator transactionalOperator;
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final MeterRegistry meterRegistry;
+
+    @Value("${wallet.outbox.batch-size:500}")
+    private int batchSize;
+
+    @Value("${wallet.outbox.send-timeout-seconds:10}")
+    private long sendTimeoutSeconds;
+
+    @Scheduled(fixedDelayString = "${wallet.outbox.poll-interval-ms:100}")
+    public void relay() {
+        try {
+            Integer relayed;
+            do {
+                relayed = relayBatch().block();
+            } while (relayed != null && relayed == batchSize);
+        } catch (RuntimeException e) {
+            meterRegistry.counter("wallet_outbox_relay_failures").increment();
+            log.error(OUTBOX_RELAY_FAILED_ERROR.getMessage(), e.getMessage());
+        }
+    }
+
+    /**
+     * Relays one batch of pending events.
+     *
+     * @return number of events published and removed from the outbox
+     */
+    public Mono<Integer> relayBatch() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        return outboxRepository.lockKeys(batchSize)
+                .collectList()
+                .flatMap(keys -> keys.isEmpty()
+                        ? Mono.just(List.<OutboxEvent>of())
+                        : outboxRepository.lockPending(keys, batchSize).collectList())
+                .flatMap(events -> events.isEmpty()
+                        ? Mono.just(0)
+                        : publish(events)
+                                .then(outboxRepository.deleteByIds(events.stream().map(OutboxEvent::getId).toList()))
+                                .thenReturn(events.size()))
+                .as(transactionalOperator::transactional)
+                .doOnNext(relayed -> {
+                    if (relayed > 0) {
+                        sample.stop(meterRegistry.timer("wallet_outbox_relay_time"));
+                        meterRegistry.counter("wallet_outbox_relayed_events").increment(relayed);
+                        meterRegistry.summary("wallet_outbox_batch_size").record(relayed);
+                        log.debug(OUTBOX_RELAYED_INFO.getMessage(), relayed);
+                    }
+                });
+    }
+
+    private Mono<Void> publish(List<OutboxEvent> events) {
+        return Mono.defer(() -> {
+                    CompletableFuture<?>[] acks = events.stream()
+                            .map(event -> kafkaTemplate.send(event.getTopic(), event.getEventKey(), event.getPayload()))
+                            .toArray(CompletableFuture[]::new);
+                    return Mono.fromFuture(CompletableFuture.allOf(acks));
+                })
+                .timeout(Duration.ofSeconds(sendTimeoutSeconds));
+    }
+}
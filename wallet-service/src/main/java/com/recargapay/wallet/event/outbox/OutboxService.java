@@ -0,0 +1,80 @@
+package com.recargapay.wallet.event.outbox;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recargapay.wallet.database.entity.OutboxEvent;
+import com.recargapay.wallet.database.repository.OutboxEventReactiveRepository;
+import com.recargapay.wallet.event.dto.ParentEvent;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Writes events to the outbox table instead of sending them to the broker.
+ *
+ * <p>Appends must run inside the database transaction that writes the data the event describes,
+ * so the event exists if and only if that transaction commits. {@link OutboxRelay} publishes the
+ * rows afterwards.</p>
+ */
+@Component
+@RequiredArgsConstructor
+public class OutboxService {
+
+    private static final String INSERT_OUTBOX_EVENT =
+            "INSERT INTO outbox_events (topic, event_key, payload, created_at) VALUES ($1, $2, $3, $4)";
+
+    private final OutboxEventReactiveRepository outboxRepository;
+    private final ObjectMapper objectMapper;
+
+    /**
+     * Appends one event, keyed by its wallet, through the transaction-bound repository.
+     */
+    public Mono<Void> append(String topic, ParentEvent event) {
+        return Mono.fromCallable(() -> new OutboxEvent(null, topic, event.getWalletId(), objectMapper.writeValueAsString(event), LocalDateTime.now(), null))
+                .flatMap(outboxRepository::save)
+                .then();
+    }
+
+    /**
+     * Appends the events with one batched insert on the given connection, inside its current transaction.
+     *
+     * @return number of rows inserted
+     */
+    public Mono<Long> appendAll(Connection conn, String topic, List<? extends ParentEvent> events) {
+        if (events.isEmpty()) {
+            return Mono.just(0L);
+        }
+        return Mono.defer(() -> {
+            Statement statement = conn.createStatement(INSERT_OUTBOX_EVENT);
+            LocalDateTime createdAt = LocalDateTime.now();
+            for (int position = 0; position < events.size(); position++) {
+                var event = events.get(position);
+                statement.bind(0, topic)
+                        .bind(1, event.getWalletId())
+                        .bind(2, write(event))
+                        .bind(3, createdAt);
+                if (position < events.size() - 1) {
+                    statement.add();
+                }
+            }
+            return Flux.from(statement.execute())
+                    .flatMap(Result::getRowsUpdated)
+                    .reduce(0L, Long::sum);
+        });
+    }
+
+    private String write(ParentEvent event) {
+        try {
+            return objectMapper.writeValueAsString(event);
+        } catch (JsonProcessingException e) {
+            throw new RuntimeException(e);
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.recargapay.wallet.event.transaction;
+
+import com.recargapay.wallet.core.executor.WalletLaneExecutor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.PoolMetrics;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.recargapay.wallet.event.transaction.TransactionConsumer.LISTENER_ID;
+import static com.recargapay.wallet.handle.Message.ADAPTIVE_CONCURRENCY_DECISION_INFO;
+
+/**
+ * Adjusts the in-flight limit of the wallet lanes between {@code wallet.transactions.adaptive.min} and
+ * {@code wallet.transactions.adaptive.max}, enabled with {@code wallet.transactions.adaptive.enabled}.
+ *
+ * <p>On every tick it reads three signals: the lag of the wallet-transactions consumer (sum of
+ * {@code records-lag-max} of its clients), the number of requests waiting for an R2DBC connection and
+ * the mean lane service time since the previous tick, which is dominated by the database. The limit
+ * is cut multiplicatively as soon as the database slows down or the pool has waiters, and raised
+ * additively while there is lag and the pool keeps up.</p>
+ *
+ * <p>Every decision is logged and counted in {@code wallet_adaptive_concurrency_decisions} (tagged
+ * increase, decrease or hold); the signals are exported as gauges.</p>
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "wallet.transactions.adaptive.enabled", havingValue = "true")
+public class AdaptiveConcurrencyController {
+
+    private static final String LAG_METRIC = "records-lag-max";
+
+    private final WalletLaneExecutor laneExecutor;
+    private final KafkaListenerEndpointRegistry registry;
+    private final ConnectionFactory connectionFactory;
+    private final MeterRegistry meterRegistry;
+    private final int min;
+    private final int max;
+    private final int step;
+    private final double decreaseFactor;
+    private final long lagThreshold;
+    private final double latencyThresholdMs;
+    private final int poolPendingThreshold;
+
+    private final AtomicLong lag = new AtomicLong();
+    private final AtomicLong poolPending = new AtomicLong();
+    private final AtomicLong latencyMs = new AtomicLong();
+    private long lastCount;
+    private double lastTotalMs;
+
+    public AdaptiveConcurrencyController(
+            WalletLaneExecutor laneExecutor,
+            KafkaListenerEndpointRegistry registry,
+            ConnectionFactory connectionFactory,
+            MeterRegistry meterRegistry,
+            @Value("${wallet.transactions.adaptive.min:16}") int min,
+            @Value("${wallet.transactions.adaptive.max:1024}") int max,
+            @Value("${wallet.transactions.adaptive.step:16}") int step,
+            @Value("${wallet.transactions.adaptive.decrease-factor:0.75}") double decreaseFactor,
+            @Value("${wallet.transactions.adaptive.lag-threshold:1000}") long lagThreshold,
+            @Value("${wallet.transactions.adaptive.latency-threshold-ms:200}") double latencyThresholdMs,
+            @Value("${wallet.transactions.adaptive.pool-pending-threshold:1}") int poolPendingThreshold) {
+
+        this.laneExecutor = laneExecutor;
+        this.registry = registry;
+        this.connectionFactory = connectionFactory;
+        this.meterRegistry = meterRegistry;
+        this.min = min;
+        this.max = max;
+        this.step = step;
+        this.decreaseFactor = decreaseFactor;
+        this.lagThreshold = lagThreshold;
+        this.latencyThresholdMs = latencyThresholdMs;
+        this.poolPendingThreshold = poolPendingThreshold;
+
+        meterRegistry.gauge("wallet_adaptive_consumer_lag", lag);
+        meterRegistry.gauge("wallet_adaptive_pool_pending", poolPending);
+        meterRegistry.gauge("wallet_adaptive_latency_ms", latencyMs);
+        laneExecutor.setMaxInFlight(Math.max(min, Math.min(max, laneExecutor.maxInFlight())));
+    }
+
+    @Scheduled(fixedDelayString = "${wallet.transactions.adaptive.interval-ms:5000}")
+    public void adjust() {
+        adjust(consumerLag(), pendingAcquires(), serviceTimeMs());
+    }
+
+    /**
+     * Applies one decision for the given signals.
+     *
+     * @return the new in-flight limit
+     */
+    int adjust(long currentLag, int currentPoolPending, double currentLatencyMs) {
+        lag.set(currentLag);
+        poolPending.set(currentPoolPending);
+        latencyMs.set(Math.round(currentLatencyMs));
+
+        int current = laneExecutor.maxInFlight();
+        int next;
+        String decision;
+        if (currentLatencyMs > latencyThresholdMs || currentPoolPending >= poolPendingThreshold) {
+            next = Math.max(min, (int) (current * decreaseFactor));
+            decision = "decrease";
+        } else if (currentLag > lagThreshold) {
+            next = Math.min(max, current + step);
+            decision = "increase";
+        } else {
+            next = current;
+            decision = "hold";
+        }
+        if (next == current) {
+            decision = "hold";
+        } else {
+            laneExecutor.setMaxInFlight(next);
+        }
+
+        meterRegistry.counter("wallet_adaptive_concurrency_decisions", "decision", decision).increment();
+        log.info(ADAPTIVE_CONCURRENCY_DECISION_INFO.getMessage(), decision, current, next, currentLag, currentPoolPending, Math.round(currentLatencyMs));
+        return next;
+    }
+
+    private long consumerLag() {
+        MessageListenerContainer container = registry.getListenerContainer(LISTENER_ID);
+        if (container == null) {
+            return 0;
+        }
+        long total = 0;
+        for (Map<MetricName, ? extends Metric> metrics : container.metrics().values()) {
+            for (Map.Entry<MetricName, ? extends Metric> metric : metrics.entrySet()) {
+                if (LAG_METRIC.equals(metric.getKey().name())
+                        && metric.getValue().metricValue() instanceof Double value
+                        && !value.isNaN()) {
+                    total += value.longValue();
+                }
+            }
+        }
+        return total;
+    }
+
+    private int pendingAcquires() {
+        if (connectionFactory instanceof ConnectionPool pool) {
+            return pool.getMetrics().map(PoolMetrics::pendingAcquireSize).orElse(0);
+        }
+        return 0;
+    }
+
+    /**
+     * Mean lane service time since the previous tick.
+     */
+    private double serviceTimeMs() {
+        long count = 0;
+        double totalMs = 0;
+        for (Timer timer : meterRegistry.find("wallet_lane_service_time").timers()) {
+            count += timer.count();
+            totalMs += timer.totalTime(TimeUnit.MILLISECONDS);
+        }
+        long deltaCount = count - lastCount;
+        double deltaMs = totalMs - lastTotalMs;
+        lastCount = count;
+        lastTotalMs = totalMs;
+        return deltaCount > 0 ? deltaMs / deltaCount : 0;
+    }
+}
@@ -0,0 +1,79 @@
+package com.recargapay.wallet.event.transaction;
+
+import com.recargapay.wallet.core.enums.RetryOperationType;
+import com.recargapay.wallet.core.executor.RetryPolicy;
+import com.recargapay.wallet.core.factory.batch.TransactionBatchExecutor;
+import com.recargapay.wallet.core.factory.context.Transaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.recargapay.wallet.event.BrokerProperties.PARTITIONS;
+import static com.recargapay.wallet.event.Config.BATCH_CONTAINER_FACTORY;
+import static com.recargapay.wallet.handle.Message.PROCESSING_TRANSACTION_BATCH;
+
+/**
+ * Batch consumption mode of the wallet-transactions topic, enabled with
+ * {@code wallet.transactions.consumer.mode=batch}.
+ *
+ * <p>Each poll is applied by {@link TransactionBatchExecutor} in a single database transaction and the
+ * offsets are only committed once the listener returns, after the database commit. A batch failing
+ * with a transient error is rolled back and executed again by {@link RetryPolicy}. A record that cannot be
+ * read fails the listener with its index, and the container's error handler
+ * ({@link com.recargapay.wallet.event.Config#batchContainerFactory}) sends it to the dead letter topic.</p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.transactions.consumer.mode", havingValue = "batch")
+public class TransactionBatchConsumer {
+
+    private final TransactionReader transactionReader;
+    private final TransactionBatchExecutor batchExecutor;
+    private final RetryPolicy retryPolicy;
+
+    @Value("${wallet.transactions.execution-timeout-seconds:30}")
+    private long executionTimeoutSeconds;
+
+    @KafkaListener(
+            topics = "wallet-transactions",
+            groupId = "wallet-service-group",
+            batch = "true",
+            containerFactory = BATCH_CONTAINER_FACTORY,
+            concurrency = PARTITIONS,
+            properties = {
+                    "max.poll.records=${wallet.transactions.batch.max-records:500}",
+                    "fetch.min.bytes=${wallet.transactions.batch.min-bytes:65536}",
+                    "fetch.max.wait.ms=${wallet.transactions.batch.max-wait-ms:200}"
+            })
+    public void processTransactions(List<ConsumerRecord<String, String>> events) {
+        log.info(PROCESSING_TRANSACTION_BATCH.getMessage(), events.size());
+
+        List<Transaction> transactions = new ArrayList<>(events.size());
+        for (int index = 0; index < events.size(); index++) {
+            try {
+                transactions.add(transactionReader.read(events.get(index)));
+            } catch (RuntimeException e) {
+                execute(transactions);
+                throw new BatchListenerFailedException(e.getMessage(), e, index);
+            }
+        }
+        execute(transactions);
+    }
+
+    private void execute(List<Transaction> transactions) {
+        Mono.defer(() -> batchExecutor.execute(transactions))
+                .transform(retryPolicy.retry(RetryOperationType.EXECUTION))
+                .block(Duration.ofSeconds(executionTimeoutSeconds));
+    }
+}
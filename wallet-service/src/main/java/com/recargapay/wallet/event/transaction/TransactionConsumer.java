@@ -1,64 +1,65 @@
 package com.recargapay.wallet.event.transaction;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.recargapay.wallet.core.enums.TransactionType;
-import com.recargapay.wallet.core.factory.DepositTransaction;
-import com.recargapay.wallet.core.factory.TransferTransaction;
-import com.recargapay.wallet.core.factory.WithdrawTransaction;
+import com.recargapay.wallet.core.enums.RetryOperationType;
+import com.recargapay.wallet.core.executor.RetryPolicy;
+import com.recargapay.wallet.core.executor.WalletLaneExecutor;
 import com.recargapay.wallet.core.factory.context.Transaction;
 import com.recargapay.wallet.core.factory.context.TransactionFactory;
+import com.recargapay.wallet.handle.exception.UnknownTransactionTypeException;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.kafka.annotation.RetryableTopic;
 import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
 
-import java.util.LinkedHashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
-import static com.recargapay.wallet.handle.Message.PROCESSING_THE_TRANSACTION_ERROR;
+import static com.recargapay.wallet.event.BrokerProperties.PARTITIONS;
+import static com.recargapay.wallet.event.Config.MANUAL_ACK_CONTAINER_FACTORY;
 import static com.recargapay.wallet.handle.Message.PROCESSING_TRANSACTION;
 
 @Component
 @RequiredArgsConstructor
 @Slf4j
+@ConditionalOnProperty(name = "wallet.transactions.consumer.mode", havingValue = "single", matchIfMissing = true)
 public class TransactionConsumer {
 
-    private final TransactionFactory factory;
-    private final ObjectMapper objectMapper;
-
-    private static final Map<String, Class<? extends Transaction>> TRANSACTION_MAP = Map.of(
-            TransactionType.DEPOSIT.getType(), DepositTransaction.class,
-            TransactionType.TRANSFER_IN.getType(), TransferTransaction.class,
-            TransactionType.TRANSFER_OUT.getType(), TransferTransaction.class,
-            TransactionType.WITHDRAW.getType(), WithdrawTransaction.class
-    );
-
-    @RetryableTopic(autoCreateTopics = "true", include = {RuntimeException.class})
-    @KafkaListener(topics = "wallet-transactions", groupId = "wallet-service-group")
-    public void processTransaction(String event) {
-        log.info(PROCESSING_TRANSACTION.getMessage(), event);
+    public static final String LISTENER_ID = "wallet-transactions-listener";
 
-        try {
-            LinkedHashMap<?, ?> param = objectMapper.readValue(event, LinkedHashMap.class);
-            LinkedHashMap<?, ?> eventMap = (LinkedHashMap<?, ?>) param.get("event");
-            Object typeSerialize = eventMap.get("type");
-
-            Class<? extends Transaction> transactionClass = TRANSACTION_MAP.get(
-                    typeSerialize != null ? typeSerialize : ""
-            );
-            if (transactionClass == null) {
-                transactionClass = TransferTransaction.class;
-            }
-
-            Transaction transaction = objectMapper.readValue(event, transactionClass);
-            transaction.execute(factory);
+    private final TransactionFactory factory;
+    private final TransactionReader transactionReader;
+    private final WalletLaneExecutor laneExecutor;
+    private final RetryPolicy retryPolicy;
 
-            Thread.sleep(60);
+    /**
+     * Hands the transaction to its wallet lanes and returns the outcome of its execution there. The
+     * container acknowledges the record only when the returned future completes, after the database
+     * commit, so a crash before that point redelivers it instead of losing it. Transient failures are
+     * retried in place by {@link RetryPolicy}; conflicts are not retried, the lane is the only writer of
+     * its wallets. A future failing after those attempts (rollback, exhausted retries, execution timeout)
+     * is not acknowledged: the container hands the record to its error handler, which publishes it to the
+     * retry topics and, once they are exhausted, to the dead-letter topic. The container is paused while
+     * the lanes are saturated, see {@link TransactionListenerBackpressure}.
+     *
+     * <p>Records with an unknown transaction type are not retried and go straight to the dead-letter
+     * topic ({@code wallet-transactions-dlt}).</p>
+     */
+    @RetryableTopic(autoCreateTopics = "true", numPartitions = PARTITIONS, exclude = {UnknownTransactionTypeException.class})
+    @KafkaListener(
+            id = LISTENER_ID,
+            topics = "wallet-transactions",
+            groupId = "wallet-service-group",
+            containerFactory = MANUAL_ACK_CONTAINER_FACTORY,
+            concurrency = PARTITIONS)
+    public CompletableFuture<Void> processTransaction(ConsumerRecord<String, String> event) {
+        log.info(PROCESSING_TRANSACTION.getMessage(), event.value());
 
-        } catch (JsonProcessingException | InterruptedException e) {
-            throw new RuntimeException(String.format(PROCESSING_THE_TRANSACTION_ERROR.getMessage(), e.getMessage()), e);
-        }
+        Transaction transaction = transactionReader.read(event);
+        return laneExecutor.submit(transaction.walletIds(), () -> Mono.defer(() -> transaction.execute(factory))
+                .transform(retryPolicy.retry(RetryOperationType.EXECUTION))
+                .then());
     }
 }
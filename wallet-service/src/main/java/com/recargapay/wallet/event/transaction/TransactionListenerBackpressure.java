@@ -0,0 +1,49 @@
+package com.recargapay.wallet.event.transaction;
+
+import com.recargapay.wallet.core.executor.BackpressureHandler;
+import com.recargapay.wallet.core.executor.WalletLaneExecutor;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+import org.springframework.kafka.listener.MessageListenerContainer;
+import org.springframework.stereotype.Component;
+
+import static com.recargapay.wallet.event.transaction.TransactionConsumer.LISTENER_ID;
+
+/**
+ * Pauses the wallet-transactions listener container while the wallet lanes are saturated.
+ *
+ * <p>A paused container keeps polling without fetching records, so the consumer stays in the group
+ * while the lanes drain, instead of the listener thread blocking on a full mailbox past
+ * {@code max.poll.interval.ms}.</p>
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(name = "wallet.transactions.consumer.mode", havingValue = "single", matchIfMissing = true)
+public class TransactionListenerBackpressure implements BackpressureHandler {
+
+    private final KafkaListenerEndpointRegistry registry;
+    private final WalletLaneExecutor laneExecutor;
+
+    @PostConstruct
+    void register() {
+        laneExecutor.setBackpressureHandler(this);
+    }
+
+    @Override
+    public void pause() {
+        MessageListenerContainer container = registry.getListenerContainer(LISTENER_ID);
+        if (container != null) {
+            container.pause();
+        }
+    }
+
+    @Override
+    public void resume() {
+        MessageListenerContainer container = registry.getListenerContainer(LISTENER_ID);
+        if (container != null) {
+            container.resume();
+        }
+    }
+}
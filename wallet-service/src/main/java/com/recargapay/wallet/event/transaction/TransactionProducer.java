@@ -4,9 +4,13 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.recargapay.wallet.core.factory.context.Transaction;
 import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+
+import static com.recargapay.wallet.event.BrokerProperties.TRANSACTION_TYPE_HEADER;
 import static com.recargapay.wallet.event.BrokerProperties.WALLET_TRANSACTIONS;
 
 @Component
@@ -16,10 +20,17 @@ public class TransactionProducer {
     private final KafkaTemplate<String, String> kafkaTemplate;
     private final ObjectMapper objectMapper;
 
+    /**
+     * Publishes the transaction keyed by its first wallet (the source wallet for transfers), so all
+     * the operations of a wallet go to the same partition in order. The transaction type travels in
+     * the {@code transaction-type} header so the consumer can deserialize the payload in one pass.
+     */
     public void sendTransaction(Transaction event) {
         try {
             var json = this.objectMapper.writeValueAsString(event);
-            kafkaTemplate.send(WALLET_TRANSACTIONS.getTopic(), json);
+            var record = new ProducerRecord<>(WALLET_TRANSACTIONS.getTopic(), event.walletIds().get(0), json);
+            record.headers().add(TRANSACTION_TYPE_HEADER, event.type().getBytes(StandardCharsets.UTF_8));
+            kafkaTemplate.send(record);
 
         } catch (JsonProcessingException e) {
             throw new RuntimeException(e);
@@ -0,0 +1,79 @@
+package com.recargapay.wallet.event.transaction;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.recargapay.wallet.core.enums.TransactionType;
+import com.recargapay.wallet.core.factory.DepositTransaction;
+import com.recargapay.wallet.core.factory.TransferTransaction;
+import com.recargapay.wallet.core.factory.WithdrawTransaction;
+import com.recargapay.wallet.core.factory.context.Transaction;
+import com.recargapay.wallet.handle.exception.UnknownTransactionTypeException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+
+import static com.recargapay.wallet.event.BrokerProperties.TRANSACTION_TYPE_HEADER;
+import static com.recargapay.wallet.handle.Message.PROCESSING_THE_TRANSACTION_ERROR;
+
+/**
+ * Deserializes the records of the wallet-transactions topic into their concrete {@link Transaction}.
+ *
+ * <p>The type comes from the {@code transaction-type} record header and selects a reader built once
+ * per type, so the payload is parsed a single time. Unknown types are rejected with
+ * {@link UnknownTransactionTypeException}, which the consumer does not retry.</p>
+ */
+@Component
+public class TransactionReader {
+
+    private final ObjectMapper objectMapper;
+    private final Map<String, ObjectReader> readers;
+
+    public TransactionReader(ObjectMapper objectMapper) {
+        this.objectMapper = objectMapper;
+        ObjectReader transferReader = objectMapper.readerFor(TransferTransaction.class);
+        this.readers = Map.of(
+                TransactionType.DEPOSIT.getType(), objectMapper.readerFor(DepositTransaction.class),
+                TransactionType.TRANSFER_IN.getType(), transferReader,
+                TransactionType.TRANSFER_OUT.getType(), transferReader,
+                TransactionType.WITHDRAW.getType(), objectMapper.readerFor(WithdrawTransaction.class)
+        );
+    }
+
+    public Transaction read(ConsumerRecord<String, String> record) {
+        Header header = record.headers().lastHeader(TRANSACTION_TYPE_HEADER);
+        if (header == null) {
+            return readWithoutHeader(record.value());
+        }
+        return read(new String(header.value(), StandardCharsets.UTF_8), record.value());
+    }
+
+    public Transaction read(String type, String event) {
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            throw new UnknownTransactionTypeException(type);
+        }
+        try {
+            return reader.readValue(event);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format(PROCESSING_THE_TRANSACTION_ERROR.getMessage(), e.getMessage()), e);
+        }
+    }
+
+    /**
+     * Records published before the type header existed. The type is taken from the payload; transfers
+     * carry no {@code event.type}, so a missing one still means a transfer.
+     */
+    private Transaction readWithoutHeader(String event) {
+        try {
+            JsonNode type = objectMapper.readTree(event).path("event").path("type");
+            return read(type.isMissingNode() || type.isNull() ? TransactionType.TRANSFER_OUT.getType() : type.asText(), event);
+        } catch (IOException e) {
+            throw new RuntimeException(String.format(PROCESSING_THE_TRANSACTION_ERROR.getMessage(), e.getMessage()), e);
+        }
+    }
+}
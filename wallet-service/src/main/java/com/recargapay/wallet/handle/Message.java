@@ -15,8 +15,10 @@ public enum Message {
     WALLET_IS_NOT_ACTIVE1("Source wallet is not active", 402),
     WALLET_DESTINATION_NOT_FOUND("Destination wallet not found", 400),
     WALLET_DESTINATION_IS_NOT_ACTIVE("Destination wallet is not active", 400),
-    CONCURRENT_MODIFICATION_DETECTED_TRY_AGAIN("Concurrent modification detected. Try again.", 400),
     BALANCE_UPDATED_FOR_WALLET_INFO("Balance updated for wallet: {}, requestTransactionId: {}", 204),
+    BALANCE_DELTAS_COALESCED_INFO("Balance updated for wallet: {}, {} deltas coalesced into {}", 204),
+    BALANCE_COALESCED_FLUSH_FAILED_ERROR("Failed to apply {} coalesced deltas for wallet: {}, records left unacknowledged: {}", 500),
+    BALANCE_ALREADY_SETTLED_INFO("Balance already settled with the transaction for wallet: {}, requestTransactionId: {}", 204),
     PROCESSING_BALANCE_UPDATE_INFO("Processing balance update: walletId {}, requestTransactionId: {}", 204),
     DEPOSIT_PROCESSED_SUCCESSFULLY_FOR_WALLET_INFO("Deposit processed successfully for wallet: {}, requestTransactionId: {}", 201),
     DEPOSIT_FAILED_FOR_WALLET_ERROR("Deposit failed for wallet: {}, requestTransactionId: {}, Error: {}", 402),
@@ -47,7 +49,49 @@ public enum Message {
     SOURCE_WALLET_NOT_FOUND("Source wallet not found", 404),
     DESTINATION_WALLET_NOT_FOUND("Destination wallet not found", 404),
     TRANSACTION_WITHDRAW_WALLET_IS_EMPTY("TransactionWithdraw - wallet is empty()", 500),
-    PROCESSING_THE_TRANSACTION_ERROR("Error processing the transaction: %s", 500);
+    PROCESSING_THE_TRANSACTION_ERROR("Error processing the transaction: %s", 500),
+    LANE_EXECUTION_FAILED_ERROR("Execution failed in lane {}: {}", 500),
+    LANE_INTERRUPTED_ERROR("Interrupted while enqueuing on lane %s", 500),
+    LANE_JOIN_TIMEOUT_ERROR("Multi-lane execution on lanes %s abandoned: not every lane reached it within %s", 503),
+    IN_FLIGHT_LIMIT_INTERRUPTED_ERROR("Interrupted while waiting for an in-flight transaction slot", 500),
+    PROCESSING_TRANSACTION_BATCH("Processing transaction batch: {} records", 204),
+    BATCH_PROCESSED_INFO("Transaction batch committed: {} events, {} wallets, {} round trips", 204),
+    BATCH_TRANSACTION_REJECTED_ERROR("Transaction rejected in batch for wallets: {}, error: {}", 402),
+    BATCH_OVERDRAFT_ERROR("Transaction batch would leave wallets %s with a negative balance, rolling it back", 409),
+    OUTBOX_RELAYED_INFO("Outbox batch relayed: {} events", 204),
+    OUTBOX_RELAY_FAILED_ERROR("Failed to relay outbox events, they will be retried: {}", 500),
+    UNKNOWN_TRANSACTION_TYPE_ERROR("Unknown transaction type: %s", 422),
+    INVALID_EXECUTION_MODE("Invalid executionMode header, expected ASYNC or INLINE", 400),
+    TRANSACTION_EXECUTED_INLINE_INFO("Transaction executed inline for wallet: {}, requestTransactionId: {}, balance: {}", 201),
+    TRANSACTION_ALREADY_APPLIED_INFO("Transaction already applied, skipping: wallet: {}, requestTransactionId: {}, type: {}", 200),
+    TRANSFER_LOCK_CONFLICT_ERROR("Could not lock wallets for transfer from: {} to: {}, error: {}", 409),
+    RETRY_ATTEMPT_INFO("Retrying {} (attempt {}) after transient error: {}", 200),
+    RETRY_EXHAUSTED_ERROR("Retries exhausted for {} after {} retries: {}", 503),
+    LANE_BACKPRESSURE_PAUSED_INFO("Wallet lanes saturated (deepest mailbox: {}, in flight: {}), pausing consumption", 200),
+    LANE_BACKPRESSURE_RESUMED_INFO("Wallet lanes drained, resuming consumption", 200),
+    VIRTUAL_THREAD_PINNED_INFO("Virtual thread pinned its carrier for {} ms: {}", 200),
+    VIRTUAL_THREADS_UNSUPPORTED_ERROR("wallet.threads.virtual requires Java %s or newer, but the service is running on Java %s; disable it (VIRTUAL_THREADS_ENABLED=false) or run on a newer JVM", 500),
+    ADAPTIVE_CONCURRENCY_DECISION_INFO("Adaptive concurrency {}: in-flight limit {} -> {} (lag: {}, pool pending: {}, latency: {} ms)", 200),
+    CACHE_INVALIDATION_PUBLISH_ERROR("Failed to publish cache invalidation for wallet: {}", 500),
+    CACHE_INVALIDATION_SUBSCRIPTION_ERROR("Cache invalidation subscription failed, resubscribing: {}", 500),
+    CACHE_BALANCE_WRITE_FAILED_ERROR("Failed to write cached balance for wallet: {}, clearing it: {}", 500),
+    CACHE_BALANCE_STALE_WRITE_INFO("Cached balance of wallet {} is newer than version {}, or holds another balance for it, write skipped", 200),
+    BALANCE_LOAD_LOCK_ERROR("Failed to take the balance load lock for wallet: {}, loading without it: {}", 500),
+    BALANCE_LOAD_LOCK_WAIT_TIMEOUT_INFO("Balance of wallet {} not filled by the lock holder in time, loading it from the database", 200),
+    BALANCE_CHECKPOINTS_WRITTEN_INFO("Balance checkpoints rolled forward to {}: {} written", 201),
+    BALANCE_CHECKPOINT_FAILED_ERROR("Failed to write balance checkpoints, they will be retried on the next run: {}", 500),
+    FETCHING_BALANCE_AS_OF_FOR_WALLET_INFO("Fetching balance of wallet: {} as of {}", 204),
+    INVALID_HISTORY_CURSOR("Invalid history cursor", 400),
+    WALLET_IDS_REQUIRED("Field 'walletIds' is required.", 400),
+    TOO_MANY_WALLET_IDS("Too many wallet ids, the limit is 500", 400),
+    FETCHING_BALANCES_FOR_WALLETS_INFO("Fetching balances for {} wallets", 204),
+    WALLET_FILTER_REBUILT_INFO("Wallet existence filter rebuilt with {} wallets", 200),
+    WALLET_FILTER_REBUILD_ERROR("Failed to rebuild the wallet existence filter, keeping the current one: {}", 500),
+    WALLET_CREATED_PUBLISH_ERROR("Failed to publish the creation of wallet: {}: {}", 500),
+    WALLET_CREATED_SUBSCRIPTION_ERROR("Wallet creation subscription failed, resubscribing: {}", 500),
+    CACHE_WALLET_WRITE_FAILED_ERROR("Failed to cache wallet: {}: {}", 500),
+    WALLET_PREVALIDATION_RECHECK_INFO("Cached wallet {} failed pre-validation, checking it against the database", 200),
+    BALANCE_EARLY_REFRESH_ERROR("Early refresh of the balance of wallet {} failed: {}", 500);
 
     private String message;
     private int code;
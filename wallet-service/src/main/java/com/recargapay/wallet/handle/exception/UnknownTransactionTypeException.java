@@ -0,0 +1,17 @@
+package com.recargapay.wallet.handle.exception;
+
+import lombok.Getter;
+
+import static com.recargapay.wallet.handle.Message.UNKNOWN_TRANSACTION_TYPE_ERROR;
+
+/**
+ * Raised when a wallet-transactions record carries a type no reader is registered for. It is not
+ * retried: the record goes straight to the dead-letter topic.
+ */
+@Getter
+public class UnknownTransactionTypeException extends ParentException{
+
+    public UnknownTransactionTypeException(String type){
+        super(String.format(UNKNOWN_TRANSACTION_TYPE_ERROR.getMessage(), type), UNKNOWN_TRANSACTION_TYPE_ERROR.getCode());
+    }
+}
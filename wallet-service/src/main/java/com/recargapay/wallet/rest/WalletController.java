@@ -2,6 +2,7 @@ package com.recargapay.wallet.rest;
 
 import com.recargapay.wallet.handle.ResponseHandler;
 import com.recargapay.wallet.rest.dto.BalanceDTO;
+import com.recargapay.wallet.rest.dto.BalancesRequestDTO;
 import com.recargapay.wallet.rest.dto.CreateWalletDTO;
 import com.recargapay.wallet.rest.dto.DepositDTO;
 import com.recargapay.wallet.rest.dto.TransactionDTO;
@@ -10,17 +11,24 @@ import com.recargapay.wallet.rest.dto.TransferDTO;
 import com.recargapay.wallet.rest.dto.WalletDTO;
 import com.recargapay.wallet.rest.dto.WithdrawDTO;
 import com.recargapay.wallet.core.service.WalletService;
+import com.recargapay.wallet.rest.validate.BalancesValidate;
 import com.recargapay.wallet.rest.validate.TrackerValidate;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.time.ZonedDateTime;
 
 @RestController
@@ -54,7 +62,8 @@ class WalletController {
 
     @Operation(
             summary = "Get current balance",
-            description = "Retrieves the current balance of a specific wallet identified by its ID."
+            description = "Retrieves the current balance of a specific wallet identified by its ID. With the asOf parameter " +
+                    "(ISO date-time, e.g. 2025-01-31T23:59:59) it returns the balance of the wallet at that instant instead."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -66,37 +75,86 @@ class WalletController {
     })
     @GetMapping("/{id}/balance")
     public Mono<ResponseEntity<BalanceDTO>> getBalance(
-        @RequestHeader("requestTransactionId") String requestTransactionId, @PathVariable String id) {
+        @RequestHeader("requestTransactionId") String requestTransactionId, @PathVariable String id,
+        @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime asOf) {
         TrackerValidate.validateOf(requestTransactionId);
 
-        return walletService.getBalance(requestTransactionId, id)
+        Mono<BalanceDTO> balance = asOf == null
+                ? walletService.getBalance(requestTransactionId, id)
+                : walletService.getBalanceAsOf(requestTransactionId, id, asOf);
+        return balance.map(ResponseEntity::ok);
+    }
+
+    @Operation(
+            summary = "Get balances of several wallets",
+            description = "Retrieves the current balance of up to 500 wallets in one call. Balances are returned in request order; wallets that do not exist are left out."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Balances successfully retrieved.",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = BalanceDTO.class)))
+            ),
+            @ApiResponse(responseCode = "400", description = "Missing or too many wallet ids.", content = @Content(schema = @Schema(implementation = ResponseHandler.class)))
+    })
+    @PostMapping("/balances")
+    public Mono<ResponseEntity<List<BalanceDTO>>> getBalances(
+        @RequestHeader("requestTransactionId") String requestTransactionId, @RequestBody BalancesRequestDTO request) {
+        TrackerValidate.validateOf(requestTransactionId);
+        BalancesValidate.validateOf(request);
+
+        return walletService.getBalances(requestTransactionId, request.getWalletIds())
                 .map(ResponseEntity::ok);
     }
 
     @Operation(
-            summary = "Get historical balance",
-            description = "Retrieves the historical balance of a wallet at a specific date/time."
+            summary = "Get transaction history",
+            description = "Retrieves a page of the transactions of a wallet in the last daysBefore days, oldest first. " +
+                    "Pass the nextCursor of a page as cursor to read the next one; limit sets the page size. " +
+                    "For the balance at a specific date/time use the asOf parameter of the balance endpoint."
     )
     @ApiResponses(value = {
             @ApiResponse(
                     responseCode = "200",
-                    description = "Historical balance successfully retrieved.",
-                    content = @Content(schema = @Schema(implementation = BalanceDTO.class))
+                    description = "Transaction history successfully retrieved.",
+                    content = @Content(schema = @Schema(implementation = TransactionsHistoricalDTO.class))
             ),
             @ApiResponse(responseCode = "404", description = "Wallet not found.", content = @Content(schema = @Schema(implementation = ResponseHandler.class)))
     })
     @GetMapping("/{id}/balance/history")
     public Mono<ResponseEntity<TransactionsHistoricalDTO>> getHistoricalBalance(
-        @RequestHeader("requestTransactionId") String requestTransactionId, @PathVariable String id, @RequestParam long daysBefore) {
+        @RequestHeader("requestTransactionId") String requestTransactionId, @PathVariable String id, @RequestParam long daysBefore,
+        @RequestParam(required = false) String cursor, @RequestParam(required = false) Integer limit) {
         TrackerValidate.validateOf(requestTransactionId);
 
-        return walletService.getHistoricalTransactions(requestTransactionId, id, daysBefore)
+        return walletService.getHistoricalTransactions(requestTransactionId, id, daysBefore, cursor, limit)
                 .map(ResponseEntity::ok);
     }
 
+    @Operation(
+            summary = "Stream transaction history",
+            description = "Streams every transaction of a wallet in the last daysBefore days as newline-delimited JSON, oldest first, " +
+                    "writing the rows as they are read from the database."
+    )
+    @ApiResponses(value = {
+            @ApiResponse(
+                    responseCode = "200",
+                    description = "Transaction history streamed.",
+                    content = @Content(mediaType = MediaType.APPLICATION_NDJSON_VALUE, schema = @Schema(implementation = TransactionsHistoricalDTO.HistoricalReportDTO.class))
+            ),
+            @ApiResponse(responseCode = "404", description = "Wallet not found.", content = @Content(schema = @Schema(implementation = ResponseHandler.class)))
+    })
+    @GetMapping(value = "/{id}/balance/history/stream", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<TransactionsHistoricalDTO.HistoricalReportDTO> streamHistoricalBalance(
+        @RequestHeader("requestTransactionId") String requestTransactionId, @PathVariable String id, @RequestParam long daysBefore) {
+        TrackerValidate.validateOf(requestTransactionId);
+
+        return walletService.streamHistoricalTransactions(id, daysBefore);
+    }
+
     @Operation(
             summary = "Deposit funds",
-            description = "Deposits a specified amount into a wallet."
+            description = "Deposits a specified amount into a wallet. With the executionMode header set to INLINE the deposit is applied before responding and the result carries the resulting balance."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -109,17 +167,19 @@ class WalletController {
     })
     @PostMapping("/{id}/deposit")
     public Mono<ResponseEntity<TransactionDTO>> deposit(
-        @RequestHeader("requestTransactionId") String requestTransactionId, @PathVariable String id, @RequestBody DepositDTO request) {
+        @RequestHeader("requestTransactionId") String requestTransactionId,
+        @RequestHeader(value = "executionMode", required = false) String executionMode,
+        @PathVariable String id, @RequestBody DepositDTO request) {
         TrackerValidate.validateOf(requestTransactionId);
 
         request.setRequestTransactionId(requestTransactionId);
-        return walletService.deposit(id, request)
+        return walletService.deposit(id, request, executionMode)
                 .map(ResponseEntity::ok);
     }
 
     @Operation(
             summary = "Withdraw funds",
-            description = "Withdraws a specified amount from a wallet, validating if there is enough balance."
+            description = "Withdraws a specified amount from a wallet, validating if there is enough balance. With the executionMode header set to INLINE the withdraw is applied before responding and the result carries the resulting balance."
     )
     @ApiResponses(value = {
             @ApiResponse(
@@ -132,11 +192,13 @@ class WalletController {
     })
     @PostMapping("/{id}/withdraw")
     public Mono<ResponseEntity<TransactionDTO>> withdraw(
-        @RequestHeader("requestTransactionId") String requestTransactionId, @PathVariable String id, @RequestBody WithdrawDTO request) {
+        @RequestHeader("requestTransactionId") String requestTransactionId,
+        @RequestHeader(value = "executionMode", required = false) String executionMode,
+        @PathVariable String id, @RequestBody WithdrawDTO request) {
         TrackerValidate.validateOf(requestTransactionId);
 
         request.setRequestTransactionId(requestTransactionId);
-        return walletService.withdraw(id, request)
+        return walletService.withdraw(id, request, executionMode)
                 .map(ResponseEntity::ok);
     }
 
@@ -0,0 +1,19 @@
+package com.recargapay.wallet.rest.dto;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.util.List;
+
+@Getter
+@Setter
+@AllArgsConstructor
+@NoArgsConstructor
+public class BalancesRequestDTO {
+
+    @JsonProperty("walletIds")
+    private List<String> walletIds;
+}
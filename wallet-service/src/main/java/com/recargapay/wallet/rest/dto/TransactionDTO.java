@@ -49,4 +49,16 @@ public class TransactionDTO {
     @JsonDeserialize(using = LocalDateTimeDeserializer.class)
     @JsonSerialize(using = LocalDateTimeSerializer.class)
     private LocalDateTime timestamp;
+
+    /**
+     * Wallet balance right after the operation, only filled when it was executed inline.
+     */
+    @Schema(accessMode = Schema.AccessMode.READ_ONLY)
+    @JsonProperty("balance")
+    private BigDecimal balance;
+
+    public TransactionDTO(String id, String requestTransactionId, String destinationWalletId, String walletId,
+                          String type, String status, BigDecimal amount, LocalDateTime timestamp) {
+        this(id, requestTransactionId, destinationWalletId, walletId, type, status, amount, timestamp, null);
+    }
 }
@@ -33,6 +33,10 @@ public class TransactionsHistoricalDTO {
     @JsonProperty("transactions")
     private List<HistoricalReportDTO> transactions;
 
+    @Schema(description = "Cursor of the next page, absent on the last page")
+    @JsonProperty("nextCursor")
+    private String nextCursor;
+
     @Getter
     @AllArgsConstructor
     @NoArgsConstructor
@@ -0,0 +1,24 @@
+package com.recargapay.wallet.rest.validate;
+
+import com.recargapay.wallet.handle.exception.WalletException;
+import com.recargapay.wallet.rest.dto.BalancesRequestDTO;
+
+import java.util.Objects;
+
+import static com.recargapay.wallet.handle.Message.TOO_MANY_WALLET_IDS;
+import static com.recargapay.wallet.handle.Message.WALLET_IDS_REQUIRED;
+
+public class BalancesValidate {
+
+    public static final int MAX_WALLET_IDS = 500;
+
+    public static void validateOf(BalancesRequestDTO request) {
+        if (Objects.isNull(request) || Objects.isNull(request.getWalletIds()) || request.getWalletIds().isEmpty()
+                || request.getWalletIds().stream().anyMatch(Objects::isNull)){
+            throw new WalletException(WALLET_IDS_REQUIRED);
+        }
+        if (request.getWalletIds().size() > MAX_WALLET_IDS){
+            throw new WalletException(TOO_MANY_WALLET_IDS);
+        }
+    }
+}
@@ -0,0 +1,25 @@
+-- Writes the cached balance unless the cache already holds a newer version, or the same version with another balance.
+-- KEYS[1]: balance key | ARGV[1]: {"balance","version","expiresAt"} JSON | ARGV[2]: version | ARGV[3]: TTL in ms, 0 for none
+-- Returns 1 when written, 0 when rejected. Rewriting the same version with the same balance renews its TTL; a
+-- different balance under the same version is rejected, so the first value cached for a version is kept.
+local current = redis.call('GET', KEYS[1])
+if current then
+    local ok, cached = pcall(cjson.decode, current)
+    if ok and type(cached) == 'table' and cached.version then
+        local cachedVersion = tonumber(cached.version)
+        local version = tonumber(ARGV[2])
+        if cachedVersion > version then
+            return 0
+        end
+        if cachedVersion == version and tonumber(cached.balance) ~= tonumber(cjson.decode(ARGV[1]).balance) then
+            return 0
+        end
+    end
+end
+local ttl = tonumber(ARGV[3])
+if ttl and ttl > 0 then
+    redis.call('SET', KEYS[1], ARGV[1], 'PX', ttl)
+else
+    redis.call('SET', KEYS[1], ARGV[1])
+end
+return 1
@@ -41,3 +41,52 @@ CREATE TABLE IF NOT EXISTS  transactions (
     timestamp               TIMESTAMP WITHOUT TIME ZONE,
     CONSTRAINT fk_transaction_wallet FOREIGN KEY (wallet_id) REFERENCES wallets(id)
 );
+
+-- Idempotência no consumo: um lançamento por (requisição, carteira, tipo); redeliveries caem no ON CONFLICT
+CREATE UNIQUE INDEX IF NOT EXISTS uk_transactions_request_wallet_type ON transactions (request_transaction_id, wallet_id, type);
+
+-- Outbox de eventos gravados na mesma transação do lançamento e publicados pelo relay
+CREATE TABLE IF NOT EXISTS outbox_events (
+    id                      VARCHAR(36) PRIMARY KEY DEFAULT uuid_generate_v4()::text NOT NULL,
+    seq                     BIGSERIAL NOT NULL,
+    topic                   VARCHAR(255) NOT NULL,
+    event_key               VARCHAR(255),
+    payload                 TEXT NOT NULL,
+    created_at              TIMESTAMP WITHOUT TIME ZONE NOT NULL
+);
+
+-- Sequência monotônica de publicação (created_at empata e não ordena eventos gravados no mesmo instante)
+ALTER TABLE outbox_events ADD COLUMN IF NOT EXISTS seq BIGSERIAL NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_outbox_events_seq ON outbox_events (seq);
+CREATE INDEX IF NOT EXISTS idx_outbox_events_key_seq ON outbox_events (event_key, seq);
+
+-- Atualizações de saldo já aplicadas pelo consumidor de wallet-balance-updates, gravadas na mesma transação
+-- do UPDATE do saldo: redeliveries caem no ON CONFLICT e não somam o delta de novo
+CREATE TABLE IF NOT EXISTS applied_balance_updates (
+    request_transaction_id  VARCHAR(255) NOT NULL,
+    wallet_id               VARCHAR(255) NOT NULL,
+    type                    VARCHAR(50) NOT NULL,
+    amount                  NUMERIC(19, 2) NOT NULL,
+    applied_at              TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    CONSTRAINT pk_applied_balance_updates PRIMARY KEY (request_transaction_id, wallet_id, type)
+);
+
+-- Checkpoints de saldo: saldo acumulado da carteira até as_of, gravados periodicamente pelo job;
+-- o saldo atual é o último checkpoint somado aos lançamentos posteriores a ele
+CREATE TABLE IF NOT EXISTS balance_checkpoints (
+    id                      VARCHAR(36) PRIMARY KEY DEFAULT uuid_generate_v4()::text NOT NULL,
+    wallet_id               VARCHAR(255) NOT NULL,
+    balance                 NUMERIC(19, 2) NOT NULL,
+    as_of                   TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    created_at              TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    CONSTRAINT fk_balance_checkpoint_wallet FOREIGN KEY (wallet_id) REFERENCES wallets(id)
+);
+
+CREATE UNIQUE INDEX IF NOT EXISTS uk_balance_checkpoints_wallet_as_of ON balance_checkpoints (wallet_id, as_of);
+
+-- Varredura dos lançamentos posteriores ao checkpoint (somente índice: amount incluído)
+CREATE INDEX IF NOT EXISTS idx_transactions_destination_timestamp ON transactions (destination_wallet_id, timestamp) INCLUDE (amount);
+
+-- Histórico paginado por cursor (timestamp, id) das transações da carteira
+CREATE INDEX IF NOT EXISTS idx_transactions_wallet_timestamp_id ON transactions (wallet_id, timestamp, id);
@@ -0,0 +1,223 @@
+package com.recargapay.wallet.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static com.recargapay.wallet.cache.KeyProperties.BALANCE_LOCK_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BalanceLoadCoalescerTest {
+
+    private static final String WALLET_ID = "wallet-123";
+    private static final String LOCK_KEY = BALANCE_LOCK_KEY.getKey(WALLET_ID);
+
+    @Mock
+    CacheService cache;
+
+    private SimpleMeterRegistry meterRegistry;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        loads = new AtomicInteger();
+        when(cache.unlock(anyString(), anyString())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    @DisplayName("Misses simultâneos da mesma carteira compartilham uma única leitura do banco")
+    void concurrentMissesShareOneLoad() {
+        BalanceLoadCoalescer coalescer = coalescer(false);
+        Sinks.One<BigDecimal> database = Sinks.one();
+
+        Mono<BigDecimal> first = coalescer.load(WALLET_ID, () -> countedLoad(database.asMono()));
+        Mono<BigDecimal> second = coalescer.load(WALLET_ID, () -> countedLoad(database.asMono()));
+
+        StepVerifier.create(first.zipWith(second))
+                .then(() -> database.tryEmitValue(BigDecimal.TEN))
+                .assertNext(both -> {
+                    assertEquals(BigDecimal.TEN, both.getT1());
+                    assertEquals(BigDecimal.TEN, both.getT2());
+                })
+                .verifyComplete();
+
+        assertEquals(1, loads.get());
+        assertEquals(1, meterRegistry.counter("wallet_cache_miss_loads").count());
+        assertEquals(1, meterRegistry.counter("wallet_cache_coalesced_requests", "scope", "local").count());
+    }
+
+    @Test
+    @DisplayName("Após concluir, o próximo miss faz uma nova leitura")
+    void completedLoadIsNotReused() {
+        BalanceLoadCoalescer coalescer = coalescer(false);
+
+        StepVerifier.create(coalescer.load(WALLET_ID, () -> countedLoad(Mono.just(BigDecimal.ONE)))).expectNext(BigDecimal.ONE).verifyComplete();
+        StepVerifier.create(coalescer.load(WALLET_ID, () -> countedLoad(Mono.just(BigDecimal.TEN)))).expectNext(BigDecimal.TEN).verifyComplete();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Falha na leitura é entregue a todos e não fica retida")
+    void failedLoadIsNotRetained() {
+        BalanceLoadCoalescer coalescer = coalescer(false);
+
+        StepVerifier.create(coalescer.load(WALLET_ID, () -> countedLoad(Mono.error(new RuntimeException("db down")))))
+                .expectErrorMessage("db down")
+                .verify();
+        StepVerifier.create(coalescer.load(WALLET_ID, () -> countedLoad(Mono.just(BigDecimal.ONE))))
+                .expectNext(BigDecimal.ONE)
+                .verifyComplete();
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    @DisplayName("Lock distribuído: quem obtém o lock lê do banco e libera o lock")
+    void lockHolderLoadsAndReleases() {
+        BalanceLoadCoalescer coalescer = coalescer(true);
+        when(cache.tryLock(eq(LOCK_KEY), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+
+        StepVerifier.create(coalescer.load(WALLET_ID, () -> countedLoad(Mono.just(BigDecimal.TEN))))
+                .expectNext(BigDecimal.TEN)
+                .verifyComplete();
+
+        assertEquals(1, loads.get());
+        verify(cache).unlock(eq(LOCK_KEY), anyString());
+    }
+
+    @Test
+    @DisplayName("Lock distribuído: sem o lock aguarda o saldo preenchido pela outra instância")
+    void lockWaiterUsesFilledCache() {
+        BalanceLoadCoalescer coalescer = coalescer(true);
+        when(cache.tryLock(eq(LOCK_KEY), anyString(), any(Duration.class))).thenReturn(Mono.just(false));
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.empty(), Mono.just(new CachedBalance(BigDecimal.TEN, 4)));
+
+        StepVerifier.create(coalescer.load(WALLET_ID, () -> countedLoad(Mono.just(BigDecimal.ONE))))
+                .expectNext(BigDecimal.TEN)
+                .verifyComplete();
+
+        assertEquals(0, loads.get());
+        assertEquals(1, meterRegistry.counter("wallet_cache_coalesced_requests", "scope", "distributed").count());
+    }
+
+    @Test
+    @DisplayName("Lock distribuído: espera esgotada lê do banco")
+    void lockWaitTimeoutLoadsFromDatabase() {
+        BalanceLoadCoalescer coalescer = coalescer(true);
+        when(cache.tryLock(eq(LOCK_KEY), anyString(), any(Duration.class))).thenReturn(Mono.just(false));
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.empty());
+
+        StepVerifier.create(coalescer.load(WALLET_ID, () -> countedLoad(Mono.just(BigDecimal.ONE))))
+                .expectNext(BigDecimal.ONE)
+                .verifyComplete();
+
+        assertEquals(1, loads.get());
+        assertEquals(1, meterRegistry.counter("wallet_cache_lock_wait_timeouts").count());
+    }
+
+    @Test
+    @DisplayName("Lock distribuído: Redis indisponível lê do banco sem o lock")
+    void lockErrorLoadsWithoutLock() {
+        BalanceLoadCoalescer coalescer = coalescer(true);
+        when(cache.tryLock(eq(LOCK_KEY), anyString(), any(Duration.class))).thenReturn(Mono.error(new RuntimeException("redis down")));
+
+        StepVerifier.create(coalescer.load(WALLET_ID, () -> countedLoad(Mono.just(BigDecimal.ONE))))
+                .expectNext(BigDecimal.ONE)
+                .verifyComplete();
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    @DisplayName("Refresh antecipado: saldo no limite da expiração é recarregado em segundo plano")
+    void expiringBalanceIsRefreshed() {
+        BalanceLoadCoalescer coalescer = coalescer(false);
+
+        coalescer.refreshIfExpiring(WALLET_ID, new CachedBalance(BigDecimal.ONE, 1, System.currentTimeMillis()),
+                () -> countedLoad(Mono.just(BigDecimal.TEN)));
+
+        assertEquals(1, loads.get());
+        assertEquals(1, meterRegistry.counter("wallet_cache_early_refreshes").count());
+    }
+
+    @Test
+    @DisplayName("Refresh antecipado: saldo preenchido por outra instância também é recarregado antes de expirar")
+    void balanceNotLoadedHereIsRefreshedEarly() {
+        BalanceLoadCoalescer coalescer = new BalanceLoadCoalescer(cache, meterRegistry, false, 5000, 100, 10, true, 1.0, 1000);
+        CachedBalance cached = new CachedBalance(BigDecimal.ONE, 1, System.currentTimeMillis() + 50);
+
+        assertTrue(IntStream.range(0, 100).anyMatch(attempt -> coalescer.shouldRefresh(cached)));
+    }
+
+    @Test
+    @DisplayName("Refresh antecipado: saldo longe de expirar não é recarregado")
+    void freshBalanceIsNotRefreshed() {
+        BalanceLoadCoalescer coalescer = coalescer(false);
+        StepVerifier.create(coalescer.load(WALLET_ID, () -> Mono.delay(Duration.ofMillis(20)).thenReturn(BigDecimal.ONE)))
+                .expectNext(BigDecimal.ONE)
+                .verifyComplete();
+
+        coalescer.refreshIfExpiring(WALLET_ID, new CachedBalance(BigDecimal.ONE, 1, System.currentTimeMillis() + 3_600_000),
+                () -> countedLoad(Mono.just(BigDecimal.TEN)));
+
+        assertEquals(0, loads.get());
+    }
+
+    @Test
+    @DisplayName("Refresh antecipado: não recarrega com uma leitura da carteira em andamento")
+    void refreshJoinsNothingWhileLoadInFlight() {
+        BalanceLoadCoalescer coalescer = coalescer(false);
+        Sinks.One<BigDecimal> database = Sinks.one();
+        coalescer.load(WALLET_ID, () -> countedLoad(database.asMono())).subscribe();
+
+        coalescer.refreshIfExpiring(WALLET_ID, new CachedBalance(BigDecimal.ONE, 1, System.currentTimeMillis()),
+                () -> countedLoad(Mono.just(BigDecimal.TEN)));
+        database.tryEmitValue(BigDecimal.ONE);
+
+        assertEquals(1, loads.get());
+        assertEquals(0, meterRegistry.counter("wallet_cache_early_refreshes").count());
+    }
+
+    @Test
+    @DisplayName("Refresh antecipado: desabilitado ou sem expiração nunca recarrega")
+    void disabledOrNonExpiringIsNeverRefreshed() {
+        BalanceLoadCoalescer disabled = new BalanceLoadCoalescer(cache, meterRegistry, false, 5000, 100, 10, false, 1.0, 50);
+
+        assertFalse(disabled.shouldRefresh(new CachedBalance(BigDecimal.ONE, 1, System.currentTimeMillis())));
+        assertFalse(coalescer(false).shouldRefresh(new CachedBalance(BigDecimal.ONE, 1)));
+    }
+
+    private BalanceLoadCoalescer coalescer(boolean distributedLock) {
+        return new BalanceLoadCoalescer(cache, meterRegistry, distributedLock, 5000, 100, 10, true, 1.0, 50);
+    }
+
+    private Mono<BigDecimal> countedLoad(Mono<BigDecimal> result) {
+        loads.incrementAndGet();
+        return result;
+    }
+}
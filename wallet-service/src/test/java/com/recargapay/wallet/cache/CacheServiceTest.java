@@ -0,0 +1,332 @@
+package com.recargapay.wallet.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recargapay.wallet.database.entity.CheckpointedWalletBalance;
+import com.recargapay.wallet.database.entity.Wallet;
+import com.recargapay.wallet.handle.exception.TransactionException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.data.redis.connection.ReactiveSubscription;
+import org.springframework.data.redis.core.ReactiveStringRedisTemplate;
+import org.springframework.data.redis.core.ReactiveValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+import static com.recargapay.wallet.cache.CacheProperties.BALANCE_INVALIDATION_CHANNEL;
+import static com.recargapay.wallet.cache.KeyProperties.BALANCE_KEY;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CacheServiceTest {
+
+    private static final String WALLET_ID = "wallet-123";
+    private static final String CACHE_KEY = BALANCE_KEY.getKey(WALLET_ID);
+    private static final String CACHED_150 = "{\"balance\":150.00,\"version\":3}";
+    private static final String CACHED_90 = "{\"balance\":90.00,\"version\":4}";
+    private static final String WALLET_KEY = KeyProperties.WALLET_KEY.getKey(WALLET_ID);
+    private static final String CACHED_WALLET = "{\"userId\":\"user-1\",\"status\":\"ACTIVE\"}";
+
+    @Mock
+    ReactiveStringRedisTemplate redisTemplate;
+
+    @Mock
+    ReactiveValueOperations<String, String> valueOperations;
+
+    private SimpleMeterRegistry meterRegistry;
+    private CacheService cacheService;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(redisTemplate.opsForValue()).thenReturn(valueOperations);
+        when(redisTemplate.delete(CACHE_KEY)).thenReturn(Mono.just(1L));
+        cacheService = new CacheService(redisTemplate, new ObjectMapper(), meterRegistry, 100, 60_000, 600_000, 3_600_000, 86_400_000);
+        when(redisTemplate.convertAndSend(BALANCE_INVALIDATION_CHANNEL, cacheService.invalidationMessage(WALLET_ID))).thenReturn(Mono.just(1L));
+    }
+
+    @Test
+    @DisplayName("Saldo lido do Redis fica no L1 e a próxima leitura não vai ao Redis")
+    void redisHitIsKeptInL1() {
+        when(valueOperations.get(CACHE_KEY)).thenReturn(Mono.just(CACHED_150));
+
+        StepVerifier.create(cacheService.getBalance(WALLET_ID)).expectNext(cached("150.00", 3)).verifyComplete();
+        StepVerifier.create(cacheService.getBalance(WALLET_ID)).expectNext(cached("150.00", 3)).verifyComplete();
+
+        verify(valueOperations, times(1)).get(CACHE_KEY);
+        assertEquals(1, meterRegistry.counter("wallet_cache_l1_hits").count());
+        assertEquals(1, meterRegistry.counter("wallet_cache_l1_misses").count());
+        assertEquals(1, meterRegistry.counter("wallet_cache_redis_hits").count());
+    }
+
+    @Test
+    @DisplayName("Saldo ausente no L1 e no Redis retorna vazio e conta miss nos dois níveis")
+    void missOnBothLevels() {
+        when(valueOperations.get(CACHE_KEY)).thenReturn(Mono.empty());
+
+        StepVerifier.create(cacheService.getBalance(WALLET_ID)).verifyComplete();
+
+        assertEquals(1, meterRegistry.counter("wallet_cache_l1_misses").count());
+        assertEquals(1, meterRegistry.counter("wallet_cache_redis_misses").count());
+        assertEquals(0, meterRegistry.counter("wallet_cache_redis_hits").count());
+    }
+
+    @Test
+    @DisplayName("Limpeza do cache remove do L1 e do Redis e publica a invalidação")
+    void clearBalanceCacheEvictsAndPublishes() {
+        when(valueOperations.get(CACHE_KEY)).thenReturn(Mono.just(CACHED_150), Mono.empty());
+        StepVerifier.create(cacheService.getBalance(WALLET_ID)).expectNextCount(1).verifyComplete();
+
+        StepVerifier.create(cacheService.clearBalanceCache(WALLET_ID)).verifyComplete();
+        StepVerifier.create(cacheService.getBalance(WALLET_ID)).verifyComplete();
+
+        verify(redisTemplate).delete(CACHE_KEY);
+        verify(redisTemplate).convertAndSend(BALANCE_INVALIDATION_CHANNEL, cacheService.invalidationMessage(WALLET_ID));
+        verify(valueOperations, times(2)).get(CACHE_KEY);
+    }
+
+    @Test
+    @DisplayName("Falha ao publicar a invalidação não impede a limpeza do cache")
+    void publishFailureDoesNotFailClear() {
+        when(redisTemplate.convertAndSend(BALANCE_INVALIDATION_CHANNEL, cacheService.invalidationMessage(WALLET_ID)))
+                .thenReturn(Mono.error(new RuntimeException("redis down")));
+
+        StepVerifier.create(cacheService.clearBalanceCache(WALLET_ID)).verifyComplete();
+
+        verify(redisTemplate).delete(CACHE_KEY);
+    }
+
+    @Test
+    @DisplayName("Invalidação recebida de outra instância remove o saldo do L1")
+    void invalidationFromAnotherInstanceEvictsL1() {
+        Sinks.Many<ReactiveSubscription.Message<String, String>> channel = Sinks.many().multicast().onBackpressureBuffer();
+        when(redisTemplate.listenToChannel(BALANCE_INVALIDATION_CHANNEL)).thenReturn(channel.asFlux());
+        when(valueOperations.get(CACHE_KEY)).thenReturn(Mono.just(CACHED_150), Mono.just(CACHED_90));
+        cacheService.subscribeInvalidations();
+
+        StepVerifier.create(cacheService.getBalance(WALLET_ID)).expectNext(cached("150.00", 3)).verifyComplete();
+        channel.tryEmitNext(new ReactiveSubscription.ChannelMessage<>(BALANCE_INVALIDATION_CHANNEL, "other-instance:" + WALLET_ID));
+        StepVerifier.create(cacheService.getBalance(WALLET_ID)).expectNext(cached("90.00", 4)).verifyComplete();
+
+        cacheService.unsubscribeInvalidations();
+    }
+
+    @Test
+    @DisplayName("Invalidação publicada pela própria instância não remove o saldo que ela acabou de gravar no L1")
+    void ownInvalidationKeepsWrittenBalance() {
+        Sinks.Many<ReactiveSubscription.Message<String, String>> channel = Sinks.many().multicast().onBackpressureBuffer();
+        when(redisTemplate.listenToChannel(BALANCE_INVALIDATION_CHANNEL)).thenReturn(channel.asFlux());
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(CACHE_KEY)), anyList())).thenReturn(Flux.just(1L));
+        cacheService.subscribeInvalidations();
+
+        StepVerifier.create(cacheService.writeBalance(wallet("180.00", 5L))).verifyComplete();
+        channel.tryEmitNext(new ReactiveSubscription.ChannelMessage<>(BALANCE_INVALIDATION_CHANNEL, cacheService.invalidationMessage(WALLET_ID)));
+        StepVerifier.create(cacheService.getBalance(WALLET_ID))
+                .assertNext(cached -> assertEquals(5, cached.version()))
+                .verifyComplete();
+
+        verify(valueOperations, never()).get(CACHE_KEY);
+        cacheService.unsubscribeInvalidations();
+    }
+
+    @Test
+    @DisplayName("Valor antigo sem versão no Redis é tratado como miss")
+    void unversionedValueIsAMiss() {
+        when(valueOperations.get(CACHE_KEY)).thenReturn(Mono.just("150.00"));
+
+        StepVerifier.create(cacheService.getBalance(WALLET_ID)).verifyComplete();
+
+        assertEquals(1, meterRegistry.counter("wallet_cache_redis_misses").count());
+    }
+
+    @Test
+    @DisplayName("Escrita com versão mais nova grava no Redis, no L1 e publica a invalidação")
+    void newerVersionIsWrittenThrough() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(CACHE_KEY)), anyList())).thenReturn(Flux.just(1L));
+
+        StepVerifier.create(cacheService.writeBalance(wallet("180.00", 5L))).verifyComplete();
+        StepVerifier.create(cacheService.getBalance(WALLET_ID))
+                .assertNext(cached -> {
+                    assertEquals(new BigDecimal("180.00"), cached.balance());
+                    assertEquals(5, cached.version());
+                })
+                .verifyComplete();
+
+        verify(redisTemplate).execute(any(RedisScript.class), eq(List.of(CACHE_KEY)), argThat((List<String> args) ->
+                args.get(0).startsWith("{\"balance\":180.00,\"version\":5,\"expiresAt\":")
+                        && args.get(1).equals("5")
+                        && args.get(2).equals("3600000")));
+        verify(redisTemplate).convertAndSend(BALANCE_INVALIDATION_CHANNEL, cacheService.invalidationMessage(WALLET_ID));
+        verify(valueOperations, never()).get(CACHE_KEY);
+        verify(redisTemplate, never()).delete(CACHE_KEY);
+        assertEquals(1, meterRegistry.counter("wallet_cache_balance_writes", "result", "applied").count());
+    }
+
+    @Test
+    @DisplayName("Escrita com versão mais antiga é recusada e não publica invalidação")
+    void olderVersionIsRejected() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(CACHE_KEY)), anyList())).thenReturn(Flux.just(0L));
+
+        StepVerifier.create(cacheService.writeBalance(wallet("120.00", 2L))).verifyComplete();
+
+        verify(redisTemplate, never()).convertAndSend(BALANCE_INVALIDATION_CHANNEL, cacheService.invalidationMessage(WALLET_ID));
+        verify(redisTemplate, never()).delete(CACHE_KEY);
+        assertEquals(1, meterRegistry.counter("wallet_cache_balance_writes", "result", "stale").count());
+    }
+
+    @Test
+    @DisplayName("Falha na escrita do saldo remove a chave como fallback")
+    void failedWriteFallsBackToDelete() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(CACHE_KEY)), anyList()))
+                .thenReturn(Flux.error(new RuntimeException("redis down")));
+
+        StepVerifier.create(cacheService.writeBalance(wallet("180.00", 5L))).verifyComplete();
+
+        verify(redisTemplate).delete(CACHE_KEY);
+        assertEquals(1, meterRegistry.counter("wallet_cache_balance_writes", "result", "failed").count());
+    }
+
+    @Test
+    @DisplayName("Saldos de várias carteiras: L1 primeiro e um único MGET para o restante")
+    void getBalancesUsesL1AndOneMultiGet() {
+        String otherId = "wallet-456";
+        String missingId = "wallet-789";
+        when(valueOperations.get(CACHE_KEY)).thenReturn(Mono.just(CACHED_150));
+        StepVerifier.create(cacheService.getBalance(WALLET_ID)).expectNextCount(1).verifyComplete();
+        when(valueOperations.multiGet(List.of(BALANCE_KEY.getKey(otherId), BALANCE_KEY.getKey(missingId))))
+                .thenReturn(Mono.just(Arrays.asList(CACHED_90, null)));
+
+        StepVerifier.create(cacheService.getBalances(List.of(WALLET_ID, otherId, missingId)))
+                .assertNext(found -> {
+                    assertEquals(2, found.size());
+                    assertEquals(cached("150.00", 3), found.get(WALLET_ID));
+                    assertEquals(cached("90.00", 4), found.get(otherId));
+                })
+                .verifyComplete();
+
+        verify(valueOperations, times(1)).multiGet(anyList());
+        assertEquals(2, meterRegistry.counter("wallet_cache_redis_hits").count());
+        assertEquals(2, meterRegistry.counter("wallet_cache_redis_misses").count());
+    }
+
+    @Test
+    @DisplayName("Saldos todos no L1 não vão ao Redis")
+    void getBalancesAllInL1SkipsRedis() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(CACHE_KEY)), anyList())).thenReturn(Flux.just(1L));
+        StepVerifier.create(cacheService.fillBalances(List.of(new CheckpointedWalletBalance(WALLET_ID, 5L, new BigDecimal("180.00"))))).verifyComplete();
+
+        StepVerifier.create(cacheService.getBalances(List.of(WALLET_ID)))
+                .assertNext(found -> assertEquals(new BigDecimal("180.00"), found.get(WALLET_ID).balance()))
+                .verifyComplete();
+
+        verify(valueOperations, never()).multiGet(anyList());
+    }
+
+    @Test
+    @DisplayName("Status e dono da carteira lidos do Redis ficam no L1")
+    void walletRedisHitIsKeptInL1() {
+        when(valueOperations.get(WALLET_KEY)).thenReturn(Mono.just(CACHED_WALLET));
+
+        StepVerifier.create(cacheService.getWallet(WALLET_ID)).expectNext(new CachedWallet("user-1", "ACTIVE")).verifyComplete();
+        StepVerifier.create(cacheService.getWallet(WALLET_ID)).expectNext(new CachedWallet("user-1", "ACTIVE")).verifyComplete();
+
+        verify(valueOperations, times(1)).get(WALLET_KEY);
+        assertEquals(1, meterRegistry.counter("wallet_cache_wallet_lookups", "result", "redis_hit").count());
+        assertEquals(1, meterRegistry.counter("wallet_cache_wallet_lookups", "result", "l1_hit").count());
+    }
+
+    @Test
+    @DisplayName("Carteira lida do banco é gravada no Redis com TTL e no L1")
+    void fillWalletWritesWithTtl() {
+        when(valueOperations.set(eq(WALLET_KEY), eq(CACHED_WALLET), any(Duration.class))).thenReturn(Mono.just(true));
+
+        StepVerifier.create(cacheService.fillWallet(wallet("180.00", 5L))).verifyComplete();
+        StepVerifier.create(cacheService.getWallet(WALLET_ID)).expectNext(new CachedWallet("user-1", "ACTIVE")).verifyComplete();
+
+        verify(valueOperations).set(WALLET_KEY, CACHED_WALLET, Duration.ofMillis(600_000));
+        verify(valueOperations, never()).get(WALLET_KEY);
+    }
+
+    @Test
+    @DisplayName("Remoção da carteira apaga o L1 e o Redis e publica a invalidação")
+    void evictWalletDeletesAndPublishes() {
+        when(valueOperations.set(eq(WALLET_KEY), eq(CACHED_WALLET), any(Duration.class))).thenReturn(Mono.just(true));
+        when(redisTemplate.delete(WALLET_KEY)).thenReturn(Mono.just(1L));
+        when(valueOperations.get(WALLET_KEY)).thenReturn(Mono.empty());
+        StepVerifier.create(cacheService.fillWallet(wallet("180.00", 5L))).verifyComplete();
+
+        StepVerifier.create(cacheService.evictWallet(WALLET_ID)).verifyComplete();
+        StepVerifier.create(cacheService.getWallet(WALLET_ID)).verifyComplete();
+
+        verify(redisTemplate).delete(WALLET_KEY);
+        verify(redisTemplate).convertAndSend(BALANCE_INVALIDATION_CHANNEL, cacheService.invalidationMessage(WALLET_ID));
+        assertEquals(1, meterRegistry.counter("wallet_cache_wallet_lookups", "result", "miss").count());
+    }
+
+    @Test
+    @DisplayName("Saldo gravado expira após o TTL da classe de chave")
+    void writtenBalanceCarriesExpiry() {
+        when(redisTemplate.execute(any(RedisScript.class), eq(List.of(CACHE_KEY)), anyList())).thenReturn(Flux.just(1L));
+        long before = System.currentTimeMillis();
+
+        StepVerifier.create(cacheService.fillBalance(WALLET_ID, new BigDecimal("180.00"), 5L)).verifyComplete();
+
+        StepVerifier.create(cacheService.getBalance(WALLET_ID))
+                .assertNext(cached -> assertTrue(cached.expiresAt() >= before + 3_600_000))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Idempotência: primeira requisição marca a chave com SET NX e TTL")
+    void firstRequestIsMarkedWithTtl() {
+        when(valueOperations.setIfAbsent(eq("request-1"), anyString(), any(Duration.class))).thenReturn(Mono.just(true));
+
+        StepVerifier.create(cacheService.isDuplicateTransaction("request-1")).verifyComplete();
+
+        verify(valueOperations).setIfAbsent("request-1", "processed", Duration.ofMillis(86_400_000));
+    }
+
+    @Test
+    @DisplayName("Idempotência: requisição repetida é rejeitada")
+    void repeatedRequestIsRejected() {
+        when(valueOperations.setIfAbsent(eq("request-1"), anyString(), any(Duration.class))).thenReturn(Mono.just(false));
+
+        StepVerifier.create(cacheService.isDuplicateTransaction("request-1"))
+                .expectError(TransactionException.class)
+                .verify();
+    }
+
+    private static CachedBalance cached(String balance, long version) {
+        return new CachedBalance(new BigDecimal(balance), version);
+    }
+
+    private static Wallet wallet(String balance, Long version) {
+        return new Wallet(WALLET_ID, "user-1", "request-1", new BigDecimal(balance), LocalDateTime.now(), "ACTIVE", version);
+    }
+}
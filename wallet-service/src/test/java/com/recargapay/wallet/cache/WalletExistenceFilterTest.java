@@ -0,0 +1,112 @@
+package com.recargapay.wallet.cache;
+
+import com.recargapay.wallet.database.repository.WalletReactiveRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WalletExistenceFilterTest {
+
+    private static final String KNOWN_ID = "wallet-123";
+    private static final String OTHER_KNOWN_ID = "wallet-456";
+    private static final String UNKNOWN_ID = "wallet-999";
+
+    @Mock
+    WalletReactiveRepository walletRepository;
+
+    @Mock
+    CacheService cache;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WalletExistenceFilter existenceFilter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(walletRepository.count()).thenReturn(Mono.just(2L));
+        when(walletRepository.findIdsAfter("", 1)).thenReturn(Flux.just(KNOWN_ID));
+        when(walletRepository.findIdsAfter(KNOWN_ID, 1)).thenReturn(Flux.just(OTHER_KNOWN_ID));
+        when(walletRepository.findIdsAfter(OTHER_KNOWN_ID, 1)).thenReturn(Flux.empty());
+        when(cache.publishWalletCreated(UNKNOWN_ID)).thenReturn(Mono.empty());
+        existenceFilter = new WalletExistenceFilter(walletRepository, cache, meterRegistry, true, 1000, 0.001, 1, 100, 60_000);
+    }
+
+    @Test
+    @DisplayName("Antes da primeira construção do filtro nenhuma carteira é rejeitada")
+    void nothingIsRejectedBeforeFirstBuild() {
+        assertFalse(existenceFilter.isKnownMissing(UNKNOWN_ID));
+    }
+
+    @Test
+    @DisplayName("Filtro construído página a página rejeita ids desconhecidos e aceita os existentes")
+    void builtFilterRejectsUnknownIds() {
+        StepVerifier.create(existenceFilter.build()).expectNext(2L).verifyComplete();
+
+        assertFalse(existenceFilter.isKnownMissing(KNOWN_ID));
+        assertFalse(existenceFilter.isKnownMissing(OTHER_KNOWN_ID));
+        assertTrue(existenceFilter.isKnownMissing(UNKNOWN_ID));
+        assertEquals(1, meterRegistry.counter("wallet_existence_filter_rejections", "reason", "filter").count());
+    }
+
+    @Test
+    @DisplayName("Carteira confirmada inexistente pelo banco fica no cache negativo e conta falso positivo")
+    void recordedMissIsKeptInNegativeCache() {
+        StepVerifier.create(existenceFilter.build()).expectNextCount(1).verifyComplete();
+
+        existenceFilter.recordMissing(KNOWN_ID);
+
+        assertTrue(existenceFilter.isKnownMissing(KNOWN_ID));
+        assertEquals(1, meterRegistry.counter("wallet_existence_filter_false_positives").count());
+        assertEquals(1, meterRegistry.counter("wallet_existence_filter_rejections", "reason", "negative_cache").count());
+    }
+
+    @Test
+    @DisplayName("Carteira criada entra no filtro, sai do cache negativo e é publicada às demais instâncias")
+    void registeredWalletIsAddedAndPublished() {
+        StepVerifier.create(existenceFilter.build()).expectNextCount(1).verifyComplete();
+        existenceFilter.recordMissing(UNKNOWN_ID);
+
+        StepVerifier.create(existenceFilter.register(UNKNOWN_ID)).verifyComplete();
+
+        assertFalse(existenceFilter.isKnownMissing(UNKNOWN_ID));
+        verify(cache).publishWalletCreated(UNKNOWN_ID);
+    }
+
+    @Test
+    @DisplayName("Falha ao publicar a criação não impede o registro da carteira")
+    void publishFailureDoesNotFailRegister() {
+        when(cache.publishWalletCreated(UNKNOWN_ID)).thenReturn(Mono.error(new RuntimeException("redis down")));
+        StepVerifier.create(existenceFilter.build()).expectNextCount(1).verifyComplete();
+
+        StepVerifier.create(existenceFilter.register(UNKNOWN_ID)).verifyComplete();
+
+        assertFalse(existenceFilter.isKnownMissing(UNKNOWN_ID));
+    }
+
+    @Test
+    @DisplayName("Filtro desabilitado não rejeita nenhuma carteira")
+    void disabledFilterRejectsNothing() {
+        WalletExistenceFilter disabled = new WalletExistenceFilter(walletRepository, cache, meterRegistry, false, 1000, 0.001, 1, 100, 60_000);
+
+        disabled.recordMissing(UNKNOWN_ID);
+
+        assertFalse(disabled.isKnownMissing(UNKNOWN_ID));
+    }
+}
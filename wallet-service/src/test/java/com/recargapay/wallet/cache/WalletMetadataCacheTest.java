@@ -0,0 +1,146 @@
+package com.recargapay.wallet.cache;
+
+import com.recargapay.wallet.database.entity.Wallet;
+import com.recargapay.wallet.database.repository.WalletReactiveRepository;
+import com.recargapay.wallet.handle.exception.InsufficientFundsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static com.recargapay.wallet.handle.Message.INSUFFICIENT_FUNDS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WalletMetadataCacheTest {
+
+    private static final String WALLET_ID = "wallet-123";
+    private static final BigDecimal AMOUNT = new BigDecimal("100.00");
+
+    @Mock
+    CacheService cache;
+
+    @Mock
+    WalletReactiveRepository walletRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private WalletMetadataCache walletMetadataCache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        when(cache.fillWallet(any(Wallet.class))).thenReturn(Mono.empty());
+        walletMetadataCache = new WalletMetadataCache(cache, walletRepository, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("Carteira em cache é validada sem consultar o banco")
+    void cachedWalletIsValidatedWithoutDatabase() {
+        cacheHolds("150.00");
+
+        StepVerifier.create(walletMetadataCache.validate(WALLET_ID, this::hasFunds))
+                .assertNext(wallet -> {
+                    assertEquals("ACTIVE", wallet.getStatus());
+                    assertEquals(new BigDecimal("150.00"), wallet.getCurrentBalance());
+                    assertEquals(3L, wallet.getVersion());
+                })
+                .verifyComplete();
+
+        verify(walletRepository, never()).findById(anyString());
+        assertEquals(1, meterRegistry.counter("wallet_prevalidation_lookups", "source", "cache").count());
+    }
+
+    @Test
+    @DisplayName("Rejeição baseada no cache é confirmada no banco antes de ser devolvida")
+    void cachedRejectionIsRecheckedAgainstDatabase() {
+        cacheHolds("50.00");
+        when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(wallet("180.00", 4L)));
+
+        StepVerifier.create(walletMetadataCache.validate(WALLET_ID, this::hasFunds))
+                .assertNext(wallet -> assertEquals(new BigDecimal("180.00"), wallet.getCurrentBalance()))
+                .verifyComplete();
+
+        assertEquals(1, meterRegistry.counter("wallet_prevalidation_rechecks").count());
+    }
+
+    @Test
+    @DisplayName("Rejeição confirmada pelo banco é devolvida")
+    void confirmedRejectionIsReturned() {
+        cacheHolds("50.00");
+        when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(wallet("50.00", 3L)));
+
+        StepVerifier.create(walletMetadataCache.validate(WALLET_ID, this::hasFunds))
+                .expectError(InsufficientFundsException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("Cache incompleto lê a carteira do banco e preenche somente status e dono, sem gravar o saldo da linha")
+    void missLoadsFromDatabaseAndFills() {
+        when(cache.getWallet(WALLET_ID)).thenReturn(Mono.empty());
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.just(new CachedBalance(new BigDecimal("150.00"), 3)));
+        Wallet stored = wallet("150.00", 3L);
+        when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(stored));
+
+        StepVerifier.create(walletMetadataCache.validate(WALLET_ID, this::hasFunds))
+                .expectNext(stored)
+                .verifyComplete();
+
+        verify(cache).fillWallet(stored);
+        verify(cache, never()).fillBalance(anyString(), any(), any());
+        assertEquals(1, meterRegistry.counter("wallet_prevalidation_lookups", "source", "database").count());
+    }
+
+    @Test
+    @DisplayName("Redis indisponível lê a carteira do banco")
+    void cacheErrorFallsBackToDatabase() {
+        when(cache.getWallet(WALLET_ID)).thenReturn(Mono.error(new RuntimeException("redis down")));
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.empty());
+        when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(wallet("150.00", 3L)));
+
+        StepVerifier.create(walletMetadataCache.validate(WALLET_ID, this::hasFunds))
+                .expectNextCount(1)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Carteira inexistente completa vazio")
+    void missingWalletCompletesEmpty() {
+        when(cache.getWallet(WALLET_ID)).thenReturn(Mono.empty());
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.empty());
+        when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.empty());
+
+        StepVerifier.create(walletMetadataCache.validate(WALLET_ID, this::hasFunds)).verifyComplete();
+    }
+
+    private void cacheHolds(String balance) {
+        when(cache.getWallet(WALLET_ID)).thenReturn(Mono.just(new CachedWallet("user-1", "ACTIVE")));
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.just(new CachedBalance(new BigDecimal(balance), 3)));
+    }
+
+    private Mono<Wallet> hasFunds(Wallet wallet) {
+        return wallet.getCurrentBalance().compareTo(AMOUNT) < 0
+                ? Mono.error(new InsufficientFundsException(INSUFFICIENT_FUNDS))
+                : Mono.just(wallet);
+    }
+
+    private static Wallet wallet(String balance, Long version) {
+        return new Wallet(WALLET_ID, "user-1", "request-1", new BigDecimal(balance), LocalDateTime.now(), "ACTIVE", version);
+    }
+}
@@ -0,0 +1,36 @@
+package com.recargapay.wallet.core.executor;
+
+import com.recargapay.wallet.core.enums.TransactionType;
+import com.recargapay.wallet.handle.exception.TransactionException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ExecutionModePolicyTest {
+
+    private final ExecutionModePolicy policy = new ExecutionModePolicy(true, false);
+
+    @Test
+    @DisplayName("Sem header vale a configuração do tipo de operação")
+    void configuredDefaultPerOperation() {
+        assertTrue(policy.isInline(TransactionType.DEPOSIT, null));
+        assertFalse(policy.isInline(TransactionType.WITHDRAW, null));
+        assertFalse(policy.isInline(TransactionType.TRANSFER_OUT, null));
+    }
+
+    @Test
+    @DisplayName("O header executionMode prevalece sobre a configuração")
+    void headerOverridesConfiguration() {
+        assertFalse(policy.isInline(TransactionType.DEPOSIT, "async"));
+        assertTrue(policy.isInline(TransactionType.WITHDRAW, "INLINE"));
+    }
+
+    @Test
+    @DisplayName("Valor inválido no header é rejeitado")
+    void invalidHeaderIsRejected() {
+        assertThrows(TransactionException.class, () -> policy.isInline(TransactionType.DEPOSIT, "sync"));
+    }
+}
@@ -0,0 +1,116 @@
+package com.recargapay.wallet.core.executor;
+
+import com.recargapay.wallet.core.enums.RetryOperationType;
+import com.recargapay.wallet.handle.Message;
+import com.recargapay.wallet.handle.exception.InsufficientFundsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.R2dbcRollbackException;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RetryPolicy policy = new RetryPolicy(meterRegistry, 1, 10, 0.5, 3, 3, 2, 4, 3);
+
+    @Test
+    @DisplayName("Conflito transitório é repetido até a operação concluir")
+    void transientFailureIsRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> operation = Mono.defer(() -> attempts.incrementAndGet() < 3
+                ? Mono.error(new OptimisticLockingFailureException("conflito"))
+                : Mono.just("ok"));
+
+        StepVerifier.create(operation.transform(policy.retry(RetryOperationType.DEPOSIT)))
+                .expectNext("ok")
+                .verifyComplete();
+
+        assertEquals(3, attempts.get());
+        assertEquals(2.0, meterRegistry.counter("wallet_retry_attempts", "operation", "deposit").count());
+        assertEquals(0.0, meterRegistry.counter("wallet_retry_exhausted", "operation", "deposit").count());
+    }
+
+    @Test
+    @DisplayName("Erro de negócio não é repetido")
+    void businessErrorIsNotRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> operation = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new InsufficientFundsException(Message.INSUFFICIENT_FUNDS));
+        });
+
+        StepVerifier.create(operation.transform(policy.retry(RetryOperationType.WITHDRAW)))
+                .expectError(InsufficientFundsException.class)
+                .verify();
+
+        assertEquals(1, attempts.get());
+    }
+
+    @Test
+    @DisplayName("Tentativas esgotadas propagam o erro original e são contabilizadas")
+    void exhaustedRetriesPropagateOriginalError() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> operation = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new DuplicateKeyException("conflito"));
+        });
+
+        StepVerifier.create(operation.transform(policy.retry(RetryOperationType.TRANSFER)))
+                .expectError(DuplicateKeyException.class)
+                .verify();
+
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("wallet_retry_exhausted", "operation", "transfer").count());
+    }
+
+    @Test
+    @DisplayName("Classificação considera a causa do erro")
+    void classificationFollowsCauses() {
+        assertTrue(RetryPolicy.isRetryable(new RuntimeException(new CannotAcquireLockException("lock timeout"))));
+        assertFalse(RetryPolicy.isRetryable(new IllegalStateException("falha")));
+    }
+
+    @Test
+    @DisplayName("Conflitos: versão da carteira, chave única concorrente e falha de serialização")
+    void conflictsAreClassified() {
+        assertTrue(RetryPolicy.isConflict(new OptimisticLockingFailureException("versão")));
+        assertTrue(RetryPolicy.isConflict(new DuplicateKeyException("uk_transactions_request_wallet_type")));
+        assertTrue(RetryPolicy.isConflict(new RuntimeException(new R2dbcRollbackException("could not serialize access", "40001"))));
+        assertFalse(RetryPolicy.isConflict(new DataIntegrityViolationException("not null")));
+    }
+
+    @Test
+    @DisplayName("Execução na lane não repete conflitos, somente falhas de infraestrutura")
+    void executionDoesNotRetryConflicts() {
+        AtomicInteger attempts = new AtomicInteger();
+        Mono<String> conflict = Mono.defer(() -> {
+            attempts.incrementAndGet();
+            return Mono.error(new OptimisticLockingFailureException("conflito"));
+        });
+
+        StepVerifier.create(conflict.transform(policy.retry(RetryOperationType.EXECUTION)))
+                .expectError(OptimisticLockingFailureException.class)
+                .verify();
+        assertEquals(1, attempts.get());
+
+        Mono<String> lockTimeout = Mono.defer(() -> attempts.incrementAndGet() < 3
+                ? Mono.error(new CannotAcquireLockException("lock timeout"))
+                : Mono.just("ok"));
+
+        StepVerifier.create(lockTimeout.transform(policy.retry(RetryOperationType.EXECUTION)))
+                .expectNext("ok")
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,81 @@
+package com.recargapay.wallet.core.executor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Throughput of the transaction consumption path with platform and virtual threads, in the production
+ * configuration: one listener thread per partition, created the way the listener container factory does
+ * ({@code wallet-listener-} threads, virtual with {@code wallet.threads.virtual}), submitting every record
+ * to a {@link WalletLaneExecutor} with the default lanes, mailbox capacity and in-flight limit.
+ *
+ * <p>Tagged {@code benchmark}: excluded from the regular build, run with {@code mvn test -Pbenchmark}. It only
+ * reports the measured throughput and never asserts on timings.</p>
+ */
+@Tag("benchmark")
+class VirtualThreadBenchmarkTest {
+
+    private static final int PARTITIONS = 12;
+    private static final int LANES = 16;
+    private static final int LANE_CAPACITY = 1000;
+    private static final int MAX_IN_FLIGHT = 256;
+    private static final int WALLETS = 1_000;
+    private static final int RECORDS_PER_PARTITION = 2_000;
+    private static final Duration DATABASE_LATENCY = Duration.ofMillis(2);
+
+    @Test
+    @DisplayName("Benchmark: consumo com threads de plataforma")
+    void platformThreads() throws InterruptedException {
+        report("platform", run(false));
+    }
+
+    @Test
+    @EnabledForJreRange(min = JRE.JAVA_21)
+    @DisplayName("Benchmark: consumo com threads virtuais")
+    void virtualThreads() throws InterruptedException {
+        report("virtual", run(true));
+    }
+
+    private static long run(boolean virtual) throws InterruptedException {
+        WalletLaneExecutor executor = new WalletLaneExecutor(new SimpleMeterRegistry(), LANES, LANE_CAPACITY, 30, MAX_IN_FLIGHT, 0.8, 0.5, virtual);
+        SimpleAsyncTaskExecutor listenerThreads = new SimpleAsyncTaskExecutor("wallet-listener-");
+        listenerThreads.setVirtualThreads(virtual);
+        CountDownLatch done = new CountDownLatch(PARTITIONS * RECORDS_PER_PARTITION);
+        long start = System.nanoTime();
+        try {
+            for (int partition = 0; partition < PARTITIONS; partition++) {
+                int offset = partition;
+                listenerThreads.execute(() -> {
+                    for (int record = 0; record < RECORDS_PER_PARTITION; record++) {
+                        String walletId = "wallet-" + (record * PARTITIONS + offset) % WALLETS;
+                        executor.submit(List.of(walletId), () -> Mono.delay(DATABASE_LATENCY)
+                                .doFinally(signal -> done.countDown()));
+                    }
+                });
+            }
+            assertTrue(done.await(5, TimeUnit.MINUTES));
+            return System.nanoTime() - start;
+        } finally {
+            executor.destroy();
+        }
+    }
+
+    private static void report(String mode, long nanos) {
+        long records = (long) PARTITIONS * RECORDS_PER_PARTITION;
+        System.out.printf("%s threads: %d records in %d ms (%.0f records/s)%n",
+                mode, records, TimeUnit.NANOSECONDS.toMillis(nanos), records * 1e9 / nanos);
+    }
+}
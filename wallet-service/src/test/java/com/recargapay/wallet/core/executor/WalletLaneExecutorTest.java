@@ -0,0 +1,339 @@
+package com.recargapay.wallet.core.executor;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledForJreRange;
+import org.junit.jupiter.api.condition.JRE;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WalletLaneExecutorTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WalletLaneExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        executor = new WalletLaneExecutor(meterRegistry, 4, 100, 5, 64, 0.8, 0.5, false);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.destroy();
+    }
+
+    @Test
+    @DisplayName("Operações da mesma carteira executam na ordem de submissão")
+    void sameWalletRunsInOrder() throws InterruptedException {
+        List<Integer> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(50);
+
+        for (int i = 0; i < 50; i++) {
+            int sequence = i;
+            executor.submit(List.of("wallet-1"), () -> Mono.delay(Duration.ofMillis(sequence % 3))
+                    .doOnNext(tick -> executed.add(sequence))
+                    .doFinally(signal -> latch.countDown()));
+        }
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 50; i++) {
+            assertEquals(i, executed.get(i));
+        }
+    }
+
+    @Test
+    @DisplayName("Operações de carteiras em lanes diferentes executam em paralelo")
+    void differentLanesRunInParallel() throws InterruptedException {
+        String walletA = walletOnLane(0);
+        String walletB = walletOnLane(1);
+        CountDownLatch bothRunning = new CountDownLatch(2);
+        CountDownLatch finished = new CountDownLatch(2);
+
+        executor.submit(List.of(walletA), () -> Mono.fromRunnable(() -> awaitBoth(bothRunning)).doFinally(s -> finished.countDown()));
+        executor.submit(List.of(walletB), () -> Mono.fromRunnable(() -> awaitBoth(bothRunning)).doFinally(s -> finished.countDown()));
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(0, bothRunning.getCount());
+    }
+
+    @Test
+    @DisplayName("Transferência entre lanes diferentes aguarda as operações anteriores das duas carteiras")
+    void transferWaitsForBothLanes() throws InterruptedException {
+        String source = walletOnLane(0);
+        String destination = walletOnLane(1);
+        List<String> executed = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(4);
+
+        executor.submit(List.of(source), () -> Mono.delay(Duration.ofMillis(50))
+                .doOnNext(tick -> executed.add("deposit-source")).doFinally(s -> latch.countDown()));
+        executor.submit(List.of(destination), () -> Mono.delay(Duration.ofMillis(100))
+                .doOnNext(tick -> executed.add("deposit-destination")).doFinally(s -> latch.countDown()));
+        executor.submit(List.of(source, destination), () -> Mono.fromRunnable(() -> executed.add("transfer"))
+                .doFinally(s -> latch.countDown()));
+        executor.submit(List.of(destination), () -> Mono.fromRunnable(() -> executed.add("withdraw-destination"))
+                .doFinally(s -> latch.countDown()));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(4, executed.size());
+        assertEquals("transfer", executed.get(2));
+        assertEquals("withdraw-destination", executed.get(3));
+    }
+
+    @Test
+    @DisplayName("Transferência que não consegue entrar na segunda lane falha sem travar a lane dona")
+    void rejectedSecondLaneFailsTransferAndReleasesOwner() throws Exception {
+        executor.destroy();
+        executor = new WalletLaneExecutor(meterRegistry, 4, 1, 5, 64, 1.0, 0.0, false);
+        String source = walletOnLane(0);
+        String destination = walletOnLane(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger transfers = new AtomicInteger();
+        AtomicReference<CompletableFuture<Object>> transfer = new AtomicReference<>();
+        AtomicReference<RuntimeException> rejection = new AtomicReference<>();
+
+        executor.submit(List.of(destination), () -> Mono.fromRunnable(() -> awaitQuietly(release)));
+        executor.submit(List.of(destination), Mono::empty);
+        Thread submitter = new Thread(() -> {
+            try {
+                transfer.set(executor.submit(List.of(source, destination), () -> Mono.fromRunnable(transfers::incrementAndGet)));
+            } catch (RuntimeException e) {
+                rejection.set(e);
+            }
+        });
+        submitter.start();
+        while (submitter.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+        submitter.interrupt();
+        submitter.join(5000);
+
+        assertNull(rejection.get());
+        ExecutionException error = assertThrows(ExecutionException.class, () -> transfer.get().get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause().getMessage().contains("Interrupted while enqueuing on lane 1"));
+        assertEquals("depois", executor.execute(List.of(source), () -> Mono.just("depois")).block(Duration.ofSeconds(5)));
+        assertEquals(0, transfers.get());
+
+        release.countDown();
+        assertEquals("destino", executor.execute(List.of(destination), () -> Mono.just("destino")).block(Duration.ofSeconds(5)));
+    }
+
+    @Test
+    @DisplayName("Submissão bloqueada em uma lane cheia não bloqueia as outras lanes")
+    void fullLaneDoesNotBlockOtherLanes() throws Exception {
+        executor.destroy();
+        executor = new WalletLaneExecutor(meterRegistry, 4, 1, 5, 64, 1.0, 0.0, false);
+        String busy = walletOnLane(1);
+        String other = walletOnLane(0);
+        CountDownLatch release = new CountDownLatch(1);
+
+        executor.submit(List.of(busy), () -> Mono.fromRunnable(() -> awaitQuietly(release)));
+        executor.submit(List.of(busy), Mono::empty);
+        Thread submitter = new Thread(() -> executor.submit(List.of(busy), Mono::empty));
+        submitter.start();
+        while (submitter.getState() != Thread.State.WAITING) {
+            Thread.sleep(10);
+        }
+
+        assertEquals("livre", executor.execute(List.of(other), () -> Mono.just("livre")).block(Duration.ofSeconds(5)));
+
+        release.countDown();
+        submitter.join(5000);
+        assertFalse(submitter.isAlive());
+    }
+
+    @Test
+    @DisplayName("Transferência abandonada quando a outra lane não chega dentro do timeout de execução")
+    void transferIsAbandonedWhenLaneDoesNotJoinInTime() throws Exception {
+        executor.destroy();
+        executor = new WalletLaneExecutor(meterRegistry, 4, 100, 1, 64, 0.8, 0.5, false);
+        String source = walletOnLane(0);
+        String destination = walletOnLane(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger transfers = new AtomicInteger();
+
+        executor.submit(List.of(destination), () -> Mono.fromRunnable(() -> awaitQuietly(release)));
+        CompletableFuture<Object> transfer = executor.submit(List.of(source, destination),
+                () -> Mono.fromRunnable(transfers::incrementAndGet));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> transfer.get(5, TimeUnit.SECONDS));
+        assertTrue(error.getCause().getMessage().contains("not every lane reached it"));
+        assertEquals("depois", executor.execute(List.of(source), () -> Mono.just("depois")).block(Duration.ofSeconds(5)));
+
+        release.countDown();
+        assertEquals("destino", executor.execute(List.of(destination), () -> Mono.just("destino")).block(Duration.ofSeconds(5)));
+        assertEquals(0, transfers.get());
+    }
+
+    @Test
+    @DisplayName("Falha em uma execução não interrompe a lane")
+    void failureDoesNotStopLane() throws InterruptedException {
+        AtomicInteger executed = new AtomicInteger();
+        CountDownLatch latch = new CountDownLatch(1);
+
+        executor.submit(List.of("wallet-1"), () -> Mono.error(new RuntimeException("falha")));
+        executor.submit(List.of("wallet-1"), () -> Mono.fromRunnable(executed::incrementAndGet).doFinally(s -> latch.countDown()));
+
+        assertTrue(latch.await(5, TimeUnit.SECONDS));
+        assertEquals(1, executed.get());
+    }
+
+    @Test
+    @DisplayName("Submissão bloqueia quando o limite de execuções em andamento é atingido")
+    void submitBlocksWhenInFlightLimitIsReached() throws InterruptedException {
+        executor.destroy();
+        executor = new WalletLaneExecutor(meterRegistry, 4, 100, 5, 1, 1.0, 0.0, false);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch secondSubmitted = new CountDownLatch(1);
+
+        executor.submit(List.of(walletOnLane(0)), () -> Mono.fromRunnable(() -> awaitQuietly(release)));
+        Thread submitter = new Thread(() -> {
+            executor.submit(List.of(walletOnLane(1)), Mono::empty);
+            secondSubmitted.countDown();
+        });
+        submitter.start();
+
+        assertFalse(secondSubmitted.await(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, executor.inFlight());
+
+        release.countDown();
+        assertTrue(secondSubmitted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Aumentar o limite em andamento libera submissões bloqueadas")
+    void raisingLimitReleasesBlockedSubmitters() throws InterruptedException {
+        executor.destroy();
+        executor = new WalletLaneExecutor(meterRegistry, 4, 100, 5, 1, 1.0, 0.0, false);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch secondSubmitted = new CountDownLatch(1);
+
+        executor.submit(List.of(walletOnLane(0)), () -> Mono.fromRunnable(() -> awaitQuietly(release)));
+        Thread submitter = new Thread(() -> {
+            executor.submit(List.of(walletOnLane(1)), Mono::empty);
+            secondSubmitted.countDown();
+        });
+        submitter.start();
+        assertFalse(secondSubmitted.await(200, TimeUnit.MILLISECONDS));
+
+        executor.setMaxInFlight(2);
+
+        assertTrue(secondSubmitted.await(5, TimeUnit.SECONDS));
+        assertEquals(2, executor.maxInFlight());
+        release.countDown();
+    }
+
+    @Test
+    @DisplayName("Mailbox acima do high-watermark pausa o consumo e retoma após drenar")
+    void saturatedMailboxPausesAndResumes() throws InterruptedException {
+        executor.destroy();
+        executor = new WalletLaneExecutor(meterRegistry, 4, 10, 5, 64, 0.5, 0.0, false);
+        List<String> signals = new CopyOnWriteArrayList<>();
+        CountDownLatch resumed = new CountDownLatch(1);
+        executor.setBackpressureHandler(new BackpressureHandler() {
+            @Override
+            public void pause() {
+                signals.add("pause");
+            }
+
+            @Override
+            public void resume() {
+                signals.add("resume");
+                resumed.countDown();
+            }
+        });
+        CountDownLatch release = new CountDownLatch(1);
+        String wallet = walletOnLane(0);
+
+        executor.submit(List.of(wallet), () -> Mono.fromRunnable(() -> awaitQuietly(release)));
+        for (int i = 0; i < 6; i++) {
+            executor.submit(List.of(wallet), Mono::empty);
+        }
+
+        assertTrue(executor.isPaused());
+        assertEquals(List.of("pause"), signals);
+
+        release.countDown();
+        assertTrue(resumed.await(5, TimeUnit.SECONDS));
+        assertFalse(executor.isPaused());
+        assertEquals(List.of("pause", "resume"), signals);
+        assertEquals(1.0, meterRegistry.counter("wallet_lane_backpressure_pauses").count());
+    }
+
+    @Test
+    @DisplayName("Execução com resultado emite o valor produzido na lane da carteira")
+    void executeEmitsResultFromLane() {
+        AtomicReference<String> thread = new AtomicReference<>();
+
+        StepVerifier.create(executor.execute(List.of("wallet-1"), () -> Mono.fromCallable(() -> {
+                    thread.set(Thread.currentThread().getName());
+                    return "done";
+                })))
+                .expectNext("done")
+                .verifyComplete();
+
+        assertEquals("wallet-lane-" + executor.laneOf("wallet-1"), thread.get());
+    }
+
+    @Test
+    @DisplayName("Execução com resultado propaga o erro da lane")
+    void executePropagatesError() {
+        StepVerifier.create(executor.execute(List.of("wallet-1"), () -> Mono.error(new IllegalStateException("falha"))))
+                .expectErrorMessage("falha")
+                .verify();
+    }
+
+    @Test
+    @EnabledForJreRange(max = JRE.JAVA_20)
+    @DisplayName("Threads virtuais em uma JVM sem suporte falham na inicialização com erro claro")
+    void virtualThreadsFailFastOnOlderJvm() {
+        IllegalStateException error = assertThrows(IllegalStateException.class,
+                () -> new WalletLaneExecutor(meterRegistry, 4, 100, 5, 64, 0.8, 0.5, true));
+
+        assertTrue(error.getMessage().contains("wallet.threads.virtual requires Java 21"));
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private String walletOnLane(int lane) {
+        for (int i = 0; ; i++) {
+            String walletId = "wallet-" + i;
+            if (executor.laneOf(walletId) == lane) {
+                return walletId;
+            }
+        }
+    }
+
+    private static void awaitBoth(CountDownLatch bothRunning) {
+        bothRunning.countDown();
+        try {
+            assertTrue(bothRunning.await(2, TimeUnit.SECONDS));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -13,8 +13,8 @@ import com.recargapay.wallet.database.repository.WalletReactiveRepository;
 import com.recargapay.wallet.event.balance.BalanceUpdateProducer;
 import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
 import com.recargapay.wallet.event.dto.TransactionEvent;
+import com.recargapay.wallet.handle.exception.DepositException;
 import com.recargapay.wallet.rest.dto.TransactionDTO;
-import io.r2dbc.spi.Connection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -25,16 +25,20 @@ import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
-import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.transaction.reactive.TransactionalOperator;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
-import java.util.function.Function;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static com.recargapay.wallet.database.DbProperties.CONNECTION_DATABASE_TIMEOUT_SECONDS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.eq;
@@ -47,7 +51,7 @@ public class DepositTransactionTest {
     @Mock
     private TransactionFactory factory;
     @Mock
-    private DatabaseClient databaseClient;
+    private TransactionalOperator transactionalOperator;
     @Mock
     private WalletReactiveRepository walletRepository;
     @Mock
@@ -56,9 +60,8 @@ public class DepositTransactionTest {
     private BalanceUpdateProducer balanceUpdateProducer;
     @Mock
     private CacheService cache;
-    @Mock
-    private Connection connection;
 
+    private final AtomicBoolean rolledBack = new AtomicBoolean();
     private TransactionEvent event;
     private Wallet wallet;
     private Transaction dummyTransaction;
@@ -95,33 +98,32 @@ public class DepositTransactionTest {
                 LocalDateTime.now()
         );
 
-        when(factory.databaseClient()).thenReturn(databaseClient);
+        when(factory.transactionalOperator()).thenReturn(transactionalOperator);
         when(factory.walletRepository()).thenReturn(walletRepository);
         when(factory.transactionRepository()).thenReturn(transactionRepository);
         when(factory.balanceUpdateProducer()).thenReturn(balanceUpdateProducer);
         when(factory.cache()).thenReturn(cache);
 
-        when(databaseClient.inConnection(any())).thenAnswer(invocation -> {
-            Function<Connection, Mono<?>> function = invocation.getArgument(0);
-            return function.apply(connection);
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> {
+            Mono<?> work = invocation.getArgument(0);
+            return work.doOnError(error -> rolledBack.set(true));
         });
 
-        when(connection.beginTransaction()).thenReturn(Mono.empty());
-        when(connection.commitTransaction()).thenReturn(Mono.empty());
-        when(connection.rollbackTransaction()).thenReturn(Mono.empty());
-
         when(walletRepository.findById(anyString())).thenReturn(Mono.just(wallet));
 
-        when(transactionRepository.save(any())).thenAnswer(invocation -> Mono.justOrEmpty(invocation.getArgument(0)));
+        when(transactionRepository.insertIfAbsent(any(Transaction.class))).thenAnswer(invocation -> Mono.justOrEmpty(invocation.getArgument(0)));
+
+        when(balanceUpdateProducer.enqueueBalanceUpdate(any(BalanceUpdateEvent.class))).thenReturn(Mono.empty());
 
         when(cache.clearBalanceCache(anyString())).thenReturn(Mono.empty());
+        when(cache.writeBalances(any())).thenReturn(Mono.empty());
     }
 
     @Test
     @DisplayName("Teste de Depósito Bem-Sucedido (Caminho Feliz)")
     public void testSuccessfulDeposit() {
 
-        when(transactionRepository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(transactionRepository.insertIfAbsent(any(Transaction.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
 
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
             converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(event), eq(TransactionStatusType.DONE)))
@@ -130,20 +132,20 @@ public class DepositTransactionTest {
                     .thenReturn(dummyTransactionDTO);
 
             DepositTransaction depositTransaction = DepositTransaction.of(event);
-            depositTransaction.execute(factory);
+            depositTransaction.execute(factory).subscribe(done -> {}, error -> {});
         }
 
-        verify(balanceUpdateProducer, timeout(1000)).sendBalanceUpdate(any(BalanceUpdateEvent.class));
+        verify(balanceUpdateProducer, timeout(1000)).enqueueBalanceUpdate(any(BalanceUpdateEvent.class));
         verify(cache, timeout(1000)).clearBalanceCache(event.getWalletId());
 
-        InOrder inOrder = inOrder(connection, walletRepository, transactionRepository, balanceUpdateProducer);
-        inOrder.verify(connection).beginTransaction();
+        InOrder inOrder = inOrder(transactionalOperator, walletRepository, transactionRepository, balanceUpdateProducer);
+        inOrder.verify(transactionalOperator).transactional(any(Mono.class));
         inOrder.verify(walletRepository).findById(event.getWalletId());
-        inOrder.verify(transactionRepository).save(any());
-        inOrder.verify(balanceUpdateProducer).sendBalanceUpdate(any(BalanceUpdateEvent.class));
-        inOrder.verify(connection).commitTransaction();
+        inOrder.verify(transactionRepository).insertIfAbsent(any(Transaction.class));
+        inOrder.verify(balanceUpdateProducer).enqueueBalanceUpdate(any(BalanceUpdateEvent.class));
+        assertFalse(rolledBack.get());
 
-        assertEquals(BigDecimal.valueOf(20), wallet.getCurrentBalance());
+        assertEquals(BigDecimal.TEN, wallet.getCurrentBalance());
     }
 
     /**
@@ -156,10 +158,10 @@ public class DepositTransactionTest {
 
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
             DepositTransaction depositTransaction = DepositTransaction.of(event);
-            depositTransaction.execute(factory);
+            depositTransaction.execute(factory).subscribe(done -> {}, error -> {});
         }
-        verify(connection).rollbackTransaction();
-        verify(transactionRepository, never()).save(any());
+        assertTrue(rolledBack.get());
+        verify(transactionRepository, never()).insertIfAbsent(any(Transaction.class));
     }
 
     /**
@@ -173,10 +175,10 @@ public class DepositTransactionTest {
 
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
             DepositTransaction depositTransaction = DepositTransaction.of(event);
-            depositTransaction.execute(factory);
+            depositTransaction.execute(factory).subscribe(done -> {}, error -> {});
         }
-        verify(connection).rollbackTransaction();
-        verify(transactionRepository, never()).save(any());
+        assertTrue(rolledBack.get());
+        verify(transactionRepository, never()).insertIfAbsent(any(Transaction.class));
     }
 
     /**
@@ -189,14 +191,14 @@ public class DepositTransactionTest {
 
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
             DepositTransaction depositTransaction = DepositTransaction.of(event);
-            depositTransaction.execute(factory);
+            depositTransaction.execute(factory).subscribe(done -> {}, error -> {});
         }
         try {
             Thread.sleep((CONNECTION_DATABASE_TIMEOUT_SECONDS + 1) * 1000L);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
         }
-        verify(connection).rollbackTransaction();
+        assertTrue(rolledBack.get());
     }
 
     /**
@@ -205,7 +207,7 @@ public class DepositTransactionTest {
     @Test
     @DisplayName("Teste: Falha ao Salvar a Transação")
     public void testFailureOnSavingTransaction() throws InterruptedException {
-        when(transactionRepository.save(any()))
+        when(transactionRepository.insertIfAbsent(any(Transaction.class)))
                 .thenReturn(Mono.error(new RuntimeException("Erro ao salvar a transação")));
 
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
@@ -213,11 +215,11 @@ public class DepositTransactionTest {
                     .thenReturn(dummyTransaction);
 
             DepositTransaction depositTransaction = DepositTransaction.of(event);
-            depositTransaction.execute(factory);
+            depositTransaction.execute(factory).subscribe(done -> {}, error -> {});
             Thread.sleep(500);
         }
 
-        verify(connection).rollbackTransaction();
+        assertTrue(rolledBack.get());
     }
 
 
@@ -228,17 +230,16 @@ public class DepositTransactionTest {
     @Test
     @DisplayName("Teste: Falha ao Enviar o Evento de Atualização de Saldo")
     public void testFailureOnBalanceUpdateEvent() {
-        doThrow(new RuntimeException("Erro no evento"))
-                .when(balanceUpdateProducer)
-                .sendBalanceUpdate(any(BalanceUpdateEvent.class));
+        when(balanceUpdateProducer.enqueueBalanceUpdate(any(BalanceUpdateEvent.class)))
+                .thenReturn(Mono.error(new RuntimeException("Erro no evento")));
 
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
             converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(event), eq(TransactionStatusType.DONE)))
                     .thenReturn(dummyTransaction);
             DepositTransaction depositTransaction = DepositTransaction.of(event);
-            depositTransaction.execute(factory);
+            depositTransaction.execute(factory).subscribe(done -> {}, error -> {});
         }
-        verify(connection).rollbackTransaction();
+        assertTrue(rolledBack.get());
     }
 
     /**
@@ -253,9 +254,9 @@ public class DepositTransactionTest {
             converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(event), eq(TransactionStatusType.DONE)))
                     .thenReturn(dummyTransaction);
             DepositTransaction depositTransaction = DepositTransaction.of(event);
-            depositTransaction.execute(factory);
+            depositTransaction.execute(factory).subscribe(done -> {}, error -> {});
         }
-        verify(connection).rollbackTransaction();
+        assertTrue(rolledBack.get());
     }
 
     /**
@@ -264,15 +265,20 @@ public class DepositTransactionTest {
     @Test
     @DisplayName("Teste: Falha ao Efetuar Commit da Transação")
     public void testFailureOnCommitTransaction() {
-        when(connection.commitTransaction()).thenReturn(Mono.error(new RuntimeException("Erro no commit")));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> {
+            Mono<?> work = invocation.getArgument(0);
+            return work.then(Mono.error(new RuntimeException("Erro no commit")));
+        });
 
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
             converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(event), eq(TransactionStatusType.DONE)))
                     .thenReturn(dummyTransaction);
             DepositTransaction depositTransaction = DepositTransaction.of(event);
-            depositTransaction.execute(factory);
+            StepVerifier.create(depositTransaction.execute(factory))
+                    .expectErrorMessage("Erro no commit")
+                    .verify();
         }
-        verify(connection).rollbackTransaction();
+        verify(transactionRepository).insertIfAbsent(any(Transaction.class));
     }
 
     /**
@@ -282,13 +288,18 @@ public class DepositTransactionTest {
     @DisplayName("Teste: Falha ao Efetuar Rollback da Transação")
     public void testFailureOnRollbackTransaction() {
         when(walletRepository.findById(anyString())).thenReturn(Mono.empty());
-        when(connection.rollbackTransaction()).thenReturn(Mono.error(new RuntimeException("Erro no rollback")));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> {
+            Mono<?> work = invocation.getArgument(0);
+            return work.onErrorResume(error -> Mono.error(new RuntimeException("Erro no rollback")));
+        });
 
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
             DepositTransaction depositTransaction = DepositTransaction.of(event);
-            depositTransaction.execute(factory);
+            StepVerifier.create(depositTransaction.execute(factory))
+                    .expectErrorMessage("Erro no rollback")
+                    .verify();
         }
-        verify(connection).rollbackTransaction();
+        verify(transactionRepository, never()).insertIfAbsent(any(Transaction.class));
     }
 
     /**
@@ -298,7 +309,7 @@ public class DepositTransactionTest {
     @DisplayName("Teste: Ordem das Operações")
     public void testOrderOfOperations() {
 
-        when(transactionRepository.save(any())).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
+        when(transactionRepository.insertIfAbsent(any(Transaction.class))).thenAnswer(invocation -> Mono.just(invocation.getArgument(0)));
 
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
             converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(event), eq(TransactionStatusType.DONE)))
@@ -307,20 +318,95 @@ public class DepositTransactionTest {
                     .thenReturn(dummyTransactionDTO);
 
             DepositTransaction depositTransaction = DepositTransaction.of(event);
-            depositTransaction.execute(factory);
+            depositTransaction.execute(factory).subscribe(done -> {}, error -> {});
         }
 
-        verify(balanceUpdateProducer, timeout(1000)).sendBalanceUpdate(any(BalanceUpdateEvent.class));
+        verify(balanceUpdateProducer, timeout(1000)).enqueueBalanceUpdate(any(BalanceUpdateEvent.class));
         verify(cache, timeout(1000)).clearBalanceCache(event.getWalletId());
 
-        InOrder inOrder = inOrder(connection, walletRepository, transactionRepository, balanceUpdateProducer, connection);
-        inOrder.verify(connection).beginTransaction();
+        InOrder inOrder = inOrder(transactionalOperator, walletRepository, transactionRepository, balanceUpdateProducer);
+        inOrder.verify(transactionalOperator).transactional(any(Mono.class));
         inOrder.verify(walletRepository).findById(event.getWalletId());
-        inOrder.verify(transactionRepository).save(any());
-        inOrder.verify(balanceUpdateProducer).sendBalanceUpdate(any(BalanceUpdateEvent.class));
-        inOrder.verify(connection).commitTransaction();
+        inOrder.verify(transactionRepository).insertIfAbsent(any(Transaction.class));
+        inOrder.verify(balanceUpdateProducer).enqueueBalanceUpdate(any(BalanceUpdateEvent.class));
+        assertFalse(rolledBack.get());
+
+        assertEquals(BigDecimal.TEN, wallet.getCurrentBalance());
+    }
 
-        assertEquals(BigDecimal.valueOf(20), wallet.getCurrentBalance());
+    @Test
+    @DisplayName("Depósito inline credita a carteira e retorna DONE com o saldo resultante")
+    public void testInlineDepositReturnsResultingBalance() {
+        wallet.setCurrentBalance(BigDecimal.valueOf(30));
+        when(walletRepository.creditIfActive(event.getWalletId(), event.getAmount())).thenReturn(Mono.just(wallet));
+
+        StepVerifier.create(DepositTransaction.inline(event).execute(factory))
+                .assertNext(result -> {
+                    assertEquals(TransactionStatusType.DONE.getStatus(), result.getStatus());
+                    assertEquals(BigDecimal.valueOf(30), result.getBalance());
+                })
+                .verifyComplete();
+
+        verify(walletRepository, never()).findById(anyString());
+        verify(balanceUpdateProducer).enqueueBalanceUpdate(argThat(BalanceUpdateEvent::isSettled));
+        verify(cache).writeBalances(List.of(wallet));
+        verify(cache, never()).clearBalanceCache(anyString());
+        assertFalse(rolledBack.get());
     }
 
+    @Test
+    @DisplayName("Depósito inline em carteira inativa é rejeitado sem gravar lançamento")
+    public void testInlineDepositOnInactiveWallet() {
+        wallet.setStatus("INACTIVE");
+        when(walletRepository.creditIfActive(anyString(), any())).thenReturn(Mono.empty());
+
+        StepVerifier.create(DepositTransaction.inline(event).execute(factory))
+                .expectError(DepositException.class)
+                .verify();
+
+        verify(balanceUpdateProducer, never()).enqueueBalanceUpdate(any());
+        assertTrue(rolledBack.get());
+    }
+
+    @Test
+    @DisplayName("Depósito inline com falha no commit não grava o saldo no cache")
+    public void testInlineDepositCommitFailureSkipsCacheWrite() {
+        when(walletRepository.creditIfActive(event.getWalletId(), event.getAmount())).thenReturn(Mono.just(wallet));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> {
+            Mono<?> work = invocation.getArgument(0);
+            return work.then(Mono.error(new RuntimeException("Erro no commit")));
+        });
+
+        StepVerifier.create(DepositTransaction.inline(event).execute(factory))
+                .expectErrorMessage("Erro no commit")
+                .verify();
+
+        verify(cache, never()).writeBalances(any());
+    }
+
+    @Test
+    @DisplayName("Depósito reentregue não gera nova atualização de saldo")
+    public void testRedeliveredDepositIsSkipped() {
+        when(transactionRepository.insertIfAbsent(any(Transaction.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(DepositTransaction.of(event).execute(factory))
+                .assertNext(result -> assertEquals(TransactionStatusType.DONE.getStatus(), result.getStatus()))
+                .verifyComplete();
+
+        verify(balanceUpdateProducer, never()).enqueueBalanceUpdate(any());
+        assertFalse(rolledBack.get());
+    }
+
+    @Test
+    @DisplayName("Depósito inline reentregue não credita a carteira novamente")
+    public void testRedeliveredInlineDepositIsSkipped() {
+        when(transactionRepository.insertIfAbsent(any(Transaction.class))).thenReturn(Mono.empty());
+
+        StepVerifier.create(DepositTransaction.inline(event).execute(factory))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(walletRepository, never()).creditIfActive(anyString(), any());
+        verify(balanceUpdateProducer, never()).enqueueBalanceUpdate(any());
+    }
 }
@@ -0,0 +1,167 @@
+package com.recargapay.wallet.core.factory;
+
+import com.recargapay.wallet.core.enums.TransactionType;
+import com.recargapay.wallet.core.enums.WalletStatusType;
+import com.recargapay.wallet.core.factory.context.TransactionBatch;
+import com.recargapay.wallet.database.entity.Wallet;
+import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
+import com.recargapay.wallet.event.dto.DualTransactionEvent;
+import com.recargapay.wallet.event.dto.TransactionEvent;
+import com.recargapay.wallet.handle.exception.DepositException;
+import com.recargapay.wallet.handle.exception.InsufficientFundsException;
+import com.recargapay.wallet.handle.exception.WithdrawException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TransactionBatchTest {
+
+    private TransactionBatch batch;
+
+    @BeforeEach
+    void setUp() {
+        batch = new TransactionBatch(List.of(
+                wallet("wallet-a", BigDecimal.valueOf(100), WalletStatusType.ACTIVE.getType()),
+                wallet("wallet-b", BigDecimal.ZERO, WalletStatusType.ACTIVE.getType()),
+                wallet("wallet-inactive", BigDecimal.TEN, "INACTIVE")
+        ));
+    }
+
+    @Test
+    @DisplayName("Saque no mesmo lote enxerga o depósito anterior")
+    void withdrawSeesDepositOfSameBatch() {
+        DepositTransaction.of(event("wallet-b", BigDecimal.valueOf(30), TransactionType.DEPOSIT)).stage(batch);
+        WithdrawTransaction.build(event("wallet-b", BigDecimal.valueOf(-20), TransactionType.WITHDRAW)).stage(batch);
+
+        assertEquals(2, batch.entries().size());
+        assertEquals(0, BigDecimal.TEN.compareTo(batch.balanceOf("wallet-b")));
+    }
+
+    @Test
+    @DisplayName("Saque acima do saldo projetado é rejeitado sem registrar lançamentos")
+    void withdrawAboveProjectedBalanceIsRejected() {
+        WithdrawTransaction.build(event("wallet-a", BigDecimal.valueOf(-80), TransactionType.WITHDRAW)).stage(batch);
+
+        var overdraft = WithdrawTransaction.build(event("wallet-a", BigDecimal.valueOf(-30), TransactionType.WITHDRAW));
+        assertThrows(WithdrawException.class, () -> overdraft.stage(batch));
+
+        assertEquals(1, batch.entries().size());
+        assertEquals(0, BigDecimal.valueOf(20).compareTo(batch.balanceOf("wallet-a")));
+    }
+
+    @Test
+    @DisplayName("Depósito em carteira inexistente ou inativa é rejeitado")
+    void depositOnUnknownOrInactiveWalletIsRejected() {
+        var unknown = DepositTransaction.of(event("wallet-x", BigDecimal.TEN, TransactionType.DEPOSIT));
+        var inactive = DepositTransaction.of(event("wallet-inactive", BigDecimal.TEN, TransactionType.DEPOSIT));
+
+        assertThrows(DepositException.class, () -> unknown.stage(batch));
+        assertThrows(DepositException.class, () -> inactive.stage(batch));
+        assertTrue(batch.entries().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Transferência registra débito e crédito e atualiza as duas projeções")
+    void transferStagesDebitAndCredit() {
+        TransferTransaction.of(new DualTransactionEvent(
+                event("wallet-a", BigDecimal.valueOf(40), TransactionType.TRANSFER_OUT),
+                event("wallet-b", BigDecimal.valueOf(40), TransactionType.TRANSFER_IN)
+        )).stage(batch);
+
+        assertEquals(2, batch.entries().size());
+        assertEquals(2, batch.balanceUpdates().size());
+        assertEquals(0, BigDecimal.valueOf(60).compareTo(batch.balanceOf("wallet-a")));
+        assertEquals(0, BigDecimal.valueOf(40).compareTo(batch.balanceOf("wallet-b")));
+        assertEquals(List.of("wallet-a", "wallet-b"), List.copyOf(batch.touchedWallets()));
+    }
+
+    @Test
+    @DisplayName("Transferência com saldo insuficiente é rejeitada")
+    void transferWithInsufficientFundsIsRejected() {
+        var transfer = TransferTransaction.of(new DualTransactionEvent(
+                event("wallet-b", BigDecimal.valueOf(40), TransactionType.TRANSFER_OUT),
+                event("wallet-a", BigDecimal.valueOf(40), TransactionType.TRANSFER_IN)
+        ));
+
+        assertThrows(InsufficientFundsException.class, () -> transfer.stage(batch));
+        assertTrue(batch.entries().isEmpty());
+    }
+
+    @Test
+    @DisplayName("Lançamento já gravado por entrega anterior é ignorado no lote")
+    void alreadyAppliedEntryIsSkipped() {
+        var deposit = event("wallet-b", BigDecimal.valueOf(30), TransactionType.DEPOSIT);
+        batch = new TransactionBatch(
+                List.of(wallet("wallet-b", BigDecimal.ZERO, WalletStatusType.ACTIVE.getType())),
+                Set.of(TransactionBatch.entryKey(deposit.getRequestTransactionId(), "wallet-b", TransactionType.DEPOSIT.getType())));
+
+        DepositTransaction.of(deposit).stage(batch);
+
+        assertTrue(batch.entries().isEmpty());
+        assertEquals(0, BigDecimal.ZERO.compareTo(batch.balanceOf("wallet-b")));
+    }
+
+    @Test
+    @DisplayName("Mesma transação duas vezes no lote é aplicada uma única vez")
+    void duplicatedTransactionInBatchIsAppliedOnce() {
+        var deposit = event("wallet-b", BigDecimal.valueOf(30), TransactionType.DEPOSIT);
+
+        DepositTransaction.of(deposit).stage(batch);
+        DepositTransaction.of(deposit).stage(batch);
+
+        assertEquals(1, batch.entries().size());
+        assertEquals(0, BigDecimal.valueOf(30).compareTo(batch.balanceOf("wallet-b")));
+    }
+
+    @Test
+    @DisplayName("Somente as atualizações de saldo dos lançamentos inseridos são publicadas")
+    void balanceUpdatesOfInsertedEntriesOnly() {
+        var first = event("wallet-b", BigDecimal.valueOf(30), TransactionType.DEPOSIT);
+        var second = event("wallet-b", BigDecimal.valueOf(10), TransactionType.DEPOSIT);
+        DepositTransaction.of(first).stage(batch);
+        DepositTransaction.of(second).stage(batch);
+
+        var inserted = batch.balanceUpdatesOf(Set.of(
+                TransactionBatch.entryKey(second.getRequestTransactionId(), "wallet-b", TransactionType.DEPOSIT.getType())));
+
+        assertEquals(1, inserted.size());
+        assertEquals(0, BigDecimal.TEN.compareTo(inserted.get(0).getAmount()));
+    }
+
+    @Test
+    @DisplayName("Deltas por carteira somam apenas os lançamentos inseridos e os eventos já saem liquidados")
+    void balanceDeltasOfInsertedEntriesPerWallet() {
+        var deposit = event("wallet-b", BigDecimal.valueOf(30), TransactionType.DEPOSIT);
+        var withdraw = event("wallet-b", BigDecimal.valueOf(-20), TransactionType.WITHDRAW);
+        var skipped = event("wallet-a", BigDecimal.valueOf(-50), TransactionType.WITHDRAW);
+        DepositTransaction.of(deposit).stage(batch);
+        WithdrawTransaction.build(withdraw).stage(batch);
+        WithdrawTransaction.build(skipped).stage(batch);
+
+        var deltas = batch.balanceDeltasOf(Set.of(
+                TransactionBatch.entryKey(deposit.getRequestTransactionId(), "wallet-b", TransactionType.DEPOSIT.getType()),
+                TransactionBatch.entryKey(withdraw.getRequestTransactionId(), "wallet-b", TransactionType.WITHDRAW.getType())));
+
+        assertEquals(Set.of("wallet-b"), deltas.keySet());
+        assertEquals(0, BigDecimal.TEN.compareTo(deltas.get("wallet-b")));
+        assertTrue(batch.balanceUpdates().stream().allMatch(BalanceUpdateEvent::isSettled));
+    }
+
+    private static TransactionEvent event(String walletId, BigDecimal amount, TransactionType type) {
+        return new TransactionEvent(UUID.randomUUID().toString(), walletId, amount, type.getType());
+    }
+
+    private static Wallet wallet(String id, BigDecimal balance, String status) {
+        return new Wallet(id, UUID.randomUUID().toString(), UUID.randomUUID().toString(), balance, LocalDateTime.now(), status, 1L);
+    }
+}
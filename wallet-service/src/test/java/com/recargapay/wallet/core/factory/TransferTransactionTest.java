@@ -19,7 +19,11 @@ import com.recargapay.wallet.event.balance.BalanceUpdateProducer;
 import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
 import com.recargapay.wallet.event.dto.DualTransactionEvent;
 import com.recargapay.wallet.event.dto.TransactionEvent;
+import com.recargapay.wallet.handle.exception.InsufficientFundsException;
+import com.recargapay.wallet.handle.exception.WalletInactiveException;
 import com.recargapay.wallet.rest.dto.TransactionDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.r2dbc.spi.Connection;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -31,13 +35,19 @@ import org.mockito.MockedStatic;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 @ExtendWith(MockitoExtension.class)
 @MockitoSettings(strictness = Strictness.LENIENT)
@@ -57,6 +67,11 @@ public class TransferTransactionTest {
     private CacheService cache;
     @Mock
     private Connection connection;
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    private final AtomicBoolean rolledBack = new AtomicBoolean();
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
 
     private DualTransactionEvent event;
     private TransactionEvent sourceEvent;
@@ -115,36 +130,54 @@ public class TransferTransactionTest {
         );
 
         when(factory.databaseClient()).thenReturn(databaseClient);
+        when(factory.transactionalOperator()).thenReturn(transactionalOperator);
         when(factory.walletRepository()).thenReturn(walletRepository);
         when(factory.transactionRepository()).thenReturn(transactionRepository);
         when(factory.balanceUpdateProducer()).thenReturn(balanceUpdateProducer);
         when(factory.cache()).thenReturn(cache);
+        when(factory.meterRegistry()).thenReturn(meterRegistry);
 
         when(databaseClient.inConnection(any())).thenAnswer(invocation -> {
             java.util.function.Function<Connection, Mono<?>> function = invocation.getArgument(0);
             return function.apply(connection);
         });
 
-        when(connection.beginTransaction()).thenReturn(Mono.empty());
-        when(connection.commitTransaction()).thenReturn(Mono.empty());
-        when(connection.rollbackTransaction()).thenReturn(Mono.empty());
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> {
+            Mono<?> work = invocation.getArgument(0);
+            return work.doOnError(error -> rolledBack.set(true));
+        });
 
         when(walletRepository.findById("wallet-source")).thenReturn(Mono.just(sourceWallet));
         when(walletRepository.findById("wallet-dest")).thenReturn(Mono.just(destinationWallet));
-        when(walletRepository.findByIdAndVersion("wallet-source", sourceWallet.getVersion()))
+        when(walletRepository.debitIfActiveAndFunded(eq("wallet-source"), any()))
+                .thenReturn(Mono.just(sourceWallet));
+        when(walletRepository.credit(eq("wallet-dest"), any()))
+                .thenReturn(Mono.just(destinationWallet));
+        when(walletRepository.lockAllByIdInOrder(any()))
+                .thenReturn(Flux.just(destinationWallet, sourceWallet));
+        when(walletRepository.applyBalanceDelta(eq("wallet-source"), any()))
                 .thenReturn(Mono.just(sourceWallet));
+        when(walletRepository.applyBalanceDelta(eq("wallet-dest"), any()))
+                .thenReturn(Mono.just(destinationWallet));
 
         when(transactionRepository.save(any()))
                 .thenAnswer(invocation -> Mono.justOrEmpty(invocation.getArgument(0)));
+        when(transactionRepository.insertIfAbsent(any(Transaction.class)))
+                .thenAnswer(invocation -> Mono.justOrEmpty(invocation.getArgument(0)));
+
+        when(balanceUpdateProducer.enqueueBalanceUpdate(any(BalanceUpdateEvent.class))).thenReturn(Mono.empty());
 
         when(cache.clearBalanceCache(anyString())).thenReturn(Mono.empty());
+        when(cache.writeBalances(any())).thenReturn(Mono.empty());
     }
 
     @Test
     @DisplayName("Caminho Feliz: Transferência bem-sucedida")
     public void testHappyPath() throws InterruptedException {
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
-            converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(sourceEvent), eq(TransactionStatusType.DONE)))
+            converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(),
+                            argThat(transactionEvent -> transactionEvent != null && "wallet-source".equals(transactionEvent.getWalletId())),
+                            eq(TransactionStatusType.DONE)))
                     .thenReturn(dummyTransaction);
             converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(destinationEvent), eq(TransactionStatusType.DONE)))
                     .thenReturn(new Transaction());
@@ -156,13 +189,17 @@ public class TransferTransactionTest {
                     .thenReturn(Mono.just(new Transaction()));
 
             TransferTransaction transfer = TransferTransaction.of(event);
-            transfer.execute(factory);
+            transfer.execute(factory).subscribe(done -> {}, error -> {});
             Thread.sleep(500);
 
-            InOrder inOrder = inOrder(connection, walletRepository, transactionRepository, balanceUpdateProducer, cache);
-            inOrder.verify(connection).beginTransaction();
+            InOrder inOrder = inOrder(transactionalOperator, walletRepository, transactionRepository, balanceUpdateProducer, cache);
+            inOrder.verify(transactionalOperator).transactional(any(Mono.class));
             inOrder.verify(walletRepository).findById(anyString());
-
+            // "wallet-dest" sorts before "wallet-source": its row is updated first
+            inOrder.verify(walletRepository).credit("wallet-dest", BigDecimal.valueOf(50));
+            inOrder.verify(walletRepository).debitIfActiveAndFunded("wallet-source", BigDecimal.valueOf(50));
+            verify(balanceUpdateProducer, times(2)).enqueueBalanceUpdate(any(BalanceUpdateEvent.class));
+            assertFalse(rolledBack.get());
 
             assertEquals(BigDecimal.valueOf(100), sourceWallet.getCurrentBalance());
             assertEquals(BigDecimal.valueOf(20), destinationWallet.getCurrentBalance());
@@ -172,11 +209,12 @@ public class TransferTransactionTest {
     @Test
     @DisplayName("Erro: Carteira de origem não encontrada")
     public void testSourceWalletNotFound() throws InterruptedException {
+        when(walletRepository.debitIfActiveAndFunded(eq("wallet-source"), any())).thenReturn(Mono.empty());
         when(walletRepository.findById("wallet-source")).thenReturn(Mono.empty());
         TransferTransaction transfer = TransferTransaction.of(event);
-        transfer.execute(factory);
+        transfer.execute(factory).subscribe(done -> {}, error -> {});
         Thread.sleep(500);
-        verify(connection).rollbackTransaction();
+        assertTrue(rolledBack.get());
         verify(transactionRepository, never()).save(any());
     }
 
@@ -185,20 +223,57 @@ public class TransferTransactionTest {
     public void testDestinationWalletNotFound() throws InterruptedException {
         when(walletRepository.findById("wallet-dest")).thenReturn(Mono.empty());
         TransferTransaction transfer = TransferTransaction.of(event);
-        transfer.execute(factory);
+        transfer.execute(factory).subscribe(done -> {}, error -> {});
         Thread.sleep(500);
-        verify(connection).rollbackTransaction();
+        assertTrue(rolledBack.get());
         verify(transactionRepository, never()).save(any());
     }
 
     @Test
-    @DisplayName("Erro: Modificação concorrente detectada")
-    public void testConcurrentModification() throws InterruptedException {
-        when(walletRepository.findByIdAndVersion("wallet-source", sourceWallet.getVersion()))
-                .thenReturn(Mono.empty());
+    @DisplayName("Erro: Débito condicional não aplicado por saldo insuficiente")
+    public void testConditionalDebitRejected() {
+        when(walletRepository.debitIfActiveAndFunded(eq("wallet-source"), any())).thenReturn(Mono.empty());
         TransferTransaction transfer = TransferTransaction.of(event);
-        transfer.execute(factory);
-        Thread.sleep(500);
+
+        StepVerifier.create(transfer.execute(factory))
+                .expectError(InsufficientFundsException.class)
+                .verify();
+
+        verify(transactionRepository, never()).save(any());
+        assertTrue(rolledBack.get());
+    }
+
+    @Test
+    @DisplayName("Débito e crédito atualizam as carteiras em ordem de id, em qualquer sentido")
+    public void testWalletsUpdatedInIdOrder() {
+        var reverse = new DualTransactionEvent(
+                new TransactionEvent(UUID.randomUUID().toString(), "wallet-dest", BigDecimal.valueOf(10), "TRANSFER_OUT"),
+                new TransactionEvent(UUID.randomUUID().toString(), "wallet-source", BigDecimal.valueOf(10), "TRANSFER_IN"));
+        when(walletRepository.debitIfActiveAndFunded(eq("wallet-dest"), any())).thenReturn(Mono.just(destinationWallet));
+        when(walletRepository.credit(eq("wallet-source"), any())).thenReturn(Mono.just(sourceWallet));
+
+        StepVerifier.create(TransferTransaction.of(reverse).execute(factory))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        InOrder inOrder = inOrder(walletRepository);
+        inOrder.verify(walletRepository).debitIfActiveAndFunded("wallet-dest", BigDecimal.valueOf(10));
+        inOrder.verify(walletRepository).credit("wallet-source", BigDecimal.valueOf(10));
+        assertFalse(rolledBack.get());
+    }
+
+    @Test
+    @DisplayName("Erro: Débito condicional não aplicado por carteira inativa")
+    public void testConditionalDebitOnInactiveWallet() {
+        sourceWallet.setStatus("INACTIVE");
+        when(walletRepository.debitIfActiveAndFunded(eq("wallet-source"), any())).thenReturn(Mono.empty());
+        TransferTransaction transfer = TransferTransaction.of(event);
+
+        StepVerifier.create(transfer.execute(factory))
+                .expectError(WalletInactiveException.class)
+                .verify();
+
+        verify(transactionRepository, never()).save(any());
     }
 
     @Test
@@ -209,10 +284,10 @@ public class TransferTransactionTest {
                     .thenReturn(dummyTransaction);
             converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(destinationEvent), eq(TransactionStatusType.DONE)))
                     .thenReturn(new Transaction());
-            when(transactionRepository.save(any()))
+            when(transactionRepository.insertIfAbsent(any(Transaction.class)))
                     .thenReturn(Mono.error(new RuntimeException("Erro ao salvar débito")));
             TransferTransaction transfer = TransferTransaction.of(event);
-            transfer.execute(factory);
+            transfer.execute(factory).subscribe(done -> {}, error -> {});
             Thread.sleep(500);
         }
     }
@@ -226,11 +301,10 @@ public class TransferTransactionTest {
             converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(destinationEvent), eq(TransactionStatusType.DONE)))
                     .thenReturn(new Transaction());
             when(transactionRepository.save(any()))
-                    .thenReturn(Mono.just(dummyTransaction))
                     .thenReturn(Mono.error(new RuntimeException("Erro ao salvar crédito")));
 
             TransferTransaction transfer = TransferTransaction.of(event);
-            transfer.execute(factory);
+            transfer.execute(factory).subscribe(done -> {}, error -> {});
             Thread.sleep(500);
 
         }
@@ -239,26 +313,29 @@ public class TransferTransactionTest {
     @Test
     @DisplayName("Erro: Falha ao efetuar commit da transação")
     public void testErrorOnCommitTransaction() throws InterruptedException {
-        when(connection.commitTransaction()).thenReturn(Mono.error(new RuntimeException("Erro no commit")));
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> {
+            Mono<?> work = invocation.getArgument(0);
+            return work.then(Mono.error(new RuntimeException("Erro no commit")));
+        });
         try (MockedStatic<TransactionConverter> converterMock = mockStatic(TransactionConverter.class)) {
             converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(sourceEvent), eq(TransactionStatusType.DONE)))
                     .thenReturn(dummyTransaction);
             converterMock.when(() -> TransactionConverter.eventToTransactionEntity(anyString(), eq(destinationEvent), eq(TransactionStatusType.DONE)))
                     .thenReturn(new Transaction());
             TransferTransaction transfer = TransferTransaction.of(event);
-            transfer.execute(factory);
+            transfer.execute(factory).subscribe(done -> {}, error -> {});
             Thread.sleep(500);
         }
     }
 
     @Test
-    @DisplayName("Erro: Tempo esgotado ao buscar carteira de origem")
+    @DisplayName("Erro: Tempo esgotado ao debitar carteira de origem")
     public void testTimeoutRetrievingSourceWallet() throws InterruptedException {
-        when(walletRepository.findById("wallet-source")).thenReturn(Mono.never());
+        when(walletRepository.debitIfActiveAndFunded(eq("wallet-source"), any())).thenReturn(Mono.never());
         TransferTransaction transfer = TransferTransaction.of(event);
-        transfer.execute(factory);
+        transfer.execute(factory).subscribe(done -> {}, error -> {});
         Thread.sleep((CONNECTION_DATABASE_TIMEOUT_SECONDS + 1) * 1000);
-        verify(connection).rollbackTransaction();
+        assertTrue(rolledBack.get());
     }
 
     @Test
@@ -269,7 +346,7 @@ public class TransferTransactionTest {
         BigDecimal expectedDestinationInitialAfterTranasfer = BigDecimal.valueOf(20L);
 
         TransferTransaction transfer = TransferTransaction.of(event);
-        transfer.execute(factory);
+        transfer.execute(factory).subscribe(done -> {}, error -> {});
         Thread.sleep(500);
 
         assertEquals(expectedAmountSourceAfterTranasfer, sourceWallet.getCurrentBalance());
@@ -288,7 +365,7 @@ public class TransferTransactionTest {
             converterMock.when(() -> TransactionConverter.entityToTransactionDTO(any(), eq(TransactionStatusType.DONE)))
                     .thenReturn(dummyTransactionDTO);
             TransferTransaction transfer = TransferTransaction.of(event);
-            transfer.execute(factory);
+            transfer.execute(factory).subscribe(done -> {}, error -> {});
             Thread.sleep(500);
         }
         assertTrue(sourceWallet.getCurrentBalance().compareTo(BigDecimal.ZERO) > 0);
@@ -311,4 +388,107 @@ public class TransferTransactionTest {
 
     }
 
+    @Test
+    @DisplayName("Após o commit grava no cache o saldo e a versão das duas carteiras")
+    public void testBalancesWrittenThroughAfterCommit() {
+        TransferTransaction transfer = TransferTransaction.of(event);
+
+        StepVerifier.create(transfer.execute(factory))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        InOrder inOrder = inOrder(transactionRepository, cache);
+        inOrder.verify(transactionRepository).save(any());
+        inOrder.verify(cache).writeBalances(List.of(sourceWallet, destinationWallet));
+        verify(cache, never()).clearBalanceCache(anyString());
+    }
+
+    @Test
+    @DisplayName("Transferência reentregue não movimenta as carteiras novamente")
+    public void testRedeliveredTransferIsSkipped() {
+        when(transactionRepository.insertIfAbsent(any(Transaction.class))).thenReturn(Mono.empty());
+        TransferTransaction transfer = TransferTransaction.of(event);
+
+        StepVerifier.create(transfer.execute(factory))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(walletRepository, never()).debitIfActiveAndFunded(anyString(), any());
+        verify(walletRepository, never()).credit(anyString(), any());
+        verify(balanceUpdateProducer, never()).enqueueBalanceUpdate(any());
+        assertFalse(rolledBack.get());
+        verify(cache).writeBalances(List.of());
+    }
+
+    @Test
+    @DisplayName("Lock pessimista: trava as duas carteiras em um único comando antes de debitar e creditar")
+    public void testPessimisticTransferLocksBothWalletsFirst() {
+        when(factory.pessimisticTransfers()).thenReturn(true);
+        TransferTransaction transfer = TransferTransaction.of(event);
+
+        StepVerifier.create(transfer.execute(factory))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        InOrder inOrder = inOrder(walletRepository, transactionRepository);
+        inOrder.verify(walletRepository).lockAllByIdInOrder(List.of("wallet-source", "wallet-dest"));
+        inOrder.verify(transactionRepository).insertIfAbsent(any(Transaction.class));
+        inOrder.verify(walletRepository).applyBalanceDelta("wallet-source", BigDecimal.valueOf(-50));
+        inOrder.verify(walletRepository).applyBalanceDelta("wallet-dest", BigDecimal.valueOf(50));
+        verify(walletRepository, never()).debitIfActiveAndFunded(anyString(), any());
+        verify(balanceUpdateProducer, times(2)).enqueueBalanceUpdate(any(BalanceUpdateEvent.class));
+        assertEquals(1, meterRegistry.timer("wallet_transfer_lock_wait_time").count());
+        assertFalse(rolledBack.get());
+    }
+
+    @Test
+    @DisplayName("Lock pessimista: saldo insuficiente na carteira travada é rejeitado sem movimentação")
+    public void testPessimisticTransferWithInsufficientFunds() {
+        when(factory.pessimisticTransfers()).thenReturn(true);
+        sourceWallet.setCurrentBalance(BigDecimal.valueOf(30));
+        TransferTransaction transfer = TransferTransaction.of(event);
+
+        StepVerifier.create(transfer.execute(factory))
+                .expectError(InsufficientFundsException.class)
+                .verify();
+
+        verify(walletRepository, never()).applyBalanceDelta(anyString(), any());
+        verify(transactionRepository, never()).save(any());
+        assertTrue(rolledBack.get());
+    }
+
+    @Test
+    @DisplayName("Lock pessimista: falha ao obter o lock é contabilizada como conflito")
+    public void testPessimisticTransferLockConflictIsCounted() {
+        when(factory.pessimisticTransfers()).thenReturn(true);
+        when(walletRepository.lockAllByIdInOrder(any()))
+                .thenReturn(Flux.error(new CannotAcquireLockException("lock timeout")));
+        TransferTransaction transfer = TransferTransaction.of(event);
+
+        StepVerifier.create(transfer.execute(factory))
+                .expectError(CannotAcquireLockException.class)
+                .verify();
+
+        verify(transactionRepository, never()).insertIfAbsent(any(Transaction.class));
+        assertEquals(1.0, meterRegistry.counter("wallet_transfer_lock_conflicts").count());
+        assertEquals(1, meterRegistry.timer("wallet_transfer_lock_wait_time").count());
+        assertTrue(rolledBack.get());
+    }
+
+    @Test
+    @DisplayName("Lock pessimista: transferência reentregue não movimenta as carteiras novamente")
+    public void testPessimisticRedeliveredTransferIsSkipped() {
+        when(factory.pessimisticTransfers()).thenReturn(true);
+        when(transactionRepository.insertIfAbsent(any(Transaction.class))).thenReturn(Mono.empty());
+        TransferTransaction transfer = TransferTransaction.of(event);
+
+        StepVerifier.create(transfer.execute(factory))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(walletRepository, never()).applyBalanceDelta(anyString(), any());
+        verify(balanceUpdateProducer, never()).enqueueBalanceUpdate(any());
+        assertFalse(rolledBack.get());
+    }
+
 }
@@ -0,0 +1,161 @@
+package com.recargapay.wallet.core.service;
+
+import com.recargapay.wallet.database.entity.CheckpointedBalance;
+import com.recargapay.wallet.database.entity.CheckpointedWalletBalance;
+import com.recargapay.wallet.database.repository.BalanceCheckpointReactiveRepository;
+import com.recargapay.wallet.database.repository.TransactionReactiveRepository;
+import com.recargapay.wallet.database.repository.WalletReactiveRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BalanceCheckpointServiceTest {
+
+    private static final String WALLET_ID = "wallet-123";
+
+    @Mock
+    WalletReactiveRepository walletRepository;
+
+    @Mock
+    TransactionReactiveRepository transactionRepository;
+
+    @Mock
+    BalanceCheckpointReactiveRepository checkpointRepository;
+
+    private SimpleMeterRegistry meterRegistry;
+    private BalanceCheckpointService service;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        service = new BalanceCheckpointService(walletRepository, transactionRepository, checkpointRepository, meterRegistry, true, 2, 50, 300_000, 86_400_000);
+    }
+
+    @Test
+    @DisplayName("Saldo é o checkpoint somado aos lançamentos posteriores e exporta idade e linhas do delta")
+    void currentBalanceRecordsCheckpointMetrics() {
+        when(transactionRepository.findCheckpointedBalance(WALLET_ID))
+                .thenReturn(Mono.just(new CheckpointedBalance(new BigDecimal("250.00"), LocalDateTime.now().minusMinutes(10), 12L)));
+
+        StepVerifier.create(service.currentBalance(WALLET_ID))
+                .expectNext(new BigDecimal("250.00"))
+                .verifyComplete();
+
+        assertEquals(1, meterRegistry.summary("wallet_balance_delta_rows").count());
+        assertEquals(12, meterRegistry.summary("wallet_balance_delta_rows").totalAmount());
+        assertEquals(1, meterRegistry.timer("wallet_balance_checkpoint_age").count());
+        assertEquals(0, meterRegistry.counter("wallet_balance_checkpoint_missing").count());
+    }
+
+    @Test
+    @DisplayName("Saldos de várias carteiras vêm de uma única consulta, com a versão de cada carteira")
+    void currentBalancesReadsAllWalletsAtOnce() {
+        when(transactionRepository.findCheckpointedBalances(List.of(WALLET_ID, "wallet-456")))
+                .thenReturn(Flux.just(new CheckpointedWalletBalance(WALLET_ID, 7L, new BigDecimal("250.00"))));
+
+        StepVerifier.create(service.currentBalances(List.of(WALLET_ID, "wallet-456")))
+                .assertNext(balance -> {
+                    assertEquals(WALLET_ID, balance.getWalletId());
+                    assertEquals(7L, balance.getVersion());
+                    assertEquals(new BigDecimal("250.00"), balance.getBalance());
+                })
+                .verifyComplete();
+
+        assertEquals(1, meterRegistry.counter("wallet_balance_checkpoint_missing").count());
+    }
+
+    @Test
+    @DisplayName("Carteira sem checkpoint soma todo o histórico e conta como ausente")
+    void walletWithoutCheckpointIsCounted() {
+        when(transactionRepository.findCheckpointedBalance(WALLET_ID))
+                .thenReturn(Mono.just(new CheckpointedBalance(new BigDecimal("40.00"), null, 3L)));
+
+        StepVerifier.create(service.currentBalance(WALLET_ID))
+                .expectNext(new BigDecimal("40.00"))
+                .verifyComplete();
+
+        assertEquals(1, meterRegistry.counter("wallet_balance_checkpoint_missing").count());
+        assertEquals(0, meterRegistry.timer("wallet_balance_checkpoint_age").count());
+    }
+
+    @Test
+    @DisplayName("Saldo em um instante usa o checkpoint anterior a ele e os lançamentos até ele")
+    void balanceAsOfUsesCheckpointBeforeIt() {
+        LocalDateTime asOf = LocalDateTime.of(2025, 1, 31, 23, 59, 59);
+        when(transactionRepository.findCheckpointedBalanceAsOf(WALLET_ID, asOf))
+                .thenReturn(Mono.just(new CheckpointedBalance(new BigDecimal("75.00"), asOf.minusHours(1), 4L)));
+
+        StepVerifier.create(service.balanceAsOf(WALLET_ID, asOf))
+                .expectNext(new BigDecimal("75.00"))
+                .verifyComplete();
+
+        assertEquals(4, meterRegistry.summary("wallet_balance_delta_rows").totalAmount());
+    }
+
+    @Test
+    @DisplayName("Job percorre as carteiras em lotes e soma os checkpoints gravados")
+    void checkpointAllWalksWalletsInBatches() {
+        LocalDateTime asOf = LocalDateTime.now().minusMinutes(5);
+        when(walletRepository.findIdsAfter("", 2)).thenReturn(Flux.just("a", "b"));
+        when(walletRepository.findIdsAfter("b", 2)).thenReturn(Flux.just("c"));
+        when(checkpointRepository.rollForward(List.of("a", "b"), asOf, 50)).thenReturn(Mono.just(2L));
+        when(checkpointRepository.rollForward(List.of("c"), asOf, 50)).thenReturn(Mono.just(1L));
+        when(checkpointRepository.prune(any(), eq(asOf.minusDays(1)))).thenReturn(Mono.just(4L));
+
+        StepVerifier.create(service.checkpointAll(asOf))
+                .expectNext(3L)
+                .verifyComplete();
+
+        verify(walletRepository, never()).findIdsAfter(eq("c"), anyInt());
+        assertEquals(3, meterRegistry.counter("wallet_balance_checkpoints_written").count());
+        verify(checkpointRepository).prune(List.of("a", "b"), asOf.minusDays(1));
+        verify(checkpointRepository).prune(List.of("c"), asOf.minusDays(1));
+        assertEquals(8, meterRegistry.counter("wallet_balance_checkpoints_pruned").count());
+    }
+
+    @Test
+    @DisplayName("Falha no job é contada e não propaga")
+    void checkpointFailureIsCounted() {
+        when(walletRepository.findIdsAfter(anyString(), anyInt())).thenReturn(Flux.just("a"));
+        when(checkpointRepository.rollForward(any(), any(), anyLong())).thenReturn(Mono.error(new RuntimeException("db down")));
+
+        service.checkpoint();
+
+        assertEquals(1, meterRegistry.counter("wallet_balance_checkpoint_failures").count());
+    }
+
+    @Test
+    @DisplayName("Job desabilitado não acessa o banco")
+    void disabledJobDoesNothing() {
+        service = new BalanceCheckpointService(walletRepository, transactionRepository, checkpointRepository, meterRegistry, false, 2, 50, 300_000, 86_400_000);
+
+        service.checkpoint();
+
+        verify(walletRepository, never()).findIdsAfter(anyString(), anyInt());
+    }
+}
@@ -0,0 +1,118 @@
+package com.recargapay.wallet.core.service;
+
+import com.recargapay.wallet.converter.TransactionCursorConverter;
+import com.recargapay.wallet.database.entity.Transaction;
+import com.recargapay.wallet.database.repository.TransactionReactiveRepository;
+import com.recargapay.wallet.handle.exception.WalletException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import reactor.core.publisher.Flux;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+import static com.recargapay.wallet.handle.Message.INVALID_HISTORY_CURSOR;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TransactionHistoryServiceTest {
+
+    private static final String WALLET_ID = "wallet-123";
+    private static final String REQUEST_ID = "request-123";
+    private static final LocalDateTime START = LocalDateTime.of(2025, 1, 1, 0, 0);
+
+    @Mock
+    TransactionReactiveRepository transactionRepository;
+
+    private TransactionHistoryService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new TransactionHistoryService(transactionRepository, 2, 3, 2);
+    }
+
+    @Test
+    @DisplayName("Primeira página retorna o limite de linhas e o cursor da última")
+    void firstPageCarriesNextCursor() {
+        Transaction first = transaction("t1", 1);
+        Transaction second = transaction("t2", 2);
+        when(transactionRepository.findTransactionsPage(WALLET_ID, START, 3)).thenReturn(Flux.just(first, second, transaction("t3", 3)));
+
+        StepVerifier.create(service.page(REQUEST_ID, WALLET_ID, START, null, null))
+                .assertNext(page -> {
+                    assertThat(page.getTransactions()).hasSize(2);
+                    assertThat(page.getNextCursor()).isEqualTo(TransactionCursorConverter.encode(second));
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Página seguinte continua após o cursor e a última não tem cursor")
+    void nextPageResumesAfterCursor() {
+        Transaction second = transaction("t2", 2);
+        when(transactionRepository.findTransactionsPageAfter(WALLET_ID, START, second.getTimestamp(), "t2", 3))
+                .thenReturn(Flux.just(transaction("t3", 3)));
+
+        StepVerifier.create(service.page(REQUEST_ID, WALLET_ID, START, TransactionCursorConverter.encode(second), null))
+                .assertNext(page -> {
+                    assertThat(page.getTransactions()).hasSize(1);
+                    assertThat(page.getNextCursor()).isNull();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("Tamanho da página é limitado ao máximo configurado")
+    void pageSizeIsCapped() {
+        when(transactionRepository.findTransactionsPage(WALLET_ID, START, 4)).thenReturn(Flux.empty());
+
+        StepVerifier.create(service.page(REQUEST_ID, WALLET_ID, START, null, 10_000))
+                .assertNext(page -> assertThat(page.getTransactions()).isEmpty())
+                .verifyComplete();
+
+        verify(transactionRepository).findTransactionsPage(WALLET_ID, START, 4);
+    }
+
+    @Test
+    @DisplayName("Cursor inválido é rejeitado sem consultar o banco")
+    void invalidCursorIsRejected() {
+        StepVerifier.create(service.page(REQUEST_ID, WALLET_ID, START, "not-a-cursor", null))
+                .expectErrorMatches(ex -> ex instanceof WalletException && ex.getMessage().equals(INVALID_HISTORY_CURSOR.getMessage()))
+                .verify();
+
+        verify(transactionRepository, never()).findTransactionsPageAfter(anyString(), any(), any(), anyString(), anyInt());
+    }
+
+    @Test
+    @DisplayName("Stream percorre todos os lotes em ordem")
+    void streamWalksEveryBatch() {
+        Transaction second = transaction("t2", 2);
+        when(transactionRepository.findTransactionsPage(WALLET_ID, START, 2)).thenReturn(Flux.just(transaction("t1", 1), second));
+        when(transactionRepository.findTransactionsPageAfter(eq(WALLET_ID), eq(START), eq(second.getTimestamp()), eq("t2"), eq(2)))
+                .thenReturn(Flux.just(transaction("t3", 3)));
+
+        StepVerifier.create(service.stream(WALLET_ID, START).map(Transaction::getId))
+                .expectNext("t1", "t2", "t3")
+                .verifyComplete();
+    }
+
+    private static Transaction transaction(String id, int minutes) {
+        return new Transaction(id, "request-" + id, WALLET_ID, WALLET_ID, "DEPOSIT", "DONE",
+                BigDecimal.TEN, START.plusMinutes(minutes));
+    }
+}
@@ -4,6 +4,7 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.Mockito.*;
 
 import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.cache.WalletMetadataCache;
 import com.recargapay.wallet.converter.TransactionConverter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.enums.TransactionType;
@@ -34,8 +35,8 @@ import reactor.test.StepVerifier;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.ConcurrentModificationException;
 import java.util.UUID;
+import java.util.function.Function;
 
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
@@ -67,6 +68,9 @@ public class TransferServiceTest {
     @Mock
     private MeterRegistry meterRegistry;
 
+    @Mock
+    private WalletMetadataCache walletMetadataCache;
+
     @InjectMocks
     private TransferService transferService;
 
@@ -96,6 +100,10 @@ public class TransferServiceTest {
     @BeforeEach
     public void setUp(){
         this.kafkaTemplate = mock(KafkaTemplate.class);
+        when(walletMetadataCache.validate(anyString(), any())).thenAnswer(invocation -> {
+            Function<Wallet, Mono<Wallet>> validation = invocation.getArgument(1);
+            return walletRepository.findById(invocation.<String>getArgument(0)).flatMap(validation);
+        });
     }
 
     @Test
@@ -143,7 +151,6 @@ public class TransferServiceTest {
         Wallet wallet = createWallet(sourceWalletId, 1L, WalletStatusType.ACTIVE.getType(), new BigDecimal("100"));
 
         when(walletRepository.findById(sourceWalletId)).thenReturn(Mono.just(wallet));
-        when(walletRepository.findByIdAndVersion(wallet.getId(), wallet.getVersion())).thenReturn(Mono.just(wallet));
 
         StepVerifier.create(transferService.getAndValidateSourceWallet(sourceWalletId, amount))
                 .expectNext(wallet)
@@ -173,31 +180,17 @@ public class TransferServiceTest {
                 .verify();
     }
 
-    @Test
-    public void testValidateSourceWallet_ConcurrentModification() {
-        String walletId = "walletActive";
-        Wallet wallet = createWallet(walletId, 1L, WalletStatusType.ACTIVE.getType(), new BigDecimal("100"));
-        BigDecimal amount = new BigDecimal("50");
-
-        when(walletRepository.findByIdAndVersion(wallet.getId(), wallet.getVersion())).thenReturn(Mono.empty());
-
-        StepVerifier.create(transferService.validateSourceWallet(wallet, amount))
-                .expectErrorMatches(throwable -> throwable instanceof ConcurrentModificationException &&
-                        throwable.getMessage().equals(Message.CONCURRENT_MODIFICATION_DETECTED_TRY_AGAIN.getMessage()))
-                .verify();
-    }
-
     @Test
     public void testValidateSourceWallet_Success() {
         String walletId = "walletActive";
         Wallet wallet = createWallet(walletId, 1L, WalletStatusType.ACTIVE.getType(), new BigDecimal("100"));
         BigDecimal amount = new BigDecimal("50");
 
-        when(walletRepository.findByIdAndVersion(wallet.getId(), wallet.getVersion())).thenReturn(Mono.just(wallet));
-
         StepVerifier.create(transferService.validateSourceWallet(wallet, amount))
                 .expectNext(wallet)
                 .verifyComplete();
+
+        verifyNoInteractions(walletRepository);
     }
 
 
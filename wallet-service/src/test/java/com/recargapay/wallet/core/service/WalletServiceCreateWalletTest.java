@@ -1,6 +1,7 @@
 package com.recargapay.wallet.core.service;
 
 import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.cache.WalletExistenceFilter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.service.impl.WalletServiceImpl;
 import com.recargapay.wallet.database.entity.User;
@@ -73,6 +74,9 @@ class WalletServiceCreateWalletTest {
     @Mock
     Timer.Sample sample;
 
+    @Mock
+    WalletExistenceFilter walletExistenceFilter;
+
     @InjectMocks
     WalletServiceImpl walletService;
 
@@ -106,6 +110,7 @@ class WalletServiceCreateWalletTest {
                 12L
         );
 
+        when(walletExistenceFilter.register(anyString())).thenReturn(Mono.empty());
         configureMeterRegistry();
     }
 
@@ -120,13 +125,21 @@ class WalletServiceCreateWalletTest {
 
         walletService = new WalletServiceImpl(
                 walletRepository,
-                transactionRepository,
                 userRepository,
                 databaseClient,
                 transactionProducer,
                 transferService,
                 cache,
-                meterRegistry
+                meterRegistry,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                null,
+                walletExistenceFilter,
+                null
         );
     }
 
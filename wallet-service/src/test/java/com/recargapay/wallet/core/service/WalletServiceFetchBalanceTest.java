@@ -1,6 +1,8 @@
 package com.recargapay.wallet.core.service;
 
+import com.recargapay.wallet.cache.BalanceLoadCoalescer;
 import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.cache.WalletExistenceFilter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.service.impl.WalletServiceImpl;
 import com.recargapay.wallet.database.entity.Wallet;
@@ -13,12 +15,14 @@ import com.recargapay.wallet.rest.dto.BalanceDTO;
 import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
@@ -63,6 +67,12 @@ class WalletServiceFetchBalanceTest {
     @Mock
     CacheService cache;
 
+    @Spy
+    BalanceLoadCoalescer balanceLoadCoalescer = new BalanceLoadCoalescer(null, new SimpleMeterRegistry(), false, 5000, 1000, 50, true, 1.0, 50);
+
+    @Mock
+    BalanceCheckpointService balanceCheckpointService;
+
     @Mock
     ReactiveStringRedisTemplate redisTemplate;
 
@@ -72,6 +82,9 @@ class WalletServiceFetchBalanceTest {
     @Mock
     MeterRegistry meterRegistry;
 
+    @Mock
+    WalletExistenceFilter walletExistenceFilter;
+
     @InjectMocks
     WalletServiceImpl walletService;
 
@@ -96,6 +109,7 @@ class WalletServiceFetchBalanceTest {
         when(meterRegistry.timer(anyString())).thenReturn(timerMock);
 
         when(cache.opsForValue()).thenReturn(valueOperations);
+        when(cache.fillBalance(anyString(), any(), any())).thenReturn(Mono.empty());
 
         when(redisTemplate.opsForValue()).thenReturn(valueOperations);
 
@@ -110,10 +124,10 @@ class WalletServiceFetchBalanceTest {
         String cacheKey = BALANCE_KEY.getKey(walletId);
 
         when(walletRepository.findById(walletId)).thenReturn(Mono.just(walletEntity));
-        when(transactionRepository.findSumOfAmountByDestinationWalletId(walletId))
+        when(balanceCheckpointService.currentBalance(walletId))
                 .thenReturn(Mono.just(BigDecimal.valueOf(150)));
 
-        when(cache.set(eq(cacheKey), anyString())).thenReturn(Mono.empty());
+        when(cache.fillBalance(eq(walletId), any(), any())).thenReturn(Mono.empty());
 
         Mono<BalanceDTO> result = walletService.fetchBalanceFromDatabase(
                 UUID.randomUUID().toString(), walletId, cacheKey, dateTime
@@ -128,8 +142,8 @@ class WalletServiceFetchBalanceTest {
                 .verifyComplete();
 
         verify(walletRepository).findById(walletId);
-        verify(transactionRepository).findSumOfAmountByDestinationWalletId(walletId);
-        verify(cache).set(eq(cacheKey), eq("150"));
+        verify(balanceCheckpointService).currentBalance(walletId);
+        verify(cache).fillBalance(eq(walletId), argThat(balance -> balance.compareTo(new BigDecimal("150")) == 0), any());
     }
 
     @Test
@@ -153,7 +167,7 @@ class WalletServiceFetchBalanceTest {
                 .verify();
 
         verify(walletRepository).findById(walletId);
-        verify(transactionRepository, never()).findSumOfAmountByDestinationWalletId(anyString());
+        verify(balanceCheckpointService, never()).currentBalance(anyString());
         verify(cache, never()).set(anyString(), anyString());
     }
 
@@ -179,7 +193,7 @@ class WalletServiceFetchBalanceTest {
                 .verify();
 
         verify(walletRepository).findById(walletId);
-        verify(transactionRepository, never()).findSumOfAmountByDestinationWalletId(anyString());
+        verify(balanceCheckpointService, never()).currentBalance(anyString());
         verify(cache, never()).set(anyString(), anyString());
     }
 
@@ -191,7 +205,7 @@ class WalletServiceFetchBalanceTest {
         String cacheKey = BALANCE_KEY.getKey(walletId);
 
         when(walletRepository.findById(walletId)).thenReturn(Mono.just(walletEntity));
-        when(transactionRepository.findSumOfAmountByDestinationWalletId(walletId))
+        when(balanceCheckpointService.currentBalance(walletId))
                 .thenReturn(Mono.error(new RuntimeException("Transaction sum failed")));
 
         Mono<BalanceDTO> result = walletService.fetchBalanceFromDatabase(
@@ -206,7 +220,7 @@ class WalletServiceFetchBalanceTest {
                 .verify();
 
         verify(walletRepository).findById(walletId);
-        verify(transactionRepository).findSumOfAmountByDestinationWalletId(walletId);
+        verify(balanceCheckpointService).currentBalance(walletId);
         verify(cache, never()).set(anyString(), anyString());
     }
 
@@ -218,9 +232,9 @@ class WalletServiceFetchBalanceTest {
         String cacheKey = BALANCE_KEY.getKey(walletId);
 
         when(walletRepository.findById(walletId)).thenReturn(Mono.just(walletEntity));
-        when(transactionRepository.findSumOfAmountByDestinationWalletId(walletId)).thenReturn(Mono.empty());
+        when(balanceCheckpointService.currentBalance(walletId)).thenReturn(Mono.empty());
 
-        when(cache.set(eq(cacheKey), anyString())).thenReturn(Mono.empty());
+        when(cache.fillBalance(eq(walletId), any(), any())).thenReturn(Mono.empty());
 
         Mono<BalanceDTO> result = walletService.fetchBalanceFromDatabase(
                 UUID.randomUUID().toString(), walletId, cacheKey, dateTime
@@ -233,8 +247,8 @@ class WalletServiceFetchBalanceTest {
                 .verifyComplete();
 
         verify(walletRepository).findById(walletId);
-        verify(transactionRepository).findSumOfAmountByDestinationWalletId(walletId);
-        verify(cache).set(eq(cacheKey), eq("0"));
+        verify(balanceCheckpointService).currentBalance(walletId);
+        verify(cache).fillBalance(eq(walletId), argThat(balance -> balance.compareTo(new BigDecimal("0")) == 0), any());
     }
 
     @Test
@@ -245,9 +259,9 @@ class WalletServiceFetchBalanceTest {
         String cacheKey = BALANCE_KEY.getKey(walletId);
 
         when(walletRepository.findById(walletId)).thenReturn(Mono.just(walletEntity));
-        when(transactionRepository.findSumOfAmountByDestinationWalletId(walletId))
+        when(balanceCheckpointService.currentBalance(walletId))
                 .thenReturn(Mono.just(BigDecimal.valueOf(20)));
-        when(cache.set(eq(cacheKey), anyString()))
+        when(cache.fillBalance(eq(walletId), any(), any()))
                 .thenReturn(Mono.error(new RuntimeException("Cache set error")));
 
         Mono<BalanceDTO> result = walletService.fetchBalanceFromDatabase(
@@ -261,8 +275,8 @@ class WalletServiceFetchBalanceTest {
                 .verifyComplete();
 
         verify(walletRepository).findById(walletId);
-        verify(transactionRepository).findSumOfAmountByDestinationWalletId(walletId);
-        verify(cache).set(anyString(), anyString());
+        verify(balanceCheckpointService).currentBalance(walletId);
+        verify(cache).fillBalance(anyString(), any(), any());
     }
 
 }
@@ -0,0 +1,155 @@
+package com.recargapay.wallet.core.service;
+
+import com.recargapay.wallet.cache.WalletExistenceFilter;
+import com.recargapay.wallet.core.enums.TransactionStatusType;
+import com.recargapay.wallet.core.service.impl.WalletServiceImpl;
+import com.recargapay.wallet.database.entity.Wallet;
+import com.recargapay.wallet.database.repository.WalletReactiveRepository;
+import com.recargapay.wallet.handle.exception.WalletException;
+import com.recargapay.wallet.rest.dto.BalanceDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+import static com.recargapay.wallet.handle.Message.WALLET_NOT_FOUND;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WalletServiceGetBalanceAsOfTest {
+
+    @Mock
+    WalletReactiveRepository walletRepository;
+
+    @Mock
+    BalanceCheckpointService balanceCheckpointService;
+
+    @Mock
+    MeterRegistry meterRegistry;
+
+    @Mock
+    Timer timerMock;
+
+    @Mock
+    Timer.Sample sampleMock;
+
+    @Mock
+    WalletExistenceFilter walletExistenceFilter;
+
+    @InjectMocks
+    WalletServiceImpl walletService;
+
+    private final String WALLET_ID = "wallet-123";
+    private final LocalDateTime AS_OF = LocalDateTime.of(2025, 1, 31, 23, 59, 59);
+
+    private Wallet walletEntity;
+
+    @BeforeEach
+    void setUp() {
+        walletEntity = new Wallet();
+        walletEntity.setId(WALLET_ID);
+        walletEntity.setCurrentBalance(BigDecimal.valueOf(50));
+        walletEntity.setUserId(UUID.randomUUID().toString());
+        walletEntity.setStatus(TransactionStatusType.DONE.getStatus());
+        walletEntity.setVersion(1L);
+
+        when(meterRegistry.timer("wallet_balance_as_of_time")).thenReturn(timerMock);
+    }
+
+    @Test
+    @DisplayName("Deve retornar o saldo da carteira no instante informado")
+    void shouldReturnBalanceAsOf() {
+        String requestTransactionId = UUID.randomUUID().toString();
+        when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(walletEntity));
+        when(balanceCheckpointService.balanceAsOf(WALLET_ID, AS_OF)).thenReturn(Mono.just(BigDecimal.valueOf(30)));
+
+        try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
+            timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
+
+            Mono<BalanceDTO> result = walletService.getBalanceAsOf(requestTransactionId, WALLET_ID, AS_OF);
+
+            StepVerifier.create(result)
+                    .assertNext(balanceDto -> {
+                        assertThat(balanceDto.getRequestTransactionId()).isEqualTo(requestTransactionId);
+                        assertThat(balanceDto.getWalletId()).isEqualTo(WALLET_ID);
+                        assertThat(balanceDto.getBalance()).isEqualByComparingTo("30");
+                        assertThat(balanceDto.getDate()).isEqualTo(AS_OF);
+                    })
+                    .verifyComplete();
+
+            verify(sampleMock, atLeastOnce()).stop(timerMock);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve retornar saldo zero quando nao ha lancamentos ate o instante")
+    void shouldReturnZeroWhenNothingBeforeAsOf() {
+        when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(walletEntity));
+        when(balanceCheckpointService.balanceAsOf(WALLET_ID, AS_OF)).thenReturn(Mono.empty());
+
+        try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
+            timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
+
+            StepVerifier.create(walletService.getBalanceAsOf(UUID.randomUUID().toString(), WALLET_ID, AS_OF))
+                    .assertNext(balanceDto -> assertThat(balanceDto.getBalance()).isEqualByComparingTo("0"))
+                    .verifyComplete();
+        }
+    }
+
+    @Test
+    @DisplayName("Deve emitir erro 'Wallet not found' quando a carteira nao existe")
+    void shouldFailWhenWalletNotFound() {
+        when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.empty());
+
+        try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
+            timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
+
+            StepVerifier.create(walletService.getBalanceAsOf(UUID.randomUUID().toString(), WALLET_ID, AS_OF))
+                    .expectErrorMatches(ex ->
+                            ex instanceof WalletException &&
+                                    ex.getMessage().equals(WALLET_NOT_FOUND.getMessage())
+                    )
+                    .verify();
+
+            verify(balanceCheckpointService, never()).balanceAsOf(anyString(), any());
+            verify(walletExistenceFilter).recordMissing(WALLET_ID);
+            verify(sampleMock, atLeastOnce()).stop(timerMock);
+        }
+    }
+
+    @Test
+    @DisplayName("Deve rejeitar carteira sabidamente inexistente sem consultar o banco")
+    void shouldRejectKnownMissingWalletWithoutDatabase() {
+        when(walletExistenceFilter.isKnownMissing(WALLET_ID)).thenReturn(true);
+
+        try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
+            timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
+
+            StepVerifier.create(walletService.getBalanceAsOf(UUID.randomUUID().toString(), WALLET_ID, AS_OF))
+                    .expectErrorMatches(ex ->
+                            ex instanceof WalletException &&
+                                    ex.getMessage().equals(WALLET_NOT_FOUND.getMessage())
+                    )
+                    .verify();
+
+            verify(walletRepository, never()).findById(anyString());
+            verify(balanceCheckpointService, never()).balanceAsOf(anyString(), any());
+        }
+    }
+}
@@ -1,6 +1,9 @@
 package com.recargapay.wallet.core.service;
 
+import com.recargapay.wallet.cache.BalanceLoadCoalescer;
 import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.cache.CachedBalance;
+import com.recargapay.wallet.cache.WalletExistenceFilter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.service.impl.WalletServiceImpl;
 import com.recargapay.wallet.database.entity.Wallet;
@@ -12,6 +15,7 @@ import com.recargapay.wallet.rest.dto.BalanceDTO;
 import io.micrometer.core.instrument.Clock;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -20,6 +24,7 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
@@ -75,6 +80,15 @@ class WalletServiceGetBalanceTest {
     @Mock
     CacheService cache;
 
+    @Spy
+    BalanceLoadCoalescer balanceLoadCoalescer = new BalanceLoadCoalescer(null, new SimpleMeterRegistry(), false, 5000, 1000, 50, true, 1.0, 50);
+
+    @Mock
+    BalanceCheckpointService balanceCheckpointService;
+
+    @Mock
+    WalletExistenceFilter walletExistenceFilter;
+
     @InjectMocks
     WalletServiceImpl walletService;
 
@@ -104,6 +118,7 @@ class WalletServiceGetBalanceTest {
         when(sample.stop(any())).thenReturn(0L);
 
         when(cache.opsForValue()).thenReturn(valueOperations);
+        when(cache.fillBalance(anyString(), any(), any())).thenReturn(Mono.empty());
 
         when(redisTemplate.opsForValue()).thenReturn(valueOperations);
 
@@ -121,7 +136,7 @@ class WalletServiceGetBalanceTest {
 
         when(cache.opsForValue()).thenReturn(valueOperations);
 
-        when(cache.get(Mockito.anyString())).thenReturn(Mono.just("100.00"));
+        when(cache.getBalance(Mockito.anyString())).thenReturn(Mono.just(new CachedBalance(new BigDecimal("100.00"), 1L)));
 
         when(walletRepository.findById(Mockito.anyString())).thenReturn(Mono.empty());
 
@@ -142,17 +157,38 @@ class WalletServiceGetBalanceTest {
         }
     }
 
+    @Test
+    @DisplayName("Deve responder do cache e recarregar em segundo plano o saldo perto de expirar")
+    void cacheHitNearExpiryRefreshesInBackground() {
+        Timer.Sample sampleMock = mock(Timer.Sample.class);
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.just(new CachedBalance(new BigDecimal("100.00"), 1L, System.currentTimeMillis())));
+        when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(walletEntity));
+        when(balanceCheckpointService.currentBalance(WALLET_ID)).thenReturn(Mono.just(new BigDecimal("120.00")));
+        when(cache.fillBalance(anyString(), any(), any())).thenReturn(Mono.empty());
+
+        try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
+            timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
+
+            StepVerifier.create(walletService.getBalance(UUID.randomUUID().toString(), WALLET_ID))
+                    .assertNext(balanceDto -> assertThat(balanceDto.getBalance()).isEqualByComparingTo("100.00"))
+                    .verifyComplete();
+
+            verify(balanceLoadCoalescer).load(eq(WALLET_ID), any());
+            verify(cache).fillBalance(eq(WALLET_ID), argThat(balance -> balance.compareTo(new BigDecimal("120.00")) == 0), any());
+        }
+    }
+
     @Test
     @DisplayName("Deve buscar saldo no DB e retornar com sucesso quando cache está vazio")
     void cacheMissThenSuccessFromDatabase() {
-        when(cache.get(CACHE_KEY)).thenReturn(Mono.empty());
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.empty());
 
         when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(walletEntity));
 
-        when(transactionRepository.findSumOfAmountByDestinationWalletId(WALLET_ID))
+        when(balanceCheckpointService.currentBalance(WALLET_ID))
                 .thenReturn(Mono.just(BigDecimal.valueOf(200)));
 
-        when(cache.set(anyString(), anyString())).thenReturn(Mono.empty());
+        when(cache.fillBalance(anyString(), any(), any())).thenReturn(Mono.empty());
 
         Mono<BalanceDTO> result = walletService.getBalance(UUID.randomUUID().toString(), WALLET_ID);
 
@@ -164,13 +200,13 @@ class WalletServiceGetBalanceTest {
                 .verifyComplete();
 
         verify(walletRepository).findById(anyString());
-        verify(cache).set(eq("balance:wallet-123"), eq("200"));
+        verify(cache).fillBalance(eq(WALLET_ID), argThat(balance -> balance.compareTo(new BigDecimal("200")) == 0), any());
     }
 
     @Test
     @DisplayName("Deve falhar com 'Wallet not found' quando carteira não existe no DB")
     void cacheMissThenWalletNotFound() {
-        when(cache.get(CACHE_KEY)).thenReturn(Mono.empty());
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.empty());
         when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.empty());
 
         Mono<BalanceDTO> result = walletService.getBalance(UUID.randomUUID().toString(), WALLET_ID);
@@ -183,14 +219,14 @@ class WalletServiceGetBalanceTest {
                 .verify();
 
         verify(walletRepository).findById(WALLET_ID);
-        verify(transactionRepository, never()).findSumOfAmountByDestinationWalletId(anyString());
+        verify(balanceCheckpointService, never()).currentBalance(anyString());
         verify(valueOperations, never()).set(anyString(), anyString(), any());
     }
 
     @Test
     @DisplayName("Deve falhar com erro no repositório de wallet (ex. DB offline)")
     void cacheMissThenWalletRepoError() {
-        when(cache.get(CACHE_KEY)).thenReturn(Mono.empty());
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.empty());
         when(walletRepository.findById(WALLET_ID))
                 .thenReturn(Mono.error(new RuntimeException("DB walletRepo error")));
 
@@ -204,16 +240,16 @@ class WalletServiceGetBalanceTest {
                 .verify();
 
         verify(walletRepository).findById(WALLET_ID);
-        verify(transactionRepository, never()).findSumOfAmountByDestinationWalletId(anyString());
+        verify(balanceCheckpointService, never()).currentBalance(anyString());
         verify(valueOperations, never()).set(anyString(), anyString(), any());
     }
 
     @Test
     @DisplayName("Deve falhar se transactionRepository.sumAmountByWalletId falhar")
     void cacheMissThenTransactionSumError() {
-        when(cache.get(CACHE_KEY)).thenReturn(Mono.empty());
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.empty());
         when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(walletEntity));
-        when(transactionRepository.findSumOfAmountByDestinationWalletId(WALLET_ID))
+        when(balanceCheckpointService.currentBalance(WALLET_ID))
                 .thenReturn(Mono.error(new RuntimeException("Transaction sum failed")));
 
         Mono<BalanceDTO> result = walletService.getBalance(UUID.randomUUID().toString(), WALLET_ID);
@@ -226,18 +262,18 @@ class WalletServiceGetBalanceTest {
                 .verify();
 
         verify(walletRepository).findById(WALLET_ID);
-        verify(transactionRepository).findSumOfAmountByDestinationWalletId(WALLET_ID);
+        verify(balanceCheckpointService).currentBalance(WALLET_ID);
         verify(valueOperations, never()).set(anyString(), anyString(), any());
     }
 
     @Test
     @DisplayName("Deve retornar saldo mesmo se falhar ao salvar no cache (erro assíncrono)")
     void cacheMissThenSavesCacheButSetOperationFails() {
-        when(cache.get(CACHE_KEY)).thenReturn(Mono.empty());
+        when(cache.getBalance(WALLET_ID)).thenReturn(Mono.empty());
         when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(walletEntity));
-        when(transactionRepository.findSumOfAmountByDestinationWalletId(WALLET_ID))
+        when(balanceCheckpointService.currentBalance(WALLET_ID))
                 .thenReturn(Mono.just(BigDecimal.ZERO));
-        when(cache.set(anyString(), anyString()))
+        when(cache.fillBalance(anyString(), any(), any()))
                 .thenReturn(Mono.error(new RuntimeException("Redis write error")));
 
         Mono<BalanceDTO> result = walletService.getBalance(UUID.randomUUID().toString(), WALLET_ID);
@@ -250,8 +286,8 @@ class WalletServiceGetBalanceTest {
                 .verifyComplete();
 
         verify(walletRepository).findById(WALLET_ID);
-        verify(transactionRepository).findSumOfAmountByDestinationWalletId(WALLET_ID);
-        verify(cache).set(eq(CACHE_KEY), eq("0"));
+        verify(balanceCheckpointService).currentBalance(WALLET_ID);
+        verify(cache).fillBalance(eq(WALLET_ID), argThat(balance -> balance.compareTo(new BigDecimal("0")) == 0), any());
     }
 
 }
@@ -0,0 +1,137 @@
+package com.recargapay.wallet.core.service;
+
+import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.cache.CachedBalance;
+import com.recargapay.wallet.cache.WalletExistenceFilter;
+import com.recargapay.wallet.core.service.impl.WalletServiceImpl;
+import com.recargapay.wallet.database.entity.CheckpointedWalletBalance;
+import com.recargapay.wallet.database.repository.WalletReactiveRepository;
+import com.recargapay.wallet.rest.dto.BalanceDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.MockedStatic;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class WalletServiceGetBalancesTest {
+
+    @Mock
+    WalletReactiveRepository walletRepository;
+
+    @Mock
+    CacheService cache;
+
+    @Mock
+    MeterRegistry meterRegistry;
+
+    @Mock
+    Timer timerMock;
+
+    @Mock
+    Timer.Sample sampleMock;
+
+    @Mock
+    WalletExistenceFilter walletExistenceFilter;
+
+    @Mock
+    BalanceCheckpointService balanceCheckpointService;
+
+    @InjectMocks
+    WalletServiceImpl walletService;
+
+    private final String CACHED_ID = "wallet-1";
+    private final String MISSED_ID = "wallet-2";
+    private final String UNKNOWN_ID = "wallet-3";
+
+    @BeforeEach
+    void setUp() {
+        when(meterRegistry.timer("wallet_balances_time")).thenReturn(timerMock);
+        when(cache.fillBalances(anyList())).thenReturn(Mono.empty());
+    }
+
+    @Test
+    @DisplayName("Deve responder com o cache e buscar os misses em uma unica consulta, na ordem do pedido")
+    void shouldMergeCacheAndDatabaseInRequestOrder() {
+        String requestTransactionId = UUID.randomUUID().toString();
+        CheckpointedWalletBalance missed = new CheckpointedWalletBalance(MISSED_ID, 2L, BigDecimal.valueOf(70));
+        when(cache.getBalances(List.of(MISSED_ID, CACHED_ID, UNKNOWN_ID)))
+                .thenReturn(Mono.just(Map.of(CACHED_ID, new CachedBalance(BigDecimal.valueOf(20), 3))));
+        when(balanceCheckpointService.currentBalances(List.of(MISSED_ID, UNKNOWN_ID))).thenReturn(Flux.just(missed));
+
+        try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
+            timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
+
+            Mono<List<BalanceDTO>> result = walletService.getBalances(requestTransactionId, List.of(MISSED_ID, CACHED_ID, UNKNOWN_ID, CACHED_ID));
+
+            StepVerifier.create(result)
+                    .assertNext(balances -> {
+                        assertThat(balances).extracting(BalanceDTO::getWalletId).containsExactly(MISSED_ID, CACHED_ID);
+                        assertThat(balances.get(0).getBalance()).isEqualByComparingTo("70");
+                        assertThat(balances.get(1).getBalance()).isEqualByComparingTo("20");
+                        assertThat(balances).allMatch(balance -> balance.getRequestTransactionId().equals(requestTransactionId));
+                    })
+                    .verifyComplete();
+
+            verify(balanceCheckpointService, times(1)).currentBalances(anyCollection());
+            verify(walletRepository, never()).findAllById(anyIterable());
+            verify(cache).fillBalances(List.of(missed));
+            verify(walletExistenceFilter).recordMissing(UNKNOWN_ID);
+            verify(sampleMock, atLeastOnce()).stop(timerMock);
+        }
+    }
+
+    @Test
+    @DisplayName("Nao deve consultar o banco quando todos os saldos estao no cache")
+    void shouldNotQueryDatabaseWhenAllCached() {
+        when(cache.getBalances(List.of(CACHED_ID)))
+                .thenReturn(Mono.just(Map.of(CACHED_ID, new CachedBalance(BigDecimal.TEN, 1))));
+
+        try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
+            timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
+
+            StepVerifier.create(walletService.getBalances(UUID.randomUUID().toString(), List.of(CACHED_ID)))
+                    .assertNext(balances -> assertThat(balances).hasSize(1))
+                    .verifyComplete();
+
+            verify(balanceCheckpointService, never()).currentBalances(anyCollection());
+            verify(cache, never()).fillBalances(anyList());
+        }
+    }
+
+    @Test
+    @DisplayName("Falha ao preencher o cache nao impede a resposta")
+    void shouldAnswerWhenCacheFillFails() {
+        CheckpointedWalletBalance missed = new CheckpointedWalletBalance(MISSED_ID, 2L, BigDecimal.ONE);
+        when(cache.getBalances(List.of(MISSED_ID))).thenReturn(Mono.just(Map.of()));
+        when(balanceCheckpointService.currentBalances(List.of(MISSED_ID))).thenReturn(Flux.just(missed));
+        when(cache.fillBalances(anyList())).thenReturn(Mono.error(new RuntimeException("redis down")));
+
+        try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
+            timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
+
+            StepVerifier.create(walletService.getBalances(UUID.randomUUID().toString(), List.of(MISSED_ID)))
+                    .assertNext(balances -> assertThat(balances.get(0).getBalance()).isEqualByComparingTo("1"))
+                    .verifyComplete();
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.recargapay.wallet.core.service;
 
 import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.cache.WalletExistenceFilter;
+import com.recargapay.wallet.converter.TransactionsHistoricalConverter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.service.impl.WalletServiceImpl;
 import com.recargapay.wallet.database.entity.Transaction;
@@ -25,7 +27,6 @@ import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
@@ -48,6 +49,9 @@ class WalletServiceGetHistoricalBalanceTest {
     @Mock
     TransactionReactiveRepository transactionRepository;
 
+    @Mock
+    TransactionHistoryService transactionHistoryService;
+
     @Mock
     TransactionProducer transactionProducer;
     @Mock
@@ -62,6 +66,9 @@ class WalletServiceGetHistoricalBalanceTest {
     @Mock
     Timer.Sample sampleMock;
 
+    @Mock
+    WalletExistenceFilter walletExistenceFilter;
+
     @InjectMocks
     WalletServiceImpl walletService;
 
@@ -106,7 +113,8 @@ class WalletServiceGetHistoricalBalanceTest {
     void shouldReturnHistoricalBalanceWhenTransactionsExist() {
         String requestTransactionId = UUID.randomUUID().toString();
         when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(walletEntity));
-        when(transactionRepository.findTransactionsFromDate(anyString(), any(LocalDateTime.class))).thenReturn(Flux.just());
+        when(transactionHistoryService.page(eq(requestTransactionId), eq(WALLET_ID), any(LocalDateTime.class), isNull(), isNull()))
+                .thenReturn(Mono.just(TransactionsHistoricalConverter.entityToListDto(requestTransactionId, LocalDateTime.now(), transactionsEntity)));
 
         try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
             timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
@@ -128,7 +136,8 @@ class WalletServiceGetHistoricalBalanceTest {
     void shouldReturnHistoricalBalanceWhenNoTransactions() {
         String requestTransactionId = UUID.randomUUID().toString();
         when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(walletEntity));
-        when(transactionRepository.findTransactionsFromDate(anyString(), any(LocalDateTime.class))).thenReturn(Flux.just());
+        when(transactionHistoryService.page(eq(requestTransactionId), eq(WALLET_ID), any(LocalDateTime.class), isNull(), isNull()))
+                .thenReturn(Mono.just(TransactionsHistoricalConverter.entityToListDto(requestTransactionId, LocalDateTime.now(), List.of())));
 
         try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
             timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
@@ -172,7 +181,7 @@ class WalletServiceGetHistoricalBalanceTest {
     void shouldFailWhenTransactionSumFails() {
         String requestTransactionId = UUID.randomUUID().toString();
         when(walletRepository.findById(WALLET_ID)).thenReturn(Mono.just(walletEntity));
-        when(transactionRepository.findTransactionsFromDate(anyString(), any(LocalDateTime.class))).thenReturn(Flux.error(new RuntimeException("Transaction sum failed")));
+        when(transactionHistoryService.page(anyString(), anyString(), any(LocalDateTime.class), any(), any())).thenReturn(Mono.error(new RuntimeException("Transaction sum failed")));
 
         try (MockedStatic<Timer> timerStatic = mockStatic(Timer.class)) {
             timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
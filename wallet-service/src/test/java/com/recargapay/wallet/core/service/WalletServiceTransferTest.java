@@ -1,13 +1,16 @@
 package com.recargapay.wallet.core.service;
 
+import com.recargapay.wallet.cache.WalletExistenceFilter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.enums.TransactionType;
+import com.recargapay.wallet.core.executor.RetryPolicy;
 import com.recargapay.wallet.core.service.impl.WalletServiceImpl;
 import com.recargapay.wallet.database.entity.Wallet;
 import com.recargapay.wallet.rest.dto.TransactionDTO;
 import com.recargapay.wallet.rest.dto.TransferDTO;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -15,9 +18,11 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
+import org.springframework.dao.TransientDataAccessResourceException;
 import org.springframework.test.context.TestPropertySource;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
@@ -41,6 +46,12 @@ class WalletServiceTransferTest {
     @Mock
     private MeterRegistry meterRegistry;
 
+    @Spy
+    private RetryPolicy retryPolicy = new RetryPolicy(new SimpleMeterRegistry(), 1, 10, 0.5, 3, 3, 3, 3, 3);
+
+    @Mock
+    private WalletExistenceFilter walletExistenceFilter;
+
     @InjectMocks
     private WalletServiceImpl walletService;
 
@@ -381,4 +392,32 @@ class WalletServiceTransferTest {
             verify(sampleMock, atLeastOnce()).stop(any(Timer.class));
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    @DisplayName("Transfer Retry: Falha transitória ao ler a carteira de origem é repetida antes de enfileirar")
+    void transferRetriesTransientSourceReadFailure() {
+        Wallet sourceWallet = new Wallet();
+        sourceWallet.setId(SOURCE_WALLET_ID);
+        when(transferService.getAndValidateSourceWallet(eq(SOURCE_WALLET_ID), eq(AMOUNT)))
+                .thenReturn(Mono.error(new TransientDataAccessResourceException("Connection reset while reading the wallet")))
+                .thenReturn(Mono.just(sourceWallet));
+        when(transferService.processDestinationWallet(eq(DEST_WALLET_ID)))
+                .thenReturn(Mono.just(new Wallet()));
+        when(transferService.enqueueTransaction(eq(SOURCE_WALLET_ID), eq(DEST_WALLET_ID), eq(transferRequest)))
+                .thenReturn(Mono.just(expectedTransactionDTO));
+
+        Timer.Sample sampleMock = mock(Timer.Sample.class);
+        Timer timerMock = mock(Timer.class);
+        try (MockedStatic<Timer> timerStatic = mockTimerStatic(sampleMock, timerMock)) {
+            timerStatic.when(() -> Timer.start(meterRegistry)).thenReturn(sampleMock);
+
+            StepVerifier.create(walletService.transfer(SOURCE_WALLET_ID, DEST_WALLET_ID, transferRequest))
+                    .expectNext(expectedTransactionDTO)
+                    .verifyComplete();
+
+            verify(transferService, times(2)).getAndValidateSourceWallet(SOURCE_WALLET_ID, AMOUNT);
+            verify(transferService, times(1)).validateDuplicateTransaction(anyString());
+            verify(transferService, times(1)).enqueueTransaction(SOURCE_WALLET_ID, DEST_WALLET_ID, transferRequest);
+        }
+    }
+}
@@ -1,11 +1,17 @@
 package com.recargapay.wallet.core.service;
 
 import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.cache.WalletExistenceFilter;
+import com.recargapay.wallet.cache.WalletMetadataCache;
 import com.recargapay.wallet.converter.TransactionConverter;
 import com.recargapay.wallet.core.enums.TransactionStatusType;
 import com.recargapay.wallet.core.enums.TransactionType;
 import com.recargapay.wallet.core.enums.WalletStatusType;
 import com.recargapay.wallet.core.factory.WithdrawTransaction;
+import com.recargapay.wallet.core.executor.ExecutionModePolicy;
+import com.recargapay.wallet.core.executor.RetryPolicy;
+import com.recargapay.wallet.core.executor.WalletLaneExecutor;
+import com.recargapay.wallet.core.factory.context.TransactionFactory;
 import com.recargapay.wallet.core.service.impl.WalletServiceImpl;
 import com.recargapay.wallet.database.entity.Wallet;
 import com.recargapay.wallet.database.repository.WalletReactiveRepository;
@@ -16,6 +22,7 @@ import com.recargapay.wallet.rest.dto.TransactionDTO;
 import com.recargapay.wallet.rest.dto.WithdrawDTO;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -23,6 +30,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
@@ -32,6 +40,7 @@ import reactor.test.StepVerifier;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
 import java.util.UUID;
+import java.util.function.Function;
 
 import static com.recargapay.wallet.handle.Message.DUPLICATE_TRANSACTION_DETECTED;
 import static org.assertj.core.api.Assertions.assertThat;
@@ -54,6 +63,24 @@ class WalletServiceWithdrawTest {
     @Mock
     MeterRegistry meterRegistry;
 
+    @Mock
+    TransactionFactory factory;
+
+    @Mock
+    ExecutionModePolicy executionModePolicy;
+
+    @Mock
+    WalletLaneExecutor laneExecutor;
+
+    @Spy
+    RetryPolicy retryPolicy = new RetryPolicy(new SimpleMeterRegistry(), 1, 10, 0.5, 3, 3, 3, 3, 3);
+
+    @Mock
+    WalletExistenceFilter walletExistenceFilter;
+
+    @Mock
+    WalletMetadataCache walletMetadataCache;
+
     @InjectMocks
     WalletServiceImpl walletService;
 
@@ -93,6 +120,10 @@ class WalletServiceWithdrawTest {
         walletEntity.setVersion(1L);
 
         when(cache.isDuplicateTransaction(anyString())).thenReturn(Mono.empty());
+        when(walletMetadataCache.validate(anyString(), any())).thenAnswer(invocation -> {
+            Function<Wallet, Mono<Wallet>> validation = invocation.getArgument(1);
+            return walletRepository.findById(invocation.<String>getArgument(0)).flatMap(validation);
+        });
     }
 
     @Test
@@ -0,0 +1,190 @@
+package com.recargapay.wallet.event.balance;
+
+import com.recargapay.wallet.cache.CacheService;
+import com.recargapay.wallet.core.executor.RetryPolicy;
+import com.recargapay.wallet.database.entity.Wallet;
+import com.recargapay.wallet.database.repository.WalletReactiveRepository;
+import com.recargapay.wallet.event.dto.BalanceUpdateEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.CannotAcquireLockException;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class BalanceUpdateCoalescerTest {
+
+    @Mock
+    private WalletReactiveRepository walletRepository;
+
+    @Mock
+    private CacheService cache;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RetryPolicy retryPolicy = new RetryPolicy(meterRegistry, 1, 10, 0.5, 3, 3, 3, 3, 3);
+    private BalanceUpdateCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        when(cache.writeBalance(any())).thenReturn(Mono.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        coalescer.destroy();
+    }
+
+    @Test
+    @DisplayName("Deltas da mesma carteira na janela viram um único update com a soma")
+    void deltasWithinWindowAreSummed() throws InterruptedException {
+        coalescer = new BalanceUpdateCoalescer(walletRepository, cache, retryPolicy, meterRegistry, 100, 500);
+        when(walletRepository.applyBalanceUpdates(anyString(), any(), any(), any())).thenReturn(Mono.just(new Wallet()));
+        CountDownLatch applied = new CountDownLatch(3);
+
+        coalescer.add(update("req-1", BigDecimal.TEN)).thenRun(applied::countDown);
+        coalescer.add(update("req-2", BigDecimal.ONE)).thenRun(applied::countDown);
+        coalescer.add(update("req-3", BigDecimal.valueOf(-5))).thenRun(applied::countDown);
+
+        assertTrue(applied.await(2, TimeUnit.SECONDS));
+        verify(walletRepository, times(1)).applyBalanceUpdates(eq("wallet-1"),
+                aryEq(new String[]{"req-1", "req-2", "req-3"}),
+                aryEq(new String[]{"DEPOSIT", "DEPOSIT", "DEPOSIT"}),
+                aryEq(new BigDecimal[]{BigDecimal.TEN, BigDecimal.ONE, BigDecimal.valueOf(-5)}));
+    }
+
+    @Test
+    @DisplayName("Saldo e versão resultantes do update são gravados no cache")
+    void appliedBalanceIsWrittenToCache() throws InterruptedException {
+        coalescer = new BalanceUpdateCoalescer(walletRepository, cache, retryPolicy, meterRegistry, 50, 500);
+        Wallet wallet = new Wallet();
+        when(walletRepository.applyBalanceUpdates(anyString(), any(), any(), any())).thenReturn(Mono.just(wallet));
+        CountDownLatch applied = new CountDownLatch(1);
+
+        coalescer.add(update("req-1", BigDecimal.TEN)).thenRun(applied::countDown);
+
+        assertTrue(applied.await(2, TimeUnit.SECONDS));
+        verify(cache).writeBalance(wallet);
+    }
+
+    @Test
+    @DisplayName("Atingir o máximo de deltas aplica o update sem esperar a janela")
+    void maxDeltasFlushesImmediately() {
+        coalescer = new BalanceUpdateCoalescer(walletRepository, cache, retryPolicy, meterRegistry, 60_000, 2);
+        when(walletRepository.applyBalanceUpdates(anyString(), any(), any(), any())).thenReturn(Mono.just(new Wallet()));
+
+        coalescer.add(update("req-1", BigDecimal.TEN));
+        coalescer.add(update("req-2", BigDecimal.TEN));
+
+        verify(walletRepository, timeout(1000)).applyBalanceUpdates(eq("wallet-1"),
+                aryEq(new String[]{"req-1", "req-2"}), any(), aryEq(new BigDecimal[]{BigDecimal.TEN, BigDecimal.TEN}));
+    }
+
+    @Test
+    @DisplayName("Falha transitória no update é repetida com backoff antes de confirmar os deltas")
+    void failedFlushIsRetried() throws InterruptedException {
+        coalescer = new BalanceUpdateCoalescer(walletRepository, cache, retryPolicy, meterRegistry, 50, 500);
+        when(walletRepository.applyBalanceUpdates(anyString(), any(), any(), any()))
+                .thenReturn(Mono.error(new CannotAcquireLockException("lock timeout")))
+                .thenReturn(Mono.just(new Wallet()));
+        CountDownLatch applied = new CountDownLatch(1);
+
+        coalescer.add(update("req-1", BigDecimal.TEN)).thenRun(applied::countDown);
+
+        assertTrue(applied.await(2, TimeUnit.SECONDS));
+        verify(walletRepository, times(2)).applyBalanceUpdates(eq("wallet-1"),
+                aryEq(new String[]{"req-1"}), any(), aryEq(new BigDecimal[]{BigDecimal.TEN}));
+        assertEquals(0, applied.getCount());
+    }
+
+    @Test
+    @DisplayName("Esgotadas as tentativas, os deltas do update falham para seguir aos tópicos de retry/DLT")
+    void exhaustedFlushFailsDeltas() {
+        coalescer = new BalanceUpdateCoalescer(walletRepository, cache, retryPolicy, meterRegistry, 50, 500);
+        when(walletRepository.applyBalanceUpdates(anyString(), any(), any(), any()))
+                .thenReturn(Mono.error(new CannotAcquireLockException("lock timeout")));
+
+        CompletableFuture<Void> first = coalescer.add(update("req-1", BigDecimal.TEN));
+        CompletableFuture<Void> second = coalescer.add(update("req-2", BigDecimal.ONE));
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> first.get(2, TimeUnit.SECONDS));
+        assertInstanceOf(CannotAcquireLockException.class, error.getCause());
+        assertThrows(ExecutionException.class, () -> second.get(2, TimeUnit.SECONDS));
+        verify(walletRepository, times(3)).applyBalanceUpdates(anyString(), any(), any(), any());
+        assertEquals(1.0, meterRegistry.counter("wallet_balance_coalesced_flush_failures").count());
+        assertEquals(2.0, meterRegistry.counter("wallet_balance_coalesced_failed_deltas").count());
+        assertEquals(1.0, meterRegistry.counter("wallet_retry_exhausted", "operation", "balance-update").count());
+    }
+
+    @Test
+    @DisplayName("Erro não transitório no update falha os deltas sem novas tentativas")
+    void nonTransientFlushErrorIsNotRetried() {
+        coalescer = new BalanceUpdateCoalescer(walletRepository, cache, retryPolicy, meterRegistry, 50, 500);
+        when(walletRepository.applyBalanceUpdates(anyString(), any(), any(), any()))
+                .thenReturn(Mono.error(new IllegalStateException("falha")));
+
+        CompletableFuture<Void> applied = coalescer.add(update("req-1", BigDecimal.TEN));
+
+        assertThrows(ExecutionException.class, () -> applied.get(2, TimeUnit.SECONDS));
+        verify(walletRepository, times(1)).applyBalanceUpdates(anyString(), any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("Redelivery de uma atualização ainda pendente entra uma única vez no update e as duas são confirmadas")
+    void pendingRedeliveryIsAppliedOnce() throws InterruptedException {
+        coalescer = new BalanceUpdateCoalescer(walletRepository, cache, retryPolicy, meterRegistry, 100, 500);
+        when(walletRepository.applyBalanceUpdates(anyString(), any(), any(), any())).thenReturn(Mono.just(new Wallet()));
+        CountDownLatch applied = new CountDownLatch(2);
+
+        coalescer.add(update("req-1", BigDecimal.TEN)).thenRun(applied::countDown);
+        coalescer.add(update("req-1", BigDecimal.TEN)).thenRun(applied::countDown);
+
+        assertTrue(applied.await(2, TimeUnit.SECONDS));
+        verify(walletRepository).applyBalanceUpdates(eq("wallet-1"),
+                aryEq(new String[]{"req-1"}), any(), aryEq(new BigDecimal[]{BigDecimal.TEN}));
+    }
+
+    @Test
+    @DisplayName("Atualização já aplicada antes (redelivery após o commit) é só confirmada, sem gravar no cache")
+    void alreadyAppliedUpdateIsOnlyAcknowledged() throws InterruptedException {
+        coalescer = new BalanceUpdateCoalescer(walletRepository, cache, retryPolicy, meterRegistry, 50, 500);
+        when(walletRepository.applyBalanceUpdates(anyString(), any(), any(), any())).thenReturn(Mono.empty());
+        CountDownLatch applied = new CountDownLatch(1);
+
+        coalescer.add(update("req-1", BigDecimal.TEN)).thenRun(applied::countDown);
+
+        assertTrue(applied.await(2, TimeUnit.SECONDS));
+        verify(cache, never()).writeBalance(any());
+    }
+
+    private static BalanceUpdateEvent update(String requestTransactionId, BigDecimal amount) {
+        return new BalanceUpdateEvent(requestTransactionId, "wallet-1", amount, "DEPOSIT");
+    }
+}
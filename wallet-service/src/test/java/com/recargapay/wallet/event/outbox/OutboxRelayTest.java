@@ -0,0 +1,122 @@
+package com.recargapay.wallet.event.outbox;
+
+import com.recargapay.wallet.database.entity.OutboxEvent;
+import com.recargapay.wallet.database.repository.OutboxEventReactiveRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class OutboxRelayTest {
+
+    @Mock
+    private OutboxEventReactiveRepository outboxRepository;
+    @Mock
+    private TransactionalOperator transactionalOperator;
+    @Mock
+    private KafkaTemplate<String, String> kafkaTemplate;
+
+    private OutboxRelay relay;
+
+    @BeforeEach
+    void setUp() {
+        relay = new OutboxRelay(outboxRepository, transactionalOperator, kafkaTemplate, new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(relay, "batchSize", 10);
+        ReflectionTestUtils.setField(relay, "sendTimeoutSeconds", 1L);
+
+        when(transactionalOperator.transactional(any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(outboxRepository.deleteByIds(any())).thenReturn(Mono.just(2L));
+        when(outboxRepository.lockKeys(anyInt())).thenReturn(Flux.just("wallet-a"));
+    }
+
+    @Test
+    @DisplayName("Eventos são publicados na ordem e removidos da outbox após o ack")
+    void publishesInOrderAndDeletesAfterAck() {
+        when(outboxRepository.lockPending(any(), anyInt())).thenReturn(Flux.just(event("1", "wallet-a"), event("2", "wallet-a")));
+        when(kafkaTemplate.send(anyString(), anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+
+        StepVerifier.create(relay.relayBatch())
+                .expectNext(2)
+                .verifyComplete();
+
+        InOrder inOrder = inOrder(kafkaTemplate, outboxRepository);
+        inOrder.verify(kafkaTemplate).send("wallet-balance-updates", "wallet-a", "payload-1");
+        inOrder.verify(kafkaTemplate).send("wallet-balance-updates", "wallet-a", "payload-2");
+        inOrder.verify(outboxRepository).deleteByIds(List.of("1", "2"));
+    }
+
+    @Test
+    @DisplayName("Falha no envio mantém os eventos na outbox")
+    void sendFailureKeepsEvents() {
+        when(outboxRepository.lockPending(any(), anyInt())).thenReturn(Flux.just(event("1", "wallet-a")));
+        when(kafkaTemplate.send(anyString(), anyString(), anyString()))
+                .thenReturn(CompletableFuture.failedFuture(new RuntimeException("broker indisponível")));
+
+        StepVerifier.create(relay.relayBatch())
+                .expectErrorMessage("broker indisponível")
+                .verify();
+
+        verify(outboxRepository, never()).deleteByIds(any());
+    }
+
+    @Test
+    @DisplayName("Outbox vazia, ou com todas as chaves em posse de outro relay, não lê nem publica nada")
+    void emptyOutboxPublishesNothing() {
+        when(outboxRepository.lockKeys(anyInt())).thenReturn(Flux.empty());
+
+        StepVerifier.create(relay.relayBatch())
+                .expectNext(0)
+                .verifyComplete();
+
+        verify(outboxRepository, never()).lockPending(any(), anyInt());
+        verify(kafkaTemplate, never()).send(anyString(), anyString(), anyString());
+    }
+
+    @Test
+    @DisplayName("Somente os eventos das chaves que este relay detém são lidos e publicados")
+    void relaysOnlyOwnedKeys() {
+        when(outboxRepository.lockKeys(anyInt())).thenReturn(Flux.just("wallet-b"));
+        when(outboxRepository.lockPending(any(), anyInt())).thenReturn(Flux.just(event("1", "wallet-a")));
+        when(outboxRepository.lockPending(List.of("wallet-b"), 10)).thenReturn(Flux.just(event("3", "wallet-b")));
+        when(kafkaTemplate.send(anyString(), anyString(), anyString())).thenReturn(CompletableFuture.completedFuture(null));
+
+        StepVerifier.create(relay.relayBatch())
+                .expectNext(1)
+                .verifyComplete();
+
+        verify(kafkaTemplate).send("wallet-balance-updates", "wallet-b", "payload-3");
+        verify(kafkaTemplate, never()).send(anyString(), eq("wallet-a"), anyString());
+        verify(outboxRepository).deleteByIds(List.of("3"));
+    }
+
+    private static OutboxEvent event(String id, String walletId) {
+        return new OutboxEvent(id, "wallet-balance-updates", walletId, "payload-" + id, LocalDateTime.now(), Long.valueOf(id));
+    }
+}
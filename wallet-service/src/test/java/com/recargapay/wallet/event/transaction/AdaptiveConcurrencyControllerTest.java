@@ -0,0 +1,67 @@
+package com.recargapay.wallet.event.transaction;
+
+import com.recargapay.wallet.core.executor.WalletLaneExecutor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.config.KafkaListenerEndpointRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+
+class AdaptiveConcurrencyControllerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WalletLaneExecutor laneExecutor;
+    private AdaptiveConcurrencyController controller;
+
+    @BeforeEach
+    void setUp() {
+        laneExecutor = new WalletLaneExecutor(meterRegistry, 4, 100, 5, 64, 0.8, 0.5, false);
+        controller = new AdaptiveConcurrencyController(laneExecutor, mock(KafkaListenerEndpointRegistry.class),
+                mock(ConnectionFactory.class), meterRegistry, 16, 128, 16, 0.5, 1000, 200, 1);
+    }
+
+    @AfterEach
+    void tearDown() {
+        laneExecutor.destroy();
+    }
+
+    @Test
+    @DisplayName("Lag acima do limite com o pool livre aumenta o limite em andamento")
+    void lagIncreasesLimit() {
+        assertEquals(80, controller.adjust(5000, 0, 20));
+        assertEquals(80, laneExecutor.maxInFlight());
+        assertEquals(1.0, meterRegistry.counter("wallet_adaptive_concurrency_decisions", "decision", "increase").count());
+    }
+
+    @Test
+    @DisplayName("Latência do banco acima do limite reduz o limite mesmo com lag")
+    void latencyDecreasesLimit() {
+        assertEquals(32, controller.adjust(5000, 0, 500));
+        assertEquals(16, controller.adjust(5000, 0, 500));
+        assertEquals(16, controller.adjust(5000, 0, 500));
+        assertEquals(16, laneExecutor.maxInFlight());
+    }
+
+    @Test
+    @DisplayName("Espera por conexão no pool impede o aumento e reduz o limite")
+    void poolWaitDecreasesLimit() {
+        assertEquals(32, controller.adjust(5000, 3, 20));
+        assertEquals(1.0, meterRegistry.counter("wallet_adaptive_concurrency_decisions", "decision", "decrease").count());
+    }
+
+    @Test
+    @DisplayName("Sem lag e com o banco saudável o limite é mantido, respeitando o máximo")
+    void holdsWithoutLagAndRespectsMax() {
+        assertEquals(64, controller.adjust(0, 0, 20));
+        for (int i = 0; i < 10; i++) {
+            controller.adjust(5000, 0, 20);
+        }
+        assertEquals(128, laneExecutor.maxInFlight());
+        assertEquals(7.0, meterRegistry.counter("wallet_adaptive_concurrency_decisions", "decision", "hold").count());
+    }
+}
@@ -0,0 +1,106 @@
+package com.recargapay.wallet.event.transaction;
+
+import com.recargapay.wallet.core.executor.RetryPolicy;
+import com.recargapay.wallet.core.executor.WalletLaneExecutor;
+import com.recargapay.wallet.core.factory.context.Transaction;
+import com.recargapay.wallet.core.factory.context.TransactionFactory;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.CannotAcquireLockException;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.recargapay.wallet.event.BrokerProperties.WALLET_TRANSACTIONS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class TransactionConsumerTest {
+
+    @Mock
+    TransactionFactory factory;
+
+    @Mock
+    TransactionReader transactionReader;
+
+    @Mock
+    Transaction transaction;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final ConsumerRecord<String, String> record = new ConsumerRecord<>(WALLET_TRANSACTIONS.getTopic(), 0, 10L, "wallet-1", "{}");
+    private WalletLaneExecutor laneExecutor;
+    private TransactionConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        laneExecutor = new WalletLaneExecutor(meterRegistry, 4, 100, 5, 64, 0.8, 0.5, false);
+        RetryPolicy retryPolicy = new RetryPolicy(meterRegistry, 1, 10, 0.5, 3, 3, 3, 2, 3);
+        consumer = new TransactionConsumer(factory, transactionReader, laneExecutor, retryPolicy);
+        when(transactionReader.read(record)).thenReturn(transaction);
+        when(transaction.walletIds()).thenReturn(List.of("wallet-1"));
+    }
+
+    @AfterEach
+    void tearDown() {
+        laneExecutor.destroy();
+    }
+
+    @Test
+    @DisplayName("Transação concluída completa o resultado e o registro é confirmado")
+    void completedTransactionIsAcknowledged() throws Exception {
+        when(transaction.execute(factory)).thenReturn(Mono.empty());
+
+        CompletableFuture<Void> result = consumer.processTransaction(record);
+
+        assertNull(result.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @DisplayName("Transação com falha não é confirmada: o erro chega ao container, que envia o registro ao tópico de retry")
+    void failedTransactionIsNotAcknowledged() {
+        AtomicInteger attempts = new AtomicInteger();
+        when(transaction.execute(factory)).thenAnswer(invocation -> {
+            attempts.incrementAndGet();
+            return Mono.error(new CannotAcquireLockException("lock timeout"));
+        });
+
+        CompletableFuture<Void> result = consumer.processTransaction(record);
+
+        ExecutionException error = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(CannotAcquireLockException.class, error.getCause());
+        assertEquals(2, attempts.get());
+        assertEquals(1.0, meterRegistry.counter("wallet_retry_exhausted", "operation", "execution").count());
+    }
+
+    @Test
+    @DisplayName("Falha em uma transação não impede a próxima da mesma carteira")
+    void failureDoesNotBlockNextTransaction() throws Exception {
+        when(transaction.execute(factory))
+                .thenReturn(Mono.error(new IllegalStateException("falha")))
+                .thenReturn(Mono.empty());
+
+        CompletableFuture<Void> failed = consumer.processTransaction(record);
+        CompletableFuture<Void> next = consumer.processTransaction(record);
+
+        assertThrows(ExecutionException.class, () -> failed.get(5, TimeUnit.SECONDS));
+        assertNull(next.get(5, TimeUnit.SECONDS));
+    }
+}
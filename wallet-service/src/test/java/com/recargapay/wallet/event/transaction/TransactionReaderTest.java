@@ -0,0 +1,78 @@
+package com.recargapay.wallet.event.transaction;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.recargapay.wallet.core.enums.TransactionType;
+import com.recargapay.wallet.core.factory.DepositTransaction;
+import com.recargapay.wallet.core.factory.TransferTransaction;
+import com.recargapay.wallet.core.factory.WithdrawTransaction;
+import com.recargapay.wallet.core.factory.context.Transaction;
+import com.recargapay.wallet.event.dto.DualTransactionEvent;
+import com.recargapay.wallet.event.dto.TransactionEvent;
+import com.recargapay.wallet.handle.exception.UnknownTransactionTypeException;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static com.recargapay.wallet.event.BrokerProperties.TRANSACTION_TYPE_HEADER;
+import static com.recargapay.wallet.event.BrokerProperties.WALLET_TRANSACTIONS;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionReaderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final TransactionReader reader = new TransactionReader(objectMapper);
+
+    @Test
+    @DisplayName("O header de tipo seleciona a classe concreta da transação")
+    void headerSelectsConcreteTransaction() throws Exception {
+        Transaction deposit = DepositTransaction.of(event("wallet-a", TransactionType.DEPOSIT));
+        Transaction withdraw = WithdrawTransaction.build(event("wallet-a", TransactionType.WITHDRAW));
+        Transaction transfer = TransferTransaction.of(new DualTransactionEvent(
+                event("wallet-a", TransactionType.TRANSFER_OUT), event("wallet-b", TransactionType.TRANSFER_IN)));
+
+        assertInstanceOf(DepositTransaction.class, reader.read(record(deposit, deposit.type())));
+        assertInstanceOf(WithdrawTransaction.class, reader.read(record(withdraw, withdraw.type())));
+        Transaction read = reader.read(record(transfer, transfer.type()));
+        assertInstanceOf(TransferTransaction.class, read);
+        assertEquals(List.of("wallet-a", "wallet-b"), read.walletIds());
+    }
+
+    @Test
+    @DisplayName("Tipo desconhecido é rejeitado em vez de ser lido como transferência")
+    void unknownTypeIsRejected() throws Exception {
+        Transaction deposit = DepositTransaction.of(event("wallet-a", TransactionType.DEPOSIT));
+        var record = record(deposit, "CHARGEBACK");
+
+        assertThrows(UnknownTransactionTypeException.class, () -> reader.read(record));
+    }
+
+    @Test
+    @DisplayName("Registros sem header usam o tipo do payload")
+    void recordWithoutHeaderUsesPayloadType() throws Exception {
+        Transaction deposit = DepositTransaction.of(event("wallet-a", TransactionType.DEPOSIT));
+        Transaction transfer = TransferTransaction.of(new DualTransactionEvent(
+                event("wallet-a", TransactionType.TRANSFER_OUT), event("wallet-b", TransactionType.TRANSFER_IN)));
+
+        assertInstanceOf(DepositTransaction.class, reader.read(record(deposit, null)));
+        assertInstanceOf(TransferTransaction.class, reader.read(record(transfer, null)));
+    }
+
+    private ConsumerRecord<String, String> record(Transaction transaction, String type) throws Exception {
+        var record = new ConsumerRecord<>(WALLET_TRANSACTIONS.getTopic(), 0, 0L,
+                transaction.walletIds().get(0), objectMapper.writeValueAsString(transaction));
+        if (type != null) {
+            record.headers().add(TRANSACTION_TYPE_HEADER, type.getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+
+    private static TransactionEvent event(String walletId, TransactionType type) {
+        return new TransactionEvent("request-1", walletId, BigDecimal.TEN, type.getType());
+    }
+}